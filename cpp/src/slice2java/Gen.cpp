@@ -111,6 +111,72 @@ getDeprecateReason(const ContainedPtr& p1, const ContainedPtr& p2, const string&
     return deprecateReason;
 }
 
+//
+// Returns true if the Java mapping of the given type can be modified by
+// the receiver, such parameters are copied by direct collocated invocations.
+//
+static bool
+isMutableType(const TypePtr& type)
+{
+    BuiltinPtr builtin = BuiltinPtr::dynamicCast(type);
+    if(builtin)
+    {
+        return builtin->kind() == Builtin::KindObject || builtin->kind() == Builtin::KindValue;
+    }
+    return SequencePtr::dynamicCast(type) || DictionaryPtr::dynamicCast(type) || StructPtr::dynamicCast(type) ||
+        ClassDeclPtr::dynamicCast(type);
+}
+
+//
+// Returns true if the future-based Async methods are generated for the given
+// operation of the given class. They're only generated for operations without
+// out parameters and if they don't conflict with the methods of another
+// operation of the class, such as an operation named `opAsync'. If
+// emitConflict is true, an error is emitted for a conflict between
+// operations of which at least one is defined by the class.
+//
+static bool
+hasFutureMethods(const ClassDefPtr& cl, const OperationPtr& op, bool emitConflict)
+{
+    int numInParams = 0;
+    ParamDeclList params = op->parameters();
+    for(ParamDeclList::const_iterator p = params.begin(); p != params.end(); ++p)
+    {
+        if((*p)->isOutParam())
+        {
+            return false;
+        }
+        ++numInParams;
+    }
+
+    const OperationList ops = cl->allOperations();
+    for(OperationList::const_iterator i = ops.begin(); i != ops.end(); ++i)
+    {
+        if((*i)->name() == op->name() + "Async")
+        {
+            //
+            // The Async methods take the in parameters with or without a
+            // context, the methods of the other operation take its
+            // parameters with or without a context.
+            //
+            int numParams = static_cast<int>((*i)->parameters().size());
+            if(numParams >= numInParams - 1 && numParams <= numInParams + 1)
+            {
+                if(emitConflict && (ClassDefPtr::dynamicCast((*i)->container()) == cl ||
+                                    ClassDefPtr::dynamicCast(op->container()) == cl))
+                {
+                    ostringstream ostr;
+                    ostr << "operation `" << (*i)->name() << "' conflicts with Async method for operation `"
+                         << op->name() << "'";
+                    emitError((*i)->file(), (*i)->line(), ostr.str());
+                }
+                return false;
+            }
+        }
+    }
+    return true;
+}
+
 string
 initValue(const TypePtr& p)
 {
@@ -1490,18 +1556,6 @@ Slice::JavaVisitor::writeDispatchAndMarshalling(Output& out, const ClassDefPtr&
         allOpNames.sort();
         allOpNames.unique();
 
-        out << sp << nl << "private final static String[] __all =";
-        out << sb;
-        for(StringList::const_iterator q = allOpNames.begin(); q != allOpNames.end();)
-        {
-            out << nl << '"' << *q << '"';
-            if(++q != allOpNames.end())
-            {
-                out << ',';
-            }
-        }
-        out << eb << ';';
-
         out << sp;
         for(OperationList::iterator r = allOps.begin(); r != allOps.end(); ++r)
         {
@@ -1521,19 +1575,18 @@ Slice::JavaVisitor::writeDispatchAndMarshalling(Output& out, const ClassDefPtr&
         }
         out << nl << "public Ice.DispatchStatus __dispatch(IceInternal.Incoming in, Ice.Current __current)";
         out << sb;
-        out << nl << "int pos = java.util.Arrays.binarySearch(__all, __current.operation);";
-        out << nl << "if(pos < 0)";
-        out << sb;
-        out << nl << "throw new Ice.OperationNotExistException(__current.id, __current.facet, __current.operation);";
-        out << eb;
-        out << sp << nl << "switch(pos)";
+        //
+        // The Java compiler implements a switch on strings with a switch on
+        // the string hash code, which is cached by the operation names read
+        // by Incoming.
+        //
+        out << nl << "switch(__current.operation)";
         out << sb;
-        int i = 0;
         for(StringList::const_iterator q = allOpNames.begin(); q != allOpNames.end(); ++q)
         {
             string opName = *q;
 
-            out << nl << "case " << i++ << ':';
+            out << nl << "case \"" << opName << "\":";
             out << sb;
             if(opName == "ice_id")
             {
@@ -1587,8 +1640,7 @@ Slice::JavaVisitor::writeDispatchAndMarshalling(Output& out, const ClassDefPtr&
             out << eb;
         }
         out << eb;
-        out << sp << nl << "assert(false);";
-        out << nl << "throw new Ice.OperationNotExistException(__current.id, __current.facet, __current.operation);";
+        out << sp << nl << "throw new Ice.OperationNotExistException(__current.id, __current.facet, __current.operation);";
         out << eb;
 
         //
@@ -1607,6 +1659,18 @@ Slice::JavaVisitor::writeDispatchAndMarshalling(Output& out, const ClassDefPtr&
 
         if(!attributesMap.empty())
         {
+            out << sp << nl << "private final static String[] __all =";
+            out << sb;
+            for(StringList::const_iterator q = allOpNames.begin(); q != allOpNames.end();)
+            {
+                out << nl << '"' << *q << '"';
+                if(++q != allOpNames.end())
+                {
+                    out << ',';
+                }
+            }
+            out << eb << ';';
+
             out << sp << nl << "private final static int[] __operationAttributes =";
             out << sb;
             for(StringList::const_iterator q = allOpNames.begin(); q != allOpNames.end();)
@@ -5296,6 +5360,7 @@ Slice::Gen::HelperVisitor::writeOperation(const ClassDefPtr& p, const string& pa
     ParamDeclList inParams;
     ParamDeclList outParams;
     ParamDeclList paramList = op->parameters();
+    bool sendsOptionals = false;
     for(ParamDeclList::const_iterator pli = paramList.begin(); pli != paramList.end(); ++pli)
     {
         if((*pli)->isOutParam())
@@ -5306,8 +5371,17 @@ Slice::Gen::HelperVisitor::writeOperation(const ClassDefPtr& p, const string& pa
         {
             inParams.push_back(*pli);
         }
+        sendsOptionals = sendsOptionals || (*pli)->optional();
     }
 
+    //
+    // Operations dispatched with AMD and operations with optional
+    // parameters are always marshaled, the other operations can be
+    // dispatched directly to a collocated servant.
+    //
+    const bool direct = optionalMapping && !sendsOptionals && !op->returnIsOptional() &&
+        !cl->hasMetaData("amd") && !op->hasMetaData("amd");
+
     ExceptionList throws = op->throws();
     throws.sort();
     throws.unique();
@@ -5339,7 +5413,8 @@ Slice::Gen::HelperVisitor::writeOperation(const ClassDefPtr& p, const string& pa
     out << eb;
 
     out << sp;
-    out << nl << "private " << retS << ' ' << opName << spar << params << contextParam
+    out << nl << "private " << retS << ' ' << opName
+        << spar << (direct ? getParamsProxy(op, package, true, optionalMapping) : params) << contextParam
         << explicitContextParam << epar;
     writeThrowsClause(package, throws);
     out << sb;
@@ -5350,6 +5425,11 @@ Slice::Gen::HelperVisitor::writeOperation(const ClassDefPtr& p, const string& pa
         out << nl << "__checkTwowayOnly(__" << op->name() << "_name);";
     }
 
+    if(direct)
+    {
+        writeDirectInvocation(package, op);
+    }
+
     if(ret)
     {
         out << nl << "return ";
@@ -5641,9 +5721,357 @@ Slice::Gen::HelperVisitor::writeOperation(const ClassDefPtr& p, const string& pa
         out << eb;
         out << nl << "return __result;";
         out << eb;
+
+        //
+        // Async methods returning a future, only generated for operations
+        // without out parameters. The future is the invocation callback,
+        // it's completed by the thread which reads the reply.
+        //
+        if(hasFutureMethods(p, op, optionalMapping))
+        {
+            const string futureType = !ret ? "Void" : (op->returnIsOptional() ? retS :
+                                      typeToObjectString(ret, TypeModeReturn, package, op->getMetaData(), true));
+            const string future = "Ice.InvocationFuture<" + futureType + ">";
+
+            out << sp << nl << "public " << future << ' ' << op->name() << "Async" << spar << inParams << epar;
+            out << sb;
+            out << nl << "return " << op->name() << "Async" << spar << inArgs << "null" << "false" << epar << ';';
+            out << eb;
+
+            out << sp << nl << "public " << future << ' ' << op->name() << "Async" << spar << inParams << contextParam
+                << epar;
+            out << sb;
+            out << nl << "return " << op->name() << "Async" << spar << inArgs << "__ctx" << "true" << epar << ';';
+            out << eb;
+
+            out << sp << nl << "private " << future << ' ' << op->name() << "Async" << spar << inParams << contextParam
+                << explicitContextParam << epar;
+            out << sb;
+            out << nl << future << " __f = new " << future << "(this)";
+            out.inc();
+            out << sb;
+            out << nl << "protected " << futureType << " __end(Ice.AsyncResult __r)";
+            writeThrowsClause(package, throws);
+            out << sb;
+            if(ret)
+            {
+                out << nl << "return end_" << op->name() << "(__r);";
+            }
+            else
+            {
+                out << nl << "end_" << op->name() << "(__r);";
+                out << nl << "return null;";
+            }
+            out << eb;
+            out << eb << ';';
+            out.dec();
+            out << nl << "__f.__setAsyncResult(begin_" << op->name() << spar << inArgs << "__ctx" << "__explicitCtx"
+                << "false" << "__f" << epar << ");";
+            out << nl << "return __f;";
+            out << eb;
+        }
     }
 }
 
+void
+Slice::Gen::HelperVisitor::writeDirectInvocation(const string& package, const OperationPtr& op)
+{
+    Output& out = output();
+
+    const ClassDefPtr cl = ClassDefPtr::dynamicCast(op->container());
+    const string opName = fixKwd(op->name());
+    const string opIntf = getAbsolute(cl, package, "_", "Operations");
+    const string format = opFormatTypeToString(op);
+    const TypePtr ret = op->returnType();
+
+    //
+    // Mutable parameters are copied unless the operation or its interface
+    // has the java:by-reference metadata.
+    //
+    const bool byReference = op->hasMetaData("java:by-reference") || cl->hasMetaData("java:by-reference");
+
+    ParamDeclList inParams;
+    ParamDeclList outParams;
+    ParamDeclList copyInParams;
+    ParamDeclList copyOutParams;
+    ParamDeclList paramList = op->parameters();
+    for(ParamDeclList::const_iterator pli = paramList.begin(); pli != paramList.end(); ++pli)
+    {
+        const bool copy = !byReference && isMutableType((*pli)->type());
+        if((*pli)->isOutParam())
+        {
+            outParams.push_back(*pli);
+            if(copy)
+            {
+                copyOutParams.push_back(*pli);
+            }
+        }
+        else
+        {
+            inParams.push_back(*pli);
+            if(copy)
+            {
+                copyInParams.push_back(*pli);
+            }
+        }
+    }
+    const bool copyRet = ret && !byReference && isMutableType(ret);
+
+    ExceptionList throws = op->throws();
+    throws.sort();
+    throws.unique();
+#if defined(__SUNPRO_CC)
+    throws.sort(Slice::derivedToBaseCompare);
+#else
+    throws.sort(Slice::DerivedToBaseCompare());
+#endif
+
+    int iter;
+
+    out << nl << "Ice.Current __current = __getDirectCurrent(__" << op->name() << "_name, "
+        << sliceModeToIceMode(op->sendMode()) << ", __ctx, __explicitCtx);";
+    out << nl << "if(__current != null)";
+    out << sb;
+    if(ret)
+    {
+        const string retHolder = typeToString(ret, TypeModeOut, package, op->getMetaData(), true, false);
+        out << nl << "final " << retHolder << " __ret = new " << retHolder << "();";
+    }
+    for(ParamDeclList::const_iterator pli = outParams.begin(); pli != outParams.end(); ++pli)
+    {
+        const string typeS = typeToString((*pli)->type(), TypeModeOut, package, (*pli)->getMetaData(), true, false);
+        out << nl << "final " << typeS << " __" << (*pli)->name() << " = new " << typeS << "();";
+    }
+    out << nl << "IceInternal.Direct __direct = new IceInternal.Direct(this, __current)";
+    out.inc();
+    out << sb;
+    out << nl << "public boolean isDirect(Ice.Object __obj)";
+    out << sb;
+    out << nl << "return __obj instanceof " << opIntf << ';';
+    out << eb;
+    out << sp;
+    out << nl << "public Ice.DispatchStatus run(Ice.Object __obj)";
+    out << sb;
+
+    //
+    // Copy the mutable in parameters, the servant gets its own copy.
+    //
+    if(!copyInParams.empty())
+    {
+        for(ParamDeclList::const_iterator pli = copyInParams.begin(); pli != copyInParams.end(); ++pli)
+        {
+            TypePtr paramType = (*pli)->type();
+            string typeS = typeToString(paramType, TypeModeIn, package, (*pli)->getMetaData(), true, false);
+            string copyName = "__" + (*pli)->name();
+            BuiltinPtr builtin = BuiltinPtr::dynamicCast(paramType);
+            if((builtin && builtin->kind() == Builtin::KindObject) || ClassDeclPtr::dynamicCast(paramType))
+            {
+                out << nl << typeS << "Holder " << copyName << " = new " << typeS << "Holder();";
+            }
+            else if(StructPtr::dynamicCast(paramType))
+            {
+                out << nl << typeS << ' ' << copyName << " = null;";
+            }
+            else
+            {
+                out << nl << typeS << ' ' << copyName << ';';
+            }
+        }
+        out << nl << "Ice.OutputStream __os = startCopy(" << format << ");";
+        iter = 0;
+        for(ParamDeclList::const_iterator pli = copyInParams.begin(); pli != copyInParams.end(); ++pli)
+        {
+            writeMarshalUnmarshalCode(out, package, (*pli)->type(), OptionalNone, false, 0, fixKwd((*pli)->name()),
+                                      true, iter, false, (*pli)->getMetaData());
+        }
+        if(op->sendsClasses(false))
+        {
+            out << nl << "__os.writePendingValues();";
+        }
+        out << nl << "Ice.InputStream __is = copy(__os);";
+        for(ParamDeclList::const_iterator pli = copyInParams.begin(); pli != copyInParams.end(); ++pli)
+        {
+            TypePtr paramType = (*pli)->type();
+            string copyName = "__" + (*pli)->name();
+            BuiltinPtr builtin = BuiltinPtr::dynamicCast(paramType);
+            bool holder = (builtin && builtin->kind() == Builtin::KindObject) || ClassDeclPtr::dynamicCast(paramType);
+            writeMarshalUnmarshalCode(out, package, paramType, OptionalNone, false, 0, copyName, false, iter, holder,
+                                      (*pli)->getMetaData(), copyName);
+        }
+        if(op->sendsClasses(false))
+        {
+            out << nl << "__is.readPendingValues();";
+        }
+        out << nl << "endCopy(__is);";
+    }
+
+    //
+    // Call on the servant.
+    //
+    const bool catchAll = op->hasMetaData("UserException");
+    if(catchAll || !throws.empty())
+    {
+        out << nl << "try";
+        out << sb;
+    }
+    out << nl;
+    if(ret)
+    {
+        out << "__ret.value = ";
+    }
+    out << "((" << opIntf << ")__obj)." << opName << '(';
+    for(ParamDeclList::const_iterator pli = inParams.begin(); pli != inParams.end(); ++pli)
+    {
+        if(find(copyInParams.begin(), copyInParams.end(), *pli) != copyInParams.end())
+        {
+            out << "__" << (*pli)->name();
+            BuiltinPtr builtin = BuiltinPtr::dynamicCast((*pli)->type());
+            if((builtin && builtin->kind() == Builtin::KindObject) || ClassDeclPtr::dynamicCast((*pli)->type()))
+            {
+                out << ".value";
+            }
+        }
+        else
+        {
+            out << getDirectValue((*pli)->type(), package, fixKwd((*pli)->name()));
+        }
+        out << ", ";
+    }
+    for(ParamDeclList::const_iterator pli = outParams.begin(); pli != outParams.end(); ++pli)
+    {
+        out << "__" << (*pli)->name() << ", ";
+    }
+    out << "getCurrent());";
+    if(catchAll || !throws.empty())
+    {
+        out << eb;
+        if(catchAll)
+        {
+            out << nl << "catch(Ice.UserException __ex)";
+            out << sb;
+            out << nl << "setUserException(__ex);";
+            out << nl << "return Ice.DispatchStatus.DispatchUserException;";
+            out << eb;
+        }
+        else
+        {
+            for(ExceptionList::const_iterator t = throws.begin(); t != throws.end(); ++t)
+            {
+                out << nl << "catch(" << getAbsolute(*t, package) << " __ex)";
+                out << sb;
+                out << nl << "setUserException(__ex);";
+                out << nl << "return Ice.DispatchStatus.DispatchUserException;";
+                out << eb;
+            }
+        }
+    }
+    out << nl << "return Ice.DispatchStatus.DispatchOK;";
+    out << eb;
+    out << eb << ';';
+    out.dec();
+
+    out << nl << "try";
+    out << sb;
+    out << nl << "if(__direct.invoke())";
+    out << sb;
+
+    //
+    // Copy the mutable out parameters and return value, the servant may
+    // keep a reference to them.
+    //
+    for(ParamDeclList::const_iterator pli = outParams.begin(); pli != outParams.end(); ++pli)
+    {
+        if(find(copyOutParams.begin(), copyOutParams.end(), *pli) == copyOutParams.end())
+        {
+            out << nl << fixKwd((*pli)->name()) << ".value = "
+                << getDirectValue((*pli)->type(), package, "__" + (*pli)->name() + ".value") << ';';
+        }
+    }
+    if(!copyOutParams.empty() || copyRet)
+    {
+        out << nl << "Ice.OutputStream __os = __direct.startCopy(" << format << ");";
+        iter = 0;
+        for(ParamDeclList::const_iterator pli = copyOutParams.begin(); pli != copyOutParams.end(); ++pli)
+        {
+            writeMarshalUnmarshalCode(out, package, (*pli)->type(), OptionalNone, false, 0, "__" + (*pli)->name(),
+                                      true, iter, true, (*pli)->getMetaData());
+        }
+        if(copyRet)
+        {
+            writeMarshalUnmarshalCode(out, package, ret, OptionalNone, false, 0, "__ret", true, iter, true,
+                                      op->getMetaData());
+        }
+        if(op->returnsClasses(false))
+        {
+            out << nl << "__os.writePendingValues();";
+        }
+        out << nl << "Ice.InputStream __is = __direct.copy(__os);";
+        for(ParamDeclList::const_iterator pli = copyOutParams.begin(); pli != copyOutParams.end(); ++pli)
+        {
+            string paramName = fixKwd((*pli)->name());
+            out << nl << paramName << ".value = null;";
+            writeMarshalUnmarshalCode(out, package, (*pli)->type(), OptionalNone, false, 0, paramName, false, iter,
+                                      true, (*pli)->getMetaData());
+        }
+        if(copyRet)
+        {
+            out << nl << "__ret.value = null;";
+            writeMarshalUnmarshalCode(out, package, ret, OptionalNone, false, 0, "__ret", false, iter, true,
+                                      op->getMetaData());
+        }
+        if(op->returnsClasses(false))
+        {
+            out << nl << "__is.readPendingValues();";
+        }
+        out << nl << "__direct.endCopy(__is);";
+    }
+    if(ret)
+    {
+        out << nl << "return " << getDirectValue(ret, package, "__ret.value") << ';';
+    }
+    else
+    {
+        out << nl << "return;";
+    }
+    out << eb;
+    out << eb;
+    for(ExceptionList::const_iterator t = throws.begin(); t != throws.end(); ++t)
+    {
+        out << nl << "catch(" << getAbsolute(*t, package) << " __ex)";
+        out << sb;
+        out << nl << "throw __ex;";
+        out << eb;
+    }
+    out << nl << "catch(Ice.UserException __ex)";
+    out << sb;
+    out << nl << "throw new Ice.UnknownUserException(__ex.ice_id(), __ex);";
+    out << eb;
+    out << eb;
+}
+
+//
+// Returns the value passed to or returned by a direct collocated invocation
+// for the given variable. Null strings and enumerators are replaced with the
+// values a marshaled invocation would unmarshal.
+//
+string
+Slice::Gen::HelperVisitor::getDirectValue(const TypePtr& type, const string& package, const string& v)
+{
+    BuiltinPtr builtin = BuiltinPtr::dynamicCast(type);
+    if(builtin && builtin->kind() == Builtin::KindString)
+    {
+        return "(" + v + " != null ? " + v + " : \"\")";
+    }
+
+    EnumPtr en = EnumPtr::dynamicCast(type);
+    if(en)
+    {
+        return "(" + v + " != null ? " + v + " : " + getAbsolute(en, package) + '.' +
+            fixKwd(en->getEnumerators().front()->name()) + ")";
+    }
+    return v;
+}
+
 Slice::Gen::ProxyVisitor::ProxyVisitor(const string& dir) :
     JavaVisitor(dir)
 {
@@ -5818,6 +6246,24 @@ Slice::Gen::ProxyVisitor::visitOperation(const OperationPtr& p)
         out << nl << "public Ice.AsyncResult begin_" << p->name() << spar << inParams << contextParam
             << typeSafeCallbackParam << epar << ';';
 
+        //
+        // Async methods returning a future, for operations without out parameters.
+        //
+        if(hasFutureMethods(cl, p, false))
+        {
+            const string future = "Ice.InvocationFuture<" + (!ret ? string("Void") : (p->returnIsOptional() ? retS :
+                typeToObjectString(ret, TypeModeReturn, package, p->getMetaData(), true))) + ">";
+
+            out << sp;
+            writeDocCommentAMI(out, p, InParam);
+            out << nl << "public " << future << ' ' << p->name() << "Async" << spar << inParams << epar << ';';
+
+            out << sp;
+            writeDocCommentAMI(out, p, InParam, contextDoc);
+            out << nl << "public " << future << ' ' << p->name() << "Async" << spar << inParams << contextParam << epar
+                << ';';
+        }
+
         //
         // Generate the Callback Response interface if the operation has more than one
         // return parameter. Operations with just one return parameter use one of the
@@ -5959,6 +6405,24 @@ Slice::Gen::ProxyVisitor::visitOperation(const OperationPtr& p)
         writeDocCommentAMI(out, p, InParam, contextDoc, callbackDoc);
         out << nl << "public Ice.AsyncResult begin_" << p->name() << spar << inParams << contextParam
             << typeSafeCallbackParam << epar << ';';
+
+        //
+        // Async methods returning a future, for operations without out parameters.
+        //
+        if(hasFutureMethods(cl, p, false))
+        {
+            const string future = "Ice.InvocationFuture<" + (!ret ? string("Void") : (p->returnIsOptional() ? retS :
+                typeToObjectString(ret, TypeModeReturn, package, p->getMetaData(), true))) + ">";
+
+            out << sp;
+            writeDocCommentAMI(out, p, InParam);
+            out << nl << "public " << future << ' ' << p->name() << "Async" << spar << inParams << epar << ';';
+
+            out << sp;
+            writeDocCommentAMI(out, p, InParam, contextDoc);
+            out << nl << "public " << future << ' ' << p->name() << "Async" << spar << inParams << contextParam << epar
+                << ';';
+        }
     }
 }
 
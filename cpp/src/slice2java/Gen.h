@@ -237,6 +237,8 @@ private:
     private:
 
         void writeOperation(const ClassDefPtr&, const std::string&, const OperationPtr&, bool);
+        void writeDirectInvocation(const std::string&, const OperationPtr&);
+        std::string getDirectValue(const TypePtr&, const std::string&, const std::string&);
     };
 
     class ProxyVisitor : public JavaVisitor
@@ -61,6 +61,7 @@ tests = [
     ("Ice/udp", ["core"]),
     ("Ice/serialize", ["core"]),
     ("Ice/defaultServant", ["core"]),
+    ("Ice/directCollocation", ["core"]),
     ("Ice/defaultValue", ["core"]),
     ("Ice/threadPoolPriority", ["core"]),
     ("Ice/classLoader", ["core"]),
@@ -71,6 +72,8 @@ tests = [
     ("Ice/optional", ["once"]),
     ("Ice/admin", ["core"]),
     ("Ice/metrics", ["core", "nossl", "nows", "noipv6", "nocompress", "nosocks"]),
+    ("Ice/openMetrics", ["core", "nossl", "nows", "noipv6", "nocompress", "nosocks"]),
+    ("Ice/wsDeflate", ["core", "nossl", "nows", "noipv6", "nocompress", "nosocks"]),
     ("Ice/enums", ["once"]),
     ("Ice/networkProxy", ["core", "noipv6", "nosocks"]),
     ("IceBox/admin", ["core", "noipv6", "nomx"]),
@@ -79,6 +82,8 @@ tests = [
     ("Glacier2/sessionHelper", ["core"]),
     ("IceDiscovery/simple", ["service"]),
     ("IceGrid/simple", ["service"]),
+    ("IcePatch2/patcher", ["service"]),
+    ("IceStorm/batchPublisher", ["core"]),
     ("IceSSL/configuration", ["once"])
     ]
 
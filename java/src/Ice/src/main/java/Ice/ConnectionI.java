@@ -331,25 +331,12 @@ public final class ConnectionI extends IceInternal.EventHandler
         }
     }
 
-    synchronized public int
+    public int
     sendAsyncRequest(IceInternal.OutgoingAsyncBase out, boolean compress, boolean response, int batchRequestNum)
             throws IceInternal.RetryException
     {
         final OutputStream os = out.getOs();
 
-        if(_exception != null)
-        {
-            //
-            // If the connection is closed before we even have a chance
-            // to send our request, we always try to send the request
-            // again.
-            //
-            throw new IceInternal.RetryException((Ice.LocalException) _exception.fillInStackTrace());
-        }
-
-        assert (_state > StateNotValidated);
-        assert (_state < StateClosing);
-
         //
         // Ensure the message isn't bigger than what we can send with the
         // transport.
@@ -357,42 +344,253 @@ public final class ConnectionI extends IceInternal.EventHandler
         _transceiver.checkSendSize(os.getBuffer());
 
         //
-        // Notify the request that it's cancelable with this connection.
-        // This will throw if the request is canceled.
+        // Fill in the request ID and compress the request before queuing it,
+        // without the connection locked.
         //
-        out.cancelable(this);
-
-        int requestId = 0;
+        OutgoingMessage message = new OutgoingMessage(out, os, compress, 0);
+        message.response = response;
+        message.status = IceInternal.AsyncStatus.Queued;
         if(response)
         {
+            message.requestId = nextRequestId();
+            os.pos(IceInternal.Protocol.headerSize);
+            os.writeInt(message.requestId);
+        }
+        else if(batchRequestNum > 0)
+        {
+            os.pos(IceInternal.Protocol.headerSize);
+            os.writeInt(batchRequestNum);
+        }
+        compressMessage(message, _pendingRequestCount.get());
+
+        //
+        // Queue the request. The queued requests are sent by one thread at a
+        // time: a thread which queues a request while no other thread is
+        // sending becomes the sender, the other threads don't wait for the
+        // connection to be unlocked, their requests are sent in order by the
+        // sender.
+        //
+        _pendingRequests.offer(message);
+        if(_pendingRequestCount.getAndIncrement() == 0)
+        {
+            sendPendingRequests(message);
+        }
+
+        //
+        // If the request was sent by another thread, its sent callback and its
+        // failure are reported asynchronously by that thread. The message
+        // fields are written by the thread which sent it and are only read
+        // here if the calling thread sent the request itself.
+        //
+        if(!message.sentByCaller)
+        {
+            return IceInternal.AsyncStatus.Queued;
+        }
+        if(message.exception != null)
+        {
+            if(message.retry)
+            {
+                throw new IceInternal.RetryException(message.exception);
+            }
+            throw message.exception;
+        }
+        return message.status;
+    }
+
+    //
+    // Sends the pending requests, called by the sender. The sender only
+    // sends the requests queued when it starts sending, and its own request
+    // if it's queued after these requests. If more requests are queued in
+    // the meantime, the sending continues in the thread pool so that a
+    // calling thread returns once its own request is sent.
+    //
+    // If the given request of the calling thread is sent, its status or its
+    // failure is set on its message and sentByCaller is set. The sent
+    // callbacks and the failures of the requests of other threads are
+    // reported asynchronously.
+    //
+    private void sendPendingRequests(OutgoingMessage own)
+    {
+        while(true)
+        {
+            java.util.List<OutgoingMessage> failed = null;
+            java.util.List<OutgoingMessage> sentCBs = null;
+
             //
-            // Create a new unique request ID.
+            // Each queued request is counted once it's queued, the queue
+            // contains at least the counted requests.
             //
-            requestId = _nextRequestId++;
-            if(requestId <= 0)
+            final int count = _pendingRequestCount.get();
+            int polled = 0;
+            boolean ownPolled = own == null;
+            while(polled < count || !ownPolled)
+            {
+                OutgoingMessage message = _pendingRequests.poll();
+                assert(message != null);
+                ++polled;
+                try
+                {
+                    int status = sendPendingRequest(message);
+                    if(message == own)
+                    {
+                        message.status = status;
+                        message.sentByCaller = true;
+                    }
+                    else if((status & IceInternal.AsyncStatus.InvokeSentCallback) != 0)
+                    {
+                        if(sentCBs == null)
+                        {
+                            sentCBs = new java.util.ArrayList<OutgoingMessage>();
+                        }
+                        sentCBs.add(message);
+                    }
+                }
+                catch(Ice.LocalException ex)
+                {
+                    message.exception = ex;
+                    if(message == own)
+                    {
+                        message.sentByCaller = true;
+                    }
+                    else
+                    {
+                        if(failed == null)
+                        {
+                            failed = new java.util.ArrayList<OutgoingMessage>();
+                        }
+                        failed.add(message);
+                    }
+                }
+                if(message == own)
+                {
+                    ownPolled = true;
+                }
+            }
+
+            if(sentCBs != null)
             {
-                _nextRequestId = 1;
-                requestId = _nextRequestId++;
+                //
+                // Notify the other threads that their requests were sent from
+                // the thread pool, as if the requests had been queued for
+                // sending.
+                //
+                final java.util.List<OutgoingMessage> finalSentCBs = sentCBs;
+                synchronized(this)
+                {
+                    ++_dispatchCount;
+                    try
+                    {
+                        _threadPool.dispatch(new IceInternal.DispatchWorkItem(this)
+                        {
+                            @Override
+                            public void run()
+                            {
+                                dispatch(null, finalSentCBs, null);
+                            }
+                        });
+                    }
+                    catch(CommunicatorDestroyedException ex)
+                    {
+                        --_dispatchCount;
+                    }
+                }
             }
 
             //
-            // Fill in the request ID.
+            // Hand over the sending of the requests queued in the meantime to
+            // the thread pool. The count can be negative if the sender sent
+            // requests which weren't counted yet, their threads won't become
+            // the sender once they count them.
             //
-            os.pos(IceInternal.Protocol.headerSize);
-            os.writeInt(requestId);
+            boolean more = _pendingRequestCount.addAndGet(-polled) > 0 && !continuePendingRequests();
+
+            //
+            // Notify the requests of other threads which couldn't be sent. This
+            // is done without the connection locked, retries might call back
+            // into the connection.
+            //
+            if(failed != null)
+            {
+                for(OutgoingMessage m : failed)
+                {
+                    if(m.retry && m.outAsync instanceof IceInternal.ProxyOutgoingAsyncBase)
+                    {
+                        ((IceInternal.ProxyOutgoingAsyncBase)m.outAsync).retryException(m.exception);
+                    }
+                    else if(m.outAsync.completed(m.exception))
+                    {
+                        m.outAsync.invokeCompletedAsync();
+                    }
+                }
+            }
+
+            if(!more)
+            {
+                return;
+            }
+            own = null;
         }
-        else if(batchRequestNum > 0)
+    }
+
+    //
+    // Continues sending the pending requests from the thread pool. Returns
+    // false if the thread pool is destroyed, the calling thread must send
+    // them.
+    //
+    private boolean continuePendingRequests()
+    {
+        try
         {
-            os.pos(IceInternal.Protocol.headerSize);
-            os.writeInt(batchRequestNum);
+            _threadPool.dispatch(new IceInternal.DispatchWorkItem(this)
+            {
+                @Override
+                public void run()
+                {
+                    sendPendingRequests(null);
+                }
+            });
+            return true;
+        }
+        catch(CommunicatorDestroyedException ex)
+        {
+            return false;
+        }
+    }
+
+    //
+    // Sends a pending request. The connection is only locked to check its
+    // state and to hand the request over to the transceiver or to the send
+    // queue, other threads can process replies between the requests sent by
+    // the sender.
+    //
+    private synchronized int sendPendingRequest(OutgoingMessage message)
+    {
+        final IceInternal.OutgoingAsyncBase out = message.outAsync;
+        if(_exception != null)
+        {
+            //
+            // If the connection is closed before we even have a chance to
+            // send our request, we always try to send the request again.
+            //
+            message.retry = true;
+            throw (Ice.LocalException) _exception.fillInStackTrace();
         }
 
-        out.attachRemoteObserver(initConnectionInfo(), _endpoint, requestId);
+        assert (_state > StateNotValidated);
+        assert (_state < StateClosing);
+
+        //
+        // Notify the request that it's cancelable with this connection.
+        // This will throw if the request is canceled.
+        //
+        out.cancelable(this);
+
+        out.attachRemoteObserver(initConnectionInfo(), _endpoint, message.requestId);
 
         int status;
         try
         {
-            status = sendMessage(new OutgoingMessage(out, os, compress, requestId));
+            status = sendMessage(message);
         }
         catch(Ice.LocalException ex)
         {
@@ -401,16 +599,31 @@ public final class ConnectionI extends IceInternal.EventHandler
             throw (Ice.LocalException) _exception.fillInStackTrace();
         }
 
-        if(response)
+        if(message.response)
         {
             //
             // Add to the async requests map.
             //
-            _asyncRequests.put(requestId, out);
+            out.setRequestId(message.requestId);
+            _asyncRequests.put(message.requestId, out);
         }
         return status;
     }
 
+    private int nextRequestId()
+    {
+        //
+        // Request IDs are positive, the IDs wrap around to 1.
+        //
+        int requestId;
+        do
+        {
+            requestId = _nextRequestId.incrementAndGet() & 0x7fffffff;
+        }
+        while(requestId == 0);
+        return requestId;
+    }
+
     public IceInternal.BatchRequestQueue
     getBatchRequestQueue()
     {
@@ -589,7 +802,22 @@ public final class ConnectionI extends IceInternal.EventHandler
                     o.canceled();
                     if(o != _sendStreams.getFirst())
                     {
-                        it.remove();
+                        if(o.prepared)
+                        {
+                            //
+                            // The message was prepared for a gathering write and might
+                            // already be partially sent. Keep it in the send streams
+                            // but detach its stream from the OutgoingAsync.
+                            //
+                            OutputStream stream =
+                                new OutputStream(_instance, IceInternal.Protocol.currentProtocolEncoding);
+                            stream.swap(o.stream);
+                            o.stream = stream;
+                        }
+                        else
+                        {
+                            it.remove();
+                        }
                     }
                     if(outAsync.completed(ex))
                     {
@@ -602,26 +830,40 @@ public final class ConnectionI extends IceInternal.EventHandler
 
         if(outAsync instanceof IceInternal.OutgoingAsync)
         {
-            IceInternal.OutgoingAsync o = (IceInternal.OutgoingAsync) outAsync;
-            java.util.Iterator<IceInternal.OutgoingAsyncBase> it2 = _asyncRequests.values().iterator();
-            while(it2.hasNext())
+            final int requestId = outAsync.getRequestId();
+            if(requestId > 0 && _asyncRequests.get(requestId) == outAsync)
             {
-                if(it2.next() == o)
+                if(ex instanceof ConnectionTimeoutException)
                 {
-                    if(ex instanceof ConnectionTimeoutException)
-                    {
-                        setState(StateClosed, ex);
-                    }
-                    else
+                    setState(StateClosed, ex);
+                }
+                else
+                {
+                    _asyncRequests.remove(requestId, outAsync);
+                    if(outAsync.completed(ex))
                     {
-                        it2.remove();
-                        if(outAsync.completed(ex))
-                        {
-                            outAsync.invokeCompletedAsync();
-                        }
+                        outAsync.invokeCompletedAsync();
                     }
-                    return;
                 }
+                return;
+            }
+        }
+
+        //
+        // The request might still be queued by sendAsyncRequest() if it's a
+        // retry of a request previously sent over this connection. It's left
+        // in the queue, the sender counts the requests it takes from the
+        // queue and fails to send canceled requests.
+        //
+        for(OutgoingMessage o : _pendingRequests)
+        {
+            if(o.outAsync == outAsync)
+            {
+                if(outAsync.completed(ex))
+                {
+                    outAsync.invokeCompletedAsync();
+                }
+                return;
             }
         }
     }
@@ -760,6 +1002,7 @@ public final class ConnectionI extends IceInternal.EventHandler
         {
             _servantManager = null;
         }
+        _dispatchExecutor = _adapter != null ? dispatchExecutor((ObjectAdapterI) _adapter) : null;
 
         //
         // We never change the thread pool with which we were
@@ -829,7 +1072,15 @@ public final class ConnectionI extends IceInternal.EventHandler
                     {
                         observerStartWrite(buf);
                     }
-                    writeOp = write(buf);
+                    if(_gatheringTransceiver != null && _state > StateNotValidated && _state < StateClosingPending &&
+                       _sendStreams.size() > 1)
+                    {
+                        writeOp = writeGathered();
+                    }
+                    else
+                    {
+                        writeOp = write(buf);
+                    }
                     if(_observer != null && (writeOp & IceInternal.SocketOperation.Write) == 0)
                     {
                         observerFinishWrite(buf);
@@ -1055,6 +1306,18 @@ public final class ConnectionI extends IceInternal.EventHandler
 
         if(!_dispatcher) // Optimization, call dispatch() directly if there's no dispatcher.
         {
+            if(info != null && info.dispatchExecutor != null)
+            {
+                //
+                // The requests are dispatched by the adapter's dispatch
+                // executor, create a new stream for the dispatch instead of
+                // using the thread pool's thread stream.
+                //
+                assert (info.stream == current.stream);
+                InputStream stream = info.stream;
+                info.stream = new InputStream(_instance, IceInternal.Protocol.currentProtocolEncoding);
+                info.stream.swap(stream);
+            }
             dispatch(startCB, sentCBs, info);
         }
         else
@@ -1144,7 +1407,24 @@ public final class ConnectionI extends IceInternal.EventHandler
             //
             if(info.invokeNum > 0)
             {
-                invokeAll(info.stream, info.invokeNum, info.requestId, info.compress, info.servantManager, info.adapter);
+                if(info.dispatchExecutor != null)
+                {
+                    final MessageInfo finalInfo = info;
+                    info.dispatchExecutor.execute(new Runnable()
+                    {
+                        @Override
+                        public void run()
+                        {
+                            invokeAll(finalInfo.stream, finalInfo.invokeNum, finalInfo.requestId, finalInfo.compress,
+                                      finalInfo.servantManager, finalInfo.adapter);
+                        }
+                    });
+                }
+                else
+                {
+                    invokeAll(info.stream, info.invokeNum, info.requestId, info.compress, info.servantManager,
+                              info.adapter);
+                }
 
                 //
                 // Don't increase dispatchedCount, the dispatch count is
@@ -1516,7 +1796,7 @@ public final class ConnectionI extends IceInternal.EventHandler
         _readTimeoutFuture = null;
         _warn = initData.properties.getPropertyAsInt("Ice.Warn.Connections") > 0;
         _warnUdp = instance.initializationData().properties.getPropertyAsInt("Ice.Warn.Datagrams") > 0;
-        _cacheBuffers = instance.cacheMessageBuffers();
+        _incomingCache = instance.incomingCache();
         if(_monitor != null && _monitor.getACM().timeout > 0)
         {
             _acmLastActivity = IceInternal.Time.currentMonotonicTimeMillis();
@@ -1525,7 +1805,6 @@ public final class ConnectionI extends IceInternal.EventHandler
         {
             _acmLastActivity = -1;
         }
-        _nextRequestId = 1;
         _messageSizeMax = adapter != null ? adapter.messageSizeMax() : instance.messageSizeMax();
         _batchRequestQueue = new IceInternal.BatchRequestQueue(instance, _endpoint.datagram());
         _readStream = new InputStream(instance, IceInternal.Protocol.currentProtocolEncoding);
@@ -1546,6 +1825,35 @@ public final class ConnectionI extends IceInternal.EventHandler
             compressionLevel = 9;
         }
         _compressionLevel = compressionLevel;
+        if(initData.properties.getPropertyAsInt("Ice.Compression.Adaptive") > 0)
+        {
+            _compressionPolicy = new IceInternal.CompressionPolicy(compressionLevel);
+        }
+        else
+        {
+            _compressionPolicy = null;
+        }
+
+        //
+        // Gathering writes are only enabled if the transceiver supports them
+        // and if more than one message can be sent at once.
+        //
+        int gatherMaxMessages = initData.properties.getPropertyAsIntWithDefault("Ice.GatheringWrite.MaxMessages", 0);
+        if(gatherMaxMessages > 1 && transceiver instanceof IceInternal.GatheringTransceiver)
+        {
+            _gatheringTransceiver = (IceInternal.GatheringTransceiver)transceiver;
+            _gatherBuffers = new java.nio.ByteBuffer[gatherMaxMessages];
+            _gatherPositions = new int[gatherMaxMessages];
+            _gatherMaxSize =
+                Math.max(1, initData.properties.getPropertyAsIntWithDefault("Ice.GatheringWrite.MaxSize", 256) * 1024);
+        }
+        else
+        {
+            _gatheringTransceiver = null;
+            _gatherBuffers = null;
+            _gatherPositions = null;
+            _gatherMaxSize = 0;
+        }
 
         if(adapter != null)
         {
@@ -1566,6 +1874,7 @@ public final class ConnectionI extends IceInternal.EventHandler
             {
                 _threadPool = _instance.clientThreadPool();
             }
+            _dispatchExecutor = adapter != null ? dispatchExecutor(adapter) : null;
             _threadPool.initialize(this);
         }
         catch(Ice.LocalException ex)
@@ -1960,9 +2269,12 @@ public final class ConnectionI extends IceInternal.EventHandler
                     IceInternal.Protocol.currentProtocol.__write(_writeStream);
                     IceInternal.Protocol.currentProtocolEncoding.__write(_writeStream);
                     _writeStream.writeByte(IceInternal.Protocol.validateConnectionMsg);
-                    _writeStream.writeByte((byte) 0); // Compression status
-                                                      // (always zero for
-                                                      // validate connection).
+                    //
+                    // Advertise the supported compression codecs with the
+                    // compression status, it's ignored by the peers which
+                    // don't support the negotiation.
+                    //
+                    _writeStream.writeByte(_instance.compressionCodecs().status(0));
                     _writeStream.writeInt(IceInternal.Protocol.headerSize); // Message
                                                                             // size.
                     IceInternal.TraceUtil.traceSend(_writeStream, _logger, _traceLevels);
@@ -2042,8 +2354,11 @@ public final class ConnectionI extends IceInternal.EventHandler
                 {
                     throw new ConnectionNotValidatedException();
                 }
-                _readStream.readByte(); // Ignore compression status for
-                                        // validate connection.
+                byte compress = _readStream.readByte();
+                if((compress & IceInternal.CompressionCodecs.supportedFlag) != 0)
+                {
+                    updatePeerCompressionCodecs(compress);
+                }
                 int size = _readStream.readInt();
                 if(size != IceInternal.Protocol.headerSize)
                 {
@@ -2140,28 +2455,20 @@ public final class ConnectionI extends IceInternal.EventHandler
                 }
 
                 //
-                // Otherwise, prepare the next message stream for writing.
+                // Otherwise, prepare the next message stream for writing. The
+                // message might already be prepared and partially or fully sent
+                // if it was part of a previous gathering write.
                 //
                 message = _sendStreams.getFirst();
-                assert (!message.prepared);
-                OutputStream stream = message.stream;
-
-                message.stream = doCompress(stream, message.compress);
-                message.stream.prepareWrite();
-                message.prepared = true;
-
-                if(message.outAsync != null)
-                {
-                    IceInternal.TraceUtil.trace("sending asynchronous request", stream, _logger, _traceLevels);
-                }
-                else
+                if(!message.prepared)
                 {
-                    IceInternal.TraceUtil.traceSend(stream, _logger, _traceLevels);
+                    prepareMessage(message);
                 }
                 _writeStream.swap(message.stream);
 
                 //
-                // Send the message.
+                // Send the message, along with the following queued messages if
+                // gathering writes are enabled.
                 //
                 if(_observer != null)
                 {
@@ -2169,7 +2476,15 @@ public final class ConnectionI extends IceInternal.EventHandler
                 }
                 if(_writeStream.pos() != _writeStream.size())
                 {
-                    int op = write(_writeStream.getBuffer());
+                    int op;
+                    if(_gatheringTransceiver != null && _sendStreams.size() > 1)
+                    {
+                        op = writeGathered();
+                    }
+                    else
+                    {
+                        op = write(_writeStream.getBuffer());
+                    }
                     if(op != 0)
                     {
                         return op;
@@ -2219,23 +2534,7 @@ public final class ConnectionI extends IceInternal.EventHandler
         // register the connection with the selector thread.
         //
 
-        assert (!message.prepared);
-
-        OutputStream stream = message.stream;
-
-        message.stream = doCompress(stream, message.compress);
-        message.stream.prepareWrite();
-        message.prepared = true;
-        int op;
-
-        if(message.outAsync != null)
-        {
-            IceInternal.TraceUtil.trace("sending asynchronous request", stream, _logger, _traceLevels);
-        }
-        else
-        {
-            IceInternal.TraceUtil.traceSend(stream, _logger, _traceLevels);
-        }
+        prepareMessage(message);
 
         //
         // Send the message without blocking.
@@ -2244,7 +2543,7 @@ public final class ConnectionI extends IceInternal.EventHandler
         {
             observerStartWrite(message.stream.getBuffer());
         }
-        op = write(message.stream.getBuffer());
+        int op = write(message.stream.getBuffer());
         if(op == 0)
         {
             if(_observer != null)
@@ -2274,57 +2573,112 @@ public final class ConnectionI extends IceInternal.EventHandler
         return IceInternal.AsyncStatus.Queued;
     }
 
-    private OutputStream doCompress(OutputStream uncompressed, boolean compress)
+    private void prepareMessage(OutgoingMessage message)
     {
-        boolean compressionSupported = false;
-        if(compress)
+        assert (!message.prepared);
+
+        compressMessage(message, _sendStreams.size());
+        message.stream.prepareWrite();
+        message.prepared = true;
+
+        if(message.outAsync != null)
         {
-            //
-            // Don't check whether compression support is available unless the
-            // proxy is configured for compression.
-            //
-            compressionSupported = IceInternal.BZip2.supported();
+            IceInternal.TraceUtil.trace("sending asynchronous request", message.uncompressed, _logger,
+                                        _traceLevels);
         }
+        else
+        {
+            IceInternal.TraceUtil.traceSend(message.uncompressed, _logger, _traceLevels);
+        }
+    }
 
-        if(compressionSupported && uncompressed.size() >= 100)
+    //
+    // Compresses the message if it isn't compressed yet. Requests are
+    // compressed by the threads which send them before they're queued,
+    // without the connection locked. The backlog is the number of messages
+    // waiting to be sent, for the compression policy.
+    //
+    private void compressMessage(OutgoingMessage message, int backlog)
+    {
+        if(message.uncompressed == null)
         {
-            //
-            // Do compression.
-            //
-            IceInternal.Buffer cbuf = IceInternal.BZip2.compress(uncompressed.getBuffer(),
-                                                                 IceInternal.Protocol.headerSize, _compressionLevel);
-            if(cbuf != null)
-            {
-                OutputStream cstream =
-                    new OutputStream(uncompressed.instance(), uncompressed.getEncoding(), cbuf, true);
+            message.uncompressed = message.stream;
+            message.stream = doCompress(message.stream, message, backlog);
+        }
+    }
 
-                //
-                // Set compression status.
-                //
-                cstream.pos(9);
-                cstream.writeByte((byte) 2);
+    private OutputStream doCompress(OutputStream uncompressed, OutgoingMessage message, int backlog)
+    {
+        byte status = 0;
+        if(message.compress)
+        {
+            IceInternal.CompressionCodecs codecs = _instance.compressionCodecs();
+            status = codecs.status(_peerCompressionCodecs);
 
+            final int size = uncompressed.size();
+            IceInternal.CompressionCodec codec = null;
+            String operation = null;
+            if(size >= 100)
+            {
+                codec = codecs.select(_peerCompressionCodecs);
+                if(codec != null && _compressionPolicy != null)
+                {
+                    if(message.outAsync != null &&
+                       uncompressed.getBuffer().b.get(8) == IceInternal.Protocol.requestMsg)
+                    {
+                        operation = message.outAsync.getOperation();
+                    }
+                    if(!_compressionPolicy.compress(operation, size))
+                    {
+                        codec = null;
+                    }
+                }
+            }
+            if(codec != null)
+            {
                 //
-                // Write the size of the compressed stream into the header.
+                // Do compression.
                 //
-                cstream.pos(10);
-                cstream.writeInt(cstream.size());
+                int level = _compressionPolicy != null ? _compressionPolicy.level() : _compressionLevel;
+                IceInternal.Buffer cbuf = codecs.compress(codec, uncompressed.getBuffer(),
+                                                          IceInternal.Protocol.headerSize, level);
+                if(_compressionPolicy != null)
+                {
+                    _compressionPolicy.compressed(operation, size, cbuf != null ? cbuf.size() : -1, backlog);
+                }
+                if(cbuf != null)
+                {
+                    OutputStream cstream =
+                        new OutputStream(uncompressed.instance(), uncompressed.getEncoding(), cbuf, true);
 
-                //
-                // Write the compression status and size of the compressed
-                // stream into the header of the uncompressed stream -- we need
-                // this to trace requests correctly.
-                //
-                uncompressed.pos(9);
-                uncompressed.writeByte((byte) 2);
-                uncompressed.writeInt(cstream.size());
+                    //
+                    // Set compression status.
+                    //
+                    cstream.pos(9);
+                    cstream.writeByte(codec.status());
+
+                    //
+                    // Write the size of the compressed stream into the header.
+                    //
+                    cstream.pos(10);
+                    cstream.writeInt(cstream.size());
+
+                    //
+                    // Write the compression status and size of the compressed
+                    // stream into the header of the uncompressed stream -- we need
+                    // this to trace requests correctly.
+                    //
+                    uncompressed.pos(9);
+                    uncompressed.writeByte(codec.status());
+                    uncompressed.writeInt(cstream.size());
 
-                return cstream;
+                    return cstream;
+                }
             }
         }
 
         uncompressed.pos(9);
-        uncompressed.writeByte((byte) (compressionSupported ? 1 : 0));
+        uncompressed.writeByte(status);
 
         //
         // Not compressed, fill in the message size.
@@ -2335,6 +2689,25 @@ public final class ConnectionI extends IceInternal.EventHandler
         return uncompressed;
     }
 
+    private void updatePeerCompressionCodecs(byte status)
+    {
+        if((status & IceInternal.CompressionCodecs.supportedFlag) != 0)
+        {
+            //
+            // The peer advertises the codecs it supports.
+            //
+            _peerCompressionCodecs = status & ~IceInternal.CompressionCodecs.supportedFlag & 0xff;
+        }
+        else if(status > IceInternal.CompressionCodecs.bzip2Status)
+        {
+            //
+            // The peer supports the negotiation since it compressed the message
+            // with another codec than bzip2.
+            //
+            _peerCompressionCodecs = Math.max(_peerCompressionCodecs, 0) | IceInternal.CompressionCodecs.bit(status);
+        }
+    }
+
     private static class MessageInfo
     {
         MessageInfo(InputStream stream)
@@ -2348,6 +2721,7 @@ public final class ConnectionI extends IceInternal.EventHandler
         byte compress;
         IceInternal.ServantManager servantManager;
         ObjectAdapter adapter;
+        java.util.concurrent.Executor dispatchExecutor;
         IceInternal.OutgoingAsyncBase outAsync;
         HeartbeatCallback heartbeatCallback;
         int messageDispatchCount;
@@ -2381,23 +2755,16 @@ public final class ConnectionI extends IceInternal.EventHandler
             info.stream.pos(8);
             byte messageType = info.stream.readByte();
             info.compress = info.stream.readByte();
-            if(info.compress == (byte)2)
+            if(info.compress >= IceInternal.CompressionCodecs.bzip2Status &&
+               info.compress <= IceInternal.CompressionCodecs.maxStatus)
             {
-                if(IceInternal.BZip2.supported())
-                {
-                    IceInternal.Buffer ubuf = IceInternal.BZip2.uncompress(info.stream.getBuffer(),
-                                                                           IceInternal.Protocol.headerSize,
-                                                                           _messageSizeMax);
-                    info.stream = new InputStream(info.stream.instance(), info.stream.getEncoding(), ubuf, true);
-                }
-                else
-                {
-                    FeatureNotSupportedException ex = new FeatureNotSupportedException();
-                    ex.unsupportedFeature = "Cannot uncompress compressed message: "
-                                            + "org.apache.tools.bzip2.CBZip2OutputStream was not found";
-                    throw ex;
-                }
+                IceInternal.Buffer ubuf = _instance.compressionCodecs().uncompress(info.compress,
+                                                                                   info.stream.getBuffer(),
+                                                                                   IceInternal.Protocol.headerSize,
+                                                                                   _messageSizeMax);
+                info.stream = new InputStream(info.stream.instance(), info.stream.getEncoding(), ubuf, true);
             }
+            updatePeerCompressionCodecs(info.compress);
             info.stream.pos(IceInternal.Protocol.headerSize);
 
             switch(messageType)
@@ -2445,6 +2812,7 @@ public final class ConnectionI extends IceInternal.EventHandler
                         info.invokeNum = 1;
                         info.servantManager = _servantManager;
                         info.adapter = _adapter;
+                        info.dispatchExecutor = _dispatchExecutor;
                         ++info.messageDispatchCount;
                     }
                     break;
@@ -2469,6 +2837,7 @@ public final class ConnectionI extends IceInternal.EventHandler
                         }
                         info.servantManager = _servantManager;
                         info.adapter = _adapter;
+                        info.dispatchExecutor = _dispatchExecutor;
                         info.messageDispatchCount += info.invokeNum;
                     }
                     break;
@@ -2526,6 +2895,20 @@ public final class ConnectionI extends IceInternal.EventHandler
         return _state == StateHolding ? IceInternal.SocketOperation.None : IceInternal.SocketOperation.Read;
     }
 
+    private java.util.concurrent.Executor dispatchExecutor(ObjectAdapterI adapter)
+    {
+        //
+        // Requests received over a connection of a serialized thread pool
+        // are dispatched in order, one at a time.
+        //
+        IceInternal.DispatchExecutor executor = adapter.getDispatchExecutor();
+        if(executor != null && _threadPool.serialize())
+        {
+            return executor.serializer();
+        }
+        return executor;
+    }
+
     private void invokeAll(InputStream stream, int invokeNum, int requestId, byte compress,
                            IceInternal.ServantManager servantManager, ObjectAdapter adapter)
     {
@@ -2776,46 +3159,27 @@ public final class ConnectionI extends IceInternal.EventHandler
 
     private IceInternal.Incoming getIncoming(ObjectAdapter adapter, boolean response, byte compress, int requestId)
     {
-        IceInternal.Incoming in = null;
-
-        if(_cacheBuffers > 0)
+        IceInternal.Incoming in = _incomingCache != null ? _incomingCache.acquire() : null;
+        if(in == null)
         {
-            synchronized(_incomingCacheMutex)
-            {
-                if(_incomingCache == null)
-                {
-                    in = new IceInternal.Incoming(_instance, this, this, adapter, response, compress, requestId);
-                }
-                else
-                {
-                    in = _incomingCache;
-                    _incomingCache = _incomingCache.next;
-                    in.reset(_instance, this, this, adapter, response, compress, requestId);
-                    in.next = null;
-                }
-            }
+            in = new IceInternal.Incoming(_instance, this, this, adapter, response, compress, requestId);
         }
         else
         {
-            in = new IceInternal.Incoming(_instance, this, this, adapter, response, compress, requestId);
+            in.reset(_instance, this, this, adapter, response, compress, requestId);
         }
-
         return in;
     }
 
     private void reclaimIncoming(IceInternal.Incoming in)
     {
-        if(_cacheBuffers > 0)
+        if(_incomingCache != null)
         {
-            synchronized(_incomingCacheMutex)
-            {
-                in.next = _incomingCache;
-                _incomingCache = in;
-                //
-                // Clear references to Ice objects as soon as possible.
-                //
-                _incomingCache.reclaim();
-            }
+            //
+            // Clear references to Ice objects as soon as possible.
+            //
+            in.reclaim();
+            _incomingCache.release(in);
         }
     }
 
@@ -2880,6 +3244,90 @@ public final class ConnectionI extends IceInternal.EventHandler
         return op;
     }
 
+    //
+    // Send the message being written along with the messages queued after
+    // it, up to the configured message count and size limits, using a
+    // single gathering write. The queued messages are prepared for writing
+    // as needed.
+    //
+    private int writeGathered()
+    {
+        assert (_sendStreams.size() > 1);
+
+        final IceInternal.Buffer head = _writeStream.getBuffer();
+        int size = head.b.remaining();
+        int count = 0;
+        _gatherBuffers[count++] = head.b;
+
+        java.util.Iterator<OutgoingMessage> p = _sendStreams.iterator();
+        p.next(); // Skip the message being written, its stream is swapped with _writeStream.
+        while(p.hasNext() && count < _gatherBuffers.length && size < _gatherMaxSize)
+        {
+            OutgoingMessage message = p.next();
+            if(!message.prepared)
+            {
+                prepareMessage(message);
+            }
+            java.nio.ByteBuffer b = message.stream.getBuffer().b;
+            size += b.remaining();
+            _gatherBuffers[count++] = b;
+        }
+
+        final boolean traceOrObserve = _observer != null || _instance.traceLevels().network >= 3;
+        if(traceOrObserve)
+        {
+            for(int i = 0; i < count; ++i)
+            {
+                _gatherPositions[i] = _gatherBuffers[i].position();
+            }
+        }
+
+        try
+        {
+            _gatheringTransceiver.write(_gatherBuffers, 0, count);
+        }
+        finally
+        {
+            if(traceOrObserve)
+            {
+                int sent = 0;
+                for(int i = 0; i < count; ++i)
+                {
+                    int n = _gatherBuffers[i].position() - _gatherPositions[i];
+                    //
+                    // Bytes sent for the message being written are accounted by
+                    // observerFinishWrite(). The other messages are accounted here,
+                    // the observer will start from the updated position once they
+                    // are swapped to _writeStream.
+                    //
+                    if(_observer != null && i > 0 && n > 0)
+                    {
+                        _observer.sentBytes(n);
+                    }
+                    sent += n;
+                }
+
+                if(_instance.traceLevels().network >= 3 && sent > 0)
+                {
+                    StringBuffer s = new StringBuffer("sent ");
+                    s.append(sent);
+                    s.append(" of ");
+                    s.append(size);
+                    s.append(" bytes from ");
+                    s.append(count);
+                    s.append(" messages via ");
+                    s.append(_endpoint.protocol());
+                    s.append("\n");
+                    s.append(toString());
+                    _instance.initializationData().logger.trace(_instance.traceLevels().networkCat, s.toString());
+                }
+            }
+            java.util.Arrays.fill(_gatherBuffers, 0, count, null);
+        }
+
+        return head.b.hasRemaining() ? IceInternal.SocketOperation.Write : IceInternal.SocketOperation.None;
+    }
+
     private static class OutgoingMessage
     {
         OutgoingMessage(OutputStream stream, boolean compress, boolean adopt)
@@ -2912,6 +3360,10 @@ public final class ConnectionI extends IceInternal.EventHandler
                 OutputStream stream =
                     new OutputStream(this.stream.instance(), IceInternal.Protocol.currentProtocolEncoding);
                 stream.swap(this.stream);
+                if(uncompressed == this.stream)
+                {
+                    uncompressed = stream;
+                }
                 this.stream = stream;
                 adopt = false;
             }
@@ -2940,6 +3392,16 @@ public final class ConnectionI extends IceInternal.EventHandler
         public int requestId;
         boolean adopt;
         boolean prepared;
+        OutputStream uncompressed; // The stream before compression, set once the message is compressed.
+
+        //
+        // Pending request state, see sendAsyncRequest().
+        //
+        boolean response;
+        int status;
+        Ice.LocalException exception;
+        boolean retry;
+        boolean sentByCaller;
     }
 
     private Communicator _communicator;
@@ -2953,6 +3415,7 @@ public final class ConnectionI extends IceInternal.EventHandler
 
     private ObjectAdapter _adapter;
     private IceInternal.ServantManager _servantManager;
+    private java.util.concurrent.Executor _dispatchExecutor;
 
     private final boolean _dispatcher;
     private final Logger _logger;
@@ -2973,11 +3436,23 @@ public final class ConnectionI extends IceInternal.EventHandler
     private long _acmLastActivity;
 
     private final int _compressionLevel;
+    private final IceInternal.CompressionPolicy _compressionPolicy;
+    private volatile int _peerCompressionCodecs = -1; // The codecs supported by the peer, -1 if unknown.
 
-    private int _nextRequestId;
+    private final IceInternal.GatheringTransceiver _gatheringTransceiver;
+    private final java.nio.ByteBuffer[] _gatherBuffers;
+    private final int[] _gatherPositions;
+    private final int _gatherMaxSize;
 
-    private java.util.Map<Integer, IceInternal.OutgoingAsyncBase> _asyncRequests =
-        new java.util.HashMap<Integer, IceInternal.OutgoingAsyncBase>();
+    private final java.util.concurrent.atomic.AtomicInteger _nextRequestId =
+        new java.util.concurrent.atomic.AtomicInteger();
+
+    private final java.util.concurrent.ConcurrentLinkedQueue<OutgoingMessage> _pendingRequests =
+        new java.util.concurrent.ConcurrentLinkedQueue<OutgoingMessage>();
+    private final java.util.concurrent.atomic.AtomicInteger _pendingRequestCount =
+        new java.util.concurrent.atomic.AtomicInteger();
+    private final IceInternal.ConcurrentIntMap<IceInternal.OutgoingAsyncBase> _asyncRequests =
+        new IceInternal.ConcurrentIntMap<IceInternal.OutgoingAsyncBase>();
 
     private LocalException _exception;
 
@@ -3001,14 +3476,11 @@ public final class ConnectionI extends IceInternal.EventHandler
     private boolean _initialized = false;
     private boolean _validated = false;
 
-    private IceInternal.Incoming _incomingCache;
-    private final java.lang.Object _incomingCacheMutex = new java.lang.Object();
+    private final IceInternal.ObjectCache<IceInternal.Incoming> _incomingCache;
 
     private Ice.ProtocolVersion _readProtocol = new Ice.ProtocolVersion();
     private Ice.EncodingVersion _readProtocolEncoding = new Ice.EncodingVersion();
 
-    private int _cacheBuffers;
-
     private Ice.ConnectionInfo _info;
 
     private CloseCallback _closeCallback;
@@ -76,7 +76,7 @@ public class InputStream
     {
         IceInternal.Instance instance = IceInternal.Util.getInstance(communicator);
         initialize(instance, instance.defaultsAndOverrides().defaultEncoding);
-        _buf = new IceInternal.Buffer(instance.cacheMessageBuffers() > 1);
+        _buf = new IceInternal.Buffer(instance.cacheMessageBuffers() > 1, instance.bufferPool());
     }
 
     /**
@@ -166,7 +166,7 @@ public class InputStream
     {
         IceInternal.Instance instance = IceInternal.Util.getInstance(communicator);
         initialize(instance, encoding);
-        _buf = new IceInternal.Buffer(instance.cacheMessageBuffers() > 1);
+        _buf = new IceInternal.Buffer(instance.cacheMessageBuffers() > 1, instance.bufferPool());
     }
 
     /**
@@ -214,7 +214,7 @@ public class InputStream
     public InputStream(IceInternal.Instance instance, EncodingVersion encoding, boolean direct)
     {
         initialize(instance, encoding);
-        _buf = new IceInternal.Buffer(direct);
+        _buf = new IceInternal.Buffer(direct, instance.bufferPool());
     }
 
     public InputStream(IceInternal.Instance instance, EncodingVersion encoding, byte[] data)
@@ -1020,6 +1020,7 @@ public class InputStream
         try
         {
             final int sz = readAndCheckSeqSize(1);
+            _buf.share(); // The returned buffer is a view of the stream buffer.
             java.nio.ByteBuffer v = _buf.b.slice();
             v.limit(sz);
             _buf.b.position(_buf.b.position() + sz);
@@ -1236,6 +1237,7 @@ public class InputStream
         try
         {
             final int sz = readAndCheckSeqSize(2);
+            _buf.share(); // The returned buffer is a view of the stream buffer.
             java.nio.ShortBuffer shortBuf = _buf.b.asShortBuffer();
             java.nio.ShortBuffer v = shortBuf.slice();
             v.limit(sz);
@@ -1334,6 +1336,7 @@ public class InputStream
         try
         {
             final int sz = readAndCheckSeqSize(4);
+            _buf.share(); // The returned buffer is a view of the stream buffer.
             java.nio.IntBuffer intBuf = _buf.b.asIntBuffer();
             java.nio.IntBuffer v = intBuf.slice();
             v.limit(sz);
@@ -1432,6 +1435,7 @@ public class InputStream
         try
         {
             final int sz = readAndCheckSeqSize(8);
+            _buf.share(); // The returned buffer is a view of the stream buffer.
             java.nio.LongBuffer longBuf = _buf.b.asLongBuffer();
             java.nio.LongBuffer v = longBuf.slice();
             v.limit(sz);
@@ -1530,6 +1534,7 @@ public class InputStream
         try
         {
             final int sz = readAndCheckSeqSize(4);
+            _buf.share(); // The returned buffer is a view of the stream buffer.
             java.nio.FloatBuffer floatBuf = _buf.b.asFloatBuffer();
             java.nio.FloatBuffer v = floatBuf.slice();
             v.limit(sz);
@@ -1628,6 +1633,7 @@ public class InputStream
         try
         {
             final int sz = readAndCheckSeqSize(8);
+            _buf.share(); // The returned buffer is a view of the stream buffer.
             java.nio.DoubleBuffer doubleBuf = _buf.b.asDoubleBuffer();
             java.nio.DoubleBuffer v = doubleBuf.slice();
             v.limit(sz);
@@ -1640,9 +1646,6 @@ public class InputStream
         }
     }
 
-    final static java.nio.charset.Charset _utf8 = java.nio.charset.Charset.forName("UTF8");
-    private java.nio.charset.CharsetEncoder _charEncoder = null;
-
     /**
      * Extracts a string from the stream.
      *
@@ -1666,62 +1669,15 @@ public class InputStream
                 throw new UnmarshalOutOfBoundsException();
             }
 
-            try
-            {
-                //
-                // We reuse the _stringBytes array to avoid creating
-                // excessive garbage.
-                //
-                if(_stringBytes == null || len > _stringBytes.length)
-                {
-                    _stringBytes = new byte[len];
-                }
-                if(_stringChars == null || len > _stringChars.length)
-                {
-                    _stringChars = new char[len];
-                }
-                _buf.b.get(_stringBytes, 0, len);
-
-                //
-                // It's more efficient to construct a string using a
-                // character array instead of a byte array, because
-                // byte arrays require conversion.
-                //
-                for(int i = 0; i < len; i++)
-                {
-                    if(_stringBytes[i] < 0)
-                    {
-                        //
-                        // Multi-byte character found - we must use
-                        // conversion.
-                        //
-                        // TODO: If the string contains garbage bytes
-                        // that won't correctly decode as UTF, the
-                        // behavior of this constructor is
-                        // undefined. It would be better to explicitly
-                        // decode using
-                        // java.nio.charset.CharsetDecoder and to
-                        // throw MarshalException if the string won't
-                        // decode.
-                        //
-                        return new String(_stringBytes, 0, len, "UTF8");
-                    }
-                    else
-                    {
-                        _stringChars[i] = (char)_stringBytes[i];
-                    }
-                }
-                return new String(_stringChars, 0, len);
-            }
-            catch(java.io.UnsupportedEncodingException ex)
-            {
-                assert(false);
-                return "";
-            }
-            catch(java.nio.BufferUnderflowException ex)
+            //
+            // We reuse the _stringChars array to avoid creating
+            // excessive garbage.
+            //
+            if(_stringChars == null || len > _stringChars.length)
             {
-                throw new UnmarshalOutOfBoundsException();
+                _stringChars = new char[len];
             }
+            return IceInternal.UTF8.decode(_buf.b, len, _stringChars);
         }
     }
 
@@ -2114,21 +2070,22 @@ public class InputStream
     private IceInternal.Instance _instance;
     private IceInternal.Buffer _buf;
     private Object _closure;
-    private byte[] _stringBytes; // Reusable array for reading strings.
     private char[] _stringChars; // Reusable array for reading strings.
 
     private enum SliceType { NoSlice, ValueSlice, ExceptionSlice }
 
     abstract private static class EncapsDecoder
     {
-        EncapsDecoder(InputStream stream, boolean sliceValues, ValueFactoryManager f, ClassResolver cr)
+        EncapsDecoder(InputStream stream, DecoderTables tables, boolean sliceValues, ValueFactoryManager f,
+                      ClassResolver cr)
         {
             _stream = stream;
             _sliceValues = sliceValues;
             _valueFactoryManager = f;
             _classResolver = cr;
-            _typeIdIndex = 0;
-            _unmarshaledMap = new java.util.TreeMap<Integer, Ice.Object>();
+            _tables = tables;
+            _unmarshaledMap = tables.unmarshaled;
+            _patchMap = tables.patches;
         }
 
         abstract void readValue(ReadValueCallback cb);
@@ -2152,25 +2109,19 @@ public class InputStream
 
         protected String readTypeId(boolean isIndex)
         {
-            if(_typeIdMap == null) // Lazy initialization
-            {
-                _typeIdMap = new java.util.TreeMap<Integer, String>();
-            }
-
             if(isIndex)
             {
                 int index = _stream.readSize();
-                String typeId = _typeIdMap.get(index);
-                if(typeId == null)
+                if(index < 1 || index > _tables.typeIdCount)
                 {
                     throw new UnmarshalOutOfBoundsException();
                 }
-                return typeId;
+                return _tables.typeIds[index];
             }
             else
             {
                 String typeId = _stream.readString();
-                _typeIdMap.put(++_typeIdIndex, typeId);
+                _tables.addTypeId(typeId);
                 return typeId;
             }
         }
@@ -2240,18 +2191,42 @@ public class InputStream
             //
             if(v == null)
             {
-                Class<?> cls = resolveClass(typeId);
-
-                if(cls != null)
+                if(_classResolver != null && _classResolver == _stream.instance())
                 {
+                    //
+                    // The communicator's class resolver is used, use the
+                    // communicator-wide factory cache.
+                    //
+                    ValueFactory classFactory;
                     try
                     {
-                        v = (Ice.Object)cls.newInstance();
+                        classFactory = _stream.instance().valueFactoryCache().find(typeId);
                     }
                     catch(java.lang.Exception ex)
                     {
                         throw new NoValueFactoryException("no value factory", typeId, ex);
                     }
+
+                    if(classFactory != null)
+                    {
+                        v = classFactory.create(typeId);
+                    }
+                }
+                else
+                {
+                    Class<?> cls = resolveClass(typeId);
+
+                    if(cls != null)
+                    {
+                        try
+                        {
+                            v = (Ice.Object)cls.newInstance();
+                        }
+                        catch(java.lang.Exception ex)
+                        {
+                            throw new NoValueFactoryException("no value factory", typeId, ex);
+                        }
+                    }
                 }
             }
 
@@ -2273,31 +2248,30 @@ public class InputStream
                 return;
             }
 
-            if(_patchMap == null) // Lazy initialization
-            {
-                _patchMap = new java.util.TreeMap<Integer, java.util.LinkedList<ReadValueCallback> >();
-            }
-
             //
             // Add patch entry if the instance isn't unmarshaled yet,
             // the callback will be called when the instance is
-            // unmarshaled.
+            // unmarshaled. A single callback is stored directly in the
+            // patch map, a list is only created for several callbacks.
             //
-            java.util.LinkedList<ReadValueCallback> l = _patchMap.get(index);
-            if(l == null)
+            java.lang.Object entry = _patchMap.get(index);
+            if(entry == null)
             {
-                //
-                // We have no outstanding instances to be patched for this
-                // index, so make a new entry in the patch map.
-                //
-                l = new java.util.LinkedList<ReadValueCallback>();
+                _patchMap.put(index, cb);
+            }
+            else if(entry instanceof ReadValueCallback)
+            {
+                java.util.ArrayList<ReadValueCallback> l = new java.util.ArrayList<ReadValueCallback>(4);
+                l.add((ReadValueCallback)entry);
+                l.add(cb);
                 _patchMap.put(index, l);
             }
-
-            //
-            // Append a patch entry for this instance.
-            //
-            l.add(cb);
+            else
+            {
+                @SuppressWarnings("unchecked")
+                java.util.ArrayList<ReadValueCallback> l = (java.util.ArrayList<ReadValueCallback>)entry;
+                l.add(cb);
+            }
         }
 
         protected void unmarshal(int index, Ice.Object v)
@@ -2313,33 +2287,30 @@ public class InputStream
             //
             v.__read(_stream);
 
-            if(_patchMap != null)
+            //
+            // Patch all instances now that the instance is unmarshaled. The
+            // entry is removed from the patch map -- there is nothing left
+            // to patch for that index for the time being.
+            //
+            java.lang.Object entry = _patchMap.remove(index);
+            if(entry instanceof ReadValueCallback)
+            {
+                ((ReadValueCallback)entry).valueReady(v);
+            }
+            else if(entry != null)
             {
                 //
-                // Patch all instances now that the instance is unmarshaled.
+                // Patch all pointers that refer to the instance.
                 //
-                java.util.LinkedList<ReadValueCallback> l = _patchMap.get(index);
-                if(l != null)
+                @SuppressWarnings("unchecked")
+                java.util.ArrayList<ReadValueCallback> l = (java.util.ArrayList<ReadValueCallback>)entry;
+                for(ReadValueCallback cb : l)
                 {
-                    assert(l.size() > 0);
-
-                    //
-                    // Patch all pointers that refer to the instance.
-                    //
-                    for(ReadValueCallback cb : l)
-                    {
-                        cb.valueReady(v);
-                    }
-
-                    //
-                    // Clear out the patch map for that index -- there is nothing left
-                    // to patch for that index for the time being.
-                    //
-                    _patchMap.remove(index);
+                    cb.valueReady(v);
                 }
             }
 
-            if((_patchMap == null || _patchMap.isEmpty()) && _valueList == null)
+            if(_patchMap.isEmpty() && _valueList == null)
             {
                 try
                 {
@@ -2359,7 +2330,7 @@ public class InputStream
                 }
                 _valueList.add(v);
 
-                if(_patchMap == null || _patchMap.isEmpty())
+                if(_patchMap.isEmpty())
                 {
                     //
                     // Iterate over the instance list and invoke ice_postUnmarshal on
@@ -2392,19 +2363,19 @@ public class InputStream
         //
         // Encapsulation attributes for value unmarshaling.
         //
-        protected java.util.TreeMap<Integer, java.util.LinkedList<ReadValueCallback> > _patchMap;
-        private java.util.TreeMap<Integer, Ice.Object> _unmarshaledMap;
-        private java.util.TreeMap<Integer, String> _typeIdMap;
-        private int _typeIdIndex;
+        private final DecoderTables _tables;
+        protected final IceInternal.IntMap<java.lang.Object> _patchMap; // A ReadValueCallback or a list of callbacks.
+        private final IceInternal.IntMap<Ice.Object> _unmarshaledMap;
         private java.util.List<Ice.Object> _valueList;
         private java.util.HashMap<String, Class<?> > _typeIdCache;
     }
 
     private static final class EncapsDecoder10 extends EncapsDecoder
     {
-        EncapsDecoder10(InputStream stream, boolean sliceValues, ValueFactoryManager f, ClassResolver cr)
+        EncapsDecoder10(InputStream stream, DecoderTables tables, boolean sliceValues, ValueFactoryManager f,
+                        ClassResolver cr)
         {
-            super(stream, sliceValues, f, cr);
+            super(stream, tables, sliceValues, f, cr);
             _sliceType = SliceType.NoSlice;
         }
 
@@ -2612,7 +2583,7 @@ public class InputStream
             }
             while(num > 0);
 
-            if(_patchMap != null && !_patchMap.isEmpty())
+            if(!_patchMap.isEmpty())
             {
                 //
                 // If any entries remain in the patch map, the sender has sent an index for an object, but failed
@@ -2693,10 +2664,10 @@ public class InputStream
 
     private static class EncapsDecoder11 extends EncapsDecoder
     {
-        EncapsDecoder11(InputStream stream, boolean sliceValues, ValueFactoryManager f, ClassResolver cr,
-                        CompactIdResolver r)
+        EncapsDecoder11(InputStream stream, DecoderTables tables, boolean sliceValues, ValueFactoryManager f,
+                        ClassResolver cr, CompactIdResolver r)
         {
-            super(stream, sliceValues, f, cr);
+            super(stream, tables, sliceValues, f, cr);
             _compactIdResolver = r;
             _current = null;
             _valueIdIndex = 1;
@@ -3100,69 +3071,12 @@ public class InputStream
             Ice.Object v = null;
             while(true)
             {
-                boolean updateCache = false;
-
                 if(_current.compactId >= 0)
                 {
-                    updateCache = true;
-
-                    //
-                    // Translate a compact (numeric) type ID into a class.
-                    //
-                    if(_compactIdCache == null)
-                    {
-                        _compactIdCache = new java.util.TreeMap<Integer, Class<?> >(); // Lazy initialization.
-                    }
-                    else
-                    {
-                        //
-                        // Check the cache to see if we've already translated the compact type ID into a class.
-                        //
-                        Class<?> cls = _compactIdCache.get(_current.compactId);
-                        if(cls != null)
-                        {
-                            try
-                            {
-                                v = (Ice.Object)cls.newInstance();
-                                updateCache = false;
-                            }
-                            catch(java.lang.Exception ex)
-                            {
-                                throw new NoValueFactoryException("no value factory", "compact ID " +
-                                                                  _current.compactId, ex);
-                            }
-                        }
-                    }
-
                     //
-                    // If we haven't already cached a class for the compact ID, then try to translate the
-                    // compact ID into a type ID.
+                    // Translate a compact (numeric) type ID into a type ID.
                     //
-                    if(v == null)
-                    {
-                        _current.typeId = "";
-                        if(_compactIdResolver != null)
-                        {
-                            try
-                            {
-                                _current.typeId = _compactIdResolver.resolve(_current.compactId);
-                            }
-                            catch(Ice.LocalException ex)
-                            {
-                                throw ex;
-                            }
-                            catch(Throwable ex)
-                            {
-                                throw new Ice.MarshalException("exception in CompactIdResolver for ID " +
-                                                               _current.compactId, ex);
-                            }
-                        }
-
-                        if(_current.typeId.isEmpty())
-                        {
-                            _current.typeId = _stream.instance().resolveCompactId(_current.compactId);
-                        }
-                    }
+                    _current.typeId = resolveCompactId(_current.compactId);
                 }
 
                 if(v == null && !_current.typeId.isEmpty())
@@ -3172,12 +3086,6 @@ public class InputStream
 
                 if(v != null)
                 {
-                    if(updateCache)
-                    {
-                        assert(_current.compactId >= 0);
-                        _compactIdCache.put(_current.compactId, v.getClass());
-                    }
-
                     //
                     // We have an instance, get out of this loop.
                     //
@@ -3226,7 +3134,7 @@ public class InputStream
             //
             unmarshal(index, v);
 
-            if(_current == null && _patchMap != null && !_patchMap.isEmpty())
+            if(_current == null && !_patchMap.isEmpty())
             {
                 //
                 // If any entries remain in the patch map, the sender has sent an index for an instance, but failed
@@ -3243,6 +3151,49 @@ public class InputStream
             return index;
         }
 
+        private String resolveCompactId(int compactId)
+        {
+            String typeId = "";
+            if(_compactIdResolver != null)
+            {
+                if(_compactIdCache == null)
+                {
+                    _compactIdCache = new IceInternal.IntMap<String>(); // Lazy initialization.
+                }
+                else
+                {
+                    typeId = _compactIdCache.get(compactId);
+                    if(typeId != null)
+                    {
+                        return typeId;
+                    }
+                }
+
+                try
+                {
+                    typeId = _compactIdResolver.resolve(compactId);
+                }
+                catch(Ice.LocalException ex)
+                {
+                    throw ex;
+                }
+                catch(Throwable ex)
+                {
+                    throw new Ice.MarshalException("exception in CompactIdResolver for ID " + compactId, ex);
+                }
+                if(!typeId.isEmpty())
+                {
+                    _compactIdCache.put(compactId, typeId);
+                }
+            }
+
+            if(typeId.isEmpty())
+            {
+                typeId = _stream.instance().valueFactoryCache().resolveCompactId(compactId);
+            }
+            return typeId;
+        }
+
         private SlicedData readSlicedData()
         {
             if(_current.slices == null) // No preserved slices.
@@ -3329,7 +3280,45 @@ public class InputStream
         private CompactIdResolver _compactIdResolver;
         private InstanceData _current;
         private int _valueIdIndex; // The ID of the next instance to unmarshal.
-        private java.util.TreeMap<Integer, Class<?> > _compactIdCache; // Cache of compact type IDs.
+        private IceInternal.IntMap<String> _compactIdCache; // Cache of resolved compact type IDs.
+    }
+
+    //
+    // The tables used by a decoder to keep track of the unmarshaled instances,
+    // the patch callbacks and the type IDs of an encapsulation. The tables are
+    // kept with the encapsulation and reused by the decoders of the following
+    // encapsulations read at the same nesting level.
+    //
+    private static final class DecoderTables
+    {
+        void addTypeId(String typeId)
+        {
+            if(typeIds == null)
+            {
+                typeIds = new String[16];
+            }
+            else if(typeIdCount + 1 == typeIds.length)
+            {
+                typeIds = java.util.Arrays.copyOf(typeIds, typeIds.length * 2);
+            }
+            typeIds[++typeIdCount] = typeId; // Type ID indexes start at 1.
+        }
+
+        void clear()
+        {
+            unmarshaled.clear();
+            patches.clear();
+            if(typeIdCount > 0)
+            {
+                java.util.Arrays.fill(typeIds, 1, typeIdCount + 1, null);
+                typeIdCount = 0;
+            }
+        }
+
+        final IceInternal.IntMap<Ice.Object> unmarshaled = new IceInternal.IntMap<Ice.Object>();
+        final IceInternal.IntMap<java.lang.Object> patches = new IceInternal.IntMap<java.lang.Object>();
+        String[] typeIds;
+        int typeIdCount;
     }
 
     private static final class Encaps
@@ -3337,6 +3326,10 @@ public class InputStream
         void reset()
         {
             decoder = null;
+            if(tables != null)
+            {
+                tables.clear();
+            }
         }
 
         void setEncoding(EncodingVersion encoding)
@@ -3351,6 +3344,7 @@ public class InputStream
         boolean encoding_1_0;
 
         EncapsDecoder decoder;
+        DecoderTables tables;
 
         Encaps next;
     }
@@ -3388,14 +3382,20 @@ public class InputStream
 
         if(_encapsStack.decoder == null) // Lazy initialization.
         {
+            if(_encapsStack.tables == null)
+            {
+                _encapsStack.tables = new DecoderTables();
+            }
+
             if(_encapsStack.encoding_1_0)
             {
-                _encapsStack.decoder = new EncapsDecoder10(this, _sliceValues, _valueFactoryManager, _classResolver);
+                _encapsStack.decoder = new EncapsDecoder10(this, _encapsStack.tables, _sliceValues,
+                                                           _valueFactoryManager, _classResolver);
             }
             else
             {
-                _encapsStack.decoder = new EncapsDecoder11(this, _sliceValues, _valueFactoryManager, _classResolver,
-                                                           _compactIdResolver);
+                _encapsStack.decoder = new EncapsDecoder11(this, _encapsStack.tables, _sliceValues,
+                                                           _valueFactoryManager, _classResolver, _compactIdResolver);
             }
         }
     }
@@ -0,0 +1,553 @@
+// **********************************************************************
+//
+// Copyright (c) 2003-2016 ZeroC, Inc. All rights reserved.
+//
+// This copy of Ice is licensed to you under the terms described in the
+// ICE_LICENSE file included in this distribution.
+//
+// **********************************************************************
+
+package Ice;
+
+/**
+ * The future result of an asynchronous invocation started with one of the
+ * <code>Async</code> methods of a proxy, such as {@link ObjectPrx#ice_pingAsync}.
+ *
+ * The future is completed by the thread which reads the reply, the
+ * listeners registered without an executor are called by this thread. The
+ * listeners which block or take a long time should be registered with an
+ * executor. The future of a oneway invocation completes once the request is
+ * sent. The listeners registered with <code>whenSent</code> are notified
+ * when the request is sent.
+ *
+ * If the invocation fails, <code>get</code> throws an
+ * <code>ExecutionException</code> whose cause is the Ice user or local
+ * exception raised by the invocation.
+ *
+ * @param <T> The type of the result, <code>Void</code> for operations
+ * which don't return a value.
+ **/
+public abstract class InvocationFuture<T> extends IceInternal.CallbackBase implements java.util.concurrent.Future<T>
+{
+    /**
+     * A listener notified when the invocation completes.
+     *
+     * @param <T> The type of the result.
+     **/
+    public interface Listener<T>
+    {
+        /**
+         * Called when the invocation completes. The result or the exception
+         * of the invocation can be retrieved from the future without blocking.
+         *
+         * @param future The completed future.
+         **/
+        void completed(InvocationFuture<T> future);
+    }
+
+    /**
+     * A listener notified when the request of the invocation is sent.
+     *
+     * @param <T> The type of the result.
+     **/
+    public interface SentListener<T>
+    {
+        /**
+         * Called when the request of the invocation is sent.
+         *
+         * @param future The future of the invocation.
+         * @param sentSynchronously True if the request was sent by the
+         * thread which started the invocation.
+         **/
+        void sent(InvocationFuture<T> future, boolean sentSynchronously);
+    }
+
+    protected
+    InvocationFuture(ObjectPrx proxy)
+    {
+        _oneway = !proxy.ice_isTwoway();
+    }
+
+    /**
+     * Registers a listener called when the invocation completes. If the
+     * invocation is already completed, the listener is called by the
+     * calling thread before this method returns, otherwise it's called by
+     * the thread which completes the invocation.
+     *
+     * @param listener The listener.
+     **/
+    public final void
+    whenComplete(Listener<T> listener)
+    {
+        whenComplete(listener, null);
+    }
+
+    /**
+     * Registers a listener called with the given executor when the
+     * invocation completes.
+     *
+     * @param listener The listener.
+     * @param executor The executor used to call the listener, or null to
+     * call the listener directly.
+     **/
+    public final void
+    whenComplete(Listener<T> listener, java.util.concurrent.Executor executor)
+    {
+        if(listener == null)
+        {
+            throw new IllegalArgumentException("listener cannot be null");
+        }
+
+        synchronized(this)
+        {
+            if(!_done)
+            {
+                _listeners = new Registration<T>(listener, executor, _listeners);
+                return;
+            }
+        }
+        notifyListener(listener, executor);
+    }
+
+    /**
+     * Registers a listener called when the request of the invocation is
+     * sent. If the request is already sent, the listener is called by the
+     * calling thread before this method returns, otherwise it's called by
+     * the thread which sends the request or by a thread of the client
+     * thread pool.
+     *
+     * @param listener The listener.
+     **/
+    public final void
+    whenSent(SentListener<T> listener)
+    {
+        whenSent(listener, null);
+    }
+
+    /**
+     * Registers a listener called with the given executor when the request
+     * of the invocation is sent.
+     *
+     * @param listener The listener.
+     * @param executor The executor used to call the listener, or null to
+     * call the listener directly.
+     **/
+    public final void
+    whenSent(SentListener<T> listener, java.util.concurrent.Executor executor)
+    {
+        if(listener == null)
+        {
+            throw new IllegalArgumentException("listener cannot be null");
+        }
+
+        AsyncResult r;
+        synchronized(this)
+        {
+            if(!_sent)
+            {
+                _sentListeners = new SentRegistration<T>(listener, executor, _sentListeners);
+            }
+            r = _result;
+        }
+
+        //
+        // The request might have been sent before the listener was
+        // registered, without calling __sent. sent() calls the listeners
+        // only once.
+        //
+        if(r != null && r.isSent())
+        {
+            sent(r);
+        }
+    }
+
+    /**
+     * Cancels the invocation. The invocation completes with
+     * <code>InvocationCanceledException</code> if it didn't already
+     * complete.
+     *
+     * @param mayInterruptIfRunning Ignored, the thread which sends the
+     * request is never interrupted.
+     * @return <code>true</code> if the invocation wasn't completed yet;
+     * <code>false</code>, otherwise.
+     **/
+    @Override
+    public final boolean
+    cancel(boolean mayInterruptIfRunning)
+    {
+        AsyncResult r;
+        synchronized(this)
+        {
+            if(_done)
+            {
+                return false;
+            }
+            r = _result;
+        }
+        if(r != null)
+        {
+            r.cancel();
+        }
+        return true;
+    }
+
+    @Override
+    public final synchronized boolean
+    isCancelled()
+    {
+        return _done && _exception instanceof InvocationCanceledException;
+    }
+
+    @Override
+    public final synchronized boolean
+    isDone()
+    {
+        return _done;
+    }
+
+    @Override
+    public final T
+    get()
+        throws InterruptedException, java.util.concurrent.ExecutionException
+    {
+        synchronized(this)
+        {
+            while(!_done)
+            {
+                wait();
+            }
+            return result();
+        }
+    }
+
+    @Override
+    public final T
+    get(long timeout, java.util.concurrent.TimeUnit unit)
+        throws InterruptedException, java.util.concurrent.ExecutionException, java.util.concurrent.TimeoutException
+    {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        synchronized(this)
+        {
+            while(!_done)
+            {
+                long remaining = deadline - System.nanoTime();
+                if(remaining <= 0)
+                {
+                    throw new java.util.concurrent.TimeoutException();
+                }
+                java.util.concurrent.TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            }
+            return result();
+        }
+    }
+
+    /**
+     * Returns the exception raised by the invocation.
+     *
+     * @return The Ice user or local exception raised by the invocation, or
+     * null if the invocation isn't completed or succeeded.
+     **/
+    public final synchronized java.lang.Exception
+    getException()
+    {
+        return _exception;
+    }
+
+    /**
+     * Returns the asynchronous result of the invocation.
+     *
+     * @return The asynchronous result.
+     **/
+    public final synchronized AsyncResult
+    getAsyncResult()
+    {
+        return _result;
+    }
+
+    public final void
+    __setAsyncResult(AsyncResult r)
+    {
+        synchronized(this)
+        {
+            if(_result == null)
+            {
+                _result = r;
+            }
+        }
+    }
+
+    //
+    // Unmarshals the result of the invocation with the end_ method of the
+    // proxy.
+    //
+    protected abstract T __end(AsyncResult r)
+        throws UserException;
+
+    @Override
+    public final void
+    __completed(AsyncResult r)
+    {
+        T value = null;
+        java.lang.Exception exception = null;
+        try
+        {
+            value = __end(r);
+        }
+        catch(UserException ex)
+        {
+            exception = ex;
+        }
+        catch(Ice.Exception ex)
+        {
+            exception = ex;
+        }
+        complete(r, value, exception);
+    }
+
+    @Override
+    public final void
+    __sent(AsyncResult r)
+    {
+        //
+        // Oneway and batch oneway invocations complete once the request is
+        // sent, __completed isn't called for these invocations.
+        //
+        if(_oneway)
+        {
+            complete(r, null, null);
+        }
+        sent(r);
+    }
+
+    @Override
+    public final synchronized boolean
+    __hasSentCallback()
+    {
+        //
+        // The sent callback of a twoway invocation is only needed if a sent
+        // listener is registered.
+        //
+        return _oneway || _sentListeners != null;
+    }
+
+    private void
+    sent(AsyncResult r)
+    {
+        SentRegistration<T> listeners;
+        synchronized(this)
+        {
+            if(_sent)
+            {
+                return;
+            }
+            _sent = true;
+            if(_result == null)
+            {
+                _result = r;
+            }
+            listeners = _sentListeners;
+            _sentListeners = null;
+        }
+
+        //
+        // Call the listeners in registration order.
+        //
+        SentRegistration<T> reversed = null;
+        while(listeners != null)
+        {
+            SentRegistration<T> next = listeners.next;
+            listeners.next = reversed;
+            reversed = listeners;
+            listeners = next;
+        }
+        boolean sentSynchronously = r.sentSynchronously();
+        for(SentRegistration<T> p = reversed; p != null; p = p.next)
+        {
+            notifySentListener(p.listener, p.executor, sentSynchronously);
+        }
+    }
+
+    private void
+    complete(AsyncResult r, T value, java.lang.Exception exception)
+    {
+        Registration<T> listeners;
+        synchronized(this)
+        {
+            _result = r;
+            _value = value;
+            _exception = exception;
+            _done = true;
+            listeners = _listeners;
+            _listeners = null;
+            notifyAll();
+        }
+
+        if(listeners != null)
+        {
+            //
+            // Call the listeners in registration order.
+            //
+            Registration<T> reversed = null;
+            while(listeners != null)
+            {
+                Registration<T> next = listeners.next;
+                listeners.next = reversed;
+                reversed = listeners;
+                listeners = next;
+            }
+            for(Registration<T> p = reversed; p != null; p = p.next)
+            {
+                notifyListener(p.listener, p.executor);
+            }
+        }
+    }
+
+    private T
+    result()
+        throws java.util.concurrent.ExecutionException
+    {
+        assert(_done);
+        if(_exception instanceof InvocationCanceledException)
+        {
+            java.util.concurrent.CancellationException ex = new java.util.concurrent.CancellationException();
+            ex.initCause(_exception);
+            throw ex;
+        }
+        else if(_exception != null)
+        {
+            throw new java.util.concurrent.ExecutionException(_exception);
+        }
+        return _value;
+    }
+
+    private void
+    notifyListener(final Listener<T> listener, java.util.concurrent.Executor executor)
+    {
+        if(executor != null)
+        {
+            try
+            {
+                executor.execute(new Runnable()
+                    {
+                        @Override
+                        public void
+                        run()
+                        {
+                            call(listener);
+                        }
+                    });
+            }
+            catch(java.util.concurrent.RejectedExecutionException ex)
+            {
+                warning(ex);
+            }
+        }
+        else
+        {
+            call(listener);
+        }
+    }
+
+    private void
+    notifySentListener(final SentListener<T> listener, java.util.concurrent.Executor executor,
+                       final boolean sentSynchronously)
+    {
+        if(executor != null)
+        {
+            try
+            {
+                executor.execute(new Runnable()
+                    {
+                        @Override
+                        public void
+                        run()
+                        {
+                            callSent(listener, sentSynchronously);
+                        }
+                    });
+            }
+            catch(java.util.concurrent.RejectedExecutionException ex)
+            {
+                warning(ex);
+            }
+        }
+        else
+        {
+            callSent(listener, sentSynchronously);
+        }
+    }
+
+    private void
+    callSent(SentListener<T> listener, boolean sentSynchronously)
+    {
+        try
+        {
+            listener.sent(this, sentSynchronously);
+        }
+        catch(RuntimeException ex)
+        {
+            warning(ex);
+        }
+    }
+
+    private void
+    call(Listener<T> listener)
+    {
+        try
+        {
+            listener.completed(this);
+        }
+        catch(RuntimeException ex)
+        {
+            warning(ex);
+        }
+    }
+
+    private void
+    warning(RuntimeException ex)
+    {
+        Communicator communicator = getAsyncResult().getCommunicator();
+        if(communicator.getProperties().getPropertyAsIntWithDefault("Ice.Warn.AMICallback", 1) > 0)
+        {
+            communicator.getLogger().warning("exception raised by invocation future listener:\n" +
+                                             IceInternal.Ex.toString(ex));
+        }
+    }
+
+    private static final class Registration<T>
+    {
+        Registration(Listener<T> listener, java.util.concurrent.Executor executor, Registration<T> next)
+        {
+            this.listener = listener;
+            this.executor = executor;
+            this.next = next;
+        }
+
+        final Listener<T> listener;
+        final java.util.concurrent.Executor executor;
+        Registration<T> next;
+    }
+
+    private static final class SentRegistration<T>
+    {
+        SentRegistration(SentListener<T> listener, java.util.concurrent.Executor executor, SentRegistration<T> next)
+        {
+            this.listener = listener;
+            this.executor = executor;
+            this.next = next;
+        }
+
+        final SentListener<T> listener;
+        final java.util.concurrent.Executor executor;
+        SentRegistration<T> next;
+    }
+
+    private final boolean _oneway;
+    private AsyncResult _result;
+    private boolean _done;
+    private boolean _sent;
+    private SentRegistration<T> _sentListeners;
+    private T _value;
+    private java.lang.Exception _exception;
+    private Registration<T> _listeners;
+}
@@ -366,6 +366,22 @@ public final class ObjectAdapterI implements ObjectAdapter
             }
         }
 
+        //
+        // Destroy the dispatch executor.
+        //
+        if(_dispatchExecutor != null)
+        {
+            _dispatchExecutor.destroy();
+            try
+            {
+                _dispatchExecutor.joinWithAllThreads();
+            }
+            catch (InterruptedException e)
+            {
+                throw new Ice.OperationInterruptedException();
+            }
+        }
+
         _objectAdapterFactory.removeObjectAdapter(this);
 
         synchronized(this)
@@ -831,6 +847,15 @@ public final class ObjectAdapterI implements ObjectAdapter
         }
     }
 
+    public IceInternal.DispatchExecutor
+    getDispatchExecutor()
+    {
+        //
+        // No mutex lock necessary, _dispatchExecutor is immutable.
+        //
+        return _dispatchExecutor;
+    }
+
     public IceInternal.ServantManager
     getServantManager()
     {
@@ -965,6 +990,11 @@ public final class ObjectAdapterI implements ObjectAdapter
                 _threadPool = new IceInternal.ThreadPool(_instance, _name + ".ThreadPool", 0);
             }
 
+            //
+            // Create the virtual thread dispatch executor, if necessary.
+            //
+            _dispatchExecutor = IceInternal.DispatchExecutor.create(_instance, _name);
+
             if(router == null)
             {
                 router = RouterPrxHelper.uncheckedCast(_instance.proxyFactory().propertyToProxy(name + ".Router"));
@@ -1484,7 +1514,10 @@ public final class ObjectAdapterI implements ObjectAdapter
         "ThreadPool.SizeMax",
         "ThreadPool.SizeWarn",
         "ThreadPool.StackSize",
-        "ThreadPool.Serialize"
+        "ThreadPool.Serialize",
+        "ThreadPool.Reactors",
+        "ThreadPool.WorkStealing",
+        "VirtualThreads"
     };
 
     boolean
@@ -1542,6 +1575,7 @@ public final class ObjectAdapterI implements ObjectAdapter
     private Communicator _communicator;
     private IceInternal.ObjectAdapterFactory _objectAdapterFactory;
     private IceInternal.ThreadPool _threadPool;
+    private IceInternal.DispatchExecutor _dispatchExecutor;
     private IceInternal.ACMConfig _acm;
     private IceInternal.ServantManager _servantManager;
     final private String _name;
@@ -258,14 +258,6 @@ public abstract class ObjectImpl implements Object, java.lang.Cloneable, java.io
     {
     }
 
-    private final static String[] __all =
-    {
-        "ice_id",
-        "ice_ids",
-        "ice_isA",
-        "ice_ping"
-    };
-
     /**
      * Dispatches an invocation to a servant. This method is used by dispatch interceptors to forward an invocation
      * to a servant (or to another interceptor).
@@ -323,33 +315,26 @@ public abstract class ObjectImpl implements Object, java.lang.Cloneable, java.io
     public DispatchStatus
     __dispatch(IceInternal.Incoming in, Current current)
     {
-        int pos = java.util.Arrays.binarySearch(__all, current.operation);
-        if(pos < 0)
-        {
-            throw new Ice.OperationNotExistException(current.id, current.facet, current.operation);
-        }
-
-        switch(pos)
+        switch(current.operation)
         {
-            case 0:
+            case "ice_id":
             {
                 return ___ice_id(this, in, current);
             }
-            case 1:
+            case "ice_ids":
             {
                 return ___ice_ids(this, in, current);
             }
-            case 2:
+            case "ice_isA":
             {
                 return ___ice_isA(this, in, current);
             }
-            case 3:
+            case "ice_ping":
             {
                 return ___ice_ping(this, in, current);
             }
         }
 
-        assert(false);
         throw new Ice.OperationNotExistException(current.id, current.facet, current.operation);
     }
 
@@ -157,6 +157,23 @@ public interface ObjectPrx
      **/
     boolean end_ice_isA(AsyncResult __result);
 
+    /**
+     * Tests whether this object supports a specific Slice interface.
+     *
+     * @param __id The type ID of the Slice interface to test against.
+     * @return The future result of the invocation.
+     **/
+    InvocationFuture<Boolean> ice_isAAsync(String __id);
+
+    /**
+     * Tests whether this object supports a specific Slice interface.
+     *
+     * @param __id The type ID of the Slice interface to test against.
+     * @param __context The <code>Context</code> map for the invocation.
+     * @return The future result of the invocation.
+     **/
+    InvocationFuture<Boolean> ice_isAAsync(String __id, java.util.Map<String, String> __context);
+
     /**
      * Tests whether the target object of this proxy can be reached.
      **/
@@ -273,6 +290,21 @@ public interface ObjectPrx
      **/
     void end_ice_ping(AsyncResult __result);
 
+    /**
+     * Tests whether the target object of this proxy can be reached.
+     *
+     * @return The future result of the invocation.
+     **/
+    InvocationFuture<Void> ice_pingAsync();
+
+    /**
+     * Tests whether the target object of this proxy can be reached.
+     *
+     * @param __context The <code>Context</code> map for the invocation.
+     * @return The future result of the invocation.
+     **/
+    InvocationFuture<Void> ice_pingAsync(java.util.Map<String, String> __context);
+
     /**
      * Returns the Slice type IDs of the interfaces supported by the target object of this proxy.
      *
@@ -396,6 +428,21 @@ public interface ObjectPrx
      **/
     String[] end_ice_ids(AsyncResult __result);
 
+    /**
+     * Returns the Slice type IDs of the interfaces supported by the target object of this proxy.
+     *
+     * @return The future result of the invocation.
+     **/
+    InvocationFuture<String[]> ice_idsAsync();
+
+    /**
+     * Returns the Slice type IDs of the interfaces supported by the target object of this proxy.
+     *
+     * @param __context The <code>Context</code> map for the invocation.
+     * @return The future result of the invocation.
+     **/
+    InvocationFuture<String[]> ice_idsAsync(java.util.Map<String, String> __context);
+
     /**
      * Returns the Slice type ID of the most-derived interface supported by the target object of this proxy.
      *
@@ -516,6 +563,21 @@ public interface ObjectPrx
      **/
     String end_ice_id(AsyncResult __result);
 
+    /**
+     * Returns the Slice type ID of the most-derived interface supported by the target object of this proxy.
+     *
+     * @return The future result of the invocation.
+     **/
+    InvocationFuture<String> ice_idAsync();
+
+    /**
+     * Returns the Slice type ID of the most-derived interface supported by the target object of this proxy.
+     *
+     * @param __context The <code>Context</code> map for the invocation.
+     * @return The future result of the invocation.
+     **/
+    InvocationFuture<String> ice_idAsync(java.util.Map<String, String> __context);
+
     /**
      * Invokes an operation dynamically.
      *
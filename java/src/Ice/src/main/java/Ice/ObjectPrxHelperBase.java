@@ -9,9 +9,6 @@
 
 package Ice;
 
-import java.util.LinkedList;
-import java.util.List;
-
 import Ice.Instrumentation.InvocationObserver;
 import IceInternal.RetryException;
 
@@ -333,6 +330,48 @@ public class ObjectPrxHelperBase implements ObjectPrx, java.io.Serializable
         }
     }
 
+    /**
+     * Tests whether this object supports a specific Slice interface.
+     *
+     * @param __id The type ID of the Slice interface to test against.
+     * @return The future result of the invocation.
+     **/
+    @Override
+    public final InvocationFuture<Boolean>
+    ice_isAAsync(String __id)
+    {
+        return ice_isAAsync(__id, null, false);
+    }
+
+    /**
+     * Tests whether this object supports a specific Slice interface.
+     *
+     * @param __id The type ID of the Slice interface to test against.
+     * @param __context The <code>Context</code> map for the invocation.
+     * @return The future result of the invocation.
+     **/
+    @Override
+    public final InvocationFuture<Boolean>
+    ice_isAAsync(String __id, java.util.Map<String, String> __context)
+    {
+        return ice_isAAsync(__id, __context, true);
+    }
+
+    private InvocationFuture<Boolean>
+    ice_isAAsync(String __id, java.util.Map<String, String> __context, boolean __explicitCtx)
+    {
+        InvocationFuture<Boolean> __f = new InvocationFuture<Boolean>(this)
+            {
+                @Override
+                protected Boolean __end(AsyncResult __r)
+                {
+                    return end_ice_isA(__r);
+                }
+            };
+        __f.__setAsyncResult(begin_ice_isA(__id, __context, __explicitCtx, false, __f));
+        return __f;
+    }
+
     static public void __ice_isA_completed(TwowayCallbackBool __cb, AsyncResult __result)
     {
         boolean __ret = false;
@@ -563,6 +602,47 @@ public class ObjectPrxHelperBase implements ObjectPrx, java.io.Serializable
         __end(__result, __ice_ping_name);
     }
 
+    /**
+     * Tests whether the target object of this proxy can be reached.
+     *
+     * @return The future result of the invocation.
+     **/
+    @Override
+    public final InvocationFuture<Void>
+    ice_pingAsync()
+    {
+        return ice_pingAsync(null, false);
+    }
+
+    /**
+     * Tests whether the target object of this proxy can be reached.
+     *
+     * @param __context The <code>Context</code> map for the invocation.
+     * @return The future result of the invocation.
+     **/
+    @Override
+    public final InvocationFuture<Void>
+    ice_pingAsync(java.util.Map<String, String> __context)
+    {
+        return ice_pingAsync(__context, true);
+    }
+
+    private InvocationFuture<Void>
+    ice_pingAsync(java.util.Map<String, String> __context, boolean __explicitCtx)
+    {
+        InvocationFuture<Void> __f = new InvocationFuture<Void>(this)
+            {
+                @Override
+                protected Void __end(AsyncResult __r)
+                {
+                    end_ice_ping(__r);
+                    return null;
+                }
+            };
+        __f.__setAsyncResult(begin_ice_ping(__context, __explicitCtx, false, __f));
+        return __f;
+    }
+
     /**
      * Returns the Slice type IDs of the interfaces supported by the target object of this proxy.
      *
@@ -824,6 +904,46 @@ public class ObjectPrxHelperBase implements ObjectPrx, java.io.Serializable
         }
     }
 
+    /**
+     * Returns the Slice type IDs of the interfaces supported by the target object of this proxy.
+     *
+     * @return The future result of the invocation.
+     **/
+    @Override
+    public final InvocationFuture<String[]>
+    ice_idsAsync()
+    {
+        return ice_idsAsync(null, false);
+    }
+
+    /**
+     * Returns the Slice type IDs of the interfaces supported by the target object of this proxy.
+     *
+     * @param __context The <code>Context</code> map for the invocation.
+     * @return The future result of the invocation.
+     **/
+    @Override
+    public final InvocationFuture<String[]>
+    ice_idsAsync(java.util.Map<String, String> __context)
+    {
+        return ice_idsAsync(__context, true);
+    }
+
+    private InvocationFuture<String[]>
+    ice_idsAsync(java.util.Map<String, String> __context, boolean __explicitCtx)
+    {
+        InvocationFuture<String[]> __f = new InvocationFuture<String[]>(this)
+            {
+                @Override
+                protected String[] __end(AsyncResult __r)
+                {
+                    return end_ice_ids(__r);
+                }
+            };
+        __f.__setAsyncResult(begin_ice_ids(__context, __explicitCtx, false, __f));
+        return __f;
+    }
+
     static public void __ice_ids_completed(TwowayCallbackArg1<String[]> __cb, AsyncResult __result)
     {
         String[] __ret = null;
@@ -1099,6 +1219,46 @@ public class ObjectPrxHelperBase implements ObjectPrx, java.io.Serializable
         }
     }
 
+    /**
+     * Returns the Slice type ID of the most-derived interface supported by the target object of this proxy.
+     *
+     * @return The future result of the invocation.
+     **/
+    @Override
+    public final InvocationFuture<String>
+    ice_idAsync()
+    {
+        return ice_idAsync(null, false);
+    }
+
+    /**
+     * Returns the Slice type ID of the most-derived interface supported by the target object of this proxy.
+     *
+     * @param __context The <code>Context</code> map for the invocation.
+     * @return The future result of the invocation.
+     **/
+    @Override
+    public final InvocationFuture<String>
+    ice_idAsync(java.util.Map<String, String> __context)
+    {
+        return ice_idAsync(__context, true);
+    }
+
+    private InvocationFuture<String>
+    ice_idAsync(java.util.Map<String, String> __context, boolean __explicitCtx)
+    {
+        InvocationFuture<String> __f = new InvocationFuture<String>(this)
+            {
+                @Override
+                protected String __end(AsyncResult __r)
+                {
+                    return end_ice_id(__r);
+                }
+            };
+        __f.__setAsyncResult(begin_ice_id(__context, __explicitCtx, false, __f));
+        return __f;
+    }
+
     static public void __ice_id_completed(TwowayCallbackArg1<String> __cb, AsyncResult __result)
     {
         String __ret = null;
@@ -2692,6 +2852,93 @@ public class ObjectPrxHelperBase implements ObjectPrx, java.io.Serializable
         return _reference.getRequestHandler(this);
     }
 
+    //
+    // Returns the Current of a direct invocation of a collocated servant,
+    // or null if the invocation must be marshaled. Direct invocations are
+    // enabled with Ice.CollocationDirect.
+    //
+    public final Current
+    __getDirectCurrent(String operation, OperationMode mode, java.util.Map<String, String> context,
+                       boolean explicitCtx)
+    {
+        if(!_reference.getInstance().collocationDirect())
+        {
+            return null;
+        }
+
+        IceInternal.RequestHandler handler;
+        try
+        {
+            handler = __getRequestHandler();
+        }
+        catch(Ice.Exception ex)
+        {
+            return null; // The marshaled invocation handles the exception.
+        }
+        if(!(handler instanceof IceInternal.CollocatedRequestHandler))
+        {
+            return null;
+        }
+        ObjectAdapter adapter = ((IceInternal.CollocatedRequestHandler)handler).getDirectAdapter();
+        if(adapter == null)
+        {
+            return null;
+        }
+
+        Current current = new Current();
+        current.adapter = adapter;
+        current.id = _reference.getIdentity();
+        current.facet = _reference.getFacet();
+        current.operation = operation;
+        current.mode = mode;
+        if(explicitCtx)
+        {
+            current.ctx = context == null ? new java.util.HashMap<String, String>() :
+                new java.util.HashMap<String, String>(context);
+        }
+        else
+        {
+            ImplicitContextI implicitContext = _reference.getInstance().getImplicitContext();
+            java.util.Map<String, String> prxContext = _reference.getContext();
+            current.ctx = implicitContext == null ? new java.util.HashMap<String, String>(prxContext) :
+                implicitContext.combine(prxContext);
+        }
+        current.requestId = -1;
+        current.encoding = _reference.getEncoding();
+        return current;
+    }
+
+    //
+    // Called if a direct invocation raises ObjectNotExistException. Returns
+    // true if the invocation must be retried, as it would be if raised by a
+    // marshaled invocation: the reference is indirect, the locator cache and
+    // the request handler are cleared and the retry count isn't exceeded.
+    //
+    public final boolean
+    __retryDirect(ObjectNotExistException ex)
+    {
+        if(!_reference.isIndirect())
+        {
+            return false;
+        }
+
+        IceInternal.RequestHandler handler;
+        synchronized(this)
+        {
+            handler = _requestHandler;
+        }
+
+        try
+        {
+            __handleException(ex, handler, OperationMode.Normal, true, new Holder<Integer>(), 0);
+            return true;
+        }
+        catch(LocalException exc)
+        {
+            return false;
+        }
+    }
+
     synchronized public final IceInternal.BatchRequestQueue
     __getBatchRequestQueue()
     {
@@ -2744,13 +2991,14 @@ public class ObjectPrxHelperBase implements ObjectPrx, java.io.Serializable
     public void
     cacheMessageBuffers(InputStream is, OutputStream os)
     {
-        synchronized(this)
+        IceInternal.Instance instance = _reference.getInstance();
+        if(is != null && instance.inputStreamCache() != null)
         {
-            if(_streamCache == null)
-            {
-                _streamCache = new LinkedList<StreamCacheEntry>();
-            }
-            _streamCache.add(new StreamCacheEntry(is, os));
+            instance.inputStreamCache().release(is);
+        }
+        if(instance.outputStreamCache() != null)
+        {
+            instance.outputStreamCache().release(os);
         }
     }
 
@@ -2894,24 +3142,16 @@ public class ObjectPrxHelperBase implements ObjectPrx, java.io.Serializable
     protected IceInternal.OutgoingAsync
     getOutgoingAsync(String operation, IceInternal.CallbackBase cb)
     {
-        StreamCacheEntry cacheEntry = null;
-        if(_reference.getInstance().cacheMessageBuffers() > 0)
-        {
-            synchronized(this)
-            {
-                if(_streamCache != null && !_streamCache.isEmpty())
-                {
-                    cacheEntry = _streamCache.remove(0);
-                }
-            }
-        }
-        if(cacheEntry == null)
+        IceInternal.Instance instance = _reference.getInstance();
+        OutputStream os = instance.outputStreamCache() != null ? instance.outputStreamCache().acquire() : null;
+        if(os == null)
         {
             return new IceInternal.OutgoingAsync(this, operation, cb);
         }
         else
         {
-            return new IceInternal.OutgoingAsync(this, operation, cb, cacheEntry.is, cacheEntry.os);
+            InputStream is = instance.inputStreamCache() != null ? instance.inputStreamCache().acquire() : null;
+            return new IceInternal.OutgoingAsync(this, operation, cb, is, os);
         }
     }
 
@@ -2980,21 +3220,8 @@ public class ObjectPrxHelperBase implements ObjectPrx, java.io.Serializable
         }
     }
 
-    private static class StreamCacheEntry
-    {
-        StreamCacheEntry(InputStream is, OutputStream os)
-        {
-            this.is = is;
-            this.os = os;
-        }
-
-        InputStream is;
-        OutputStream os;
-    }
-
     private transient IceInternal.Reference _reference;
     private transient IceInternal.RequestHandler _requestHandler;
     private transient IceInternal.BatchRequestQueue _batchRequestQueue;
-    private transient List<StreamCacheEntry> _streamCache;
     public static final long serialVersionUID = 0L;
 }
@@ -133,7 +133,7 @@ public class OutputStream
 
     private void initialize(IceInternal.Instance instance, EncodingVersion encoding, boolean direct)
     {
-        initialize(instance, encoding, new IceInternal.Buffer(direct));
+        initialize(instance, encoding, new IceInternal.Buffer(direct, instance.bufferPool()));
     }
 
     private void initialize(IceInternal.Instance instance, EncodingVersion encoding, IceInternal.Buffer buf)
@@ -1410,9 +1410,6 @@ public class OutputStream
         }
     }
 
-    final static java.nio.charset.Charset _utf8 = java.nio.charset.Charset.forName("UTF8");
-    private java.nio.charset.CharsetEncoder _charEncoder = null;
-
     /**
      * Writes a string to the stream.
      *
@@ -1430,49 +1427,14 @@ public class OutputStream
             final int len = v.length();
             if(len > 0)
             {
-                if(_stringBytes == null || len > _stringBytes.length)
-                {
-                    _stringBytes = new byte[len];
-                }
-                if(_stringChars == null || len > _stringChars.length)
-                {
-                    _stringChars = new char[len];
-                }
                 //
-                // If the string contains only 7-bit characters, it's more efficient
-                // to perform the conversion to UTF-8 manually.
+                // The string is encoded directly into the buffer, the
+                // encoded length is computed first to write the size.
                 //
-                v.getChars(0, len, _stringChars, 0);
-                for(int i = 0; i < len; ++i)
-                {
-                    if(_stringChars[i] > (char)127)
-                    {
-                        //
-                        // Found a multibyte character.
-                        //
-                        if(_charEncoder == null)
-                        {
-                            _charEncoder = _utf8.newEncoder();
-                        }
-                        java.nio.ByteBuffer b = null;
-                        try
-                        {
-                            b = _charEncoder.encode(java.nio.CharBuffer.wrap(_stringChars, 0, len));
-                        }
-                        catch(java.nio.charset.CharacterCodingException ex)
-                        {
-                            throw new MarshalException(ex);
-                        }
-                        writeSize(b.limit());
-                        expand(b.limit());
-                        _buf.b.put(b);
-                        return;
-                    }
-                    _stringBytes[i] = (byte)_stringChars[i];
-                }
-                writeSize(len);
-                expand(len);
-                _buf.b.put(_stringBytes, 0, len);
+                final int sz = IceInternal.UTF8.encodedLength(v);
+                writeSize(sz);
+                expand(sz);
+                IceInternal.UTF8.encode(v, sz, _buf.b);
             }
             else
             {
@@ -1765,8 +1727,6 @@ public class OutputStream
     private IceInternal.Buffer _buf;
     private Object _closure;
     private FormatType _format;
-    private byte[] _stringBytes; // Reusable array for string operations.
-    private char[] _stringChars; // Reusable array for string operations.
 
     private enum SliceType { NoSlice, ValueSlice, ExceptionSlice }
 
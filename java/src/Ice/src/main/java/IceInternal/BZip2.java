@@ -184,6 +184,43 @@ public class BZip2
         return r;
     }
 
+    //
+    // Returns a stream which uncompresses the data read from the given stream.
+    // The data must be in the bzip2 file format, starting with the 'B', 'Z'
+    // magic bytes.
+    //
+    public static java.io.InputStream uncompress(java.io.InputStream is)
+        throws java.io.IOException
+    {
+        assert(supported());
+
+        int magicB = is.read();
+        int magicZ = is.read();
+        if(magicB != 'B' || magicZ != 'Z')
+        {
+            Ice.CompressionException e = new Ice.CompressionException();
+            e.reason = "bzip2 uncompression failure: invalid magic bytes";
+            throw e;
+        }
+
+        try
+        {
+            return (java.io.InputStream)_bzInputStreamCtor.newInstance(new java.lang.Object[]{ is });
+        }
+        catch(java.lang.reflect.InvocationTargetException ex)
+        {
+            if(ex.getCause() instanceof java.io.IOException)
+            {
+                throw (java.io.IOException)ex.getCause();
+            }
+            throw new Ice.CompressionException("bzip2 uncompression failure", ex.getCause());
+        }
+        catch(Exception ex)
+        {
+            throw new Ice.CompressionException("bzip2 uncompression failure", ex);
+        }
+    }
+
     private static boolean _checked = false;
     private static java.lang.reflect.Constructor<?> _bzInputStreamCtor;
     private static java.lang.reflect.Constructor<?> _bzOutputStreamCtor;
@@ -188,6 +188,16 @@ public class BatchRequestQueue
         return _batchStream.size() == Protocol.requestBatchHdr.length;
     }
 
+    //
+    // Returns the size in bytes of the queued requests, not including a
+    // request being marshaled.
+    //
+    synchronized public int
+    size()
+    {
+        return _batchMarker - Protocol.requestBatchHdr.length;
+    }
+
     private void
     waitStreamInUse(boolean flush)
     {
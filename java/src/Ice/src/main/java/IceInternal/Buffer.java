@@ -29,6 +29,15 @@ public class Buffer
         _order = order;
     }
 
+    //
+    // Direct buffers are acquired from and released to the given pool.
+    //
+    public Buffer(boolean direct, BufferPool pool)
+    {
+        this(direct, java.nio.ByteOrder.LITTLE_ENDIAN);
+        _pool = direct ? pool : null;
+    }
+
     public Buffer(byte[] data)
     {
         this(data, java.nio.ByteOrder.LITTLE_ENDIAN);
@@ -70,8 +79,38 @@ public class Buffer
 
         if(adopt)
         {
+            //
+            // The data is now owned by this buffer, it's released to the pool
+            // once this buffer no longer needs it.
+            //
+            _pool = buf._pool;
+            _shared = buf._shared;
+            buf.b = buf._emptyBuffer;
             buf.clear();
         }
+        else
+        {
+            //
+            // This buffer is a view of the data of the given buffer, which
+            // must no longer release it to the pool.
+            //
+            buf.share();
+        }
+    }
+
+    //
+    // Called when a view of the data outlives the use of this buffer by its
+    // owner, for example a sequence mapped to a java.nio buffer or a stream
+    // which doesn't adopt the buffer. The data is no longer released to the
+    // pool, it's left to the garbage collector once it's no longer
+    // referenced.
+    //
+    public void share()
+    {
+        if(_pool != null && b != _emptyBuffer)
+        {
+            _shared = b;
+        }
     }
 
     public int size()
@@ -86,7 +125,12 @@ public class Buffer
 
     public void clear()
     {
+        if(_pool != null && b != _emptyBuffer && b != _shared)
+        {
+            _pool.release(b);
+        }
         b = _emptyBuffer;
+        _shared = null;
         _size = 0;
         _capacity = 0;
         _shrinkCounter = 0;
@@ -174,11 +218,28 @@ public class Buffer
             return;
         }
 
+        if(_pool != null)
+        {
+            //
+            // Pooled buffers are allocated with a size class capacity, there's
+            // no need to reallocate if the capacity doesn't change.
+            //
+            _capacity = _pool.capacity(_capacity);
+            if(b != _emptyBuffer && _capacity == b.capacity())
+            {
+                return;
+            }
+        }
+
         try
         {
             java.nio.ByteBuffer buf;
 
-            if(_direct)
+            if(_pool != null)
+            {
+                buf = _pool.acquire(_capacity);
+            }
+            else if(_direct)
             {
                 buf = java.nio.ByteBuffer.allocateDirect(_capacity);
             }
@@ -197,6 +258,11 @@ public class Buffer
                 b.position(0);
                 b.limit(java.lang.Math.min(_capacity, b.capacity()));
                 buf.put(b);
+                if(_pool != null && b != _shared)
+                {
+                    _pool.release(b);
+                }
+                _shared = null;
                 b = buf;
                 b.limit(b.capacity());
                 b.position(pos);
@@ -220,4 +286,6 @@ public class Buffer
     private boolean _direct; // Use direct buffers?
     private int _shrinkCounter;
     private java.nio.ByteOrder _order;
+    private BufferPool _pool; // Only set for direct buffers which own their data.
+    private java.nio.ByteBuffer _shared; // Data shared with a view, not released to the pool.
 }
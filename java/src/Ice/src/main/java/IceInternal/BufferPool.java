@@ -0,0 +1,229 @@
+// **********************************************************************
+//
+// Copyright (c) 2003-2016 ZeroC, Inc. All rights reserved.
+//
+// This copy of Ice is licensed to you under the terms described in the
+// ICE_LICENSE file included in this distribution.
+//
+// **********************************************************************
+
+package IceInternal;
+
+//
+// A communicator-wide pool of direct byte buffers.
+//
+// Buffers are allocated in power-of-two size classes. Each thread keeps
+// a small cache of buffers for each size class, buffers which don't fit
+// in the thread cache are retained in a shared lock-free depot. The size
+// of the buffers retained by the thread caches and the depot is limited
+// by the configured maximum size, released buffers are discarded once it's
+// reached. Buffers larger than the largest size class aren't pooled.
+// Virtual threads don't have a cache, they use the depot directly.
+//
+public final class BufferPool
+{
+    static BufferPool create(Ice.Properties properties)
+    {
+        long maxSize = properties.getPropertyAsIntWithDefault("Ice.BufferPool.MaxSize", 0) * 1024L;
+        if(maxSize <= 0)
+        {
+            return null; // Pooling disabled.
+        }
+
+        int maxBufferSize = properties.getPropertyAsIntWithDefault("Ice.BufferPool.MaxBufferSize", 1024) * 1024;
+        int threadCacheSize = properties.getPropertyAsIntWithDefault("Ice.BufferPool.ThreadCacheSize", 4);
+        return new BufferPool(maxSize, Math.max(maxBufferSize, MinBufferSize), Math.max(threadCacheSize, 0));
+    }
+
+    BufferPool(long maxSize, int maxBufferSize, int threadCacheSize)
+    {
+        _maxSize = maxSize;
+
+        int sizeClasses = 1;
+        while((MinBufferSize << (sizeClasses - 1)) < maxBufferSize && sizeClasses < 23)
+        {
+            ++sizeClasses;
+        }
+        _maxBufferSize = MinBufferSize << (sizeClasses - 1);
+
+        @SuppressWarnings("unchecked")
+        java.util.concurrent.ConcurrentLinkedQueue<java.nio.ByteBuffer>[] depot =
+            new java.util.concurrent.ConcurrentLinkedQueue[sizeClasses];
+        for(int i = 0; i < sizeClasses; ++i)
+        {
+            depot[i] = new java.util.concurrent.ConcurrentLinkedQueue<java.nio.ByteBuffer>();
+        }
+        _depot = depot;
+
+        final int classes = sizeClasses;
+        final int cacheSize = threadCacheSize;
+        _threadCaches = new ThreadCaches<ThreadCache>()
+        {
+            @Override
+            protected ThreadCache create()
+            {
+                return new ThreadCache(classes, cacheSize);
+            }
+        };
+    }
+
+    //
+    // Returns the capacity of the buffer returned by acquire() for the
+    // given size.
+    //
+    public int capacity(int size)
+    {
+        if(size > _maxBufferSize)
+        {
+            return size;
+        }
+        return MinBufferSize << sizeClass(size);
+    }
+
+    public java.nio.ByteBuffer acquire(int size)
+    {
+        if(size > _maxBufferSize || _destroyed)
+        {
+            _misses.incrementAndGet();
+            return java.nio.ByteBuffer.allocateDirect(size);
+        }
+
+        final int sizeClass = sizeClass(size);
+        ThreadCache cache = _threadCaches.get();
+        java.nio.ByteBuffer buf = cache != null ? cache.pop(sizeClass) : null;
+        if(buf == null)
+        {
+            buf = _depot[sizeClass].poll();
+        }
+
+        if(buf == null)
+        {
+            _misses.incrementAndGet();
+            return java.nio.ByteBuffer.allocateDirect(MinBufferSize << sizeClass);
+        }
+
+        _retainedSize.addAndGet(-buf.capacity());
+        _hits.incrementAndGet();
+        buf.clear();
+        return buf;
+    }
+
+    public void release(java.nio.ByteBuffer buf)
+    {
+        //
+        // Only direct buffers with a size class capacity are pooled, other
+        // buffers are left to the garbage collector.
+        //
+        final int capacity = buf.capacity();
+        if(!buf.isDirect() || capacity > _maxBufferSize || capacity < MinBufferSize ||
+           (capacity & (capacity - 1)) != 0 || _destroyed)
+        {
+            return;
+        }
+
+        //
+        // The buffers of the thread caches count against the maximum size,
+        // the buffer is discarded if it's reached.
+        //
+        if(_retainedSize.addAndGet(capacity) > _maxSize)
+        {
+            _retainedSize.addAndGet(-capacity);
+            _discarded.incrementAndGet();
+            return;
+        }
+
+        final int sizeClass = sizeClass(capacity);
+        ThreadCache cache = _threadCaches.get();
+        if(cache == null || !cache.push(sizeClass, buf))
+        {
+            _depot[sizeClass].offer(buf);
+        }
+    }
+
+    public void destroy()
+    {
+        //
+        // The thread caches are dropped, their buffers are released by the
+        // garbage collector.
+        //
+        _destroyed = true;
+        _threadCaches.destroy();
+        for(java.util.concurrent.ConcurrentLinkedQueue<java.nio.ByteBuffer> q : _depot)
+        {
+            q.clear();
+        }
+        _retainedSize.set(0);
+    }
+
+    public BufferPoolMetrics getMetrics()
+    {
+        BufferPoolMetrics metrics = new BufferPoolMetrics();
+        metrics.id = "BufferPool";
+        metrics.hits = _hits.get();
+        metrics.misses = _misses.get();
+        metrics.discarded = _discarded.get();
+        metrics.retainedSize = _retainedSize.get();
+        metrics.total = metrics.hits + metrics.misses;
+        return metrics;
+    }
+
+    private static int sizeClass(int size)
+    {
+        if(size <= MinBufferSize)
+        {
+            return 0;
+        }
+        return 32 - Integer.numberOfLeadingZeros(size - 1) - MinBufferShift;
+    }
+
+    private static final class ThreadCache
+    {
+        ThreadCache(int sizeClasses, int size)
+        {
+            _buffers = new java.nio.ByteBuffer[sizeClasses][size];
+            _counts = new int[sizeClasses];
+        }
+
+        java.nio.ByteBuffer pop(int sizeClass)
+        {
+            int count = _counts[sizeClass];
+            if(count == 0)
+            {
+                return null;
+            }
+            java.nio.ByteBuffer buf = _buffers[sizeClass][--count];
+            _buffers[sizeClass][count] = null;
+            _counts[sizeClass] = count;
+            return buf;
+        }
+
+        boolean push(int sizeClass, java.nio.ByteBuffer buf)
+        {
+            int count = _counts[sizeClass];
+            if(count == _buffers[sizeClass].length)
+            {
+                return false;
+            }
+            _buffers[sizeClass][count] = buf;
+            _counts[sizeClass] = count + 1;
+            return true;
+        }
+
+        private final java.nio.ByteBuffer[][] _buffers;
+        private final int[] _counts;
+    }
+
+    private static final int MinBufferShift = 8;
+    private static final int MinBufferSize = 1 << MinBufferShift;
+
+    private final long _maxSize;
+    private final int _maxBufferSize;
+    private final java.util.concurrent.ConcurrentLinkedQueue<java.nio.ByteBuffer>[] _depot;
+    private final ThreadCaches<ThreadCache> _threadCaches;
+    private volatile boolean _destroyed = false;
+
+    private final java.util.concurrent.atomic.AtomicLong _retainedSize = new java.util.concurrent.atomic.AtomicLong();
+    private final java.util.concurrent.atomic.AtomicLong _hits = new java.util.concurrent.atomic.AtomicLong();
+    private final java.util.concurrent.atomic.AtomicLong _misses = new java.util.concurrent.atomic.AtomicLong();
+    private final java.util.concurrent.atomic.AtomicLong _discarded = new java.util.concurrent.atomic.AtomicLong();
+}
@@ -0,0 +1,52 @@
+// **********************************************************************
+//
+// Copyright (c) 2003-2016 ZeroC, Inc. All rights reserved.
+//
+// This copy of Ice is licensed to you under the terms described in the
+// ICE_LICENSE file included in this distribution.
+//
+// **********************************************************************
+
+package IceInternal;
+
+/**
+ * Provides information on the message buffer pool, see the
+ * Ice.BufferPool.MaxSize property. The <code>BufferPool</code> map of the
+ * metrics admin facet only provides the <code>id</code> and
+ * <code>total</code> fields.
+ **/
+public class BufferPoolMetrics
+{
+    /**
+     * The name of the pool.
+     **/
+    public String id;
+
+    /**
+     * The number of buffers requested from the pool.
+     **/
+    public long total;
+
+    /**
+     * The number of buffers which were allocated from the pool.
+     **/
+    public long hits;
+
+    /**
+     * The number of buffers which couldn't be allocated from the pool and
+     * were allocated from the heap instead.
+     **/
+    public long misses;
+
+    /**
+     * The number of buffers which were released to the garbage collector
+     * because the pool was full.
+     **/
+    public long discarded;
+
+    /**
+     * The total size in bytes of the buffers retained by the pool,
+     * including the buffers cached by each thread.
+     **/
+    public long retainedSize;
+}
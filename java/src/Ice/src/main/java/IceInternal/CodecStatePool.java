@@ -0,0 +1,102 @@
+// **********************************************************************
+//
+// Copyright (c) 2003-2016 ZeroC, Inc. All rights reserved.
+//
+// This copy of Ice is licensed to you under the terms described in the
+// ICE_LICENSE file included in this distribution.
+//
+// **********************************************************************
+
+package IceInternal;
+
+//
+// A bounded pool of the state of a compression codec, such as the zlib
+// streams of the deflate codec. The pool is owned by the codec of a
+// communicator, the state is shared by all the threads which compress or
+// uncompress messages rather than cached by each thread: a virtual thread
+// usually runs a single dispatch and would otherwise allocate its own
+// state for each compressed reply.
+//
+// State released while the pool is full or once the pool is destroyed is
+// ended. Destroying the pool ends the pooled state.
+//
+abstract class CodecStatePool<T>
+{
+    CodecStatePool()
+    {
+        _maxSize = Runtime.getRuntime().availableProcessors() * 2;
+    }
+
+    //
+    // Creates a new state.
+    //
+    protected abstract T create();
+
+    //
+    // Releases the resources of a state which is no longer pooled.
+    //
+    protected void end(T state)
+    {
+    }
+
+    //
+    // Returns a pooled state, or a new state if the pool is empty.
+    //
+    final T
+    acquire()
+    {
+        T state = _states.poll();
+        if(state == null)
+        {
+            return create();
+        }
+        _size.decrementAndGet();
+        return state;
+    }
+
+    final void
+    release(T state)
+    {
+        if(_destroyed || _size.incrementAndGet() > _maxSize)
+        {
+            if(!_destroyed)
+            {
+                _size.decrementAndGet();
+            }
+            end(state);
+            return;
+        }
+
+        _states.offer(state);
+        if(_destroyed)
+        {
+            clear(); // Destroyed while the state was released.
+        }
+    }
+
+    //
+    // Only for use by CompressionCodecs.destroy().
+    //
+    final void
+    destroy()
+    {
+        _destroyed = true;
+        clear();
+    }
+
+    private void
+    clear()
+    {
+        T state;
+        while((state = _states.poll()) != null)
+        {
+            end(state);
+        }
+    }
+
+    private final int _maxSize;
+    private final java.util.concurrent.ConcurrentLinkedQueue<T> _states =
+        new java.util.concurrent.ConcurrentLinkedQueue<T>();
+    private final java.util.concurrent.atomic.AtomicInteger _size = new java.util.concurrent.atomic.AtomicInteger();
+    private volatile boolean _destroyed = false;
+}
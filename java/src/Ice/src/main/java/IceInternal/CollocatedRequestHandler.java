@@ -44,6 +44,16 @@ public class CollocatedRequestHandler implements RequestHandler, ResponseHandler
         _adapter = (Ice.ObjectAdapterI)adapter;
         _response = _reference.getMode() == Reference.ModeTwoway;
 
+        //
+        // Direct invocations are dispatched by the calling thread, they are
+        // only enabled if a synchronous twoway invocation would also be
+        // dispatched by the calling thread. They aren't observed, so they're
+        // also disabled if the communicator has an observer.
+        //
+        Instance instance = _reference.getInstance();
+        _direct = instance.collocationDirect() && _response && !_dispatcher && !instance.queueRequests() &&
+                  _reference.getInvocationTimeout() <= 0 && instance.initializationData().observer == null;
+
         _logger = _reference.getInstance().initializationData().logger; // Cached for better performance.
         _traceLevels = _reference.getInstance().traceLevels(); // Cached for better performance.
         _requestId = 0;
@@ -189,6 +199,16 @@ public class CollocatedRequestHandler implements RequestHandler, ResponseHandler
         return null;
     }
 
+    //
+    // Returns the object adapter if synchronous invocations can call the
+    // servant directly without marshaling, null otherwise.
+    //
+    public Ice.ObjectAdapterI
+    getDirectAdapter()
+    {
+        return _direct ? _adapter : null;
+    }
+
     int invokeAsyncRequest(OutgoingAsyncBase outAsync, int batchRequestNum, boolean sync)
     {
         //
@@ -300,6 +320,8 @@ public class CollocatedRequestHandler implements RequestHandler, ResponseHandler
 
         int invokeNum = batchRequestNum > 0 ? batchRequestNum : 1;
         ServantManager servantManager = _adapter.getServantManager();
+        ObjectCache<Incoming> incomingCache = _reference.getInstance().incomingCache();
+        Incoming in = null;
         try
         {
             while(invokeNum > 0)
@@ -320,10 +342,24 @@ public class CollocatedRequestHandler implements RequestHandler, ResponseHandler
                     break;
                 }
 
-                Incoming in = new Incoming(_reference.getInstance(), this, null, _adapter, _response, (byte)0,
-                                           requestId);
+                in = incomingCache != null ? incomingCache.acquire() : null;
+                if(in == null)
+                {
+                    in = new Incoming(_reference.getInstance(), this, null, _adapter, _response, (byte)0, requestId);
+                }
+                else
+                {
+                    in.reset(_reference.getInstance(), this, null, _adapter, _response, (byte)0, requestId);
+                }
                 in.invoke(servantManager, is);
                 --invokeNum;
+
+                if(incomingCache != null)
+                {
+                    in.reclaim();
+                    incomingCache.release(in);
+                }
+                in = null;
             }
         }
         catch(Ice.LocalException ex)
@@ -370,6 +406,14 @@ public class CollocatedRequestHandler implements RequestHandler, ResponseHandler
                 throw ex;
             }
         }
+        finally
+        {
+            if(in != null && incomingCache != null)
+            {
+                in.reclaim();
+                incomingCache.release(in);
+            }
+        }
 
         _adapter.decDirectCount();
     }
@@ -419,6 +463,7 @@ public class CollocatedRequestHandler implements RequestHandler, ResponseHandler
     private final Reference _reference;
     private final boolean _dispatcher;
     private final boolean _response;
+    private final boolean _direct;
     private final Ice.ObjectAdapterI _adapter;
     private final Ice.Logger _logger;
     private final TraceLevels _traceLevels;
@@ -13,63 +13,286 @@ import IceMX.*;
 
 public class CommunicatorObserverI implements Ice.Instrumentation.CommunicatorObserver
 {
+    //
+    // The helpers of the connection, dispatch and remote invocation
+    // observers provide the endpoint and connection attributes with these
+    // interfaces.
+    //
+    interface EndpointAttributes
+    {
+        Object getEndpoint();
+        Ice.EndpointInfo getEndpointInfo();
+    }
+
+    interface ConnectionAttributes extends EndpointAttributes
+    {
+        Ice.ConnectionInfo getConnectionInfo();
+    }
+
+    static private abstract class EndpointInfoResolver<I extends Ice.EndpointInfo>
+        extends MetricsHelper.Resolver<EndpointAttributes>
+    {
+        EndpointInfoResolver(String name, Class<I> cl)
+        {
+            _name = name;
+            _class = cl;
+        }
+
+        abstract Object getAttribute(I info);
+
+        @Override
+        public Object
+        get(EndpointAttributes helper)
+        {
+            Ice.EndpointInfo info = helper.getEndpointInfo();
+            if(!_class.isInstance(info))
+            {
+                throw new IllegalArgumentException(_name);
+            }
+            return getAttribute(_class.cast(info));
+        }
+
+        final private String _name;
+        final private Class<I> _class;
+    }
+
+    static private abstract class ConnectionInfoResolver<I extends Ice.ConnectionInfo>
+        extends MetricsHelper.Resolver<ConnectionAttributes>
+    {
+        ConnectionInfoResolver(String name, Class<I> cl)
+        {
+            _name = name;
+            _class = cl;
+        }
+
+        abstract Object getAttribute(I info);
+
+        @Override
+        public Object
+        get(ConnectionAttributes helper)
+        {
+            Ice.ConnectionInfo info = helper.getConnectionInfo();
+            if(!_class.isInstance(info))
+            {
+                throw new IllegalArgumentException(_name);
+            }
+            return getAttribute(_class.cast(info));
+        }
+
+        final private String _name;
+        final private Class<I> _class;
+    }
+
     static void
-    addEndpointAttributes(MetricsHelper.AttributeResolver r, Class<?> cl)
-        throws Exception
+    addEndpointAttributes(MetricsHelper.AttributeResolver r)
     {
-        r.add("endpoint", cl.getDeclaredMethod("getEndpoint"));
-
-        Class<?> cli = Ice.EndpointInfo.class;
-        r.add("endpointType", cl.getDeclaredMethod("getEndpointInfo"), cli.getDeclaredMethod("type"));
-        r.add("endpointIsDatagram", cl.getDeclaredMethod("getEndpointInfo"), cli.getDeclaredMethod("datagram"));
-        r.add("endpointIsSecure", cl.getDeclaredMethod("getEndpointInfo"), cli.getDeclaredMethod("secure"));
-        r.add("endpointTimeout", cl.getDeclaredMethod("getEndpointInfo"), cli.getDeclaredField("timeout"));
-        r.add("endpointCompress", cl.getDeclaredMethod("getEndpointInfo"), cli.getDeclaredField("compress"));
-
-        cli = Ice.IPEndpointInfo.class;
-        r.add("endpointHost", cl.getDeclaredMethod("getEndpointInfo"), cli.getDeclaredField("host"));
-        r.add("endpointPort", cl.getDeclaredMethod("getEndpointInfo"), cli.getDeclaredField("port"));
+        r.add("endpoint", new MetricsHelper.Resolver<EndpointAttributes>()
+            {
+                @Override
+                public Object
+                get(EndpointAttributes helper)
+                {
+                    return helper.getEndpoint();
+                }
+            });
+
+        r.add("endpointType", new EndpointInfoResolver<Ice.EndpointInfo>("endpointType", Ice.EndpointInfo.class)
+            {
+                @Override
+                Object
+                getAttribute(Ice.EndpointInfo info)
+                {
+                    return info.type();
+                }
+            });
+        r.add("endpointIsDatagram", new EndpointInfoResolver<Ice.EndpointInfo>("endpointIsDatagram",
+                                                                                Ice.EndpointInfo.class)
+            {
+                @Override
+                Object
+                getAttribute(Ice.EndpointInfo info)
+                {
+                    return info.datagram();
+                }
+            });
+        r.add("endpointIsSecure", new EndpointInfoResolver<Ice.EndpointInfo>("endpointIsSecure",
+                                                                              Ice.EndpointInfo.class)
+            {
+                @Override
+                Object
+                getAttribute(Ice.EndpointInfo info)
+                {
+                    return info.secure();
+                }
+            });
+        r.add("endpointTimeout", new EndpointInfoResolver<Ice.EndpointInfo>("endpointTimeout", Ice.EndpointInfo.class)
+            {
+                @Override
+                Object
+                getAttribute(Ice.EndpointInfo info)
+                {
+                    return info.timeout;
+                }
+            });
+        r.add("endpointCompress", new EndpointInfoResolver<Ice.EndpointInfo>("endpointCompress",
+                                                                              Ice.EndpointInfo.class)
+            {
+                @Override
+                Object
+                getAttribute(Ice.EndpointInfo info)
+                {
+                    return info.compress;
+                }
+            });
+
+        r.add("endpointHost", new EndpointInfoResolver<Ice.IPEndpointInfo>("endpointHost", Ice.IPEndpointInfo.class)
+            {
+                @Override
+                Object
+                getAttribute(Ice.IPEndpointInfo info)
+                {
+                    return info.host;
+                }
+            });
+        r.add("endpointPort", new EndpointInfoResolver<Ice.IPEndpointInfo>("endpointPort", Ice.IPEndpointInfo.class)
+            {
+                @Override
+                Object
+                getAttribute(Ice.IPEndpointInfo info)
+                {
+                    return info.port;
+                }
+            });
     }
 
     static void
-    addConnectionAttributes(MetricsHelper.AttributeResolver r, Class<?> cl)
-        throws Exception
+    addConnectionAttributes(MetricsHelper.AttributeResolver r)
     {
-        Class<?> cli = Ice.ConnectionInfo.class;
-        r.add("incoming", cl.getDeclaredMethod("getConnectionInfo"), cli.getDeclaredField("incoming"));
-        r.add("adapterName", cl.getDeclaredMethod("getConnectionInfo"), cli.getDeclaredField("adapterName"));
-        r.add("connectionId", cl.getDeclaredMethod("getConnectionInfo"), cli.getDeclaredField("connectionId"));
-
-        cli = Ice.IPConnectionInfo.class;
-        r.add("localHost", cl.getDeclaredMethod("getConnectionInfo"), cli.getDeclaredField("localAddress"));
-        r.add("localPort", cl.getDeclaredMethod("getConnectionInfo"), cli.getDeclaredField("localPort"));
-        r.add("remoteHost", cl.getDeclaredMethod("getConnectionInfo"), cli.getDeclaredField("remoteAddress"));
-        r.add("remotePort", cl.getDeclaredMethod("getConnectionInfo"), cli.getDeclaredField("remotePort"));
-
-        cli = Ice.UDPConnectionInfo.class;
-        r.add("mcastHost", cl.getDeclaredMethod("getConnectionInfo"), cli.getDeclaredField("mcastAddress"));
-        r.add("mcastPort", cl.getDeclaredMethod("getConnectionInfo"), cli.getDeclaredField("mcastPort"));
-
-        addEndpointAttributes(r, cl);
+        r.add("incoming", new ConnectionInfoResolver<Ice.ConnectionInfo>("incoming", Ice.ConnectionInfo.class)
+            {
+                @Override
+                Object
+                getAttribute(Ice.ConnectionInfo info)
+                {
+                    return info.incoming;
+                }
+            });
+        r.add("adapterName", new ConnectionInfoResolver<Ice.ConnectionInfo>("adapterName", Ice.ConnectionInfo.class)
+            {
+                @Override
+                Object
+                getAttribute(Ice.ConnectionInfo info)
+                {
+                    return info.adapterName;
+                }
+            });
+        r.add("connectionId", new ConnectionInfoResolver<Ice.ConnectionInfo>("connectionId",
+                                                                              Ice.ConnectionInfo.class)
+            {
+                @Override
+                Object
+                getAttribute(Ice.ConnectionInfo info)
+                {
+                    return info.connectionId;
+                }
+            });
+
+        r.add("localHost", new ConnectionInfoResolver<Ice.IPConnectionInfo>("localHost", Ice.IPConnectionInfo.class)
+            {
+                @Override
+                Object
+                getAttribute(Ice.IPConnectionInfo info)
+                {
+                    return info.localAddress;
+                }
+            });
+        r.add("localPort", new ConnectionInfoResolver<Ice.IPConnectionInfo>("localPort", Ice.IPConnectionInfo.class)
+            {
+                @Override
+                Object
+                getAttribute(Ice.IPConnectionInfo info)
+                {
+                    return info.localPort;
+                }
+            });
+        r.add("remoteHost", new ConnectionInfoResolver<Ice.IPConnectionInfo>("remoteHost",
+                                                                              Ice.IPConnectionInfo.class)
+            {
+                @Override
+                Object
+                getAttribute(Ice.IPConnectionInfo info)
+                {
+                    return info.remoteAddress;
+                }
+            });
+        r.add("remotePort", new ConnectionInfoResolver<Ice.IPConnectionInfo>("remotePort",
+                                                                              Ice.IPConnectionInfo.class)
+            {
+                @Override
+                Object
+                getAttribute(Ice.IPConnectionInfo info)
+                {
+                    return info.remotePort;
+                }
+            });
+
+        r.add("mcastHost", new ConnectionInfoResolver<Ice.UDPConnectionInfo>("mcastHost",
+                                                                             Ice.UDPConnectionInfo.class)
+            {
+                @Override
+                Object
+                getAttribute(Ice.UDPConnectionInfo info)
+                {
+                    return info.mcastAddress;
+                }
+            });
+        r.add("mcastPort", new ConnectionInfoResolver<Ice.UDPConnectionInfo>("mcastPort",
+                                                                             Ice.UDPConnectionInfo.class)
+            {
+                @Override
+                Object
+                getAttribute(Ice.UDPConnectionInfo info)
+                {
+                    return info.mcastPort;
+                }
+            });
+
+        addEndpointAttributes(r);
     }
 
-    static public class ConnectionHelper extends MetricsHelper<ConnectionMetrics>
+    static public class ConnectionHelper extends MetricsHelper<ConnectionMetrics> implements ConnectionAttributes
     {
         static private AttributeResolver _attributes = new AttributeResolver()
             {
                 {
-                    try
-                    {
-                        add("parent", ConnectionHelper.class.getDeclaredMethod("getParent"));
-                        add("id", ConnectionHelper.class.getDeclaredMethod("getId"));
-                        add("state", ConnectionHelper.class.getDeclaredMethod("getState"));
-                        addConnectionAttributes(this, ConnectionHelper.class);
-                    }
-                    catch(Exception ex)
-                    {
-                        ex.printStackTrace();
-                        assert(false);
-                    }
+                    add("parent", new Resolver<ConnectionHelper>()
+                        {
+                            @Override
+                            public Object
+                            get(ConnectionHelper helper)
+                            {
+                                return helper.getParent();
+                            }
+                        });
+                    add("id", new Resolver<ConnectionHelper>()
+                        {
+                            @Override
+                            public Object
+                            get(ConnectionHelper helper)
+                            {
+                                return helper.getId();
+                            }
+                        });
+                    add("state", new Resolver<ConnectionHelper>()
+                        {
+                            @Override
+                            public Object
+                            get(ConnectionHelper helper)
+                            {
+                                return helper.getState();
+                            }
+                        });
+                    addConnectionAttributes(this);
                 }
             };
 
@@ -170,31 +393,77 @@ public class CommunicatorObserverI implements Ice.Instrumentation.CommunicatorOb
         private Ice.EndpointInfo _endpointInfo;
     }
 
-    static public final class DispatchHelper extends MetricsHelper<DispatchMetrics>
+    static public final class DispatchHelper extends MetricsHelper<DispatchMetrics> implements ConnectionAttributes
     {
         static private final AttributeResolver _attributes = new AttributeResolver()
             {
                 {
-                    try
-                    {
-                        Class<?> cl = DispatchHelper.class;
-                        add("parent", cl.getDeclaredMethod("getParent"));
-                        add("id", cl.getDeclaredMethod("getId"));
-
-                        addConnectionAttributes(this, cl);
-
-                        Class<?> clc = Ice.Current.class;
-                        add("operation", cl.getDeclaredMethod("getCurrent"), clc.getDeclaredField("operation"));
-                        add("identity", cl.getDeclaredMethod("getIdentity"));
-                        add("facet", cl.getDeclaredMethod("getCurrent"), clc.getDeclaredField("facet"));
-                        add("requestId", cl.getDeclaredMethod("getCurrent"), clc.getDeclaredField("requestId"));
-                        add("mode", cl.getDeclaredMethod("getMode"));
-                    }
-                    catch(Exception ex)
-                    {
-                        ex.printStackTrace();
-                        assert(false);
-                    }
+                    add("parent", new Resolver<DispatchHelper>()
+                        {
+                            @Override
+                            public Object
+                            get(DispatchHelper helper)
+                            {
+                                return helper.getParent();
+                            }
+                        });
+                    add("id", new Resolver<DispatchHelper>()
+                        {
+                            @Override
+                            public Object
+                            get(DispatchHelper helper)
+                            {
+                                return helper.getId();
+                            }
+                        });
+
+                    addConnectionAttributes(this);
+
+                    add("operation", new Resolver<DispatchHelper>()
+                        {
+                            @Override
+                            public Object
+                            get(DispatchHelper helper)
+                            {
+                                return helper.getCurrent().operation;
+                            }
+                        });
+                    add("identity", new Resolver<DispatchHelper>()
+                        {
+                            @Override
+                            public Object
+                            get(DispatchHelper helper)
+                            {
+                                return helper.getIdentity();
+                            }
+                        });
+                    add("facet", new Resolver<DispatchHelper>()
+                        {
+                            @Override
+                            public Object
+                            get(DispatchHelper helper)
+                            {
+                                return helper.getCurrent().facet;
+                            }
+                        });
+                    add("requestId", new Resolver<DispatchHelper>()
+                        {
+                            @Override
+                            public Object
+                            get(DispatchHelper helper)
+                            {
+                                return helper.getCurrent().requestId;
+                            }
+                        });
+                    add("mode", new Resolver<DispatchHelper>()
+                        {
+                            @Override
+                            public Object
+                            get(DispatchHelper helper)
+                            {
+                                return helper.getMode();
+                            }
+                        });
                 }
             };
 
@@ -320,26 +589,85 @@ public class CommunicatorObserverI implements Ice.Instrumentation.CommunicatorOb
         static private final AttributeResolver _attributes = new AttributeResolver()
             {
                 {
-                    try
-                    {
-                        Class<?> cl = InvocationHelper.class;
-                        add("parent", cl.getDeclaredMethod("getParent"));
-                        add("id", cl.getDeclaredMethod("getId"));
-
-                        add("operation", cl.getDeclaredMethod("getOperation"));
-                        add("identity", cl.getDeclaredMethod("getIdentity"));
-
-                        Class<?> cli = Ice.ObjectPrx.class;
-                        add("facet", cl.getDeclaredMethod("getProxy"), cli.getDeclaredMethod("ice_getFacet"));
-                        add("encoding", cl.getDeclaredMethod("getEncodingVersion"));
-                        add("mode", cl.getDeclaredMethod("getMode"));
-                        add("proxy", cl.getDeclaredMethod("getProxy"));
-                    }
-                    catch(Exception ex)
-                    {
-                        ex.printStackTrace();
-                        assert(false);
-                    }
+                    add("parent", new Resolver<InvocationHelper>()
+                        {
+                            @Override
+                            public Object
+                            get(InvocationHelper helper)
+                            {
+                                return helper.getParent();
+                            }
+                        });
+                    add("id", new Resolver<InvocationHelper>()
+                        {
+                            @Override
+                            public Object
+                            get(InvocationHelper helper)
+                            {
+                                return helper.getId();
+                            }
+                        });
+
+                    add("operation", new Resolver<InvocationHelper>()
+                        {
+                            @Override
+                            public Object
+                            get(InvocationHelper helper)
+                            {
+                                return helper.getOperation();
+                            }
+                        });
+                    add("identity", new Resolver<InvocationHelper>()
+                        {
+                            @Override
+                            public Object
+                            get(InvocationHelper helper)
+                            {
+                                return helper.getIdentity();
+                            }
+                        });
+
+                    add("facet", new Resolver<InvocationHelper>()
+                        {
+                            @Override
+                            public Object
+                            get(InvocationHelper helper)
+                            {
+                                Ice.ObjectPrx proxy = helper.getProxy();
+                                if(proxy == null)
+                                {
+                                    throw new IllegalArgumentException("facet");
+                                }
+                                return proxy.ice_getFacet();
+                            }
+                        });
+                    add("encoding", new Resolver<InvocationHelper>()
+                        {
+                            @Override
+                            public Object
+                            get(InvocationHelper helper)
+                            {
+                                return helper.getEncodingVersion();
+                            }
+                        });
+                    add("mode", new Resolver<InvocationHelper>()
+                        {
+                            @Override
+                            public Object
+                            get(InvocationHelper helper)
+                            {
+                                return helper.getMode();
+                            }
+                        });
+                    add("proxy", new Resolver<InvocationHelper>()
+                        {
+                            @Override
+                            public Object
+                            get(InvocationHelper helper)
+                            {
+                                return helper.getProxy();
+                            }
+                        });
                 }
             };
 
@@ -410,7 +738,8 @@ public class CommunicatorObserverI implements Ice.Instrumentation.CommunicatorOb
                     StringBuilder os = new StringBuilder();
                     try
                     {
-                        os.append(_proxy.ice_endpoints(emptyEndpoints)).append(" [").append(_operation).append(']');
+                        os.append(((Ice.ObjectPrxHelperBase)_proxy).__reference().toStringWithoutEndpoints());
+                        os.append(" [").append(_operation).append(']');
                     }
                     catch(Exception ex)
                     {
@@ -469,8 +798,6 @@ public class CommunicatorObserverI implements Ice.Instrumentation.CommunicatorOb
         final private String _operation;
         final private java.util.Map<String, String> _context;
         private String _id;
-
-        static final private Ice.Endpoint[] emptyEndpoints = new Ice.Endpoint[0];
     }
 
     static public final class ThreadHelper extends MetricsHelper<ThreadMetrics>
@@ -478,15 +805,24 @@ public class CommunicatorObserverI implements Ice.Instrumentation.CommunicatorOb
         static private final AttributeResolver _attributes = new AttributeResolver()
             {
                 {
-                    try
-                    {
-                        add("parent", ThreadHelper.class.getDeclaredField("_parent"));
-                        add("id", ThreadHelper.class.getDeclaredField("_id"));
-                    }
-                    catch(Exception ex)
-                    {
-                        assert(false);
-                    }
+                    add("parent", new Resolver<ThreadHelper>()
+                        {
+                            @Override
+                            public Object
+                            get(ThreadHelper helper)
+                            {
+                                return helper._parent;
+                            }
+                        });
+                    add("id", new Resolver<ThreadHelper>()
+                        {
+                            @Override
+                            public Object
+                            get(ThreadHelper helper)
+                            {
+                                return helper._id;
+                            }
+                        });
                 }
             };
 
@@ -523,22 +859,30 @@ public class CommunicatorObserverI implements Ice.Instrumentation.CommunicatorOb
         final private Ice.Instrumentation.ThreadState _state;
     }
 
-    static public final class EndpointHelper extends MetricsHelper<Metrics>
+    static public final class EndpointHelper extends MetricsHelper<Metrics> implements EndpointAttributes
     {
         static private final AttributeResolver _attributes = new AttributeResolver()
             {
                 {
-                    try
-                    {
-                        add("parent", EndpointHelper.class.getDeclaredMethod("getParent"));
-                        add("id", EndpointHelper.class.getDeclaredMethod("getId"));
-                        addEndpointAttributes(this, EndpointHelper.class);
-                    }
-                    catch(Exception ex)
-                    {
-                        ex.printStackTrace();
-                        assert(false);
-                    }
+                    add("parent", new Resolver<EndpointHelper>()
+                        {
+                            @Override
+                            public Object
+                            get(EndpointHelper helper)
+                            {
+                                return helper.getParent();
+                            }
+                        });
+                    add("id", new Resolver<EndpointHelper>()
+                        {
+                            @Override
+                            public Object
+                            get(EndpointHelper helper)
+                            {
+                                return helper.getId();
+                            }
+                        });
+                    addEndpointAttributes(this);
                 }
             };
 
@@ -0,0 +1,47 @@
+// **********************************************************************
+//
+// Copyright (c) 2003-2016 ZeroC, Inc. All rights reserved.
+//
+// This copy of Ice is licensed to you under the terms described in the
+// ICE_LICENSE file included in this distribution.
+//
+// **********************************************************************
+
+package IceInternal;
+
+//
+// A compression codec for protocol messages. Codecs are registered with
+// the communicator's CompressionCodecs and are identified on the wire by
+// the compression status byte of the messages they compress.
+//
+// A compressed message has the same header as the uncompressed message,
+// followed by the size of the uncompressed message (Int) and by the
+// compressed message body.
+//
+public interface CompressionCodec
+{
+    //
+    // The name of the codec, used by the Ice.Compression.Codecs property
+    // and by the Compression metrics map.
+    //
+    String name();
+
+    //
+    // The compression status of the messages compressed with this codec,
+    // between CompressionCodecs.bzip2Status and CompressionCodecs.maxStatus.
+    //
+    byte status();
+
+    //
+    // Compresses the body of the message in the given buffer. Returns null
+    // if the compressed message wouldn't be smaller than the uncompressed
+    // message.
+    //
+    Buffer compress(Buffer buf, int headerSize, int compressionLevel);
+
+    //
+    // Uncompresses the given compressed message. Raises CompressionException
+    // if the message is invalid.
+    //
+    Buffer uncompress(Buffer buf, int headerSize, int messageSizeMax);
+}
@@ -0,0 +1,361 @@
+// **********************************************************************
+//
+// Copyright (c) 2003-2016 ZeroC, Inc. All rights reserved.
+//
+// This copy of Ice is licensed to you under the terms described in the
+// ICE_LICENSE file included in this distribution.
+//
+// **********************************************************************
+
+package IceInternal;
+
+//
+// The compression codecs of a communicator.
+//
+// The compression status byte of the message header is 0 if the message
+// isn't compressed and the sender doesn't support compression, 1 if the
+// message isn't compressed and the sender supports compression, and 2 if
+// the message is compressed with bzip2. Compression statuses up to
+// maxStatus identify the codec of a compressed message.
+//
+// Connections negotiate the other codecs: an uncompressed message with
+// the supportedFlag bit set in its compression status advertises the codecs
+// which the sender can uncompress, one bit per codec. The server also
+// advertises its codecs with the validate connection message. Peers which
+// don't support the negotiation treat the advertisement like status 1 and
+// ignore it for validate connection messages, they only receive messages
+// compressed with bzip2.
+//
+public final class CompressionCodecs
+{
+    public static final byte bzip2Status = 2;
+    public static final byte deflateStatus = 3;
+    public static final byte lz4Status = 4;
+    public static final byte maxStatus = 8;
+
+    public static final int supportedFlag = 0x80;
+
+    CompressionCodecs(Ice.Properties properties)
+    {
+        _preferences = properties.getPropertyAsListWithDefault("Ice.Compression.Codecs",
+                                                               new String[] { "deflate", "lz4", "bzip2" });
+        add(new BZip2Codec());
+        add(new DeflateCodec());
+        add(new LZ4Codec());
+    }
+
+    //
+    // Registers a codec. The codec is used to compress messages if it's
+    // listed by the Ice.Compression.Codecs property.
+    //
+    public synchronized void
+    add(CompressionCodec codec)
+    {
+        final int status = codec.status();
+        if(status < bzip2Status || status > maxStatus)
+        {
+            throw new IllegalArgumentException("invalid compression status for codec `" + codec.name() + "'");
+        }
+
+        Entry[] entries = _entries.clone();
+        entries[status] = new Entry(codec);
+        java.util.List<Entry> preferred = new java.util.ArrayList<Entry>();
+        for(String name : _preferences)
+        {
+            for(Entry e : entries)
+            {
+                if(e != null && e.codec.name().equals(name) && !preferred.contains(e))
+                {
+                    preferred.add(e);
+                }
+            }
+        }
+        _entries = entries;
+        _preferred = preferred.toArray(new Entry[preferred.size()]);
+        _mask = -1;
+    }
+
+    //
+    // Returns the compression status of uncompressed messages sent to a
+    // peer with the given codecs, -1 if the peer's codecs are unknown.
+    //
+    public byte
+    status(int peerCodecs)
+    {
+        //
+        // Peers which don't support the negotiation compress with bzip2
+        // if the compression status isn't 0.
+        //
+        if(peerCodecs < 0 && !IceInternal.BZip2.supported())
+        {
+            return 0;
+        }
+        return (byte)(supportedFlag | mask());
+    }
+
+    //
+    // Returns the preferred codec to compress messages sent to a peer with
+    // the given codecs, -1 if the peer's codecs are unknown, or null if no
+    // codec is supported by both sides.
+    //
+    public CompressionCodec
+    select(int peerCodecs)
+    {
+        final int mask = peerCodecs < 0 ? bit(bzip2Status) & mask() : peerCodecs & mask();
+        for(Entry e : _preferred)
+        {
+            if((mask & bit(e.codec.status())) != 0)
+            {
+                return e.codec;
+            }
+        }
+        return null;
+    }
+
+    public Buffer
+    compress(CompressionCodec codec, Buffer buf, int headerSize, int compressionLevel)
+    {
+        final long start = System.nanoTime();
+        Buffer r = codec.compress(buf, headerSize, compressionLevel);
+        final long time = System.nanoTime() - start;
+
+        Entry e = _entries[codec.status()];
+        if(e != null && e.codec == codec)
+        {
+            if(r != null)
+            {
+                e.compressed.incrementAndGet();
+                e.compressOutputSize.addAndGet(r.size() - headerSize);
+            }
+            else
+            {
+                e.discarded.incrementAndGet();
+                e.compressOutputSize.addAndGet(buf.size() - headerSize);
+            }
+            e.compressInputSize.addAndGet(buf.size() - headerSize);
+            e.compressTime.addAndGet(time / 1000);
+        }
+        return r;
+    }
+
+    public Buffer
+    uncompress(byte status, Buffer buf, int headerSize, int messageSizeMax)
+    {
+        Entry e = status >= bzip2Status && status <= maxStatus ? _entries[status] : null;
+        if(e == null || (status == bzip2Status && !IceInternal.BZip2.supported()))
+        {
+            Ice.FeatureNotSupportedException ex = new Ice.FeatureNotSupportedException();
+            if(status == bzip2Status)
+            {
+                ex.unsupportedFeature = "Cannot uncompress compressed message: "
+                                        + "org.apache.tools.bzip2.CBZip2OutputStream was not found";
+            }
+            else
+            {
+                ex.unsupportedFeature = "Cannot uncompress compressed message: unknown compression status "
+                                        + (int)status;
+            }
+            throw ex;
+        }
+
+        final long start = System.nanoTime();
+        Buffer r = e.codec.uncompress(buf, headerSize, messageSizeMax);
+        final long time = System.nanoTime() - start;
+
+        e.uncompressed.incrementAndGet();
+        e.uncompressInputSize.addAndGet(buf.size() - headerSize);
+        e.uncompressOutputSize.addAndGet(r.size() - headerSize);
+        e.uncompressTime.addAndGet(time / 1000);
+        return r;
+    }
+
+    public CompressionMetrics[]
+    getCompressionMetrics()
+    {
+        java.util.List<CompressionMetrics> metrics = new java.util.ArrayList<CompressionMetrics>();
+        for(Entry e : _entries)
+        {
+            if(e != null)
+            {
+                metrics.add(e.getMetrics());
+            }
+        }
+        return metrics.toArray(new CompressionMetrics[metrics.size()]);
+    }
+
+    //
+    // Returns the metrics of the Compression map of the metrics admin facet.
+    //
+    IceMX.Metrics[]
+    getMetrics()
+    {
+        CompressionMetrics[] m = getCompressionMetrics();
+        IceMX.Metrics[] metrics = new IceMX.Metrics[m.length];
+        for(int i = 0; i < m.length; ++i)
+        {
+            metrics[i] = new IceMX.Metrics();
+            metrics[i].id = m[i].id;
+            metrics[i].total = m[i].total;
+        }
+        return metrics;
+    }
+
+    //
+    // Only for use by Instance.destroy(). Ends the zlib streams pooled by
+    // the deflate codec.
+    //
+    void
+    destroy()
+    {
+        for(Entry e : _entries)
+        {
+            if(e != null && e.codec instanceof DeflateCodec)
+            {
+                ((DeflateCodec)e.codec).destroy();
+            }
+        }
+    }
+
+    //
+    // Returns the bit of the given compression status in the codecs mask.
+    //
+    public static int
+    bit(byte status)
+    {
+        return 1 << (status - bzip2Status);
+    }
+
+    //
+    // Reads and checks the size of the uncompressed message of a compressed
+    // message.
+    //
+    static int
+    readUncompressedSize(Buffer buf, int headerSize, int messageSizeMax)
+    {
+        if(buf.size() < headerSize + 4)
+        {
+            throw new Ice.IllegalMessageSizeException();
+        }
+        final int uncompressedSize = buf.b.getInt(headerSize);
+        if(uncompressedSize <= headerSize)
+        {
+            throw new Ice.IllegalMessageSizeException();
+        }
+        if(uncompressedSize > messageSizeMax)
+        {
+            IceInternal.Ex.throwMemoryLimitException(uncompressedSize, messageSizeMax);
+        }
+        return uncompressedSize;
+    }
+
+    //
+    // Copies the header of the uncompressed message to the compressed message
+    // and adds the size of the uncompressed message.
+    //
+    static void
+    writeHeader(Buffer uncompressed, Buffer compressed, int headerSize)
+    {
+        for(int i = 0; i < headerSize; ++i)
+        {
+            compressed.b.put(i, uncompressed.b.get(i));
+        }
+        compressed.b.putInt(headerSize, uncompressed.size());
+    }
+
+    private int
+    mask()
+    {
+        int mask = _mask;
+        if(mask < 0)
+        {
+            //
+            // The bzip2 support isn't checked until it's needed.
+            //
+            mask = 0;
+            for(Entry e : _entries)
+            {
+                if(e != null && (e.codec.status() != bzip2Status || IceInternal.BZip2.supported()))
+                {
+                    mask |= bit(e.codec.status());
+                }
+            }
+            _mask = mask;
+        }
+        return mask;
+    }
+
+    private static final class Entry
+    {
+        Entry(CompressionCodec codec)
+        {
+            this.codec = codec;
+        }
+
+        CompressionMetrics
+        getMetrics()
+        {
+            CompressionMetrics metrics = new CompressionMetrics();
+            metrics.id = codec.name();
+            metrics.compressed = compressed.get();
+            metrics.discarded = discarded.get();
+            metrics.uncompressed = uncompressed.get();
+            metrics.compressInputSize = compressInputSize.get();
+            metrics.compressOutputSize = compressOutputSize.get();
+            metrics.compressTime = compressTime.get();
+            metrics.uncompressInputSize = uncompressInputSize.get();
+            metrics.uncompressOutputSize = uncompressOutputSize.get();
+            metrics.uncompressTime = uncompressTime.get();
+            metrics.total = metrics.compressed + metrics.discarded + metrics.uncompressed;
+            return metrics;
+        }
+
+        final CompressionCodec codec;
+        final java.util.concurrent.atomic.AtomicLong compressed = new java.util.concurrent.atomic.AtomicLong();
+        final java.util.concurrent.atomic.AtomicLong discarded = new java.util.concurrent.atomic.AtomicLong();
+        final java.util.concurrent.atomic.AtomicLong uncompressed = new java.util.concurrent.atomic.AtomicLong();
+        final java.util.concurrent.atomic.AtomicLong compressInputSize = new java.util.concurrent.atomic.AtomicLong();
+        final java.util.concurrent.atomic.AtomicLong compressOutputSize = new java.util.concurrent.atomic.AtomicLong();
+        final java.util.concurrent.atomic.AtomicLong compressTime = new java.util.concurrent.atomic.AtomicLong();
+        final java.util.concurrent.atomic.AtomicLong uncompressInputSize =
+            new java.util.concurrent.atomic.AtomicLong();
+        final java.util.concurrent.atomic.AtomicLong uncompressOutputSize =
+            new java.util.concurrent.atomic.AtomicLong();
+        final java.util.concurrent.atomic.AtomicLong uncompressTime = new java.util.concurrent.atomic.AtomicLong();
+    }
+
+    private static final class BZip2Codec implements CompressionCodec
+    {
+        @Override
+        public String
+        name()
+        {
+            return "bzip2";
+        }
+
+        @Override
+        public byte
+        status()
+        {
+            return bzip2Status;
+        }
+
+        @Override
+        public Buffer
+        compress(Buffer buf, int headerSize, int compressionLevel)
+        {
+            return IceInternal.BZip2.compress(buf, headerSize, compressionLevel);
+        }
+
+        @Override
+        public Buffer
+        uncompress(Buffer buf, int headerSize, int messageSizeMax)
+        {
+            return IceInternal.BZip2.uncompress(buf, headerSize, messageSizeMax);
+        }
+    }
+
+    private final String[] _preferences;
+    private volatile Entry[] _entries = new Entry[maxStatus + 1];
+    private volatile Entry[] _preferred = new Entry[0];
+    private volatile int _mask = -1;
+}
@@ -0,0 +1,78 @@
+// **********************************************************************
+//
+// Copyright (c) 2003-2016 ZeroC, Inc. All rights reserved.
+//
+// This copy of Ice is licensed to you under the terms described in the
+// ICE_LICENSE file included in this distribution.
+//
+// **********************************************************************
+
+package IceInternal;
+
+/**
+ * Provides information on a protocol compression codec, see the
+ * Ice.Compression.Codecs property. The <code>Compression</code> map of
+ * the metrics admin facet only provides the <code>id</code> and
+ * <code>total</code> fields.
+ **/
+public class CompressionMetrics
+{
+    /**
+     * The name of the codec.
+     **/
+    public String id;
+
+    /**
+     * The number of messages given to the codec.
+     **/
+    public long total;
+
+    /**
+     * The number of messages compressed with the codec.
+     **/
+    public long compressed;
+
+    /**
+     * The number of messages which were sent uncompressed because the
+     * codec didn't reduce their size.
+     **/
+    public long discarded;
+
+    /**
+     * The number of messages uncompressed with the codec.
+     **/
+    public long uncompressed;
+
+    /**
+     * The size in bytes of the message bodies given to the codec for
+     * compression.
+     **/
+    public long compressInputSize;
+
+    /**
+     * The size in bytes of the message bodies sent after compression,
+     * including the messages which were sent uncompressed.
+     **/
+    public long compressOutputSize;
+
+    /**
+     * The time in microseconds spent compressing messages.
+     **/
+    public long compressTime;
+
+    /**
+     * The size in bytes of the compressed message bodies received.
+     **/
+    public long uncompressInputSize;
+
+    /**
+     * The size in bytes of the received message bodies after
+     * uncompression.
+     **/
+    public long uncompressOutputSize;
+
+    /**
+     * The time in microseconds spent uncompressing messages.
+     **/
+    public long uncompressTime;
+}
@@ -0,0 +1,150 @@
+// **********************************************************************
+//
+// Copyright (c) 2003-2016 ZeroC, Inc. All rights reserved.
+//
+// This copy of Ice is licensed to you under the terms described in the
+// ICE_LICENSE file included in this distribution.
+//
+// **********************************************************************
+
+package IceInternal;
+
+//
+// The adaptive compression policy of a connection, enabled with the
+// Ice.Compression.Adaptive property.
+//
+// The compression ratio is sampled for each payload class, a class is the
+// operation of a request and the power-of-two size class of the message.
+// Replies and batch requests are only classified by size. Compression is
+// skipped for the classes which don't shrink, they are probed again with
+// an exponential backoff in case the payloads change.
+//
+// The compression level starts with Ice.Compression.Level. It's raised if
+// messages are queued on the connection when they're compressed, the
+// connection is limited by the network and it's worth spending more CPU to
+// send less data. It's lowered if messages are sent without being queued.
+//
+// The policy is thread safe, requests are compressed by the threads which
+// send them without the connection locked.
+//
+public final class CompressionPolicy
+{
+    public CompressionPolicy(int level)
+    {
+        _level = level;
+    }
+
+    //
+    // Returns whether or not to compress a message of the given operation
+    // (null for replies and batch requests) and size.
+    //
+    public synchronized boolean
+    compress(String operation, int size)
+    {
+        Sample sample = sample(operation, size);
+        if(sample.skip == 0)
+        {
+            return true;
+        }
+        --sample.skip;
+        return false;
+    }
+
+    public synchronized int
+    level()
+    {
+        return _level;
+    }
+
+    //
+    // Records the result of the compression of a message, compressedSize
+    // is -1 if the compressed message was discarded. The backlog is the
+    // number of messages queued on the connection.
+    //
+    public synchronized void
+    compressed(String operation, int size, int compressedSize, int backlog)
+    {
+        Sample sample = sample(operation, size);
+        final float ratio = compressedSize < 0 ? 1.0f : (float)compressedSize / size;
+        if(sample.count == 0)
+        {
+            sample.ratio = ratio;
+        }
+        else
+        {
+            sample.ratio += (ratio - sample.ratio) * Weight;
+        }
+        ++sample.count;
+
+        if(sample.count >= MinSamples && sample.ratio > MaxRatio)
+        {
+            sample.skip = sample.backoff;
+            sample.backoff = Math.min(sample.backoff * 2, MaxBackoff);
+        }
+        else if(ratio <= MaxRatio)
+        {
+            sample.backoff = MinBackoff;
+        }
+
+        //
+        // Adjust the level with the average backlog of the last messages.
+        //
+        _backlog += backlog;
+        if(++_compressed == LevelWindow)
+        {
+            if(_backlog >= LevelWindow * 2 && _level < MaxLevel)
+            {
+                ++_level;
+            }
+            else if(_backlog < LevelWindow / 2 && _level > MinLevel)
+            {
+                --_level;
+            }
+            _compressed = 0;
+            _backlog = 0;
+        }
+    }
+
+    private Sample
+    sample(String operation, int size)
+    {
+        String key = operation != null ? operation : "";
+        Sample[] samples = _samples.get(key);
+        if(samples == null)
+        {
+            samples = new Sample[32];
+            _samples.put(key, samples);
+        }
+
+        final int sizeClass = 31 - Integer.numberOfLeadingZeros(size);
+        Sample sample = samples[sizeClass];
+        if(sample == null)
+        {
+            sample = new Sample();
+            samples[sizeClass] = sample;
+        }
+        return sample;
+    }
+
+    private static final class Sample
+    {
+        float ratio;
+        int count;
+        int skip;
+        int backoff = MinBackoff;
+    }
+
+    private static final float MaxRatio = 0.95f;
+    private static final float Weight = 0.25f;
+    private static final int MinSamples = 4;
+    private static final int MinBackoff = 16;
+    private static final int MaxBackoff = 1024;
+    private static final int LevelWindow = 16;
+    private static final int MinLevel = 1;
+    private static final int MaxLevel = 9;
+
+    private final java.util.Map<String, Sample[]> _samples = new java.util.HashMap<String, Sample[]>();
+    private int _level;
+    private int _compressed;
+    private int _backlog;
+}
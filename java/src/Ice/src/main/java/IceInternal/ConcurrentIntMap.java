@@ -0,0 +1,142 @@
+// **********************************************************************
+//
+// Copyright (c) 2003-2016 ZeroC, Inc. All rights reserved.
+//
+// This copy of Ice is licensed to you under the terms described in the
+// ICE_LICENSE file included in this distribution.
+//
+// **********************************************************************
+
+package IceInternal;
+
+//
+// A thread safe hash map with int keys. The map is split in lock stripes,
+// each stripe is an IntMap locked while it's accessed, so keys are not
+// boxed and threads which access different stripes don't contend.
+//
+// isEmpty() and values() are not atomic snapshots of the map if the map is
+// updated concurrently.
+//
+public final class ConcurrentIntMap<V>
+{
+    public
+    ConcurrentIntMap()
+    {
+        @SuppressWarnings("unchecked")
+        IntMap<V>[] stripes = (IntMap<V>[])new IntMap<?>[StripeCount];
+        for(int i = 0; i < stripes.length; ++i)
+        {
+            stripes[i] = new IntMap<V>();
+        }
+        _stripes = stripes;
+    }
+
+    public boolean
+    isEmpty()
+    {
+        for(IntMap<V> stripe : _stripes)
+        {
+            synchronized(stripe)
+            {
+                if(!stripe.isEmpty())
+                {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    public V
+    get(int key)
+    {
+        IntMap<V> stripe = stripe(key);
+        synchronized(stripe)
+        {
+            return stripe.get(key);
+        }
+    }
+
+    public V
+    put(int key, V value)
+    {
+        IntMap<V> stripe = stripe(key);
+        synchronized(stripe)
+        {
+            return stripe.put(key, value);
+        }
+    }
+
+    public V
+    remove(int key)
+    {
+        IntMap<V> stripe = stripe(key);
+        synchronized(stripe)
+        {
+            return stripe.remove(key);
+        }
+    }
+
+    //
+    // Removes the entry with the given key if it has the given value,
+    // values are compared by reference.
+    //
+    public boolean
+    remove(int key, V value)
+    {
+        IntMap<V> stripe = stripe(key);
+        synchronized(stripe)
+        {
+            if(stripe.get(key) != value)
+            {
+                return false;
+            }
+            stripe.remove(key);
+            return true;
+        }
+    }
+
+    //
+    // Returns a copy of the values of the map.
+    //
+    public java.util.List<V>
+    values()
+    {
+        java.util.List<V> values = new java.util.ArrayList<V>();
+        for(IntMap<V> stripe : _stripes)
+        {
+            synchronized(stripe)
+            {
+                values.addAll(stripe.values());
+            }
+        }
+        return values;
+    }
+
+    public void
+    clear()
+    {
+        for(IntMap<V> stripe : _stripes)
+        {
+            synchronized(stripe)
+            {
+                stripe.clear();
+            }
+        }
+    }
+
+    private IntMap<V>
+    stripe(int key)
+    {
+        //
+        // Use the high bits of the hash, the IntMap of the stripe uses the
+        // low bits to find the slot of the key.
+        //
+        return _stripes[(key * 0x9E3779B9) >>> (32 - StripeBits)];
+    }
+
+    private static final int StripeBits = 4;
+    private static final int StripeCount = 1 << StripeBits;
+
+    private final IntMap<V>[] _stripes;
+}
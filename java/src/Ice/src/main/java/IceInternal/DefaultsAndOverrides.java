@@ -119,13 +119,7 @@ public final class DefaultsAndOverrides
         if(!value.isEmpty())
         {
             overrideCompress = true;
-            boolean b = properties.getPropertyAsInt("Ice.Override.Compress") > 0;
-            if(b && !BZip2.supported())
-            {
-                System.err.println("warning: bzip2 support not available, Ice.Override.Compress ignored");
-                b = false;
-            }
-            overrideCompressValue = b;
+            overrideCompressValue = properties.getPropertyAsInt("Ice.Override.Compress") > 0;
         }
         else
         {
@@ -0,0 +1,219 @@
+// **********************************************************************
+//
+// Copyright (c) 2003-2016 ZeroC, Inc. All rights reserved.
+//
+// This copy of Ice is licensed to you under the terms described in the
+// ICE_LICENSE file included in this distribution.
+//
+// **********************************************************************
+
+package IceInternal;
+
+//
+// A compression codec which encodes the message body in the zlib format
+// with java.util.zip. The compression level is the deflate level.
+//
+// The deflaters and inflaters hold native memory which is expensive to
+// allocate for each message, they're pooled by the codec of the
+// communicator and ended when the communicator is destroyed.
+//
+final class DeflateCodec implements CompressionCodec
+{
+    @Override
+    public String
+    name()
+    {
+        return "deflate";
+    }
+
+    @Override
+    public byte
+    status()
+    {
+        return CompressionCodecs.deflateStatus;
+    }
+
+    @Override
+    public Buffer
+    compress(Buffer buf, int headerSize, int compressionLevel)
+    {
+        java.util.zip.Deflater deflater = _deflaters.acquire();
+        try
+        {
+            return compress(deflater, buf, headerSize, compressionLevel);
+        }
+        finally
+        {
+            deflater.reset();
+            _deflaters.release(deflater);
+        }
+    }
+
+    @Override
+    public Buffer
+    uncompress(Buffer buf, int headerSize, int messageSizeMax)
+    {
+        java.util.zip.Inflater inflater = _inflaters.acquire();
+        try
+        {
+            return uncompress(inflater, buf, headerSize, messageSizeMax);
+        }
+        finally
+        {
+            inflater.reset();
+            _inflaters.release(inflater);
+        }
+    }
+
+    //
+    // Only for use by CompressionCodecs.destroy().
+    //
+    void
+    destroy()
+    {
+        _deflaters.destroy();
+        _inflaters.destroy();
+    }
+
+    private static Buffer
+    compress(java.util.zip.Deflater deflater, Buffer buf, int headerSize, int compressionLevel)
+    {
+        final int uncompressedLen = buf.size() - headerSize;
+
+        deflater.setLevel(compressionLevel);
+        if(buf.b.hasArray())
+        {
+            deflater.setInput(buf.b.array(), buf.b.arrayOffset() + headerSize, uncompressedLen);
+        }
+        else
+        {
+            //
+            // The deflater only reads arrays, copy the body of direct buffers.
+            //
+            byte[] data = new byte[uncompressedLen];
+            java.nio.ByteBuffer b = buf.b.duplicate();
+            b.position(headerSize);
+            b.get(data);
+            deflater.setInput(data);
+        }
+        deflater.finish();
+
+        //
+        // Don't bother if the compressed body isn't smaller than the
+        // uncompressed body.
+        //
+        Buffer r = new Buffer(false);
+        r.resize(headerSize + 4 + uncompressedLen, false);
+        final byte[] dst = r.b.array();
+        final int max = uncompressedLen - 1;
+        int compressedLen = 0;
+        while(!deflater.finished() && compressedLen < max)
+        {
+            compressedLen += deflater.deflate(dst, headerSize + 4 + compressedLen, max - compressedLen);
+        }
+        if(!deflater.finished())
+        {
+            return null;
+        }
+
+        CompressionCodecs.writeHeader(buf, r, headerSize);
+        r.resize(headerSize + 4 + compressedLen, false);
+        return r;
+    }
+
+    private static Buffer
+    uncompress(java.util.zip.Inflater inflater, Buffer buf, int headerSize, int messageSizeMax)
+    {
+        final int uncompressedSize = CompressionCodecs.readUncompressedSize(buf, headerSize, messageSizeMax);
+        final int compressedLen = buf.size() - headerSize - 4;
+
+        if(buf.b.hasArray())
+        {
+            inflater.setInput(buf.b.array(), buf.b.arrayOffset() + headerSize + 4, compressedLen);
+        }
+        else
+        {
+            byte[] data = new byte[compressedLen];
+            java.nio.ByteBuffer b = buf.b.duplicate();
+            b.position(headerSize + 4);
+            b.get(data);
+            inflater.setInput(data);
+        }
+
+        Buffer r = new Buffer(false);
+        r.resize(uncompressedSize, false);
+        final byte[] dst = r.b.array();
+        for(int i = 0; i < headerSize; ++i)
+        {
+            dst[i] = buf.b.get(i);
+        }
+
+        try
+        {
+            int pos = headerSize;
+            while(pos < uncompressedSize)
+            {
+                final int n = inflater.inflate(dst, pos, uncompressedSize - pos);
+                if(n == 0)
+                {
+                    break;
+                }
+                pos += n;
+            }
+
+            //
+            // The end of the compressed data might not be consumed yet if the
+            // inflater filled the message, it must not produce more data.
+            //
+            if(pos == uncompressedSize && !inflater.finished() && inflater.inflate(new byte[1]) != 0)
+            {
+                pos = -1;
+            }
+            if(pos != uncompressedSize || !inflater.finished() || inflater.getRemaining() > 0)
+            {
+                throw new Ice.CompressionException("deflate uncompression failure: invalid compressed data");
+            }
+        }
+        catch(java.util.zip.DataFormatException ex)
+        {
+            throw new Ice.CompressionException("deflate uncompression failure", ex);
+        }
+        return r;
+    }
+
+    private final CodecStatePool<java.util.zip.Deflater> _deflaters =
+        new CodecStatePool<java.util.zip.Deflater>()
+        {
+            @Override
+            protected java.util.zip.Deflater
+            create()
+            {
+                return new java.util.zip.Deflater();
+            }
+
+            @Override
+            protected void
+            end(java.util.zip.Deflater deflater)
+            {
+                deflater.end();
+            }
+        };
+
+    private final CodecStatePool<java.util.zip.Inflater> _inflaters =
+        new CodecStatePool<java.util.zip.Inflater>()
+        {
+            @Override
+            protected java.util.zip.Inflater
+            create()
+            {
+                return new java.util.zip.Inflater();
+            }
+
+            @Override
+            protected void
+            end(java.util.zip.Inflater inflater)
+            {
+                inflater.end();
+            }
+        };
+}
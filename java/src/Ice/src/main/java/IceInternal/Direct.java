@@ -0,0 +1,288 @@
+// **********************************************************************
+//
+// Copyright (c) 2003-2016 ZeroC, Inc. All rights reserved.
+//
+// This copy of Ice is licensed to you under the terms described in the
+// ICE_LICENSE file included in this distribution.
+//
+// **********************************************************************
+
+package IceInternal;
+
+//
+// A collocated request dispatched directly to the servant with the Java
+// arguments of the invocation, without marshaling a request and a reply.
+// Instances are created by the generated proxy code when Ice.CollocationDirect
+// is enabled, run() calls the servant operation and invoke() looks up the
+// servant and calls run().
+//
+// Only servants registered with the object adapter which implement the
+// operations interface of the proxy are called directly. The decision is
+// made before any application code runs: servants provided by a servant
+// locator, dispatch interceptors and servants of another interface
+// (Blobject for example) get a marshaled invocation, so that locate(),
+// finished() and the interceptors run exactly once.
+//
+public abstract class Direct
+{
+    protected
+    Direct(Ice.ObjectPrxHelperBase proxy, Ice.Current current)
+    {
+        _proxy = proxy;
+        _current = current;
+        _adapter = (Ice.ObjectAdapterI)current.adapter;
+        _instance = Util.getInstance(_adapter.getCommunicator());
+    }
+
+    public final Ice.Current
+    getCurrent()
+    {
+        return _current;
+    }
+
+    //
+    // Returns true if the servant implements the operations interface of
+    // the proxy.
+    //
+    public abstract boolean isDirect(Ice.Object servant);
+
+    //
+    // Calls the operation on the given servant. The generated implementation
+    // returns DispatchUserException after calling setUserException if the
+    // operation raises a user exception.
+    //
+    public abstract Ice.DispatchStatus run(Ice.Object servant);
+
+    public final void
+    setUserException(Ice.UserException ex)
+    {
+        _userException = ex;
+    }
+
+    //
+    // Dispatches the request. Returns false if the request can't be
+    // dispatched directly, the invocation must then be marshaled.
+    //
+    public final boolean
+    invoke()
+        throws Ice.UserException
+    {
+        try
+        {
+            _adapter.incDirectCount();
+        }
+        catch(Ice.ObjectAdapterDeactivatedException ex)
+        {
+            //
+            // Let the marshaled invocation report the deactivation.
+            //
+            return false;
+        }
+
+        try
+        {
+            //
+            // If the servant isn't registered with the object adapter, the
+            // marshaled invocation calls the servant locators or raises
+            // ObjectNotExistException or FacetNotExistException, which
+            // might be retried.
+            //
+            Ice.Object servant = _adapter.getServantManager().findServant(_current.id, _current.facet);
+            if(servant == null || !isDirect(servant))
+            {
+                return false;
+            }
+
+            Ice.DispatchStatus status;
+            if(_instance.useApplicationClassLoader())
+            {
+                Thread.currentThread().setContextClassLoader(servant.getClass().getClassLoader());
+            }
+
+            try
+            {
+                status = run(servant);
+            }
+            finally
+            {
+                if(_instance.useApplicationClassLoader())
+                {
+                    Thread.currentThread().setContextClassLoader(null);
+                }
+            }
+
+            if(status == Ice.DispatchStatus.DispatchUserException)
+            {
+                assert(_userException != null);
+                throw copyUserException(_userException);
+            }
+            return true;
+        }
+        catch(Ice.UserException ex)
+        {
+            throw ex;
+        }
+        catch(java.lang.RuntimeException ex)
+        {
+            java.lang.RuntimeException rex = handleException(ex);
+            if(rex instanceof Ice.ObjectNotExistException &&
+               _proxy.__retryDirect((Ice.ObjectNotExistException)rex))
+            {
+                //
+                // The marshaled invocation retries the request, as if the
+                // exception had been raised by a marshaled dispatch.
+                //
+                return false;
+            }
+            throw rex;
+        }
+        finally
+        {
+            _adapter.decDirectCount();
+        }
+    }
+
+    //
+    // Copies the parameters of the invocation, the parameters are
+    // marshaled with the stream returned by startCopy and unmarshaled with
+    // the stream returned by copy. The copy never leaves the process, it
+    // uses a heap buffer which is cheaper to allocate than a direct buffer.
+    //
+    public final Ice.OutputStream
+    startCopy(Ice.FormatType format)
+    {
+        Ice.OutputStream os = new Ice.OutputStream(_instance, Protocol.currentProtocolEncoding, false);
+        os.startEncapsulation(_current.encoding, format);
+        return os;
+    }
+
+    public final Ice.InputStream
+    copy(Ice.OutputStream os)
+    {
+        os.endEncapsulation();
+        Ice.InputStream is = new Ice.InputStream(_instance, Protocol.currentProtocolEncoding, os.getBuffer(), true);
+        is.pos(0);
+        is.startEncapsulation();
+        return is;
+    }
+
+    public final void
+    endCopy(Ice.InputStream is)
+    {
+        is.endEncapsulation();
+    }
+
+    //
+    // Copies the user exception raised by the servant, the caller gets its
+    // own copy as with a marshaled invocation.
+    //
+    private Ice.UserException
+    copyUserException(Ice.UserException ex)
+    {
+        Ice.OutputStream os = startCopy(Ice.FormatType.SlicedFormat);
+        os.writeException(ex);
+        Ice.InputStream is = copy(os);
+        try
+        {
+            is.throwException(null);
+        }
+        catch(Ice.UserException copy)
+        {
+            endCopy(is);
+            return copy;
+        }
+        assert(false);
+        return ex;
+    }
+
+    //
+    // Maps the exception raised by the dispatch to the exception raised by
+    // a marshaled invocation, see IncomingBase.__handleException.
+    //
+    private java.lang.RuntimeException
+    handleException(java.lang.RuntimeException exc)
+    {
+        int warn = _instance.initializationData().properties.getPropertyAsIntWithDefault("Ice.Warn.Dispatch", 1);
+        if(exc instanceof Ice.RequestFailedException)
+        {
+            Ice.RequestFailedException ex = (Ice.RequestFailedException)exc;
+            if(ex.id == null || ex.id.name == null || ex.id.name.isEmpty())
+            {
+                ex.id = _current.id;
+            }
+
+            if(ex.facet == null || ex.facet.isEmpty())
+            {
+                ex.facet = _current.facet;
+            }
+
+            if(ex.operation == null || ex.operation.length() == 0)
+            {
+                ex.operation = _current.operation;
+            }
+
+            if(warn > 1)
+            {
+                warning(ex);
+            }
+            return ex;
+        }
+        else if(exc instanceof Ice.UnknownException)
+        {
+            if(warn > 0)
+            {
+                warning(exc);
+            }
+            return exc;
+        }
+        else if(exc instanceof Ice.SystemException)
+        {
+            return exc;
+        }
+
+        if(warn > 0)
+        {
+            warning(exc);
+        }
+
+        java.io.StringWriter sw = new java.io.StringWriter();
+        if(exc instanceof Ice.LocalException)
+        {
+            sw.write(((Ice.LocalException)exc).ice_id() + "\n");
+        }
+        java.io.PrintWriter pw = new java.io.PrintWriter(sw);
+        exc.printStackTrace(pw);
+        pw.flush();
+        if(exc instanceof Ice.LocalException)
+        {
+            return new Ice.UnknownLocalException(sw.toString(), exc);
+        }
+        else
+        {
+            return new Ice.UnknownException(sw.toString(), exc);
+        }
+    }
+
+    private void
+    warning(java.lang.Exception ex)
+    {
+        java.io.StringWriter sw = new java.io.StringWriter();
+        java.io.PrintWriter pw = new java.io.PrintWriter(sw);
+        IceUtilInternal.OutputBase out = new IceUtilInternal.OutputBase(pw);
+        out.setUseTab(false);
+        out.print("dispatch exception:");
+        out.print("\nidentity: " + _instance.identityToString(_current.id));
+        out.print("\nfacet: " + IceUtilInternal.StringUtil.escapeString(_current.facet, ""));
+        out.print("\noperation: " + _current.operation);
+        out.print("\n");
+        ex.printStackTrace(pw);
+        pw.flush();
+        _instance.initializationData().logger.warning(sw.toString());
+    }
+
+    private final Ice.ObjectPrxHelperBase _proxy;
+    private final Ice.Current _current;
+    private final Ice.ObjectAdapterI _adapter;
+    private final Instance _instance;
+    private Ice.UserException _userException;
+}
@@ -0,0 +1,174 @@
+// **********************************************************************
+//
+// Copyright (c) 2003-2016 ZeroC, Inc. All rights reserved.
+//
+// This copy of Ice is licensed to you under the terms described in the
+// ICE_LICENSE file included in this distribution.
+//
+// **********************************************************************
+
+package IceInternal;
+
+//
+// Dispatches the requests of an object adapter on virtual threads, one
+// virtual thread per request. Reading and writing connections is still
+// done by the thread pool threads, only the servant invocations are
+// handed to the executor.
+//
+// Virtual threads require a JDK which supports them. The executor is
+// created by reflection since the runtime itself doesn't depend on such a
+// JDK, if it can't be created the requests are dispatched by the thread
+// pool as usual.
+//
+public final class DispatchExecutor implements java.util.concurrent.Executor
+{
+    public static DispatchExecutor create(Instance instance, String name)
+    {
+        Ice.Properties properties = instance.initializationData().properties;
+        if(properties.getPropertyAsInt(name + ".VirtualThreads") <= 0)
+        {
+            return null;
+        }
+
+        Ice.Logger logger = instance.initializationData().logger;
+        if(instance.initializationData().dispatcher != null)
+        {
+            logger.warning(name + ".VirtualThreads is ignored, a dispatcher is configured");
+            return null;
+        }
+
+        try
+        {
+            java.lang.reflect.Method m =
+                java.util.concurrent.Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return new DispatchExecutor((java.util.concurrent.ExecutorService)m.invoke(null));
+        }
+        catch(java.lang.reflect.InvocationTargetException ex)
+        {
+            //
+            // Thrown if virtual threads are a preview feature which isn't enabled.
+            //
+            logger.warning(name + ".VirtualThreads is ignored, virtual threads are not available:\n" +
+                           ex.getCause());
+        }
+        catch(Exception ex)
+        {
+            logger.warning(name + ".VirtualThreads is ignored, virtual threads are not supported by this JDK");
+        }
+        return null;
+    }
+
+    private DispatchExecutor(java.util.concurrent.ExecutorService executor)
+    {
+        _executor = executor;
+    }
+
+    @Override
+    public void execute(Runnable runnable)
+    {
+        try
+        {
+            _executor.execute(runnable);
+        }
+        catch(java.util.concurrent.RejectedExecutionException ex)
+        {
+            //
+            // The adapter is being destroyed, dispatch from the calling
+            // thread so that the request still gets a reply.
+            //
+            runnable.run();
+        }
+    }
+
+    //
+    // Returns an executor which runs the tasks submitted to it in order and
+    // one at a time. This is used to preserve the ordering of the requests
+    // received over a connection of a serialized thread pool.
+    //
+    public java.util.concurrent.Executor serializer()
+    {
+        return new Serializer();
+    }
+
+    public void destroy()
+    {
+        _executor.shutdown();
+    }
+
+    public void joinWithAllThreads()
+        throws InterruptedException
+    {
+        while(!_executor.awaitTermination(Long.MAX_VALUE, java.util.concurrent.TimeUnit.MILLISECONDS))
+        {
+        }
+    }
+
+    private final class Serializer implements java.util.concurrent.Executor, Runnable
+    {
+        @Override
+        public void execute(Runnable runnable)
+        {
+            synchronized(this)
+            {
+                _queue.add(runnable);
+                if(_running)
+                {
+                    return;
+                }
+                _running = true;
+            }
+            DispatchExecutor.this.execute(this);
+        }
+
+        @Override
+        public void run()
+        {
+            while(true)
+            {
+                Runnable runnable;
+                synchronized(this)
+                {
+                    runnable = _queue.poll();
+                    if(runnable == null)
+                    {
+                        _running = false;
+                        return;
+                    }
+                }
+
+                boolean completed = false;
+                try
+                {
+                    runnable.run();
+                    completed = true;
+                }
+                finally
+                {
+                    if(!completed)
+                    {
+                        //
+                        // The task raised an exception which is reported by
+                        // this thread, keep dispatching the queued requests
+                        // from another thread.
+                        //
+                        boolean more;
+                        synchronized(this)
+                        {
+                            more = !_queue.isEmpty();
+                            _running = more;
+                        }
+                        if(more)
+                        {
+                            DispatchExecutor.this.execute(this);
+                        }
+                    }
+                }
+            }
+        }
+
+        private final java.util.LinkedList<Runnable> _queue = new java.util.LinkedList<Runnable>();
+        private boolean _running = false;
+    }
+
+    private final java.util.concurrent.ExecutorService _executor;
+}
@@ -30,6 +30,11 @@ abstract public class DispatchWorkItem implements ThreadPoolWorkItem, Runnable
     final public void
     execute(ThreadPoolCurrent current)
     {
+        if(_queuedHandler != null)
+        {
+            ThreadPool.workItemStarted(_queuedHandler);
+            _queuedHandler = null;
+        }
         current.ioCompleted(); // Promote a follower
         current.dispatchFromThisThread(this);
     }
@@ -41,4 +46,10 @@ abstract public class DispatchWorkItem implements ThreadPoolWorkItem, Runnable
     }
 
     private Ice.Connection _connection;
+
+    //
+    // The handler of the connection which counts this work item as queued,
+    // set by ThreadPool.dispatch() when work stealing is enabled.
+    //
+    EventHandler _queuedHandler;
 }
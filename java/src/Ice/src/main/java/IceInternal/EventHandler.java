@@ -41,4 +41,14 @@ public abstract class EventHandler
     public int _registered = 0;
     public int _ready = 0;
     public java.nio.channels.SelectionKey _key = null;
+    ThreadPool _reactor = null; // The thread pool reactor the handler is assigned to.
+
+    //
+    // The reactor of the dispatch work items of this handler which are queued
+    // and not started yet and their number, see ThreadPool.dispatch(). They
+    // are guarded by a dedicated mutex to not contend with the handler.
+    //
+    final Object _workItemsMutex = new Object();
+    ThreadPool _workItemReactor = null;
+    int _queuedWorkItems = 0;
 }
@@ -0,0 +1,22 @@
+// **********************************************************************
+//
+// Copyright (c) 2003-2016 ZeroC, Inc. All rights reserved.
+//
+// This copy of Ice is licensed to you under the terms described in the
+// ICE_LICENSE file included in this distribution.
+//
+// **********************************************************************
+
+package IceInternal;
+
+//
+// Implemented by stream transceivers which can send several buffers
+// with a single gathering write. The buffers are written in order,
+// the position of each buffer is updated with the number of bytes
+// sent. Returns SocketOperation.Write if some buffers still have
+// remaining data, SocketOperation.None otherwise.
+//
+public interface GatheringTransceiver
+{
+    int write(java.nio.ByteBuffer[] bufs, int offset, int length);
+}
@@ -117,4 +117,20 @@ public final class HashUtil
     {
         return ((hashCode << 5) + hashCode) ^ java.util.Arrays.hashCode(arr);
     }
+
+    //
+    // Returns the hash code of the bytes of the buffer from start to end
+    // (exclusive), with the high bits mixed into the low bits for the
+    // lookup of a table indexed by the low bits.
+    //
+    public static int
+    hashBytes(java.nio.ByteBuffer b, int start, int end)
+    {
+        int h = 5381;
+        for(int i = start; i < end; ++i)
+        {
+            h = ((h << 5) + h) ^ b.get(i);
+        }
+        return h ^ (h >>> 16);
+    }
 }
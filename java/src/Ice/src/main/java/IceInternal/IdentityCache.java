@@ -0,0 +1,135 @@
+// **********************************************************************
+//
+// Copyright (c) 2003-2016 ZeroC, Inc. All rights reserved.
+//
+// This copy of Ice is licensed to you under the terms described in the
+// ICE_LICENSE file included in this distribution.
+//
+// **********************************************************************
+
+package IceInternal;
+
+//
+// A communicator-wide cache of the identities of incoming requests.
+//
+// The cache maps the encoded form of an identity to a canonical identity
+// object. Reading the identity of a request which is in the cache doesn't
+// decode or allocate anything, and the identity returned is the identity
+// object registered with the servant manager, so the lookup of the servant
+// compares the identities by reference. The cache is direct-mapped: each
+// encoded identity has a single slot and replaces the identity already in
+// this slot. It's read and updated without locking.
+//
+// Since the identities are shared by the requests, the identity of the
+// Current object must not be modified when the cache is enabled.
+//
+public final class IdentityCache
+{
+    static IdentityCache create(Ice.Properties properties)
+    {
+        int maxSize = properties.getPropertyAsIntWithDefault("Ice.IdentityCache.MaxSize", 0);
+        if(maxSize <= 0)
+        {
+            return null; // Caching disabled.
+        }
+        return new IdentityCache(maxSize);
+    }
+
+    IdentityCache(int maxSize)
+    {
+        int size = 1;
+        while(size < maxSize && size < (1 << 30))
+        {
+            size <<= 1;
+        }
+        _entries = new Entry[size];
+        _mask = size - 1;
+    }
+
+    //
+    // Reads an identity from the stream and returns the cached identity
+    // if there's one.
+    //
+    public Ice.Identity
+    read(Ice.InputStream is)
+    {
+        int start = is.pos();
+        is.skip(is.readSize());
+        is.skip(is.readSize());
+        int end = is.pos();
+
+        java.nio.ByteBuffer b = is.getBuffer().b;
+        int hash = HashUtil.hashBytes(b, start, end);
+        int index = hash & _mask;
+        Entry entry = _entries[index];
+        if(entry != null && entry.matches(b, start, end, hash))
+        {
+            return entry.identity;
+        }
+
+        is.pos(start);
+        Ice.Identity identity = new Ice.Identity();
+        identity.__read(is);
+        assert(is.pos() == end);
+
+        byte[] data = new byte[end - start];
+        for(int i = 0; i < data.length; ++i)
+        {
+            data[i] = b.get(start + i);
+        }
+        _entries[index] = new Entry(data, hash, identity);
+        return identity;
+    }
+
+    //
+    // Adds the given identity to the cache, for use by the servant manager
+    // with the identities of the active servant map.
+    //
+    public void
+    add(Instance instance, Ice.Identity identity)
+    {
+        Ice.OutputStream os = new Ice.OutputStream(instance, Protocol.currentProtocolEncoding);
+        identity.__write(os);
+        byte[] data = os.finished();
+        int hash = HashUtil.hashBytes(java.nio.ByteBuffer.wrap(data), 0, data.length);
+        _entries[hash & _mask] = new Entry(data, hash, identity);
+    }
+
+    //
+    // An entry is immutable, it's published to the readers through its
+    // final fields.
+    //
+    private static final class Entry
+    {
+        Entry(byte[] data, int hash, Ice.Identity identity)
+        {
+            this.data = data;
+            this.hash = hash;
+            this.identity = identity;
+        }
+
+        boolean
+        matches(java.nio.ByteBuffer b, int start, int end, int hash)
+        {
+            if(this.hash != hash || data.length != end - start)
+            {
+                return false;
+            }
+            for(int i = 0; i < data.length; ++i)
+            {
+                if(data[i] != b.get(start + i))
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        final byte[] data;
+        final int hash;
+        final Ice.Identity identity;
+    }
+
+    private final Entry[] _entries;
+    private final int _mask;
+}
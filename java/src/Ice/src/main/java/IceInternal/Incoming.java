@@ -87,7 +87,15 @@ final public class Incoming extends IncomingBase implements Ice.Request
         //
         // Read the current.
         //
-        _current.id.__read(_is);
+        IdentityCache identityCache = _instance.identityCache();
+        if(identityCache != null)
+        {
+            _current.id = identityCache.read(_is);
+        }
+        else
+        {
+            _current.id.__read(_is);
+        }
 
         //
         // For compatibility with the old FacetPath.
@@ -106,8 +114,12 @@ final public class Incoming extends IncomingBase implements Ice.Request
             _current.facet = "";
         }
 
-        _current.operation = _is.readString();
-        _current.mode = Ice.OperationMode.values()[_is.readByte()];
+        _current.operation = _instance.operationNameCache().read(_is);
+        _current.mode = Ice.OperationMode.valueOf(_is.readByte());
+        if(_current.mode == null)
+        {
+            throw new Ice.MarshalException("invalid operation mode");
+        }
         _current.ctx = new java.util.HashMap<String, String>();
         int sz = _is.readSize();
         while(sz-- > 0)
@@ -406,8 +418,6 @@ final public class Incoming extends IncomingBase implements Ice.Request
         return _inParamPos != -1;
     }
 
-    public Incoming next; // For use by ConnectionI.
-
     private Ice.InputStream _is;
 
     private IncomingAsync _cb;
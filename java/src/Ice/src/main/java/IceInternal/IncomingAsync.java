@@ -132,6 +132,7 @@ public class IncomingAsync extends IncomingBase implements Ice.AMDCallback
                 _observer = null;
             }
             _responseHandler = null;
+            __reclaimOutputStream();
         }
         catch(Ice.LocalException ex)
         {
@@ -150,6 +151,7 @@ public class IncomingAsync extends IncomingBase implements Ice.AMDCallback
             }
 
             __handleException(exc, true);
+            __reclaimOutputStream();
         }
         catch(Ice.LocalException ex)
         {
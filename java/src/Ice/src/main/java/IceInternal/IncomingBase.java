@@ -21,7 +21,7 @@ class IncomingBase
         _compress = compress;
         if(_response)
         {
-            _os = new Ice.OutputStream(instance, Protocol.currentProtocolEncoding);
+            _os = newOutputStream(instance);
         }
 
         _current = new Ice.Current();
@@ -195,7 +195,7 @@ class IncomingBase
 
         if(_response && _os == null)
         {
-            _os = new Ice.OutputStream(instance, Protocol.currentProtocolEncoding);
+            _os = newOutputStream(instance);
         }
 
         _responseHandler = handler;
@@ -225,6 +225,34 @@ class IncomingBase
         _interceptorAsyncCallbackList = null;
     }
 
+    //
+    // Releases the response stream once the response is sent, it's only
+    // used by AMD dispatches which don't reuse their stream.
+    //
+    final protected void
+    __reclaimOutputStream()
+    {
+        ObjectCache<Ice.OutputStream> cache = _instance.outputStreamCache();
+        if(cache != null && _responseHandler == null && _os != null)
+        {
+            _os.reset();
+            cache.release(_os);
+            _os = null;
+        }
+    }
+
+    private static Ice.OutputStream
+    newOutputStream(Instance instance)
+    {
+        ObjectCache<Ice.OutputStream> cache = instance.outputStreamCache();
+        Ice.OutputStream os = cache != null ? cache.acquire() : null;
+        if(os == null)
+        {
+            os = new Ice.OutputStream(instance, Protocol.currentProtocolEncoding);
+        }
+        return os;
+    }
+
     final protected void
     __warning(java.lang.Exception ex)
     {
@@ -400,6 +400,62 @@ public final class Instance implements Ice.ClassResolver
         return _cacheMessageBuffers;
     }
 
+    public BufferPool
+    bufferPool()
+    {
+        // No mutex lock, immutable.
+        return _bufferPool;
+    }
+
+    public IdentityCache
+    identityCache()
+    {
+        // No mutex lock, immutable.
+        return _identityCache;
+    }
+
+    public ObjectCache<Incoming>
+    incomingCache()
+    {
+        // No mutex lock, immutable.
+        return _incomingCache;
+    }
+
+    public ObjectCache<Ice.InputStream>
+    inputStreamCache()
+    {
+        // No mutex lock, immutable.
+        return _inputStreamCache;
+    }
+
+    public ObjectCache<Ice.OutputStream>
+    outputStreamCache()
+    {
+        // No mutex lock, immutable.
+        return _outputStreamCache;
+    }
+
+    public OperationNameCache
+    operationNameCache()
+    {
+        // No mutex lock, immutable.
+        return _operationNameCache;
+    }
+
+    public ValueFactoryCache
+    valueFactoryCache()
+    {
+        // No mutex lock, immutable.
+        return _valueFactoryCache;
+    }
+
+    public CompressionCodecs
+    compressionCodecs()
+    {
+        // No mutex lock, immutable.
+        return _compressionCodecs;
+    }
+
     public ACMConfig
     clientACM()
     {
@@ -857,6 +913,12 @@ public final class Instance implements Ice.ClassResolver
         return _useApplicationClassLoader;
     }
 
+    public boolean
+    collocationDirect()
+    {
+        return _collocationDirect;
+    }
+
     public boolean
     queueRequests()
     {
@@ -972,6 +1034,8 @@ public final class Instance implements Ice.ClassResolver
 
             _useApplicationClassLoader = _initData.properties.getPropertyAsInt("Ice.UseApplicationClassLoader") > 0;
 
+            _collocationDirect = _initData.properties.getPropertyAsInt("Ice.CollocationDirect") > 0;
+
             _traceLevels = new TraceLevels(_initData.properties);
 
             _defaultsAndOverrides = new DefaultsAndOverrides(_initData.properties, _initData.logger);
@@ -1105,6 +1169,33 @@ public final class Instance implements Ice.ClassResolver
             {
                 _cacheMessageBuffers = _initData.properties.getPropertyAsIntWithDefault("Ice.CacheMessageBuffers", 2);
             }
+
+            //
+            // The buffer pool only manages direct buffers, it's not used
+            // unless message buffers are cached as direct buffers.
+            //
+            _bufferPool = _cacheMessageBuffers > 1 ? BufferPool.create(_initData.properties) : null;
+
+            if(_cacheMessageBuffers > 0)
+            {
+                _incomingCache = ObjectCache.create(_initData, "Incoming", true);
+                _inputStreamCache = ObjectCache.create(_initData, "InputStream", false);
+                _outputStreamCache = ObjectCache.create(_initData, "OutputStream", false);
+            }
+            else
+            {
+                _incomingCache = null;
+                _inputStreamCache = null;
+                _outputStreamCache = null;
+            }
+
+            _identityCache = IdentityCache.create(_initData.properties);
+
+            _operationNameCache = new OperationNameCache(256);
+
+            _valueFactoryCache = new ValueFactoryCache(this);
+
+            _compressionCodecs = new CompressionCodecs(_initData.properties);
         }
         catch(Ice.LocalException ex)
         {
@@ -1236,6 +1327,44 @@ public final class Instance implements Ice.ClassResolver
                  _initData.observer = observer;
                  _adminFacets.put(metricsFacetName, observer.getFacet());
 
+                 if(_bufferPool != null)
+                 {
+                     observer.getFacet().registerSnapshotMap("BufferPool", IceMX.Metrics.class,
+                         new MetricsAdminI.MetricsProvider()
+                         {
+                             @Override
+                             public IceMX.Metrics[] getMetrics()
+                             {
+                                 BufferPoolMetrics m = _bufferPool.getMetrics();
+                                 IceMX.Metrics metrics = new IceMX.Metrics();
+                                 metrics.id = m.id;
+                                 metrics.total = m.total;
+                                 return new IceMX.Metrics[] { metrics };
+                             }
+                         });
+                 }
+
+                 observer.getFacet().registerSnapshotMap("Compression", IceMX.Metrics.class,
+                     new MetricsAdminI.MetricsProvider()
+                     {
+                         @Override
+                         public IceMX.Metrics[] getMetrics()
+                         {
+                             return _compressionCodecs.getMetrics();
+                         }
+                     });
+
+                 final LocatorManager locatorManager = _locatorManager;
+                 observer.getFacet().registerSnapshotMap("LocatorCache", IceMX.Metrics.class,
+                     new MetricsAdminI.MetricsProvider()
+                     {
+                         @Override
+                         public IceMX.Metrics[] getMetrics()
+                         {
+                             return locatorManager.getMetrics();
+                         }
+                     });
+
                  //
                  // Make sure the admin plugin receives property updates.
                  //
@@ -1511,6 +1640,13 @@ public final class Instance implements Ice.ClassResolver
                 }
             }
 
+            if(_incomingCache != null)
+            {
+                _incomingCache.destroy();
+                _inputStreamCache.destroy();
+                _outputStreamCache.destroy();
+            }
+
             //
             // Destroy last so that a Logger plugin can receive all log/traces before its destruction.
             //
@@ -1519,6 +1655,16 @@ public final class Instance implements Ice.ClassResolver
                 _pluginManager.destroy();
             }
 
+            if(_bufferPool != null)
+            {
+                _bufferPool.destroy();
+            }
+
+            if(_compressionCodecs != null)
+            {
+                _compressionCodecs.destroy();
+            }
+
             synchronized(this)
             {
                 _objectAdapterFactory = null;
@@ -1833,6 +1979,14 @@ public final class Instance implements Ice.ClassResolver
     private final int _messageSizeMax; // Immutable, not reset by destroy().
     private final int _batchAutoFlushSize; // Immutable, not reset by destroy().
     private final int _cacheMessageBuffers; // Immutable, not reset by destroy().
+    private final BufferPool _bufferPool; // Immutable, not reset by destroy().
+    private final ObjectCache<Incoming> _incomingCache; // Immutable, not reset by destroy().
+    private final ObjectCache<Ice.InputStream> _inputStreamCache; // Immutable, not reset by destroy().
+    private final ObjectCache<Ice.OutputStream> _outputStreamCache; // Immutable, not reset by destroy().
+    private final IdentityCache _identityCache; // Immutable, not reset by destroy().
+    private final OperationNameCache _operationNameCache; // Immutable, not reset by destroy().
+    private final ValueFactoryCache _valueFactoryCache; // Immutable, not reset by destroy().
+    private final CompressionCodecs _compressionCodecs; // Immutable, not reset by destroy().
     private final ACMConfig _clientACM; // Immutable, not reset by destroy().
     private final ACMConfig _serverACM; // Immutable, not reset by destroy().
     private final Ice.ImplicitContextI _implicitContext;
@@ -1864,6 +2018,7 @@ public final class Instance implements Ice.ClassResolver
     private java.util.Map<String, String> _typeToClassMap = new java.util.HashMap<String, String>();
     final private String[] _packages;
     final private boolean _useApplicationClassLoader;
+    final private boolean _collocationDirect;
 
     private static boolean _oneOffDone = false;
     private QueueExecutorService _queueExecutorService;
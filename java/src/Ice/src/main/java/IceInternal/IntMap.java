@@ -0,0 +1,207 @@
+// **********************************************************************
+//
+// Copyright (c) 2003-2016 ZeroC, Inc. All rights reserved.
+//
+// This copy of Ice is licensed to you under the terms described in the
+// ICE_LICENSE file included in this distribution.
+//
+// **********************************************************************
+
+package IceInternal;
+
+//
+// An open-addressing hash map with int keys. Keys are not boxed and no
+// entry objects are allocated, the map only allocates its key and value
+// arrays when it grows. Null values are not supported.
+//
+// The map isn't thread safe.
+//
+public final class IntMap<V>
+{
+    public int
+    size()
+    {
+        return _size;
+    }
+
+    public boolean
+    isEmpty()
+    {
+        return _size == 0;
+    }
+
+    public V
+    get(int key)
+    {
+        if(_size == 0)
+        {
+            return null;
+        }
+
+        final int mask = _keys.length - 1;
+        for(int i = slot(key, mask); _values[i] != null; i = (i + 1) & mask)
+        {
+            if(_keys[i] == key)
+            {
+                @SuppressWarnings("unchecked")
+                V value = (V)_values[i];
+                return value;
+            }
+        }
+        return null;
+    }
+
+    public V
+    put(int key, V value)
+    {
+        assert(value != null);
+        if(_keys == null)
+        {
+            _keys = new int[MinCapacity];
+            _values = new Object[MinCapacity];
+        }
+        else if((_size + 1) * 2 > _keys.length)
+        {
+            rehash(_keys.length * 2);
+        }
+
+        final int mask = _keys.length - 1;
+        int i = slot(key, mask);
+        for(; _values[i] != null; i = (i + 1) & mask)
+        {
+            if(_keys[i] == key)
+            {
+                @SuppressWarnings("unchecked")
+                V previous = (V)_values[i];
+                _values[i] = value;
+                return previous;
+            }
+        }
+        _keys[i] = key;
+        _values[i] = value;
+        ++_size;
+        return null;
+    }
+
+    public V
+    remove(int key)
+    {
+        if(_size == 0)
+        {
+            return null;
+        }
+
+        final int mask = _keys.length - 1;
+        int i = slot(key, mask);
+        for(; _values[i] != null; i = (i + 1) & mask)
+        {
+            if(_keys[i] == key)
+            {
+                break;
+            }
+        }
+        if(_values[i] == null)
+        {
+            return null;
+        }
+
+        @SuppressWarnings("unchecked")
+        V value = (V)_values[i];
+        --_size;
+
+        //
+        // Shift back the following entries of the probe sequence to fill
+        // the removed slot.
+        //
+        int j = i;
+        while(true)
+        {
+            j = (j + 1) & mask;
+            if(_values[j] == null)
+            {
+                break;
+            }
+            final int k = slot(_keys[j], mask);
+            if(i <= j ? (i < k && k <= j) : (i < k || k <= j))
+            {
+                continue; // The entry is already in its probe sequence.
+            }
+            _keys[i] = _keys[j];
+            _values[i] = _values[j];
+            i = j;
+        }
+        _values[i] = null;
+        return value;
+    }
+
+    //
+    // Returns a copy of the values of the map.
+    //
+    public java.util.List<V>
+    values()
+    {
+        java.util.List<V> values = new java.util.ArrayList<V>(_size);
+        if(_size > 0)
+        {
+            for(java.lang.Object value : _values)
+            {
+                if(value != null)
+                {
+                    @SuppressWarnings("unchecked")
+                    V v = (V)value;
+                    values.add(v);
+                }
+            }
+        }
+        return values;
+    }
+
+    //
+    // Removes all the entries, the map keeps its capacity.
+    //
+    public void
+    clear()
+    {
+        if(_size > 0)
+        {
+            java.util.Arrays.fill(_values, null);
+            _size = 0;
+        }
+    }
+
+    private void
+    rehash(int capacity)
+    {
+        final int[] keys = _keys;
+        final Object[] values = _values;
+        _keys = new int[capacity];
+        _values = new Object[capacity];
+        final int mask = capacity - 1;
+        for(int i = 0; i < keys.length; ++i)
+        {
+            if(values[i] != null)
+            {
+                int j = slot(keys[i], mask);
+                while(_values[j] != null)
+                {
+                    j = (j + 1) & mask;
+                }
+                _keys[j] = keys[i];
+                _values[j] = values[i];
+            }
+        }
+    }
+
+    private static int
+    slot(int key, int mask)
+    {
+        final int h = key * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    private static final int MinCapacity = 16;
+
+    private int[] _keys;
+    private Object[] _values;
+    private int _size;
+}
@@ -16,23 +16,39 @@ public class InvocationObserverI
     implements Ice.Instrumentation.InvocationObserver
 {
     static public final class RemoteInvocationHelper extends MetricsHelper<RemoteMetrics>
+        implements CommunicatorObserverI.ConnectionAttributes
     {
         static private final AttributeResolver _attributes = new AttributeResolver()
         {
             {
-                try
-                {
-                    Class<?> cl = RemoteInvocationHelper.class;
-                    add("parent", cl.getDeclaredMethod("getParent"));
-                    add("id", cl.getDeclaredMethod("getId"));
-                    add("requestId", cl.getDeclaredMethod("getRequestId"));
-                    CommunicatorObserverI.addConnectionAttributes(this, RemoteInvocationHelper.class);
-                }
-                catch(Exception ex)
-                {
-                    ex.printStackTrace();
-                    assert(false);
-                }
+                add("parent", new Resolver<RemoteInvocationHelper>()
+                    {
+                        @Override
+                        public Object
+                        get(RemoteInvocationHelper helper)
+                        {
+                            return helper.getParent();
+                        }
+                    });
+                add("id", new Resolver<RemoteInvocationHelper>()
+                    {
+                        @Override
+                        public Object
+                        get(RemoteInvocationHelper helper)
+                        {
+                            return helper.getId();
+                        }
+                    });
+                add("requestId", new Resolver<RemoteInvocationHelper>()
+                    {
+                        @Override
+                        public Object
+                        get(RemoteInvocationHelper helper)
+                        {
+                            return helper.getRequestId();
+                        }
+                    });
+                CommunicatorObserverI.addConnectionAttributes(this);
             }
         };
 
@@ -120,18 +136,33 @@ public class InvocationObserverI
         static private final AttributeResolver _attributes = new AttributeResolver()
         {
             {
-                try
-                {
-                    Class<?> cl = CollocatedInvocationHelper.class;
-                    add("parent", cl.getDeclaredMethod("getParent"));
-                    add("id", cl.getDeclaredMethod("getId"));
-                    add("requestId", cl.getDeclaredMethod("getRequestId"));
-                }
-                catch(Exception ex)
-                {
-                    ex.printStackTrace();
-                    assert(false);
-                }
+                add("parent", new Resolver<CollocatedInvocationHelper>()
+                    {
+                        @Override
+                        public Object
+                        get(CollocatedInvocationHelper helper)
+                        {
+                            return helper.getParent();
+                        }
+                    });
+                add("id", new Resolver<CollocatedInvocationHelper>()
+                    {
+                        @Override
+                        public Object
+                        get(CollocatedInvocationHelper helper)
+                        {
+                            return helper.getId();
+                        }
+                    });
+                add("requestId", new Resolver<CollocatedInvocationHelper>()
+                    {
+                        @Override
+                        public Object
+                        get(CollocatedInvocationHelper helper)
+                        {
+                            return helper.getRequestId();
+                        }
+                    });
             }
         };
 
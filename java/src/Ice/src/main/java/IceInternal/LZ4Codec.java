@@ -0,0 +1,366 @@
+// **********************************************************************
+//
+// Copyright (c) 2003-2016 ZeroC, Inc. All rights reserved.
+//
+// This copy of Ice is licensed to you under the terms described in the
+// ICE_LICENSE file included in this distribution.
+//
+// **********************************************************************
+
+package IceInternal;
+
+//
+// A fast compression codec which encodes the message body with the LZ4
+// block format. The compression level is ignored.
+//
+// The uncompressed message is read directly from its stream buffer, the
+// compressed message is written to a heap buffer.
+//
+final class LZ4Codec implements CompressionCodec
+{
+    @Override
+    public String
+    name()
+    {
+        return "lz4";
+    }
+
+    @Override
+    public byte
+    status()
+    {
+        return CompressionCodecs.lz4Status;
+    }
+
+    @Override
+    public Buffer
+    compress(Buffer buf, int headerSize, int compressionLevel)
+    {
+        final int uncompressedLen = buf.size() - headerSize;
+
+        //
+        // The compressed body must be smaller than the uncompressed body,
+        // there's no need to go further once the output reaches this size.
+        //
+        Buffer r = new Buffer(false);
+        r.resize(headerSize + 4 + uncompressedLen, false);
+        final byte[] dst = r.b.array();
+        final int dstEnd = headerSize + 4 + uncompressedLen - 1;
+
+        int[] table = _tables.acquire();
+        final int end;
+        try
+        {
+            java.util.Arrays.fill(table, -1);
+            end = compressBlock(buf.b.duplicate(), headerSize, buf.size(), dst, headerSize + 4, dstEnd, table);
+        }
+        finally
+        {
+            _tables.release(table);
+        }
+        if(end < 0)
+        {
+            return null;
+        }
+
+        CompressionCodecs.writeHeader(buf, r, headerSize);
+        r.resize(end, false);
+        return r;
+    }
+
+    @Override
+    public Buffer
+    uncompress(Buffer buf, int headerSize, int messageSizeMax)
+    {
+        final int uncompressedSize = CompressionCodecs.readUncompressedSize(buf, headerSize, messageSizeMax);
+
+        Buffer r = new Buffer(false);
+        r.resize(uncompressedSize, false);
+        final byte[] dst = r.b.array();
+        for(int i = 0; i < headerSize; ++i)
+        {
+            dst[i] = buf.b.get(i);
+        }
+
+        final java.nio.ByteBuffer src = buf.b.duplicate();
+        final int srcEnd = buf.size();
+        int sp = headerSize + 4;
+        int dp = headerSize;
+        while(true)
+        {
+            if(sp >= srcEnd)
+            {
+                throw invalidData();
+            }
+            final int token = src.get(sp++) & 0xff;
+
+            //
+            // Literals
+            //
+            int len = token >>> 4;
+            if(len == RunMask)
+            {
+                int b;
+                do
+                {
+                    if(sp >= srcEnd || len > uncompressedSize)
+                    {
+                        throw invalidData();
+                    }
+                    b = src.get(sp++) & 0xff;
+                    len += b;
+                }
+                while(b == 255);
+            }
+            if(len > srcEnd - sp || len > uncompressedSize - dp)
+            {
+                throw invalidData();
+            }
+            src.position(sp);
+            src.get(dst, dp, len);
+            sp += len;
+            dp += len;
+
+            //
+            // The last sequence only has literals.
+            //
+            if(sp == srcEnd)
+            {
+                break;
+            }
+
+            //
+            // Match
+            //
+            if(srcEnd - sp < 2)
+            {
+                throw invalidData();
+            }
+            final int offset = (src.get(sp) & 0xff) | ((src.get(sp + 1) & 0xff) << 8);
+            sp += 2;
+            if(offset == 0 || offset > dp - headerSize)
+            {
+                throw invalidData();
+            }
+
+            len = token & RunMask;
+            if(len == RunMask)
+            {
+                int b;
+                do
+                {
+                    if(sp >= srcEnd || len > uncompressedSize)
+                    {
+                        throw invalidData();
+                    }
+                    b = src.get(sp++) & 0xff;
+                    len += b;
+                }
+                while(b == 255);
+            }
+            len += MinMatch;
+            if(len > uncompressedSize - dp)
+            {
+                throw invalidData();
+            }
+
+            final int ref = dp - offset;
+            if(offset >= len)
+            {
+                System.arraycopy(dst, ref, dst, dp, len);
+            }
+            else
+            {
+                //
+                // Overlapping match, the bytes must be copied one by one.
+                //
+                for(int i = 0; i < len; ++i)
+                {
+                    dst[dp + i] = dst[ref + i];
+                }
+            }
+            dp += len;
+        }
+
+        if(dp != uncompressedSize)
+        {
+            throw invalidData();
+        }
+        return r;
+    }
+
+    //
+    // Compresses src[srcOff, srcEnd) into dst[dstOff, dstEnd). Returns the
+    // end of the compressed data or -1 if it doesn't fit.
+    //
+    private static int
+    compressBlock(java.nio.ByteBuffer src, int srcOff, int srcEnd, byte[] dst, int dstOff, int dstEnd, int[] table)
+    {
+        //
+        // The last match must start at least MFLimit bytes before the end
+        // and the last LastLiterals bytes are always literals.
+        //
+        final int mfLimit = srcEnd - MFLimit;
+        final int matchLimit = srcEnd - LastLiterals;
+
+        int anchor = srcOff;
+        int sp = srcOff;
+        int dp = dstOff;
+
+        search:
+        while(true)
+        {
+            //
+            // Look for a match, the step increases with the number of failed
+            // attempts to skip over incompressible data faster.
+            //
+            int ref;
+            int step = 1;
+            int attempts = 1 << SkipTrigger;
+            while(true)
+            {
+                if(sp > mfLimit)
+                {
+                    break search;
+                }
+                final int sequence = src.getInt(sp);
+                final int h = hash(sequence);
+                ref = table[h];
+                table[h] = sp;
+                if(ref >= 0 && sp - ref <= MaxDistance && src.getInt(ref) == sequence)
+                {
+                    break;
+                }
+                sp += step;
+                step = attempts++ >>> SkipTrigger;
+            }
+
+            //
+            // Extend the match backwards over the pending literals and forward.
+            //
+            while(sp > anchor && ref > srcOff && src.get(sp - 1) == src.get(ref - 1))
+            {
+                --sp;
+                --ref;
+            }
+            int len = MinMatch;
+            while(sp + len + 8 <= matchLimit && src.getLong(sp + len) == src.getLong(ref + len))
+            {
+                len += 8;
+            }
+            while(sp + len < matchLimit && src.get(sp + len) == src.get(ref + len))
+            {
+                ++len;
+            }
+
+            final int literals = sp - anchor;
+            if(dp + literals + literals / 255 + (len - MinMatch) / 255 + 5 > dstEnd)
+            {
+                return -1;
+            }
+
+            final int token = dp++;
+            if(literals >= RunMask)
+            {
+                dst[token] = (byte)(RunMask << 4);
+                dp = writeLength(dst, dp, literals - RunMask);
+            }
+            else
+            {
+                dst[token] = (byte)(literals << 4);
+            }
+            src.position(anchor);
+            src.get(dst, dp, literals);
+            dp += literals;
+
+            final int offset = sp - ref;
+            dst[dp++] = (byte)offset;
+            dst[dp++] = (byte)(offset >>> 8);
+
+            if(len - MinMatch >= RunMask)
+            {
+                dst[token] |= (byte)RunMask;
+                dp = writeLength(dst, dp, len - MinMatch - RunMask);
+            }
+            else
+            {
+                dst[token] |= (byte)(len - MinMatch);
+            }
+
+            sp += len;
+            anchor = sp;
+            if(sp > mfLimit)
+            {
+                break;
+            }
+            table[hash(src.getInt(sp - 2))] = sp - 2;
+        }
+
+        //
+        // Last literals
+        //
+        final int literals = srcEnd - anchor;
+        if(dp + literals + literals / 255 + 2 > dstEnd)
+        {
+            return -1;
+        }
+        if(literals >= RunMask)
+        {
+            dst[dp++] = (byte)(RunMask << 4);
+            dp = writeLength(dst, dp, literals - RunMask);
+        }
+        else
+        {
+            dst[dp++] = (byte)(literals << 4);
+        }
+        src.position(anchor);
+        src.get(dst, dp, literals);
+        return dp + literals;
+    }
+
+    private static int
+    writeLength(byte[] dst, int dp, int len)
+    {
+        while(len >= 255)
+        {
+            dst[dp++] = (byte)255;
+            len -= 255;
+        }
+        dst[dp++] = (byte)len;
+        return dp;
+    }
+
+    private static int
+    hash(int sequence)
+    {
+        return (sequence * 0x9E3779B1) >>> (32 - HashLog);
+    }
+
+    private static Ice.CompressionException
+    invalidData()
+    {
+        return new Ice.CompressionException("lz4 uncompression failure: invalid compressed data");
+    }
+
+    private static final int MinMatch = 4;
+    private static final int LastLiterals = 5;
+    private static final int MFLimit = 12;
+    private static final int MaxDistance = 65535;
+    private static final int RunMask = 15;
+    private static final int SkipTrigger = 6;
+    private static final int HashLog = 12;
+
+    //
+    // The hash tables of the compressor are pooled by the codec of the
+    // communicator.
+    //
+    private final CodecStatePool<int[]> _tables = new CodecStatePool<int[]>()
+    {
+        @Override
+        protected int[]
+        create()
+        {
+            return new int[1 << HashLog];
+        }
+    };
+}
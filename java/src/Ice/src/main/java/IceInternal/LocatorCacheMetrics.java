@@ -0,0 +1,74 @@
+// **********************************************************************
+//
+// Copyright (c) 2003-2016 ZeroC, Inc. All rights reserved.
+//
+// This copy of Ice is licensed to you under the terms described in the
+// ICE_LICENSE file included in this distribution.
+//
+// **********************************************************************
+
+package IceInternal;
+
+/**
+ * Provides information on the cache of the endpoints retrieved from a
+ * locator. The <code>LocatorCache</code> map of the metrics admin facet
+ * only provides the <code>id</code> and <code>total</code> fields.
+ **/
+public class LocatorCacheMetrics
+{
+    /**
+     * The identity of the locator.
+     **/
+    public String id;
+
+    /**
+     * The number of lookups.
+     **/
+    public long total;
+
+    /**
+     * The number of lookups which found an entry that didn't expire.
+     **/
+    public long hits;
+
+    /**
+     * The number of lookups which didn't find an entry or found an
+     * expired entry.
+     **/
+    public long misses;
+
+    /**
+     * The number of entries which were evicted because the cache was
+     * full.
+     **/
+    public long evictions;
+
+    /**
+     * The number of entries which were refreshed in the background
+     * before expiring, see the Ice.LocatorCache.RefreshAhead property.
+     **/
+    public long refreshes;
+
+    /**
+     * The number of lookups which failed because the adapter or object
+     * wasn't registered with the locator when it was last looked up, see
+     * the Ice.LocatorCache.NegativeTimeout property.
+     **/
+    public long negativeHits;
+
+    /**
+     * The number of lookups sent to the locator.
+     **/
+    public long requests;
+
+    /**
+     * The number of lookups which waited for the response of a lookup of
+     * the same adapter or object already sent to the locator.
+     **/
+    public long coalesced;
+
+    /**
+     * The number of entries in the cache.
+     **/
+    public long size;
+}
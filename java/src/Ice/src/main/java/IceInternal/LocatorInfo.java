@@ -94,6 +94,7 @@ public final class LocatorInfo
         addCallback(Reference ref, Reference wellKnownRef, int ttl, GetEndpointsCallback cb)
         {
             RequestCallback callback = new RequestCallback(ref, ttl, cb);
+            Ice.LocalException backoffException = null;
             synchronized(this)
             {
                 if(!_response && _exception == null)
@@ -106,12 +107,33 @@ public final class LocatorInfo
                     if(!_sent)
                     {
                         _sent = true;
-                        send();
+                        backoffException = _locatorInfo.getBackoffException();
+                        if(backoffException == null)
+                        {
+                            _locatorInfo._table.requestSent(false);
+                            send();
+                            return;
+                        }
+                    }
+                    else
+                    {
+                        _locatorInfo._table.requestSent(true);
+                        return;
                     }
-                    return;
                 }
             }
 
+            if(backoffException != null)
+            {
+                //
+                // The locator failed recently, fail the request without
+                // sending it. The callbacks are called without this request
+                // locked, as with a response from the locator.
+                //
+                failed(backoffException);
+                return;
+            }
+
             if(_response)
             {
                 callback.response(_locatorInfo, _proxy);
@@ -134,6 +156,7 @@ public final class LocatorInfo
         protected void
         response(Ice.ObjectPrx proxy)
         {
+            _locatorInfo.locatorResponse();
             synchronized(this)
             {
                 _locatorInfo.finishRequest(_ref, _wellKnownRefs, proxy, false);
@@ -149,6 +172,20 @@ public final class LocatorInfo
 
         protected void
         exception(Exception ex)
+        {
+            if(ex instanceof Ice.UserException)
+            {
+                _locatorInfo.locatorResponse();
+            }
+            else if(ex instanceof Ice.LocalException)
+            {
+                _locatorInfo.locatorFailure((Ice.LocalException)ex);
+            }
+            failed(ex);
+        }
+
+        private void
+        failed(Exception ex)
         {
             synchronized(this)
             {
@@ -269,11 +306,12 @@ public final class LocatorInfo
         }
     }
 
-    LocatorInfo(Ice.LocatorPrx locator, LocatorTable table, boolean background)
+    LocatorInfo(Ice.LocatorPrx locator, LocatorTable table, boolean background, int maxBackoff)
     {
         _locator = locator;
         _table = table;
         _background = background;
+        _maxBackoff = maxBackoff;
     }
 
     synchronized public void
@@ -361,10 +399,25 @@ public final class LocatorInfo
         assert(ref.isIndirect());
         EndpointI[] endpoints = null;
         Ice.Holder<Boolean> cached = new Ice.Holder<Boolean>();
+        Ice.BooleanHolder refresh = new Ice.BooleanHolder();
         if(!ref.isWellKnown())
         {
-            endpoints = _table.getAdapterEndpoints(ref.getAdapterId(), ttl, cached);
-            if(!cached.value)
+            if(_table.isAdapterNotRegistered(ref.getAdapterId(), ttl))
+            {
+                new RequestCallback(ref, ttl, callback).exception(this, new Ice.AdapterNotFoundException());
+                return;
+            }
+
+            endpoints = _table.getAdapterEndpoints(ref.getAdapterId(), ttl, cached, refresh);
+            if(refresh.value)
+            {
+                //
+                // The cached endpoints are about to expire, refresh them in
+                // the background and use them meanwhile.
+                //
+                getAdapterRequest(ref).addCallback(ref, wellKnownRef, ttl, null);
+            }
+            else if(!cached.value)
             {
                 if(_background && endpoints != null)
                 {
@@ -379,8 +432,18 @@ public final class LocatorInfo
         }
         else
         {
-            Reference r = _table.getObjectReference(ref.getIdentity(), ttl, cached);
-            if(!cached.value)
+            if(_table.isObjectNotRegistered(ref.getIdentity(), ttl))
+            {
+                new RequestCallback(ref, ttl, callback).exception(this, new Ice.ObjectNotFoundException());
+                return;
+            }
+
+            Reference r = _table.getObjectReference(ref.getIdentity(), ttl, cached, refresh);
+            if(refresh.value)
+            {
+                getObjectRequest(ref).addCallback(ref, null, ttl, null);
+            }
+            else if(!cached.value)
             {
                 if(_background && r != null)
                 {
@@ -669,7 +732,11 @@ public final class LocatorInfo
             }
             else if(notRegistered) // If the adapter isn't registered anymore, remove it from the cache.
             {
-                _table.removeAdapterEndpoints(ref.getAdapterId());
+                _table.setAdapterNotRegistered(ref.getAdapterId());
+            }
+            else
+            {
+                _table.adapterRefreshFailed(ref.getAdapterId());
             }
 
             synchronized(this)
@@ -687,7 +754,11 @@ public final class LocatorInfo
             }
             else if(notRegistered) // If the well-known object isn't registered anymore, remove it from the cache.
             {
-                _table.removeObjectReference(ref.getIdentity());
+                _table.setObjectNotRegistered(ref.getIdentity());
+            }
+            else
+            {
+                _table.objectRefreshFailed(ref.getIdentity());
             }
 
             synchronized(this)
@@ -698,10 +769,59 @@ public final class LocatorInfo
         }
     }
 
+    //
+    // If the locator can't be reached, the lookups which would be sent to
+    // the locator fail with the same exception until the backoff delay
+    // expires. The delay is doubled with each failure, up to the
+    // Ice.LocatorCache.FailureBackoff milliseconds, and is jittered to
+    // prevent the clients of a failed locator from retrying all at once.
+    //
+    synchronized private Ice.LocalException
+    getBackoffException()
+    {
+        if(_backoffException != null && Time.currentMonotonicTimeMillis() < _backoffEnd)
+        {
+            return _backoffException;
+        }
+        return null;
+    }
+
+    synchronized private void
+    locatorFailure(Ice.LocalException ex)
+    {
+        if(_maxBackoff <= 0 || ex instanceof Ice.CommunicatorDestroyedException)
+        {
+            return;
+        }
+
+        long now = Time.currentMonotonicTimeMillis();
+        if(now < _backoffEnd)
+        {
+            return; // The failure of a lookup sent before the current backoff, don't increase the delay.
+        }
+        _backoff = _backoff == 0 ? Math.min(MinBackoff, _maxBackoff) : Math.min(_backoff * 2, _maxBackoff);
+        _backoffEnd = now + _backoff / 2 + java.util.concurrent.ThreadLocalRandom.current().nextInt(_backoff / 2 + 1);
+        _backoffException = ex;
+    }
+
+    synchronized private void
+    locatorResponse()
+    {
+        _backoff = 0;
+        _backoffEnd = 0;
+        _backoffException = null;
+    }
+
+    private static final int MinBackoff = 100; // ms
+
     private final Ice.LocatorPrx _locator;
     private Ice.LocatorRegistryPrx _locatorRegistry;
     private final LocatorTable _table;
     private final boolean _background;
+    private final int _maxBackoff;
+    private int _backoff;
+    private long _backoffEnd;
+    private Ice.LocalException _backoffException;
 
     private java.util.Map<String, Request> _adapterRequests = new java.util.HashMap<String, Request>();
     private java.util.Map<Ice.Identity, Request> _objectRequests = new java.util.HashMap<Ice.Identity, Request>();
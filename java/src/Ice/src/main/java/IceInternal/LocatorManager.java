@@ -70,7 +70,9 @@ public final class LocatorManager
 
     LocatorManager(Ice.Properties properties)
     {
+        _properties = properties;
         _background = properties.getPropertyAsInt("Ice.BackgroundLocatorCacheUpdates") > 0;
+        _maxBackoff = properties.getPropertyAsIntWithDefault("Ice.LocatorCache.FailureBackoff", 0);
     }
 
     synchronized void
@@ -118,11 +120,13 @@ public final class LocatorManager
                 LocatorTable table = _locatorTables.get(_lookupKey.set(locator));
                 if(table == null)
                 {
-                    table = new LocatorTable();
+                    Reference r = ((Ice.ObjectPrxHelperBase)locator).__reference();
+                    table = new LocatorTable(Ice.Util.identityToString(r.getIdentity()) + " -e " +
+                                             Ice.Util.encodingVersionToString(r.getEncoding()), _properties);
                     _locatorTables.put(_lookupKey.clone(), table);
                 }
 
-                info = new LocatorInfo(locator, table, _background);
+                info = new LocatorInfo(locator, table, _background, _maxBackoff);
                 _table.put(locator, info);
             }
 
@@ -130,7 +134,41 @@ public final class LocatorManager
         }
     }
 
+    //
+    // Returns the metrics of the locator tables.
+    //
+    public synchronized LocatorCacheMetrics[]
+    getLocatorCacheMetrics()
+    {
+        LocatorCacheMetrics[] metrics = new LocatorCacheMetrics[_locatorTables.size()];
+        int i = 0;
+        for(LocatorTable table : _locatorTables.values())
+        {
+            metrics[i++] = table.getMetrics();
+        }
+        return metrics;
+    }
+
+    //
+    // Returns the metrics of the LocatorCache map of the metrics admin facet.
+    //
+    IceMX.Metrics[]
+    getMetrics()
+    {
+        LocatorCacheMetrics[] m = getLocatorCacheMetrics();
+        IceMX.Metrics[] metrics = new IceMX.Metrics[m.length];
+        for(int i = 0; i < m.length; ++i)
+        {
+            metrics[i] = new IceMX.Metrics();
+            metrics[i].id = m[i].id;
+            metrics[i].total = m[i].total;
+        }
+        return metrics;
+    }
+
+    final private Ice.Properties _properties;
     final private boolean _background;
+    final private int _maxBackoff;
 
     private java.util.HashMap<Ice.LocatorPrx, LocatorInfo> _table =
         new java.util.HashMap<Ice.LocatorPrx, LocatorInfo>();
@@ -9,124 +9,398 @@
 
 package IceInternal;
 
+//
+// The cache of the adapter endpoints and well-known object references
+// retrieved from a locator.
+//
+// The cache is split in stripes, each stripe is protected by its own lock.
+// The number of entries is limited by Ice.LocatorCache.MaxSize, the least
+// recently used entries of a stripe are evicted when it's full.
+//
+// With Ice.LocatorCache.RefreshAhead, a lookup of an entry which is older
+// than the given percentage of its locator cache timeout requests the
+// caller to refresh the entry in the background, the entry is still used
+// until it's refreshed or expires. This prevents the callers of frequently
+// used entries from waiting on the locator each time the entries expire.
+//
+// With Ice.LocatorCache.NegativeTimeout, the adapters and objects which
+// aren't registered with the locator are also cached for the given number
+// of seconds. These entries are kept apart from the other entries and
+// limited to a quarter of Ice.LocatorCache.MaxSize, so a burst of lookups
+// of unknown adapters or objects doesn't evict the cached endpoints.
+//
 final class LocatorTable
 {
-    LocatorTable()
+    LocatorTable(String name, Ice.Properties properties)
     {
-    }
+        _name = name;
 
-    synchronized void
-    clear()
-    {
-        _adapterEndpointsTable.clear();
-        _objectTable.clear();
+        int maxSize = properties.getPropertyAsIntWithDefault("Ice.LocatorCache.MaxSize", 0);
+        int stripes = maxSize > 0 ? Math.min(MaxStripes, Integer.highestOneBit(maxSize)) : MaxStripes;
+        _stripes = new Stripe[stripes];
+        int stripeSize = maxSize > 0 ? (maxSize + stripes - 1) / stripes : 0;
+        int stripeNegativeSize = maxSize > 0 ? (stripeSize + 3) / 4 : 0;
+        for(int i = 0; i < stripes; ++i)
+        {
+            _stripes[i] = new Stripe(stripeSize, stripeNegativeSize);
+        }
+
+        int refreshAhead = properties.getPropertyAsIntWithDefault("Ice.LocatorCache.RefreshAhead", 0);
+        _refreshAhead = refreshAhead > 0 && refreshAhead < 100 ? refreshAhead : 0;
+
+        _negativeTimeout = properties.getPropertyAsIntWithDefault("Ice.LocatorCache.NegativeTimeout", 0);
     }
 
-    synchronized IceInternal.EndpointI[]
-    getAdapterEndpoints(String adapter, int ttl, Ice.Holder<Boolean> cached)
+    void
+    clear()
     {
-        if(ttl == 0) // Locator cache disabled.
+        for(Stripe stripe : _stripes)
         {
-            cached.value = false;
-            return null;
+            synchronized(stripe)
+            {
+                stripe.clear();
+            }
         }
+    }
 
-        EndpointTableEntry entry = _adapterEndpointsTable.get(adapter);
-        if(entry != null)
-        {
-            cached.value = checkTTL(entry.time, ttl);
-            return entry.endpoints;
-        }
-        cached.value = false;
-        return null;
+    IceInternal.EndpointI[]
+    getAdapterEndpoints(String adapter, int ttl, Ice.Holder<Boolean> cached, Ice.BooleanHolder refresh)
+    {
+        CacheEntry entry = get(adapter, ttl, cached, refresh);
+        return entry != null ? entry.endpoints : null;
     }
 
-    synchronized void
+    void
     addAdapterEndpoints(String adapter, IceInternal.EndpointI[] endpoints)
     {
-        _adapterEndpointsTable.put(adapter,
-                new EndpointTableEntry(IceInternal.Time.currentMonotonicTimeMillis(), endpoints));
+        put(adapter, new CacheEntry(IceInternal.Time.currentMonotonicTimeMillis(), endpoints, null));
     }
 
-    synchronized IceInternal.EndpointI[]
+    IceInternal.EndpointI[]
     removeAdapterEndpoints(String adapter)
     {
-        EndpointTableEntry entry = _adapterEndpointsTable.remove(adapter);
+        CacheEntry entry = remove(adapter);
         return entry != null ? entry.endpoints : null;
     }
 
-    synchronized Reference
-    getObjectReference(Ice.Identity id, int ttl, Ice.Holder<Boolean> cached)
+    Reference
+    getObjectReference(Ice.Identity id, int ttl, Ice.Holder<Boolean> cached, Ice.BooleanHolder refresh)
+    {
+        CacheEntry entry = get(id, ttl, cached, refresh);
+        return entry != null ? entry.reference : null;
+    }
+
+    void
+    addObjectReference(Ice.Identity id, Reference ref)
+    {
+        put(id, new CacheEntry(IceInternal.Time.currentMonotonicTimeMillis(), null, ref));
+    }
+
+    Reference
+    removeObjectReference(Ice.Identity id)
+    {
+        CacheEntry entry = remove(id);
+        return entry != null ? entry.reference : null;
+    }
+
+    boolean
+    isAdapterNotRegistered(String adapter, int ttl)
+    {
+        return isNotRegistered(adapter, ttl);
+    }
+
+    void
+    setAdapterNotRegistered(String adapter)
+    {
+        setNotRegistered(adapter);
+    }
+
+    boolean
+    isObjectNotRegistered(Ice.Identity id, int ttl)
+    {
+        return isNotRegistered(id, ttl);
+    }
+
+    void
+    setObjectNotRegistered(Ice.Identity id)
+    {
+        setNotRegistered(id);
+    }
+
+    //
+    // Called by the locator info when the lookup of an entry fails without
+    // updating the entry, the next lookup of the entry can refresh it again.
+    //
+    void
+    adapterRefreshFailed(String adapter)
+    {
+        refreshFailed(adapter);
+    }
+
+    void
+    objectRefreshFailed(Ice.Identity id)
     {
+        refreshFailed(id);
+    }
+
+    //
+    // Called by the locator info when a lookup is sent to the locator or
+    // when it waits for the response of a lookup which was already sent.
+    //
+    void
+    requestSent(boolean coalesced)
+    {
+        if(coalesced)
+        {
+            _coalesced.incrementAndGet();
+        }
+        else
+        {
+            _requests.incrementAndGet();
+        }
+    }
+
+    LocatorCacheMetrics
+    getMetrics()
+    {
+        LocatorCacheMetrics metrics = new LocatorCacheMetrics();
+        metrics.id = _name;
+        metrics.hits = _hits.get();
+        metrics.misses = _misses.get();
+        metrics.evictions = _evictions.get();
+        metrics.refreshes = _refreshes.get();
+        metrics.negativeHits = _negativeHits.get();
+        metrics.requests = _requests.get();
+        metrics.coalesced = _coalesced.get();
+        for(Stripe stripe : _stripes)
+        {
+            synchronized(stripe)
+            {
+                metrics.size += stripe.entries.size() + stripe.notRegistered.size();
+            }
+        }
+        metrics.total = metrics.hits + metrics.misses;
+        return metrics;
+    }
+
+    //
+    // Adapter IDs and identities are stored in the same stripes, a String
+    // is never equal to an Ice.Identity.
+    //
+    private CacheEntry
+    get(java.lang.Object key, int ttl, Ice.Holder<Boolean> cached, Ice.BooleanHolder refresh)
+    {
+        refresh.value = false;
         if(ttl == 0) // Locator cache disabled.
         {
             cached.value = false;
             return null;
         }
 
-        ReferenceTableEntry entry = _objectTable.get(id);
-        if(entry != null)
+        Stripe stripe = stripe(key);
+        CacheEntry entry;
+        synchronized(stripe)
+        {
+            entry = stripe.entries.get(key);
+            if(entry == null)
+            {
+                cached.value = false;
+            }
+            else if(ttl < 0) // TTL = infinite
+            {
+                cached.value = true;
+            }
+            else
+            {
+                long age = IceInternal.Time.currentMonotonicTimeMillis() - entry.time;
+                cached.value = age <= (long)ttl * 1000;
+                if(cached.value && _refreshAhead > 0 && !entry.refreshing && age >= (long)ttl * 10 * _refreshAhead)
+                {
+                    //
+                    // Only the first lookup after the refresh threshold
+                    // refreshes the entry.
+                    //
+                    entry.refreshing = true;
+                    refresh.value = true;
+                }
+            }
+        }
+
+        if(cached.value)
+        {
+            _hits.incrementAndGet();
+            if(refresh.value)
+            {
+                _refreshes.incrementAndGet();
+            }
+        }
+        else
         {
-            cached.value = checkTTL(entry.time, ttl);
-            return entry.reference;
+            _misses.incrementAndGet();
         }
-        cached.value = false;
-        return null;
+        return entry;
     }
 
-    synchronized void
-    addObjectReference(Ice.Identity id, Reference ref)
+    private boolean
+    isNotRegistered(java.lang.Object key, int ttl)
     {
-        _objectTable.put(id, new ReferenceTableEntry(IceInternal.Time.currentMonotonicTimeMillis(), ref));
+        if(ttl == 0 || _negativeTimeout <= 0) // Locator cache or negative caching disabled.
+        {
+            return false;
+        }
+
+        Stripe stripe = stripe(key);
+        synchronized(stripe)
+        {
+            CacheEntry entry = stripe.notRegistered.get(key);
+            if(entry == null)
+            {
+                return false;
+            }
+            if(IceInternal.Time.currentMonotonicTimeMillis() - entry.time > (long)_negativeTimeout * 1000)
+            {
+                stripe.notRegistered.remove(key);
+                return false;
+            }
+        }
+        _negativeHits.incrementAndGet();
+        return true;
     }
 
-    synchronized Reference
-    removeObjectReference(Ice.Identity id)
+    private void
+    setNotRegistered(java.lang.Object key)
     {
-        ReferenceTableEntry entry = _objectTable.remove(id);
-        return entry != null ? entry.reference : null;
+        Stripe stripe = stripe(key);
+        synchronized(stripe)
+        {
+            stripe.entries.remove(key);
+            if(_negativeTimeout > 0)
+            {
+                stripe.notRegistered.put(key, new CacheEntry(IceInternal.Time.currentMonotonicTimeMillis(), null, null));
+            }
+        }
     }
 
-    private boolean
-    checkTTL(long time, int ttl)
+    private void
+    refreshFailed(java.lang.Object key)
     {
-        assert(ttl != 0);
-        if(ttl < 0) // TTL = infinite
+        Stripe stripe = stripe(key);
+        synchronized(stripe)
         {
-            return true;
+            CacheEntry entry = stripe.entries.get(key);
+            if(entry != null)
+            {
+                entry.refreshing = false;
+            }
         }
-        else
+    }
+
+    private void
+    put(java.lang.Object key, CacheEntry entry)
+    {
+        Stripe stripe = stripe(key);
+        synchronized(stripe)
         {
-            return IceInternal.Time.currentMonotonicTimeMillis() - time <= ((long)ttl * 1000);
+            stripe.notRegistered.remove(key);
+            stripe.entries.put(key, entry);
         }
     }
 
-    private static final class EndpointTableEntry
+    private CacheEntry
+    remove(java.lang.Object key)
     {
-        public EndpointTableEntry(long time, IceInternal.EndpointI[] endpoints)
+        Stripe stripe = stripe(key);
+        synchronized(stripe)
         {
-            this.time = time;
-            this.endpoints = endpoints;
+            stripe.notRegistered.remove(key);
+            return stripe.entries.remove(key);
         }
+    }
 
-        final public long time;
-        final public IceInternal.EndpointI[] endpoints;
+    private Stripe
+    stripe(java.lang.Object key)
+    {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        return _stripes[h & (_stripes.length - 1)];
     }
 
-    private static final class ReferenceTableEntry
+    private static final class CacheEntry
     {
-        public ReferenceTableEntry(long time, Reference reference)
+        CacheEntry(long time, IceInternal.EndpointI[] endpoints, Reference reference)
         {
             this.time = time;
+            this.endpoints = endpoints;
             this.reference = reference;
         }
 
-        final public long time;
-        final public Reference reference;
+        final long time;
+        final IceInternal.EndpointI[] endpoints;
+        final Reference reference;
+        boolean refreshing; // Protected by the stripe lock.
     }
 
-    private java.util.Map<String, EndpointTableEntry> _adapterEndpointsTable =
-        new java.util.HashMap<String, EndpointTableEntry>();
-    private java.util.Map<Ice.Identity, ReferenceTableEntry> _objectTable =
-        new java.util.HashMap<Ice.Identity, ReferenceTableEntry>();
+    //
+    // A stripe keeps the entries of the registered and of the not registered
+    // adapters and objects in separate maps with their own size limit.
+    //
+    private final class Stripe
+    {
+        Stripe(int maxSize, int maxNegativeSize)
+        {
+            entries = new LruMap(maxSize);
+            notRegistered = new LruMap(maxNegativeSize);
+        }
+
+        void
+        clear()
+        {
+            entries.clear();
+            notRegistered.clear();
+        }
+
+        final LruMap entries;
+        final LruMap notRegistered;
+    }
+
+    //
+    // A map which keeps its entries in access order, the eldest entry is the
+    // least recently used.
+    //
+    private final class LruMap extends java.util.LinkedHashMap<java.lang.Object, CacheEntry>
+    {
+        LruMap(int maxSize)
+        {
+            super(16, 0.75f, true);
+            _maxSize = maxSize;
+        }
+
+        @Override
+        protected boolean
+        removeEldestEntry(java.util.Map.Entry<java.lang.Object, CacheEntry> eldest)
+        {
+            if(_maxSize > 0 && size() > _maxSize)
+            {
+                _evictions.incrementAndGet();
+                return true;
+            }
+            return false;
+        }
+
+        private final int _maxSize;
+    }
+
+    private static final int MaxStripes = 16;
+
+    private final String _name;
+    private final Stripe[] _stripes;
+    private final int _refreshAhead;
+    private final int _negativeTimeout;
+    private final java.util.concurrent.atomic.AtomicLong _hits = new java.util.concurrent.atomic.AtomicLong();
+    private final java.util.concurrent.atomic.AtomicLong _misses = new java.util.concurrent.atomic.AtomicLong();
+    private final java.util.concurrent.atomic.AtomicLong _evictions = new java.util.concurrent.atomic.AtomicLong();
+    private final java.util.concurrent.atomic.AtomicLong _refreshes = new java.util.concurrent.atomic.AtomicLong();
+    private final java.util.concurrent.atomic.AtomicLong _negativeHits = new java.util.concurrent.atomic.AtomicLong();
+    private final java.util.concurrent.atomic.AtomicLong _requests = new java.util.concurrent.atomic.AtomicLong();
+    private final java.util.concurrent.atomic.AtomicLong _coalesced = new java.util.concurrent.atomic.AtomicLong();
 }
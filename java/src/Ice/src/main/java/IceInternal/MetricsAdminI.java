@@ -18,6 +18,7 @@ public class MetricsAdminI extends IceMX._MetricsAdminDisp implements Ice.Proper
         "Accept.*",
         "Reject.*",
         "RetainDetached",
+        "Histogram",
         "Map.*",
     };
 
@@ -58,12 +59,27 @@ public class MetricsAdminI extends IceMX._MetricsAdminDisp implements Ice.Proper
         }
     }
 
+    //
+    // Provides the metrics of maps which don't rely on observers but
+    // return a snapshot of some statistics instead.
+    //
+    public interface MetricsProvider
+    {
+        IceMX.Metrics[] getMetrics();
+    }
+
     static class MetricsMapFactory<T extends IceMX.Metrics>
     {
         public MetricsMapFactory(Runnable updater, Class<T> cl)
+        {
+            this(updater, cl, null);
+        }
+
+        public MetricsMapFactory(Runnable updater, Class<T> cl, MetricsProvider provider)
         {
             _updater = updater;
             _class = cl;
+            _provider = provider;
         }
 
         public void
@@ -76,7 +92,7 @@ public class MetricsAdminI extends IceMX._MetricsAdminDisp implements Ice.Proper
         public MetricsMap<T>
         create(String mapPrefix, Ice.Properties properties)
         {
-            return new MetricsMap<T>(mapPrefix, _class, properties, _subMaps);
+            return new MetricsMap<T>(mapPrefix, _class, properties, _subMaps, _provider);
         }
 
         public <S extends IceMX.Metrics> void
@@ -87,6 +103,7 @@ public class MetricsAdminI extends IceMX._MetricsAdminDisp implements Ice.Proper
 
         final private Runnable _updater;
         final private Class<T> _class;
+        final private MetricsProvider _provider;
         final private java.util.Map<String, MetricsMap.SubMapFactory<?>> _subMaps =
             new java.util.HashMap<String, MetricsMap.SubMapFactory<?>>();
     }
@@ -266,6 +283,25 @@ public class MetricsAdminI extends IceMX._MetricsAdminDisp implements Ice.Proper
         }
     }
 
+    public <T extends IceMX.Metrics> void
+    registerSnapshotMap(String map, Class<T> cl, MetricsProvider provider)
+    {
+        synchronized(this)
+        {
+            Runnable updater = new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    // Nothing to update, the metrics are obtained from the provider.
+                }
+            };
+            MetricsMapFactory<T> factory = new MetricsMapFactory<T>(updater, cl, provider);
+            _factories.put(map, factory);
+            addOrUpdateMap(map, factory);
+        }
+    }
+
     synchronized public <S extends IceMX.Metrics> void
     registerSubMap(String map, String subMap, Class<S> cl, java.lang.reflect.Field field)
     {
@@ -323,6 +359,30 @@ public class MetricsAdminI extends IceMX._MetricsAdminDisp implements Ice.Proper
         return maps;
     }
 
+    //
+    // Returns the maps of the enabled views, by map name and view name.
+    //
+    synchronized java.util.Map<String, java.util.Map<String, MetricsMap<?>>>
+    getMapsByName()
+    {
+        java.util.Map<String, java.util.Map<String, MetricsMap<?>>> maps =
+            new java.util.TreeMap<String, java.util.Map<String, MetricsMap<?>>>();
+        for(java.util.Map.Entry<String, MetricsViewI> v : _views.entrySet())
+        {
+            for(String mapName : v.getValue().getMaps())
+            {
+                java.util.Map<String, MetricsMap<?>> views = maps.get(mapName);
+                if(views == null)
+                {
+                    views = new java.util.TreeMap<String, MetricsMap<?>>();
+                    maps.put(mapName, views);
+                }
+                views.put(v.getKey(), v.getValue().getMap(mapName, IceMX.Metrics.class));
+            }
+        }
+        return maps;
+    }
+
     public Ice.Logger
     getLogger()
     {
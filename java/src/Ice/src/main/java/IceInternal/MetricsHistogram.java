@@ -0,0 +1,105 @@
+// **********************************************************************
+//
+// Copyright (c) 2003-2016 ZeroC, Inc. All rights reserved.
+//
+// This copy of Ice is licensed to you under the terms described in the
+// ICE_LICENSE file included in this distribution.
+//
+// **********************************************************************
+
+package IceInternal;
+
+//
+// A log-linear histogram of the lifetime of the objects observed by a
+// metrics object, in microseconds.
+//
+// Values below 16 have their own bucket. Larger values are bucketed by
+// power of two, and each power of two is split into 16 linear buckets, so
+// a value is reported with an error of at most 1/16. Values of 2^36
+// microseconds (about 19 hours) or more are counted in the last bucket.
+//
+// The histogram has a fixed size and values are recorded without locking.
+// Percentiles are computed from the bucket counts, which can miss values
+// recorded concurrently.
+//
+public final class MetricsHistogram
+{
+    public void
+    record(long value)
+    {
+        _counts.incrementAndGet(index(value));
+    }
+
+    //
+    // Returns the given percentiles (between 0 and 1) of the recorded
+    // values or null if no values were recorded. A percentile is reported
+    // as the highest value of its bucket.
+    //
+    public long[]
+    percentiles(double... percentiles)
+    {
+        long[] counts = new long[_size];
+        long total = 0;
+        for(int i = 0; i < _size; ++i)
+        {
+            counts[i] = _counts.get(i);
+            total += counts[i];
+        }
+        if(total == 0)
+        {
+            return null;
+        }
+
+        long[] values = new long[percentiles.length];
+        for(int i = 0; i < percentiles.length; ++i)
+        {
+            long rank = Math.max(1, (long)Math.ceil(percentiles[i] * total));
+            long count = 0;
+            int bucket = 0;
+            while(bucket < _size - 1 && (count += counts[bucket]) < rank)
+            {
+                ++bucket;
+            }
+            values[i] = highestValue(bucket);
+        }
+        return values;
+    }
+
+    static int
+    index(long value)
+    {
+        if(value < _subBuckets)
+        {
+            return value < 0 ? 0 : (int)value;
+        }
+
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if(exponent > _maxExponent)
+        {
+            return _size - 1;
+        }
+        return (exponent - _subBucketBits + 1) * _subBuckets + (int)((value >>> (exponent - _subBucketBits)) &
+                                                                     (_subBuckets - 1));
+    }
+
+    static long
+    highestValue(int index)
+    {
+        if(index < _subBuckets)
+        {
+            return index;
+        }
+
+        int exponent = index / _subBuckets + _subBucketBits - 1;
+        long lowest = (long)(_subBuckets + index % _subBuckets) << (exponent - _subBucketBits);
+        return lowest + (1L << (exponent - _subBucketBits)) - 1;
+    }
+
+    private static final int _subBucketBits = 4;
+    private static final int _subBuckets = 1 << _subBucketBits;
+    private static final int _maxExponent = 35;
+    private static final int _size = (_maxExponent - _subBucketBits + 2) * _subBuckets;
+
+    private final java.util.concurrent.atomic.AtomicLongArray _counts =
+        new java.util.concurrent.atomic.AtomicLongArray(_size);
+}
@@ -11,17 +11,23 @@ package IceInternal;
 
 public class MetricsMap<T extends IceMX.Metrics>
 {
+    //
+    // The total and current counts and the total lifetime of an entry are
+    // updated without locking. The other fields of the metrics object, the
+    // failures and the sub-maps are protected by the entry.
+    //
     public class Entry
     {
         Entry(T obj)
         {
             _object = obj;
+            _lifetimes = _histogram ? new MetricsHistogram() : null;
         }
 
         public void
         failed(String exceptionName)
         {
-            synchronized(MetricsMap.this)
+            synchronized(this)
             {
                 ++_object.failures;
                 if(_failures == null)
@@ -38,7 +44,7 @@ public class MetricsMap<T extends IceMX.Metrics>
         getMatching(String mapName, IceMX.MetricsHelper<S> helper, Class<S> cl)
         {
             SubMap<S> m;
-            synchronized(MetricsMap.this)
+            synchronized(this)
             {
                 m = _subMaps != null ? (SubMap<S>)_subMaps.get(mapName) : null;
                 if(m == null)
@@ -61,10 +67,14 @@ public class MetricsMap<T extends IceMX.Metrics>
         public void
         detach(long lifetime)
         {
-            synchronized(MetricsMap.this)
+            _counters.add(_lifetimeCounter, lifetime);
+            if(_lifetimes != null)
             {
-                _object.totalLifetime += lifetime;
-                if(--_object.current == 0)
+                _lifetimes.record(lifetime);
+            }
+            if(_current.decrementAndGet() == 0)
+            {
+                synchronized(MetricsMap.this)
                 {
                     detached(this);
                 }
@@ -74,7 +84,7 @@ public class MetricsMap<T extends IceMX.Metrics>
         public void
         execute(IceMX.Observer.MetricsUpdate<T> func)
         {
-            synchronized(MetricsMap.this)
+            synchronized(this)
             {
                 func.update(_object);
             }
@@ -86,7 +96,7 @@ public class MetricsMap<T extends IceMX.Metrics>
             return MetricsMap.this;
         }
 
-        private IceMX.MetricsFailures
+        private synchronized IceMX.MetricsFailures
         getFailures()
         {
             if(_failures == null)
@@ -99,26 +109,88 @@ public class MetricsMap<T extends IceMX.Metrics>
             return f;
         }
 
-        private void
+        //
+        // Returns false if the entry was removed from the map.
+        //
+        private boolean
         attach(IceMX.MetricsHelper<T> helper)
         {
-            ++_object.total;
-            ++_object.current;
-            helper.initMetrics(_object);
+            int current;
+            do
+            {
+                current = _current.get();
+                if(current < 0)
+                {
+                    return false;
+                }
+            }
+            while(!_current.compareAndSet(current, current + 1));
+
+            _counters.add(_totalCounter, 1);
+            synchronized(this)
+            {
+                helper.initMetrics(_object);
+            }
+            return true;
         }
 
         private boolean
         isDetached()
         {
-            return _object.current == 0;
+            return _current.get() == 0;
+        }
+
+        //
+        // Must be called with the map locked. Returns false if the entry
+        // was attached again since it was detached.
+        //
+        private boolean
+        remove()
+        {
+            return _current.compareAndSet(0, -1);
+        }
+
+        private synchronized void
+        visit(String parentId, Visitor visitor)
+        {
+            visitor.visit(parentId, _object, _counters.sum(_totalCounter), Math.max(_current.get(), 0),
+                          _counters.sum(_lifetimeCounter), _lifetimes);
+        }
+
+        private void
+        visitSubMap(String subMapName, Visitor visitor)
+        {
+            SubMap<?> m;
+            synchronized(this)
+            {
+                m = _subMaps != null ? _subMaps.get(subMapName) : null;
+            }
+            if(m != null)
+            {
+                m._map.visit(_object.id, visitor);
+            }
         }
 
         @Override
         @SuppressWarnings("unchecked")
-        public IceMX.Metrics
+        public synchronized IceMX.Metrics
         clone()
         {
             T metrics = (T)_object.clone();
+            metrics.total = _counters.sum(_totalCounter);
+            metrics.current = Math.max(_current.get(), 0);
+            metrics.totalLifetime = _counters.sum(_lifetimeCounter);
+            if(_lifetimes != null)
+            {
+                long[] percentiles = _lifetimes.percentiles(0.5, 0.9, 0.99, 0.999);
+                if(percentiles != null)
+                {
+                    metrics.setLifetimeP50(percentiles[0]);
+                    metrics.setLifetimeP90(percentiles[1]);
+                    metrics.setLifetimeP99(percentiles[2]);
+                    metrics.setLifetimeP999(percentiles[3]);
+                }
+            }
             if(_subMaps != null)
             {
                 for(SubMap<?> s : _subMaps.values())
@@ -129,11 +201,76 @@ public class MetricsMap<T extends IceMX.Metrics>
             return metrics;
         }
 
-        private T _object;
+        final private T _object;
+        final private StripedCounters _counters = new StripedCounters(2);
+        final private java.util.concurrent.atomic.AtomicInteger _current =
+            new java.util.concurrent.atomic.AtomicInteger(); // -1 once removed from the map.
+        final private MetricsHistogram _lifetimes;
         private java.util.Map<String, Integer> _failures;
         private java.util.Map<String, SubMap<?>> _subMaps;
     }
 
+    //
+    // Visits the metrics objects of a map, see visit(). The total, current
+    // and lifetime counters of a metrics object aren't stored with the
+    // object and are provided separately. The histogram of the lifetimes is
+    // null unless enabled for the map.
+    //
+    interface Visitor
+    {
+        void visit(String parentId, IceMX.Metrics metrics, long total, int current, long totalLifetime,
+                   MetricsHistogram lifetimes);
+    }
+
+    //
+    // The accept, reject and group-by attributes of the map compiled for the
+    // attribute resolver of a helper class. The attributes are looked up
+    // once when the rules are compiled rather than for each observer. A map
+    // is used with a single helper class so the rules are only compiled
+    // once, unless the map is a sub-map shared by several helper classes.
+    //
+    private final class Rules
+    {
+        Rules(IceMX.MetricsHelper.AttributeResolver attributes)
+        {
+            this.attributes = attributes;
+
+            accept = new IceMX.MetricsHelper.Resolver<?>[_accept.size()];
+            acceptPatterns = new java.util.regex.Pattern[_accept.size()];
+            int i = 0;
+            for(java.util.Map.Entry<String, java.util.regex.Pattern> e : _accept.entrySet())
+            {
+                accept[i] = attributes.getResolver(e.getKey());
+                acceptPatterns[i++] = e.getValue();
+            }
+
+            reject = new IceMX.MetricsHelper.Resolver<?>[_reject.size()];
+            rejectPatterns = new java.util.regex.Pattern[_reject.size()];
+            i = 0;
+            for(java.util.Map.Entry<String, java.util.regex.Pattern> e : _reject.entrySet())
+            {
+                reject[i] = attributes.getResolver(e.getKey());
+                rejectPatterns[i++] = e.getValue();
+            }
+
+            groupBy = new IceMX.MetricsHelper.Resolver<?>[_groupByAttributes.size()];
+            i = 0;
+            for(String attribute : _groupByAttributes)
+            {
+                groupBy[i++] = attributes.getResolver(attribute);
+            }
+            separators = _groupBySeparators.toArray(new String[_groupBySeparators.size()]);
+        }
+
+        final IceMX.MetricsHelper.AttributeResolver attributes;
+        final IceMX.MetricsHelper.Resolver<?>[] accept;
+        final java.util.regex.Pattern[] acceptPatterns;
+        final IceMX.MetricsHelper.Resolver<?>[] reject;
+        final java.util.regex.Pattern[] rejectPatterns;
+        final IceMX.MetricsHelper.Resolver<?>[] groupBy;
+        final String[] separators;
+    }
+
     static class SubMap<S extends IceMX.Metrics>
     {
         public
@@ -203,16 +340,24 @@ public class MetricsMap<T extends IceMX.Metrics>
     }
 
     MetricsMap(String mapPrefix, Class<T> cl, Ice.Properties props, java.util.Map<String, SubMapFactory<?>> subMaps)
+    {
+        this(mapPrefix, cl, props, subMaps, null);
+    }
+
+    MetricsMap(String mapPrefix, Class<T> cl, Ice.Properties props, java.util.Map<String, SubMapFactory<?>> subMaps,
+               MetricsAdminI.MetricsProvider provider)
     {
         MetricsAdminI.validateProperties(mapPrefix, props);
         _properties = props.getPropertiesForPrefix(mapPrefix);
 
         _retain = props.getPropertyAsIntWithDefault(mapPrefix + "RetainDetached", 10);
+        _histogram = props.getPropertyAsInt(mapPrefix + "Histogram") > 0;
         _accept = parseRule(props, mapPrefix + "Accept");
         _reject = parseRule(props, mapPrefix + "Reject");
         _groupByAttributes = new java.util.ArrayList<String>();
         _groupBySeparators = new java.util.ArrayList<String>();
         _class = cl;
+        _provider = provider;
 
         String groupBy = props.getPropertyWithDefault(mapPrefix + "GroupBy", "id");
         if(!groupBy.isEmpty())
@@ -292,10 +437,12 @@ public class MetricsMap<T extends IceMX.Metrics>
         _groupByAttributes = map._groupByAttributes;
         _groupBySeparators = map._groupBySeparators;
         _retain = map._retain;
+        _histogram = map._histogram;
         _accept = map._accept;
         _reject = map._reject;
         _class = map._class;
         _subMaps = map._subMaps;
+        _provider = map._provider;
     }
 
     java.util.Map<String, String>
@@ -307,6 +454,11 @@ public class MetricsMap<T extends IceMX.Metrics>
     synchronized IceMX.Metrics[]
     getMetrics()
     {
+        if(_provider != null)
+        {
+            return _provider.getMetrics();
+        }
+
         IceMX.Metrics[] metrics = new IceMX.Metrics[_objects.size()];
         int i = 0;
         for(Entry e : _objects.values())
@@ -342,6 +494,68 @@ public class MetricsMap<T extends IceMX.Metrics>
         return null;
     }
 
+    //
+    // Calls the visitor with each metrics object of the map, with the map
+    // and the metrics object locked. The metrics objects aren't cloned, the
+    // visitor must not keep or modify them.
+    //
+    void
+    visit(Visitor visitor)
+    {
+        visit(null, visitor);
+    }
+
+    //
+    // Calls the visitor with each metrics object of the given sub-map of
+    // each entry, the parent identifier is the identifier of the entry.
+    //
+    synchronized void
+    visitSubMap(String subMapName, Visitor visitor)
+    {
+        for(Entry e : _objects.values())
+        {
+            e.visitSubMap(subMapName, visitor);
+        }
+    }
+
+    Class<T>
+    getMetricsClass()
+    {
+        return _class;
+    }
+
+    java.util.Map<String, Class<?>>
+    getSubMapClasses()
+    {
+        java.util.Map<String, Class<?>> classes = new java.util.TreeMap<String, Class<?>>();
+        if(_subMaps != null)
+        {
+            for(java.util.Map.Entry<String, SubMapCloneFactory<?>> e : _subMaps.entrySet())
+            {
+                classes.put(e.getKey(), e.getValue()._map.getMetricsClass());
+            }
+        }
+        return classes;
+    }
+
+    private synchronized void
+    visit(String parentId, Visitor visitor)
+    {
+        if(_provider != null)
+        {
+            for(IceMX.Metrics m : _provider.getMetrics())
+            {
+                visitor.visit(parentId, m, m.total, m.current, m.totalLifetime, null);
+            }
+            return;
+        }
+
+        for(Entry e : _objects.values())
+        {
+            e.visit(parentId, visitor);
+        }
+    }
+
     @SuppressWarnings("unchecked")
     public <S extends IceMX.Metrics> SubMap<S>
     createSubMap(String subMapName, Class<S> cl)
@@ -361,20 +575,27 @@ public class MetricsMap<T extends IceMX.Metrics>
     public Entry
     getMatching(IceMX.MetricsHelper<T> helper, Entry previous)
     {
+        Rules rules = _rules;
+        if(rules == null || rules.attributes != helper.getAttributeResolver())
+        {
+            rules = new Rules(helper.getAttributeResolver());
+            _rules = rules;
+        }
+
         //
         // Check the accept and reject filters.
         //
-        for(java.util.Map.Entry<String, java.util.regex.Pattern> e : _accept.entrySet())
+        for(int i = 0; i < rules.accept.length; ++i)
         {
-            if(!match(e.getKey(), e.getValue(), helper, false))
+            if(!match(rules.accept[i], rules.acceptPatterns[i], helper, false))
             {
                 return null;
             }
         }
 
-        for(java.util.Map.Entry<String, java.util.regex.Pattern> e : _reject.entrySet())
+        for(int i = 0; i < rules.reject.length; ++i)
         {
-            if(match(e.getKey(), e.getValue(), helper, true))
+            if(match(rules.reject[i], rules.rejectPatterns[i], helper, true))
             {
                 return null;
             }
@@ -386,20 +607,19 @@ public class MetricsMap<T extends IceMX.Metrics>
         String key;
         try
         {
-            if(_groupByAttributes.size() == 1)
+            if(rules.groupBy.length == 1)
             {
-                key = helper.resolve(_groupByAttributes.get(0));
+                key = rules.groupBy[0].resolve(helper);
             }
             else
             {
                 StringBuilder os = new StringBuilder();
-                java.util.Iterator<String> q = _groupBySeparators.iterator();
-                for(String p : _groupByAttributes)
+                for(int i = 0; i < rules.groupBy.length; ++i)
                 {
-                    os.append(helper.resolve(p));
-                    if(q.hasNext())
+                    os.append(rules.groupBy[i].resolve(helper));
+                    if(i < rules.separators.length)
                     {
-                        os.append(q.next());
+                        os.append(rules.separators[i]);
                     }
                 }
                 key = os.toString();
@@ -411,34 +631,43 @@ public class MetricsMap<T extends IceMX.Metrics>
         }
 
         //
-        // Lookup the metrics object.
+        // Lookup the metrics object. The previous entry is still attached
+        // to the previous observer so it can't be removed from the map.
         //
-        synchronized(this)
+        if(previous != null && previous._object.id.equals(key))
         {
-            if(previous != null && previous._object.id.equals(key))
-            {
-                assert(_objects.get(key) == previous);
-                return previous;
-            }
+            return previous;
+        }
 
-            Entry e = _objects.get(key);
-            if(e == null)
+        Entry e = _objects.get(key);
+        if(e == null || !e.attach(helper))
+        {
+            synchronized(this)
             {
-                try
-                {
-                    T t = _class.newInstance();
-                    t.id = key;
-                    e = new Entry(t);
-                    _objects.put(key, e);
-                }
-                catch(Exception ex)
+                //
+                // Entries are removed with the map locked, the entry found
+                // here can't be removed before it's attached.
+                //
+                e = _objects.get(key);
+                if(e == null)
                 {
-                    assert(false);
+                    try
+                    {
+                        T t = _class.newInstance();
+                        t.id = key;
+                        e = new Entry(t);
+                        _objects.put(key, e);
+                    }
+                    catch(Exception ex)
+                    {
+                        assert(false);
+                    }
                 }
+                boolean attached = e.attach(helper);
+                assert(attached);
             }
-            e.attach(helper);
-            return e;
         }
+        return e;
     }
 
     private void
@@ -466,14 +695,22 @@ public class MetricsMap<T extends IceMX.Metrics>
             }
         }
 
-        // If there's still no room, remove the oldest entry (at the front).
+        // If there's still no room, remove the oldest entry (at the front)
+        // unless it was attached again since the queue was compressed.
         if(_detachedQueue.size() == _retain)
         {
-            _objects.remove(_detachedQueue.pollFirst()._object.id);
+            Entry e = _detachedQueue.pollFirst();
+            if(e.remove())
+            {
+                _objects.remove(e._object.id);
+            }
         }
 
-        // Add the entry at the back of the queue.
-        _detachedQueue.add(entry);
+        // Add the entry at the back of the queue if it's still detached.
+        if(entry.isDetached())
+        {
+            _detachedQueue.add(entry);
+        }
     }
 
     private java.util.Map<String, java.util.regex.Pattern>
@@ -489,12 +726,13 @@ public class MetricsMap<T extends IceMX.Metrics>
     }
 
     private boolean
-    match(String attribute, java.util.regex.Pattern regex, IceMX.MetricsHelper<T> helper, boolean reject)
+    match(IceMX.MetricsHelper.Resolver<?> resolver, java.util.regex.Pattern regex, IceMX.MetricsHelper<T> helper,
+          boolean reject)
     {
         String value;
         try
         {
-            value = helper.resolve(attribute);
+            value = resolver.resolve(helper);
         }
         catch(Exception ex)
         {
@@ -507,11 +745,22 @@ public class MetricsMap<T extends IceMX.Metrics>
     final private java.util.List<String> _groupByAttributes;
     final private java.util.List<String> _groupBySeparators;
     final private int _retain;
+    final private boolean _histogram;
     final private java.util.Map<String, java.util.regex.Pattern> _accept;
     final private java.util.Map<String, java.util.regex.Pattern> _reject;
     final private Class<T> _class;
-
-    final private java.util.Map<String, Entry> _objects = new java.util.HashMap<String, Entry>();
+    final private MetricsAdminI.MetricsProvider _provider;
+
+    //
+    // The entries are looked up without locking the map, entries are added
+    // and removed with the map locked.
+    //
+    final private java.util.Map<String, Entry> _objects =
+        new java.util.concurrent.ConcurrentHashMap<String, Entry>();
     final private java.util.Map<String, SubMapCloneFactory<?>> _subMaps;
     private java.util.Deque<Entry> _detachedQueue;
+    private volatile Rules _rules;
+
+    static final private int _totalCounter = 0;
+    static final private int _lifetimeCounter = 1;
 }
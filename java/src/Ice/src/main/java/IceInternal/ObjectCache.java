@@ -0,0 +1,171 @@
+// **********************************************************************
+//
+// Copyright (c) 2003-2016 ZeroC, Inc. All rights reserved.
+//
+// This copy of Ice is licensed to you under the terms described in the
+// ICE_LICENSE file included in this distribution.
+//
+// **********************************************************************
+
+package IceInternal;
+
+//
+// A communicator-wide cache of objects recycled by the request paths:
+// Incoming objects and the streams of invocations and AMD dispatches.
+//
+// Each thread keeps its objects in its own bounded stack, acquire() and
+// release() don't lock or allocate. An object released by a thread whose
+// stack is full, or by a virtual thread, is left to the garbage collector.
+// The stacks are dropped when the communicator is destroyed, see
+// ThreadCaches.
+//
+// In debug mode, the cache checks that an object isn't released twice or
+// released while it's cached, and it can report the objects which were
+// acquired but never released when the communicator is destroyed.
+//
+public final class ObjectCache<T>
+{
+    static <T> ObjectCache<T> create(Ice.InitializationData initData, String name, boolean checkLeaks)
+    {
+        int threadCacheSize = initData.properties.getPropertyAsIntWithDefault("Ice.ObjectCache.ThreadCacheSize", 16);
+        if(threadCacheSize <= 0)
+        {
+            return null; // Caching disabled.
+        }
+
+        boolean debug = initData.properties.getPropertyAsInt("Ice.ObjectCache.Debug") > 0;
+        return new ObjectCache<T>(name, threadCacheSize, debug ? initData.logger : null, checkLeaks);
+    }
+
+    ObjectCache(String name, int threadCacheSize, Ice.Logger logger, boolean checkLeaks)
+    {
+        _name = name;
+        _logger = logger;
+        _checkLeaks = checkLeaks;
+
+        final int size = threadCacheSize;
+        _threadCaches = new ThreadCaches<ThreadCache>()
+        {
+            @Override
+            protected ThreadCache create()
+            {
+                return new ThreadCache(size);
+            }
+        };
+    }
+
+    //
+    // Returns a cached object or null if the cache of the calling thread
+    // is empty.
+    //
+    public T
+    acquire()
+    {
+        ThreadCache cache = _threadCaches.get();
+        if(cache == null || cache.count == 0)
+        {
+            if(_logger != null)
+            {
+                synchronized(this)
+                {
+                    ++_outstanding;
+                }
+            }
+            return null;
+        }
+
+        @SuppressWarnings("unchecked")
+        T obj = (T)cache.objects[--cache.count];
+        cache.objects[cache.count] = null;
+
+        if(_logger != null)
+        {
+            synchronized(this)
+            {
+                _cached.remove(obj);
+                ++_outstanding;
+            }
+        }
+        return obj;
+    }
+
+    //
+    // Caches an object which is no longer used. The object must be reset
+    // by the caller.
+    //
+    public void
+    release(T obj)
+    {
+        if(_logger != null)
+        {
+            synchronized(this)
+            {
+                if(_cached.put(obj, Boolean.TRUE) != null)
+                {
+                    _logger.error("object cache `" + _name + "': object released twice:\n" +
+                                  Ex.toString(new java.lang.Exception(obj.toString())));
+                    return;
+                }
+                --_outstanding;
+            }
+        }
+
+        ThreadCache cache = _threadCaches.get();
+        if(cache != null && cache.count < cache.objects.length)
+        {
+            cache.objects[cache.count++] = obj;
+        }
+        else if(_logger != null)
+        {
+            synchronized(this)
+            {
+                _cached.remove(obj);
+            }
+        }
+    }
+
+    //
+    // Only for use by Instance.destroy().
+    //
+    void
+    destroy()
+    {
+        _threadCaches.destroy();
+
+        if(_logger != null && _checkLeaks)
+        {
+            int outstanding;
+            synchronized(this)
+            {
+                outstanding = _outstanding;
+            }
+            if(outstanding > 0)
+            {
+                _logger.warning("object cache `" + _name + "': " + outstanding + " object(s) acquired and not " +
+                                "released");
+            }
+        }
+    }
+
+    private static final class ThreadCache
+    {
+        ThreadCache(int size)
+        {
+            objects = new java.lang.Object[size];
+        }
+
+        final java.lang.Object[] objects;
+        int count;
+    }
+
+    private final String _name;
+    private final ThreadCaches<ThreadCache> _threadCaches;
+
+    //
+    // Debug mode only, protected by this object.
+    //
+    private final Ice.Logger _logger;
+    private final boolean _checkLeaks;
+    private final java.util.Map<T, Boolean> _cached = new java.util.IdentityHashMap<T, Boolean>();
+    private int _outstanding;
+}
@@ -0,0 +1,585 @@
+// **********************************************************************
+//
+// Copyright (c) 2003-2016 ZeroC, Inc. All rights reserved.
+//
+// This copy of Ice is licensed to you under the terms described in the
+// ICE_LICENSE file included in this distribution.
+//
+// **********************************************************************
+
+package IceInternal;
+
+//
+// Serves the enabled metrics views of the communicator in the OpenMetrics
+// text format. The metrics are returned for a GET /metrics request sent to
+// the HTTP listener configured with IceMX.OpenMetrics.Host and
+// IceMX.OpenMetrics.Port.
+//
+// Each map of a view is exported as a set of metric families named after
+// the map, for example the Dispatch map is exported as ice_dispatch (the
+// total), ice_dispatch_current, ice_dispatch_lifetime_microseconds,
+// ice_dispatch_failures and one family for each attribute of the metrics
+// class, such as ice_dispatch_size. The samples are labelled with the
+// view name and the metrics identifier, and with the identifier of the
+// parent metrics for sub-maps.
+//
+// Requests are served one at a time by the listener thread. The metrics
+// objects are read in place under the lock of their map rather than
+// cloned, and the response is written into buffers which are reused for
+// the next request.
+//
+public final class OpenMetricsExporter implements Ice.Plugin
+{
+    public
+    OpenMetricsExporter(Ice.Communicator communicator)
+    {
+        _communicator = communicator;
+    }
+
+    @Override
+    public void
+    initialize()
+    {
+        Ice.Object facet = _communicator.findAdminFacet("Metrics");
+        if(!(facet instanceof MetricsAdminI))
+        {
+            throw new Ice.PluginInitializationException(
+                "OpenMetrics: the Metrics admin facet is not enabled, set Ice.Admin.Enabled to enable it");
+        }
+        _admin = (MetricsAdminI)facet;
+
+        Ice.Properties properties = _communicator.getProperties();
+        String host = properties.getPropertyWithDefault("IceMX.OpenMetrics.Host", "127.0.0.1");
+        int port = properties.getPropertyAsIntWithDefault("IceMX.OpenMetrics.Port", 0);
+        try
+        {
+            _socket = new java.net.ServerSocket();
+            _socket.setReuseAddress(true);
+            _socket.bind(new java.net.InetSocketAddress(host, port));
+        }
+        catch(java.io.IOException ex)
+        {
+            close(_socket);
+            throw new Ice.PluginInitializationException("OpenMetrics: unable to listen on " + host + ":" + port,
+                                                        ex);
+        }
+
+        _thread = new Thread(new Runnable()
+            {
+                @Override
+                public void
+                run()
+                {
+                    OpenMetricsExporter.this.run();
+                }
+            }, Util.createThreadName(properties, "IceMX.OpenMetrics"));
+        _thread.start();
+    }
+
+    @Override
+    public void
+    destroy()
+    {
+        synchronized(this)
+        {
+            _destroyed = true;
+            close(_socket);
+            close(_client);
+        }
+
+        if(_thread != null)
+        {
+            try
+            {
+                _thread.join();
+            }
+            catch(InterruptedException ex)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    //
+    // Returns the port of the listener, useful if IceMX.OpenMetrics.Port is
+    // set to 0 to listen on a port chosen by the system.
+    //
+    public int
+    getPort()
+    {
+        return _socket.getLocalPort();
+    }
+
+    private void
+    run()
+    {
+        while(true)
+        {
+            java.net.Socket client;
+            try
+            {
+                client = _socket.accept();
+            }
+            catch(java.io.IOException ex)
+            {
+                synchronized(this)
+                {
+                    if(_destroyed)
+                    {
+                        return;
+                    }
+                }
+                _communicator.getLogger().warning("OpenMetrics: unable to accept connection:\n" + ex);
+                continue;
+            }
+
+            synchronized(this)
+            {
+                if(_destroyed)
+                {
+                    close(client);
+                    return;
+                }
+                _client = client;
+            }
+
+            try
+            {
+                client.setSoTimeout(_timeout);
+                serve(client);
+            }
+            catch(java.io.IOException ex)
+            {
+                // Ignore, the client closed the connection or didn't send the request in time.
+            }
+            catch(Ice.CommunicatorDestroyedException ex)
+            {
+                // Ignore, the communicator is being destroyed.
+            }
+            catch(RuntimeException ex)
+            {
+                _communicator.getLogger().warning("OpenMetrics: unexpected exception while serving metrics:\n" +
+                                                  Ex.toString(ex));
+            }
+            finally
+            {
+                synchronized(this)
+                {
+                    _client = null;
+                }
+                close(client);
+            }
+        }
+    }
+
+    private void
+    serve(java.net.Socket client)
+        throws java.io.IOException
+    {
+        String request = readRequest(new java.io.BufferedInputStream(client.getInputStream()));
+        if(request == null)
+        {
+            return;
+        }
+
+        java.io.OutputStream os = client.getOutputStream();
+        String[] tokens = request.split(" ");
+        if(tokens.length != 3 || !tokens[2].startsWith("HTTP/"))
+        {
+            writeResponse(os, "400 Bad Request", "text/plain; charset=utf-8", "Bad Request\n");
+        }
+        else if(!tokens[0].equals("GET") && !tokens[0].equals("HEAD"))
+        {
+            writeResponse(os, "405 Method Not Allowed", "text/plain; charset=utf-8", "Method Not Allowed\n");
+        }
+        else if(!tokens[1].equals("/metrics") && !tokens[1].startsWith("/metrics?"))
+        {
+            writeResponse(os, "404 Not Found", "text/plain; charset=utf-8", "Not Found\n");
+        }
+        else
+        {
+            _out.setLength(0);
+            writeMetrics();
+            writeResponse(os, "200 OK", _contentType, tokens[0].equals("HEAD") ? null : _out);
+        }
+    }
+
+    //
+    // Reads the request header and returns the request line, or null if
+    // the connection is closed before the end of the header.
+    //
+    private String
+    readRequest(java.io.InputStream is)
+        throws java.io.IOException
+    {
+        int length = 0;
+        while(length < 4 || _request[length - 1] != '\n' || _request[length - 2] != '\r' ||
+              _request[length - 3] != '\n' || _request[length - 4] != '\r')
+        {
+            if(length == _request.length)
+            {
+                throw new java.io.IOException("request header too large");
+            }
+            int b = is.read();
+            if(b < 0)
+            {
+                return null;
+            }
+            _request[length++] = (byte)b;
+        }
+
+        int end = 0;
+        while(_request[end] != '\r')
+        {
+            ++end;
+        }
+        return new String(_request, 0, end, "ISO-8859-1");
+    }
+
+    private void
+    writeResponse(java.io.OutputStream os, String status, String contentType, CharSequence body)
+        throws java.io.IOException
+    {
+        java.nio.ByteBuffer bytes = encode(body != null ? body : _out);
+        StringBuilder header = new StringBuilder(128);
+        header.append("HTTP/1.1 ").append(status).append("\r\n");
+        header.append("Content-Type: ").append(contentType).append("\r\n");
+        header.append("Content-Length: ").append(bytes.remaining()).append("\r\n");
+        header.append("Connection: close\r\n\r\n");
+        os.write(header.toString().getBytes("ISO-8859-1"));
+        if(body != null)
+        {
+            os.write(bytes.array(), 0, bytes.remaining());
+        }
+        os.flush();
+    }
+
+    private java.nio.ByteBuffer
+    encode(CharSequence s)
+    {
+        while(true)
+        {
+            _bytes.clear();
+            _encoder.reset();
+            java.nio.CharBuffer chars = java.nio.CharBuffer.wrap(s);
+            if(!_encoder.encode(chars, _bytes, true).isOverflow() && !_encoder.flush(_bytes).isOverflow())
+            {
+                _bytes.flip();
+                return _bytes;
+            }
+            _bytes = java.nio.ByteBuffer.allocate(Math.max(_bytes.capacity() * 2, s.length() + s.length() / 4));
+        }
+    }
+
+    private void
+    writeMetrics()
+    {
+        for(java.util.Map.Entry<String, java.util.Map<String, MetricsMap<?>>> e :
+                _admin.getMapsByName().entrySet())
+        {
+            java.util.Map<String, MetricsMap<?>> views = e.getValue();
+            MetricsMap<?> first = views.values().iterator().next();
+            String name = "ice_" + toSnakeCase(e.getKey());
+            writeMap(name, first.getMetricsClass(), views, null);
+            for(java.util.Map.Entry<String, Class<?>> s : first.getSubMapClasses().entrySet())
+            {
+                writeMap(name + "_" + toSnakeCase(s.getKey()), s.getValue(), views, s.getKey());
+            }
+        }
+        _out.append("# EOF\n");
+    }
+
+    //
+    // Writes the families of a map. The samples of all the views are
+    // written in one pass over the map of each view, into a buffer for
+    // each family since the samples of a family must be contiguous.
+    //
+    private void
+    writeMap(String name, Class<?> cl, java.util.Map<String, MetricsMap<?>> views, String subMapName)
+    {
+        MetricsClass metricsClass = getMetricsClass(cl);
+        int count = _attributeFamilies + metricsClass.fields.length;
+        while(_families.size() < count)
+        {
+            _families.add(new StringBuilder(256));
+        }
+        for(int i = 0; i < count; ++i)
+        {
+            _families.get(i).setLength(0);
+        }
+
+        _writer.name = name;
+        _writer.metricsClass = metricsClass;
+        for(java.util.Map.Entry<String, MetricsMap<?>> v : views.entrySet())
+        {
+            _writer.view = v.getKey();
+            if(subMapName == null)
+            {
+                v.getValue().visit(_writer);
+            }
+            else
+            {
+                v.getValue().visitSubMap(subMapName, _writer);
+            }
+        }
+
+        writeFamily(0, name, "counter");
+        writeFamily(1, name + "_current", "gauge");
+        writeFamily(2, name + "_lifetime_microseconds", "summary");
+        writeFamily(3, name + "_failures", "counter");
+        for(int i = 0; i < metricsClass.fields.length; ++i)
+        {
+            writeFamily(_attributeFamilies + i, name + "_" + metricsClass.names[i],
+                        metricsClass.gauges[i] ? "gauge" : "counter");
+        }
+    }
+
+    private void
+    writeFamily(int family, String name, String type)
+    {
+        StringBuilder samples = _families.get(family);
+        if(samples.length() > 0)
+        {
+            _out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+            _out.append(samples);
+        }
+    }
+
+    private class SampleWriter implements MetricsMap.Visitor
+    {
+        @Override
+        public void
+        visit(String parentId, IceMX.Metrics metrics, long total, int current, long totalLifetime,
+              MetricsHistogram lifetimes)
+        {
+            writeSample(_families.get(0), name, "_total", parentId, metrics.id, null, total);
+            writeSample(_families.get(1), name, "_current", parentId, metrics.id, null, current);
+
+            StringBuilder summary = _families.get(2);
+            long[] percentiles = lifetimes != null ? lifetimes.percentiles(_quantiles) : null;
+            if(percentiles != null)
+            {
+                for(int i = 0; i < percentiles.length; ++i)
+                {
+                    writeSample(summary, name, "_lifetime_microseconds", parentId, metrics.id, _quantileLabels[i],
+                                percentiles[i]);
+                }
+            }
+            writeSample(summary, name, "_lifetime_microseconds_sum", parentId, metrics.id, null, totalLifetime);
+            writeSample(summary, name, "_lifetime_microseconds_count", parentId, metrics.id, null, total - current);
+
+            writeSample(_families.get(3), name, "_failures_total", parentId, metrics.id, null, metrics.failures);
+
+            for(int i = 0; i < metricsClass.fields.length; ++i)
+            {
+                long value;
+                try
+                {
+                    value = metricsClass.fields[i].getLong(metrics);
+                }
+                catch(IllegalAccessException ex)
+                {
+                    assert(false);
+                    continue;
+                }
+                writeSample(_families.get(_attributeFamilies + i), name, metricsClass.suffixes[i], parentId,
+                            metrics.id, null, value);
+            }
+        }
+
+        private void
+        writeSample(StringBuilder out, String name, String suffix, String parentId, String id, String quantile,
+                    long value)
+        {
+            out.append(name).append(suffix).append("{view=\"");
+            appendEscaped(out, view);
+            if(parentId != null)
+            {
+                out.append("\",parent=\"");
+                appendEscaped(out, parentId);
+            }
+            out.append("\",id=\"");
+            appendEscaped(out, id);
+            if(quantile != null)
+            {
+                out.append("\",quantile=\"").append(quantile);
+            }
+            out.append("\"} ").append(value).append('\n');
+        }
+
+        String name;
+        String view;
+        MetricsClass metricsClass;
+    }
+
+    //
+    // The attributes of a metrics class exported as metric families: the
+    // int and long fields of the class and its base classes, except the
+    // ones of IceMX.Metrics which are exported as the total, current,
+    // lifetime and failures families.
+    //
+    private static class MetricsClass
+    {
+        MetricsClass(Class<?> cl)
+        {
+            java.util.List<java.lang.reflect.Field> fields = new java.util.ArrayList<java.lang.reflect.Field>();
+            for(java.lang.reflect.Field field : cl.getFields())
+            {
+                Class<?> type = field.getType();
+                if(field.getDeclaringClass() != IceMX.Metrics.class &&
+                   !java.lang.reflect.Modifier.isStatic(field.getModifiers()) &&
+                   (type == int.class || type == long.class))
+                {
+                    fields.add(field);
+                }
+            }
+            java.util.Collections.sort(fields, new java.util.Comparator<java.lang.reflect.Field>()
+                {
+                    @Override
+                    public int
+                    compare(java.lang.reflect.Field lhs, java.lang.reflect.Field rhs)
+                    {
+                        return lhs.getName().compareTo(rhs.getName());
+                    }
+                });
+
+            this.fields = fields.toArray(new java.lang.reflect.Field[fields.size()]);
+            names = new String[this.fields.length];
+            gauges = new boolean[this.fields.length];
+            suffixes = new String[this.fields.length];
+            for(int i = 0; i < this.fields.length; ++i)
+            {
+                java.lang.reflect.Field field = this.fields[i];
+                names[i] = toSnakeCase(field.getName());
+                gauges[i] = _gauges.contains(field.getDeclaringClass().getSimpleName() + "." + field.getName());
+                suffixes[i] = "_" + names[i] + (gauges[i] ? "" : "_total");
+            }
+        }
+
+        final java.lang.reflect.Field[] fields;
+        final String[] names;
+        final boolean[] gauges;
+        final String[] suffixes; // The suffixes of the sample names.
+    }
+
+    private MetricsClass
+    getMetricsClass(Class<?> cl)
+    {
+        MetricsClass metricsClass = _metricsClasses.get(cl);
+        if(metricsClass == null)
+        {
+            metricsClass = new MetricsClass(cl);
+            _metricsClasses.put(cl, metricsClass);
+        }
+        return metricsClass;
+    }
+
+    private static String
+    toSnakeCase(String name)
+    {
+        StringBuilder s = new StringBuilder(name.length() + 8);
+        for(int i = 0; i < name.length(); ++i)
+        {
+            char c = name.charAt(i);
+            if(Character.isUpperCase(c))
+            {
+                if(i > 0 && (!Character.isUpperCase(name.charAt(i - 1)) ||
+                             (i + 1 < name.length() && Character.isLowerCase(name.charAt(i + 1)))))
+                {
+                    s.append('_');
+                }
+                s.append(Character.toLowerCase(c));
+            }
+            else if((c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '_')
+            {
+                s.append(c);
+            }
+            else
+            {
+                s.append('_');
+            }
+        }
+        return s.toString();
+    }
+
+    private static void
+    appendEscaped(StringBuilder out, String value)
+    {
+        for(int i = 0; i < value.length(); ++i)
+        {
+            char c = value.charAt(i);
+            switch(c)
+            {
+            case '\\':
+                out.append("\\\\");
+                break;
+            case '"':
+                out.append("\\\"");
+                break;
+            case '\n':
+                out.append("\\n");
+                break;
+            default:
+                out.append(c);
+                break;
+            }
+        }
+    }
+
+    private static void
+    close(java.io.Closeable closeable)
+    {
+        if(closeable != null)
+        {
+            try
+            {
+                closeable.close();
+            }
+            catch(java.io.IOException ex)
+            {
+                // Ignore.
+            }
+        }
+    }
+
+    //
+    // The attributes which aren't counters. The other int and long
+    // attributes only increase and are exported as counters.
+    //
+    private static final java.util.Set<String> _gauges = new java.util.HashSet<String>(java.util.Arrays.asList(
+        "ThreadMetrics.inUseForIO",
+        "ThreadMetrics.inUseForUser",
+        "ThreadMetrics.inUseForOther",
+        "SubscriberMetrics.queued",
+        "SubscriberMetrics.outstanding",
+        "SessionMetrics.routingTableSize",
+        "SessionMetrics.queuedClient",
+        "SessionMetrics.queuedServer"));
+
+    private static final int _attributeFamilies = 4; // total, current, lifetime and failures.
+    private static final double[] _quantiles = { 0.5, 0.9, 0.99, 0.999 };
+    private static final String[] _quantileLabels = { "0.5", "0.9", "0.99", "0.999" };
+    private static final String _contentType = "application/openmetrics-text; version=1.0.0; charset=utf-8";
+    private static final int _timeout = 5000;
+
+    final private Ice.Communicator _communicator;
+    private MetricsAdminI _admin;
+    private java.net.ServerSocket _socket;
+    private Thread _thread;
+    private java.net.Socket _client;
+    private boolean _destroyed;
+
+    //
+    // The buffers below are only used by the listener thread.
+    //
+    final private byte[] _request = new byte[8192];
+    final private StringBuilder _out = new StringBuilder(16384);
+    final private java.util.List<StringBuilder> _families = new java.util.ArrayList<StringBuilder>();
+    final private SampleWriter _writer = new SampleWriter();
+    final private java.util.Map<Class<?>, MetricsClass> _metricsClasses =
+        new java.util.HashMap<Class<?>, MetricsClass>();
+    final private java.nio.charset.CharsetEncoder _encoder = java.nio.charset.Charset.forName("UTF-8").newEncoder()
+        .onMalformedInput(java.nio.charset.CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(java.nio.charset.CodingErrorAction.REPLACE);
+    private java.nio.ByteBuffer _bytes = java.nio.ByteBuffer.allocate(16384);
+}
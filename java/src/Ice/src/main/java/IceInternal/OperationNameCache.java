@@ -0,0 +1,96 @@
+// **********************************************************************
+//
+// Copyright (c) 2003-2016 ZeroC, Inc. All rights reserved.
+//
+// This copy of Ice is licensed to you under the terms described in the
+// ICE_LICENSE file included in this distribution.
+//
+// **********************************************************************
+
+package IceInternal;
+
+//
+// A communicator-wide cache of the operation names of incoming requests.
+//
+// The operation name of a request which is in the cache is compared with
+// the encoded name in the stream and isn't decoded. The hash code of a
+// cached name is computed once, by the first switch on the name in the
+// generated dispatch code. The names aren't interned, the names sent by
+// peers would otherwise fill the JVM string table. Like the identity
+// cache, the cache is direct-mapped and it's read and updated without
+// locking.
+//
+public final class OperationNameCache
+{
+    OperationNameCache(int size)
+    {
+        assert((size & (size - 1)) == 0);
+        _entries = new Entry[size];
+        _mask = size - 1;
+    }
+
+    public String
+    read(Ice.InputStream is)
+    {
+        int start = is.pos();
+        int len = is.readSize();
+        if(len == 0)
+        {
+            return "";
+        }
+
+        int pos = is.pos();
+        is.skip(len);
+
+        java.nio.ByteBuffer b = is.getBuffer().b;
+        int index = HashUtil.hashBytes(b, pos, pos + len) & _mask;
+
+        Entry entry = _entries[index];
+        if(entry != null && entry.matches(b, pos, len))
+        {
+            return entry.name;
+        }
+
+        is.pos(start);
+        String name = is.readString();
+        byte[] data = new byte[len];
+        for(int i = 0; i < len; ++i)
+        {
+            data[i] = b.get(pos + i);
+        }
+        _entries[index] = new Entry(data, name);
+        return name;
+    }
+
+    private static final class Entry
+    {
+        Entry(byte[] data, String name)
+        {
+            this.data = data;
+            this.name = name;
+        }
+
+        boolean
+        matches(java.nio.ByteBuffer b, int pos, int len)
+        {
+            if(data.length != len)
+            {
+                return false;
+            }
+            for(int i = 0; i < len; ++i)
+            {
+                if(data[i] != b.get(pos + i))
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        final byte[] data;
+        final String name;
+    }
+
+    private final Entry[] _entries;
+    private final int _mask;
+}
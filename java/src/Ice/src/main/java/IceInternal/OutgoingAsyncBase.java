@@ -63,6 +63,21 @@ public abstract class OutgoingAsyncBase extends IceInternal.AsyncResultI
         return _os;
     }
 
+    //
+    // The ID of the request on the connection which sent it. It's set by
+    // the connection when the request is registered to find the request
+    // if it's canceled.
+    //
+    public final int getRequestId()
+    {
+        return _requestId;
+    }
+
+    public final void setRequestId(int requestId)
+    {
+        _requestId = requestId;
+    }
+
     protected OutgoingAsyncBase(Ice.Communicator com, Instance instance, String op, CallbackBase del)
     {
         super(com, instance, op, del);
@@ -104,4 +119,6 @@ public abstract class OutgoingAsyncBase extends IceInternal.AsyncResultI
 
     protected Ice.OutputStream _os;
     protected Ice.Instrumentation.ChildInvocationObserver _childObserver;
+
+    private volatile int _requestId;
 }
@@ -290,6 +290,23 @@ public abstract class Reference implements Cloneable
         // Derived class writes the remainder of the reference.
     }
 
+    //
+    // Returns the string form of the reference without its endpoints, it's
+    // used as the identifier of the invocation metrics. The string is only
+    // computed once, references are immutable once shared with a proxy.
+    //
+    public String
+    toStringWithoutEndpoints()
+    {
+        String s = _stringWithoutEndpoints;
+        if(s == null)
+        {
+            s = changeEndpoints(_emptyEndpoints).toString();
+            _stringWithoutEndpoints = s;
+        }
+        return s;
+    }
+
     //
     // Convert the reference to its string form.
     //
@@ -485,6 +502,7 @@ public abstract class Reference implements Cloneable
 	try
 	{
 	    c = (Reference)super.clone();
+	    c._stringWithoutEndpoints = null;
 	}
 	catch(CloneNotSupportedException ex)
 	{
@@ -496,6 +514,8 @@ public abstract class Reference implements Cloneable
     protected int _hashValue;
     protected boolean _hashInitialized;
     private static java.util.Map<String, String> _emptyContext = new java.util.HashMap<String, String>();
+    private static final EndpointI[] _emptyEndpoints = new EndpointI[0];
+    private volatile String _stringWithoutEndpoints;
 
     final private Instance _instance;
     final private Ice.Communicator _communicator;
@@ -21,28 +21,37 @@ public final class ServantManager
             facet = "";
         }
 
-        java.util.Map<String, Ice.Object> m = _servantMapMap.get(ident);
-        if(m == null)
+        java.lang.Object entry = _servantMapMap.get(ident);
+        if(entry != null && findFacet(entry, facet) != null)
         {
-            m = new java.util.HashMap<String, Ice.Object>();
-            _servantMapMap.put(ident, m);
+            Ice.AlreadyRegisteredException ex = new Ice.AlreadyRegisteredException();
+            ex.id = _instance.identityToString(ident);
+            ex.kindOfObject = "servant";
+            if(facet.length() > 0)
+            {
+                ex.id += " -f " + IceUtilInternal.StringUtil.escapeString(facet, "");
+            }
+            throw ex;
+        }
+
+        if(entry == null && facet.length() == 0)
+        {
+            _servantMapMap.put(ident, servant);
         }
         else
         {
-            if(m.containsKey(facet))
-            {
-                Ice.AlreadyRegisteredException ex = new Ice.AlreadyRegisteredException();
-                ex.id = _instance.identityToString(ident);
-                ex.kindOfObject = "servant";
-                if(facet.length() > 0)
-                {
-                    ex.id += " -f " + IceUtilInternal.StringUtil.escapeString(facet, "");
-                }
-                throw ex;
-            }
+            _servantMapMap.put(ident, FacetMap.create(entry).add(facet, servant));
         }
 
-        m.put(facet, servant);
+        //
+        // Requests for this servant get the identity of the active servant
+        // map, which is compared by reference.
+        //
+        IdentityCache identityCache = _instance.identityCache();
+        if(entry == null && identityCache != null)
+        {
+            identityCache.add(_instance, ident);
+        }
     }
 
     public synchronized void
@@ -59,7 +68,9 @@ public final class ServantManager
             throw ex;
         }
 
-        _defaultServantMap.put(category, servant);
+        java.util.Map<String, Ice.Object> m = new java.util.HashMap<String, Ice.Object>(_defaultServantMap);
+        m.put(category, servant);
+        _defaultServantMap = m;
     }
 
     public synchronized Ice.Object
@@ -72,9 +83,9 @@ public final class ServantManager
             facet = "";
         }
 
-        java.util.Map<String, Ice.Object> m = _servantMapMap.get(ident);
+        java.lang.Object entry = _servantMapMap.get(ident);
         Ice.Object obj = null;
-        if(m == null || (obj = m.remove(facet)) == null)
+        if(entry == null || (obj = findFacet(entry, facet)) == null)
         {
             Ice.NotRegisteredException ex = new Ice.NotRegisteredException();
             ex.id = _instance.identityToString(ident);
@@ -86,10 +97,15 @@ public final class ServantManager
             throw ex;
         }
 
-        if(m.isEmpty())
+        java.lang.Object newEntry = entry instanceof FacetMap ? ((FacetMap)entry).remove(facet) : null;
+        if(newEntry == null)
         {
             _servantMapMap.remove(ident);
         }
+        else
+        {
+            _servantMapMap.put(ident, newEntry);
+        }
         return obj;
     }
 
@@ -107,7 +123,9 @@ public final class ServantManager
             throw ex;
         }
 
-        _defaultServantMap.remove(category);
+        java.util.Map<String, Ice.Object> m = new java.util.HashMap<String, Ice.Object>(_defaultServantMap);
+        m.remove(category);
+        _defaultServantMap = m;
         return obj;
     }
 
@@ -116,8 +134,8 @@ public final class ServantManager
     {
         assert(_instance != null); // Must not be called after destruction.
 
-        java.util.Map<String, Ice.Object> m = _servantMapMap.get(ident);
-        if(m == null)
+        java.lang.Object entry = _servantMapMap.remove(ident);
+        if(entry == null)
         {
             Ice.NotRegisteredException ex = new Ice.NotRegisteredException();
             ex.id = _instance.identityToString(ident);
@@ -125,12 +143,14 @@ public final class ServantManager
             throw ex;
         }
 
-        _servantMapMap.remove(ident);
-
-        return m;
+        return toMap(entry);
     }
 
-    public synchronized Ice.Object
+    //
+    // The lookups below are called for each dispatch and don't lock
+    // the servant manager.
+    //
+    public Ice.Object
     findServant(Ice.Identity ident, String facet)
     {
         //
@@ -146,47 +166,44 @@ public final class ServantManager
             facet = "";
         }
 
-        java.util.Map<String, Ice.Object> m = _servantMapMap.get(ident);
+        java.lang.Object entry = _servantMapMap.get(ident);
         Ice.Object obj = null;
-        if(m == null)
+        if(entry == null)
         {
-            obj = _defaultServantMap.get(ident.category);
+            java.util.Map<String, Ice.Object> defaultServantMap = _defaultServantMap;
+            obj = defaultServantMap.get(ident.category);
             if(obj == null)
             {
-                obj = _defaultServantMap.get("");
+                obj = defaultServantMap.get("");
             }
         }
         else
         {
-            obj = m.get(facet);
+            obj = findFacet(entry, facet);
         }
 
         return obj;
     }
 
-    public synchronized Ice.Object
+    public Ice.Object
     findDefaultServant(String category)
     {
-        assert(_instance != null); // Must not be called after destruction.
-
         return _defaultServantMap.get(category);
     }
 
-    public synchronized java.util.Map<String, Ice.Object>
+    public java.util.Map<String, Ice.Object>
     findAllFacets(Ice.Identity ident)
     {
-        assert(_instance != null); // Must not be called after destruction.
-
-        java.util.Map<String, Ice.Object> m = _servantMapMap.get(ident);
-        if(m != null)
+        java.lang.Object entry = _servantMapMap.get(ident);
+        if(entry != null)
         {
-            return new java.util.HashMap<String, Ice.Object>(m);
+            return toMap(entry);
         }
 
         return new java.util.HashMap<String, Ice.Object>();
     }
 
-    public synchronized boolean
+    public boolean
     hasServant(Ice.Identity ident)
     {
         //
@@ -197,16 +214,7 @@ public final class ServantManager
         //
         //assert(_instance != null); // Must not be called after destruction.
 
-        java.util.Map<String, Ice.Object> m = _servantMapMap.get(ident);
-        if(m == null)
-        {
-            return false;
-        }
-        else
-        {
-            assert(!m.isEmpty());
-            return true;
-        }
+        return _servantMapMap.containsKey(ident);
     }
 
     public synchronized void
@@ -223,7 +231,9 @@ public final class ServantManager
             throw ex;
         }
 
-        _locatorMap.put(category, locator);
+        java.util.Map<String, Ice.ServantLocator> m = new java.util.HashMap<String, Ice.ServantLocator>(_locatorMap);
+        m.put(category, locator);
+        _locatorMap = m;
     }
 
     public synchronized Ice.ServantLocator
@@ -232,7 +242,7 @@ public final class ServantManager
         Ice.ServantLocator l = null;
         assert(_instance != null); // Must not be called after destruction.
 
-        l = _locatorMap.remove(category);
+        l = _locatorMap.get(category);
         if(l == null)
         {
             Ice.NotRegisteredException ex = new Ice.NotRegisteredException();
@@ -240,10 +250,14 @@ public final class ServantManager
             ex.kindOfObject = "servant locator";
             throw ex;
         }
+
+        java.util.Map<String, Ice.ServantLocator> m = new java.util.HashMap<String, Ice.ServantLocator>(_locatorMap);
+        m.remove(category);
+        _locatorMap = m;
         return l;
     }
 
-    public synchronized Ice.ServantLocator
+    public Ice.ServantLocator
     findServantLocator(String category)
     {
         //
@@ -289,10 +303,10 @@ public final class ServantManager
 
             _servantMapMap.clear();
 
-            _defaultServantMap.clear();
+            _defaultServantMap = java.util.Collections.emptyMap();
 
             locatorMap.putAll(_locatorMap);
-            _locatorMap.clear();
+            _locatorMap = java.util.Collections.emptyMap();
 
             _instance = null;
         }
@@ -313,10 +327,139 @@ public final class ServantManager
         }
     }
 
+    private static Ice.Object
+    findFacet(java.lang.Object entry, String facet)
+    {
+        if(entry instanceof FacetMap)
+        {
+            return ((FacetMap)entry).find(facet);
+        }
+        return facet.length() == 0 ? (Ice.Object)entry : null;
+    }
+
+    private static java.util.Map<String, Ice.Object>
+    toMap(java.lang.Object entry)
+    {
+        java.util.Map<String, Ice.Object> m = new java.util.HashMap<String, Ice.Object>();
+        if(entry instanceof FacetMap)
+        {
+            FacetMap facetMap = (FacetMap)entry;
+            for(int i = 0; i < facetMap.facets.length; ++i)
+            {
+                m.put(facetMap.facets[i], facetMap.servants[i]);
+            }
+        }
+        else
+        {
+            m.put("", (Ice.Object)entry);
+        }
+        return m;
+    }
+
+    //
+    // The facets of an identity with several facets or with a facet other
+    // than the default facet. A FacetMap is immutable, it's replaced when
+    // a facet is added or removed.
+    //
+    private static final class FacetMap
+    {
+        static FacetMap
+        create(java.lang.Object entry)
+        {
+            if(entry == null)
+            {
+                return new FacetMap(new String[0], new Ice.Object[0]);
+            }
+            else if(entry instanceof FacetMap)
+            {
+                return (FacetMap)entry;
+            }
+            else
+            {
+                return new FacetMap(new String[] { "" }, new Ice.Object[] { (Ice.Object)entry });
+            }
+        }
+
+        Ice.Object
+        find(String facet)
+        {
+            for(int i = 0; i < facets.length; ++i)
+            {
+                if(facets[i].equals(facet))
+                {
+                    return servants[i];
+                }
+            }
+            return null;
+        }
+
+        FacetMap
+        add(String facet, Ice.Object servant)
+        {
+            String[] f = java.util.Arrays.copyOf(facets, facets.length + 1);
+            Ice.Object[] s = java.util.Arrays.copyOf(servants, servants.length + 1);
+            f[facets.length] = facet;
+            s[servants.length] = servant;
+            return new FacetMap(f, s);
+        }
+
+        //
+        // Returns the entry without the given facet: null if there's no
+        // facet left and the servant itself if only the default facet is
+        // left.
+        //
+        java.lang.Object
+        remove(String facet)
+        {
+            if(facets.length == 1)
+            {
+                return null;
+            }
+
+            String[] f = new String[facets.length - 1];
+            Ice.Object[] s = new Ice.Object[servants.length - 1];
+            int j = 0;
+            for(int i = 0; i < facets.length; ++i)
+            {
+                if(!facets[i].equals(facet))
+                {
+                    f[j] = facets[i];
+                    s[j] = servants[i];
+                    ++j;
+                }
+            }
+            assert(j == f.length);
+
+            if(f.length == 1 && f[0].length() == 0)
+            {
+                return s[0];
+            }
+            return new FacetMap(f, s);
+        }
+
+        private
+        FacetMap(String[] facets, Ice.Object[] servants)
+        {
+            this.facets = facets;
+            this.servants = servants;
+        }
+
+        final String[] facets;
+        final Ice.Object[] servants;
+    }
+
     private Instance _instance;
     final private String _adapterName;
-    private java.util.Map<Ice.Identity, java.util.Map<String, Ice.Object> > _servantMapMap =
-        new java.util.HashMap<Ice.Identity, java.util.Map<String, Ice.Object> >();
-    private java.util.Map<String, Ice.Object> _defaultServantMap = new java.util.HashMap<String, Ice.Object>();
-    private java.util.Map<String, Ice.ServantLocator> _locatorMap = new java.util.HashMap<String, Ice.ServantLocator>();
+
+    //
+    // The active servant map is read without locking. The servant of an
+    // identity with only the default facet is stored directly, a FacetMap
+    // is stored otherwise. The default servant and locator maps are
+    // replaced on each update.
+    //
+    private final java.util.concurrent.ConcurrentHashMap<Ice.Identity, java.lang.Object> _servantMapMap =
+        new java.util.concurrent.ConcurrentHashMap<Ice.Identity, java.lang.Object>();
+    private volatile java.util.Map<String, Ice.Object> _defaultServantMap = new java.util.HashMap<String, Ice.Object>();
+    private volatile java.util.Map<String, Ice.ServantLocator> _locatorMap =
+        new java.util.HashMap<String, Ice.ServantLocator>();
 }
@@ -254,6 +254,59 @@ public class StreamSocket
         return sent;
     }
 
+    public int write(java.nio.ByteBuffer[] bufs, int offset, int length)
+    {
+        assert(_fd != null && _state == StateConnected);
+
+        final int last = offset + length - 1;
+        while(bufs[last].hasRemaining())
+        {
+            //
+            // Skip the buffers which are already fully sent.
+            //
+            while(!bufs[offset].hasRemaining())
+            {
+                ++offset;
+            }
+
+            if(_maxSendPacketSize > 0)
+            {
+                //
+                // The packet size is limited, we can't use a gathering
+                // write, send the buffers one by one instead.
+                //
+                write(bufs[offset]);
+                if(bufs[offset].hasRemaining())
+                {
+                    return SocketOperation.Write;
+                }
+                continue;
+            }
+
+            try
+            {
+                long ret = _fd.write(bufs, offset, last - offset + 1);
+                if(ret == -1)
+                {
+                    throw new Ice.ConnectionLostException();
+                }
+                else if(ret == 0)
+                {
+                    return SocketOperation.Write;
+                }
+            }
+            catch(java.io.InterruptedIOException ex)
+            {
+                continue;
+            }
+            catch(java.io.IOException ex)
+            {
+                throw new Ice.SocketException(ex);
+            }
+        }
+        return SocketOperation.None;
+    }
+
     public void close()
     {
         assert(_fd != null);
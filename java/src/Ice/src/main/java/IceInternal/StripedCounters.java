@@ -0,0 +1,104 @@
+// **********************************************************************
+//
+// Copyright (c) 2003-2016 ZeroC, Inc. All rights reserved.
+//
+// This copy of Ice is licensed to you under the terms described in the
+// ICE_LICENSE file included in this distribution.
+//
+// **********************************************************************
+
+package IceInternal;
+
+//
+// A fixed set of counters which can be updated concurrently without
+// locking, similar to java.util.concurrent.atomic.LongAdder which isn't
+// available with Java 7.
+//
+// The counters are first updated with a compare-and-set on a single set of
+// values. When an update fails because of contention, the counters are
+// striped: each thread updates the stripe selected by its identifier and
+// the value of a counter is the sum of its values in the base set and the
+// stripes. Each stripe is padded to its own cache line.
+//
+// The sum of a counter isn't an atomic snapshot, it can miss updates which
+// are concurrent with the sum.
+//
+public final class StripedCounters
+{
+    public
+    StripedCounters(int counters)
+    {
+        assert(counters > 0 && counters <= _stride);
+        _base = new java.util.concurrent.atomic.AtomicLongArray(counters);
+    }
+
+    public void
+    add(int counter, long value)
+    {
+        java.util.concurrent.atomic.AtomicLongArray stripes = _stripes;
+        if(stripes == null)
+        {
+            long v = _base.get(counter);
+            if(_base.compareAndSet(counter, v, v + value))
+            {
+                return;
+            }
+            stripes = stripes();
+        }
+        int stripe = (int)(mix(Thread.currentThread().getId()) & (stripes.length() / _stride - 1));
+        stripes.addAndGet(stripe * _stride + counter, value);
+    }
+
+    public long
+    sum(int counter)
+    {
+        long sum = _base.get(counter);
+        java.util.concurrent.atomic.AtomicLongArray stripes = _stripes;
+        if(stripes != null)
+        {
+            for(int i = counter; i < stripes.length(); i += _stride)
+            {
+                sum += stripes.get(i);
+            }
+        }
+        return sum;
+    }
+
+    private synchronized java.util.concurrent.atomic.AtomicLongArray
+    stripes()
+    {
+        if(_stripes == null)
+        {
+            _stripes = new java.util.concurrent.atomic.AtomicLongArray(_stripeCount * _stride);
+        }
+        return _stripes;
+    }
+
+    private static long
+    mix(long id)
+    {
+        //
+        // Thread identifiers are sequential, spread them over the stripes.
+        //
+        id *= 0x9E3779B97F4A7C15L;
+        return id ^ (id >>> 32);
+    }
+
+    private static int
+    stripeCount()
+    {
+        int count = 1;
+        int processors = Runtime.getRuntime().availableProcessors();
+        while(count < processors && count < 64)
+        {
+            count <<= 1;
+        }
+        return count;
+    }
+
+    private static final int _stride = 8; // 64 bytes, the size of a cache line.
+    private static final int _stripeCount = stripeCount();
+
+    private final java.util.concurrent.atomic.AtomicLongArray _base;
+    private volatile java.util.concurrent.atomic.AtomicLongArray _stripes;
+}
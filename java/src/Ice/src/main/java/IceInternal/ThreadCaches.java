@@ -0,0 +1,122 @@
+// **********************************************************************
+//
+// Copyright (c) 2003-2016 ZeroC, Inc. All rights reserved.
+//
+// This copy of Ice is licensed to you under the terms described in the
+// ICE_LICENSE file included in this distribution.
+//
+// **********************************************************************
+
+package IceInternal;
+
+//
+// The per-thread caches of a communicator-wide cache, see ObjectCache and
+// BufferPool.
+//
+// The cached objects reference the communicator, which references the
+// ThreadLocal. If the ThreadLocal value referenced the cache, its weak key
+// would never be cleared and every thread which used the cache would keep
+// the communicator alive after it's destroyed. The ThreadLocal value is
+// therefore only a weak reference, the caches are kept by this object in a
+// map keyed by the threads which own them. Destroying this object drops
+// the caches of all the threads.
+//
+// Virtual threads don't get a cache. A virtual thread usually runs a
+// single dispatch, its cache would be allocated and thrown away each time.
+//
+abstract class ThreadCaches<C>
+{
+    //
+    // Creates the cache of the calling thread.
+    //
+    protected abstract C create();
+
+    //
+    // Returns the cache of the calling thread, or null if the calling thread
+    // is a virtual thread or if this object is destroyed.
+    //
+    final C
+    get()
+    {
+        if(_destroyed)
+        {
+            return null;
+        }
+
+        Thread thread = Thread.currentThread();
+        if(_virtualThreadClass != null && _virtualThreadClass.isInstance(thread))
+        {
+            return null;
+        }
+
+        java.lang.ref.WeakReference<C> ref = _threadCache.get();
+        if(ref != null)
+        {
+            C cache = ref.get();
+            if(cache != null)
+            {
+                return cache;
+            }
+        }
+
+        C cache = create();
+        synchronized(_caches)
+        {
+            if(_destroyed)
+            {
+                return null;
+            }
+            _caches.put(thread, cache);
+        }
+        _threadCache.set(new java.lang.ref.WeakReference<C>(cache));
+        return cache;
+    }
+
+    //
+    // Drops the caches of all the threads. The caches can't be cleared from
+    // this thread while their threads might use them, they are left to the
+    // garbage collector once they're no longer referenced by this object.
+    //
+    final void
+    destroy()
+    {
+        synchronized(_caches)
+        {
+            _destroyed = true;
+            _caches.clear();
+        }
+        _threadCache.remove();
+    }
+
+    private static Class<?>
+    findVirtualThreadClass()
+    {
+        //
+        // The runtime doesn't depend on a JDK with virtual threads. Virtual
+        // threads extend java.lang.BaseVirtualThread (java.lang.VirtualThread
+        // with early JDKs), checking the class is much cheaper than calling
+        // Thread.isVirtual() by reflection.
+        //
+        for(String name : new String[] { "java.lang.BaseVirtualThread", "java.lang.VirtualThread" })
+        {
+            try
+            {
+                return Class.forName(name);
+            }
+            catch(Exception ex)
+            {
+            }
+            catch(LinkageError ex)
+            {
+            }
+        }
+        return null;
+    }
+
+    private static final Class<?> _virtualThreadClass = findVirtualThreadClass();
+
+    private final ThreadLocal<java.lang.ref.WeakReference<C>> _threadCache =
+        new ThreadLocal<java.lang.ref.WeakReference<C>>();
+    private final java.util.Map<Thread, C> _caches = new java.util.WeakHashMap<Thread, C>();
+    private volatile boolean _destroyed = false;
+}
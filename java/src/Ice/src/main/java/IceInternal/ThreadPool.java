@@ -93,9 +93,38 @@ public final class ThreadPool
 
     public
     ThreadPool(Instance instance, String prefix, int timeout)
+    {
+        this(instance, prefix, timeout, null, 0);
+    }
+
+    //
+    // With <prefix>.Reactors > 1, the thread pool is split into several
+    // reactors. Each reactor is a leader/follower thread pool with its own
+    // selector, work queue, threads and lock. Event handlers are assigned
+    // to a reactor when initialized and stay with it until finished. This
+    // thread pool is the first reactor, the others are created with this
+    // constructor and are only reachable through this thread pool.
+    //
+    private
+    ThreadPool(Instance instance, String prefix, int timeout, ThreadPool[] reactors, int reactor)
     {
         Ice.Properties properties = instance.initializationData().properties;
 
+        if(reactors == null)
+        {
+            int nReactors = properties.getPropertyAsIntWithDefault(prefix + ".Reactors", 1);
+            if(nReactors < 1)
+            {
+                String s = prefix + ".Reactors < 1; Reactors adjusted to 1";
+                instance.initializationData().logger.warning(s);
+                nReactors = 1;
+            }
+            if(nReactors > 1)
+            {
+                reactors = new ThreadPool[nReactors];
+            }
+        }
+
         _instance = instance;
         _dispatcher = instance.initializationData().dispatcher;
         _destroyed = false;
@@ -107,7 +136,17 @@ public final class ThreadPool
         _promote = true;
         _serialize = properties.getPropertyAsInt(_prefix + ".Serialize") > 0;
         _serverIdleTime = timeout;
-        _threadPrefix = Util.createThreadName(properties, _prefix);
+        _reactors = reactors;
+        _reactorIndex = reactor;
+        _workStealing = reactors != null && properties.getPropertyAsInt(_prefix + ".WorkStealing") > 0;
+        if(reactors != null)
+        {
+            _threadPrefix = Util.createThreadName(properties, _prefix) + "-" + reactor;
+        }
+        else
+        {
+            _threadPrefix = Util.createThreadName(properties, _prefix);
+        }
 
         int nProcessors = Runtime.getRuntime().availableProcessors();
 
@@ -161,7 +200,7 @@ public final class ThreadPool
         _size = size;
         _sizeMax = sizeMax;
         _sizeWarn = sizeWarn;
-        _sizeIO = Math.min(sizeMax, nProcessors);
+        _sizeIO = Math.min(sizeMax, Math.max(1, nProcessors / (reactors != null ? reactors.length : 1)));
         _threadIdleTime = threadIdleTime;
 
         int stackSize = properties.getPropertyAsInt( _prefix + ".StackSize");
@@ -185,11 +224,19 @@ public final class ThreadPool
 
         _workQueue = new ThreadPoolWorkQueue(_instance, this, _selector);
         _nextHandler = _handlers.iterator();
+        if(reactors != null)
+        {
+            reactors[reactor] = this; // Registered now to be destroyed if the creation of the threads fails.
+        }
 
-        if(_instance.traceLevels().threadPool >= 1)
+        if(_instance.traceLevels().threadPool >= 1 && reactor == 0)
         {
             String s = "creating " + _prefix + ": Size = " + _size + ", SizeMax = " + _sizeMax + ", SizeWarn = " +
                        _sizeWarn;
+            if(reactors != null)
+            {
+                s += ", Reactors = " + reactors.length;
+            }
             _instance.initializationData().logger.trace(_instance.traceLevels().threadPoolCat, s);
         }
 
@@ -208,9 +255,22 @@ public final class ThreadPool
                 }
                 _threads.add(thread);
             }
+
+            if(reactors != null && reactor == 0)
+            {
+                for(int i = 1; i < reactors.length; ++i)
+                {
+                    new ThreadPool(instance, prefix, timeout, reactors, i);
+                }
+            }
         }
         catch(RuntimeException ex)
         {
+            if(reactor > 0)
+            {
+                throw ex; // The first reactor takes care of the cleanup.
+            }
+
             String s = "cannot create thread for `" + _prefix + "':\n" + Ex.toString(ex);
             _instance.initializationData().logger.error(s);
 
@@ -245,48 +305,65 @@ public final class ThreadPool
         }
     }
 
-    public synchronized void
+    public void
     destroy()
     {
-        if(_destroyed)
+        if(_reactors != null)
         {
-            return;
+            for(ThreadPool reactor : _reactors)
+            {
+                if(reactor != null)
+                {
+                    reactor.destroyImpl();
+                }
+            }
+        }
+        else
+        {
+            destroyImpl();
         }
-
-        _destroyed = true;
-        _workQueue.destroy();
     }
 
-    public synchronized void
+    public void
     updateObservers()
     {
-        for(EventHandlerThread thread : _threads)
+        if(_reactors != null)
         {
-            thread.updateObserver();
+            for(ThreadPool reactor : _reactors)
+            {
+                reactor.updateObserversImpl();
+            }
+        }
+        else
+        {
+            updateObserversImpl();
         }
     }
 
-    public synchronized void
-    initialize(final EventHandler handler)
+    public void
+    initialize(EventHandler handler)
     {
-        assert(!_destroyed);
-        _selector.initialize(handler);
-
-        handler.setReadyCallback(
-            new ReadyCallback()
+        if(_reactors != null)
+        {
+            //
+            // Assign the handler to the reactor with the fewest handlers. The
+            // count is only read as a hint, it's fine if it's not up to date.
+            //
+            ThreadPool reactor = _reactors[0];
+            for(int i = 1; i < _reactors.length; ++i)
             {
-                public void ready(int op, boolean value)
+                if(_reactors[i]._handlerCount < reactor._handlerCount)
                 {
-                    synchronized(ThreadPool.this)
-                    {
-                        if(_destroyed)
-                        {
-                            return;
-                        }
-                        _selector.ready(handler, op, value);
-                    }
+                    reactor = _reactors[i];
                 }
-            });
+            }
+            handler._reactor = reactor;
+            reactor.initializeImpl(handler);
+        }
+        else
+        {
+            initializeImpl(handler);
+        }
     }
 
     public void
@@ -295,22 +372,10 @@ public final class ThreadPool
         update(handler, SocketOperation.None, op);
     }
 
-    public synchronized void
+    public void
     update(EventHandler handler, int remove, int add)
     {
-        assert(!_destroyed);
-
-        // Don't remove what needs to be added
-        remove &= ~add;
-
-        // Don't remove/add if already un-registered or registered
-        remove = handler._registered & remove;
-        add = ~handler._registered & add;
-        if(remove == add)
-        {
-            return;
-        }
-        _selector.update(handler, remove, add);
+        reactor(handler).updateImpl(handler, remove, add);
     }
 
     public void
@@ -319,13 +384,10 @@ public final class ThreadPool
         update(handler, op, SocketOperation.None);
     }
 
-    public synchronized boolean
+    public boolean
     finish(EventHandler handler, boolean closeNow)
     {
-        assert(!_destroyed);
-        closeNow = _selector.finish(handler, closeNow);
-        _workQueue.queue(new FinishedWorkItem(handler, !closeNow));
-        return closeNow;
+        return reactor(handler).finishImpl(handler, closeNow);
     }
 
     public void
@@ -355,8 +417,240 @@ public final class ThreadPool
         }
     }
 
-    synchronized public void
+    public void
     dispatch(DispatchWorkItem workItem)
+    {
+        if(_reactors == null)
+        {
+            dispatchImpl(workItem);
+            return;
+        }
+
+        //
+        // Work items for a connection are queued with the connection's reactor,
+        // other work items are queued with the first reactor. If work stealing
+        // is enabled and all the threads of this reactor are busy dispatching,
+        // the work item is instead queued with the next reactor which still
+        // has a thread available.
+        //
+        // The work items of a connection are started in the order they're
+        // queued, which preserves the order of its sent and completed
+        // callbacks: a work item of a connection only moves to another
+        // reactor if no other work item of the connection is queued, and
+        // the following work items are queued with the same reactor until
+        // they're all started. The work items of a connection of a serialized
+        // thread pool never move.
+        //
+        ThreadPool reactor = this;
+        EventHandler handler = null;
+        Ice.Connection connection = workItem.getConnection();
+        if(connection instanceof EventHandler)
+        {
+            handler = (EventHandler)connection;
+            ThreadPool r = handler._reactor;
+            if(r != null && r._reactors == _reactors)
+            {
+                reactor = r;
+            }
+            else
+            {
+                handler = null;
+            }
+        }
+
+        if(!_workStealing || (handler != null && _serialize))
+        {
+            reactor.dispatchImpl(workItem);
+        }
+        else if(handler == null)
+        {
+            steal(reactor).dispatchImpl(workItem);
+        }
+        else
+        {
+            synchronized(handler._workItemsMutex)
+            {
+                if(handler._queuedWorkItems > 0)
+                {
+                    reactor = handler._workItemReactor;
+                }
+                else
+                {
+                    reactor = steal(reactor);
+                }
+                workItem._queuedHandler = handler;
+                try
+                {
+                    reactor.dispatchImpl(workItem);
+                }
+                catch(RuntimeException ex)
+                {
+                    workItem._queuedHandler = null;
+                    throw ex;
+                }
+                handler._workItemReactor = reactor;
+                ++handler._queuedWorkItems;
+            }
+        }
+    }
+
+    //
+    // Called by a work item of the given handler counted by dispatch()
+    // when it's started.
+    //
+    static void
+    workItemStarted(EventHandler handler)
+    {
+        synchronized(handler._workItemsMutex)
+        {
+            if(--handler._queuedWorkItems == 0)
+            {
+                handler._workItemReactor = null;
+            }
+        }
+    }
+
+    private ThreadPool
+    steal(ThreadPool reactor)
+    {
+        if(reactor.isBusy())
+        {
+            for(int i = 1; i < _reactors.length; ++i)
+            {
+                ThreadPool r = _reactors[(reactor._reactorIndex + i) % _reactors.length];
+                if(!r.isBusy())
+                {
+                    return r;
+                }
+            }
+        }
+        return reactor;
+    }
+
+    public void
+    joinWithAllThreads()
+        throws InterruptedException
+    {
+        if(_reactors != null)
+        {
+            for(ThreadPool reactor : _reactors)
+            {
+                if(reactor != null)
+                {
+                    reactor.joinWithAllThreadsImpl();
+                }
+            }
+        }
+        else
+        {
+            joinWithAllThreadsImpl();
+        }
+    }
+
+    public boolean
+    serialize()
+    {
+        return _serialize; // No mutex lock, immutable.
+    }
+
+    //
+    // Returns true if the calling thread is a thread of one of the thread
+    // pools of the given instance. Such a thread must not wait for a
+    // callback, the callback might have to be called by this thread.
+    //
+    public static boolean
+    isThreadPoolThread(Instance instance)
+    {
+        ThreadPool threadPool = _currentThreadPool.get();
+        return threadPool != null && threadPool._instance == instance;
+    }
+
+    private ThreadPool
+    reactor(EventHandler handler)
+    {
+        if(_reactors != null)
+        {
+            assert(handler._reactor != null && handler._reactor._reactors == _reactors);
+            return handler._reactor;
+        }
+        return this;
+    }
+
+    private synchronized void
+    destroyImpl()
+    {
+        if(_destroyed)
+        {
+            return;
+        }
+
+        _destroyed = true;
+        _workQueue.destroy();
+    }
+
+    private synchronized void
+    updateObserversImpl()
+    {
+        for(EventHandlerThread thread : _threads)
+        {
+            thread.updateObserver();
+        }
+    }
+
+    private synchronized void
+    initializeImpl(final EventHandler handler)
+    {
+        assert(!_destroyed);
+        ++_handlerCount;
+        _selector.initialize(handler);
+
+        handler.setReadyCallback(
+            new ReadyCallback()
+            {
+                public void ready(int op, boolean value)
+                {
+                    synchronized(ThreadPool.this)
+                    {
+                        if(_destroyed)
+                        {
+                            return;
+                        }
+                        _selector.ready(handler, op, value);
+                    }
+                }
+            });
+    }
+
+    private synchronized void
+    updateImpl(EventHandler handler, int remove, int add)
+    {
+        assert(!_destroyed);
+
+        // Don't remove what needs to be added
+        remove &= ~add;
+
+        // Don't remove/add if already un-registered or registered
+        remove = handler._registered & remove;
+        add = ~handler._registered & add;
+        if(remove == add)
+        {
+            return;
+        }
+        _selector.update(handler, remove, add);
+    }
+
+    private synchronized boolean
+    finishImpl(EventHandler handler, boolean closeNow)
+    {
+        assert(!_destroyed);
+        --_handlerCount;
+        closeNow = _selector.finish(handler, closeNow);
+        _workQueue.queue(new FinishedWorkItem(handler, !closeNow));
+        return closeNow;
+    }
+
+    private synchronized void
+    dispatchImpl(DispatchWorkItem workItem)
     {
         if(_destroyed)
         {
@@ -365,8 +659,20 @@ public final class ThreadPool
         _workQueue.queue(workItem);
     }
 
-    public void
-    joinWithAllThreads()
+    private synchronized boolean
+    isBusy()
+    {
+        return _inUse >= _sizeMax;
+    }
+
+    private synchronized boolean
+    isIdle()
+    {
+        return _inUse == 0 && _inUseIO == 0;
+    }
+
+    private void
+    joinWithAllThreadsImpl()
         throws InterruptedException
     {
         //
@@ -418,9 +724,27 @@ public final class ThreadPool
                 }
                 catch(Selector.TimeoutException ex)
                 {
+                    //
+                    // With several reactors, the thread pool is only idle if all the
+                    // reactors are idle. The other reactors are checked without
+                    // holding the lock of this reactor.
+                    //
+                    boolean idle = true;
+                    if(_reactors != null)
+                    {
+                        for(ThreadPool reactor : _reactors)
+                        {
+                            if(reactor != this && !reactor.isIdle())
+                            {
+                                idle = false;
+                                break;
+                            }
+                        }
+                    }
+
                     synchronized(this)
                     {
-                        if(!_destroyed && _inUse == 0)
+                        if(idle && !_destroyed && _inUse == 0)
                         {
                             _workQueue.queue(new ShutdownWorkItem()); // Select timed-out.
                         }
@@ -692,6 +1016,9 @@ public final class ThreadPool
     private final String _prefix;
     private final String _threadPrefix;
     private final Selector _selector;
+    private final ThreadPool[] _reactors; // Null unless the thread pool has several reactors.
+    private final int _reactorIndex;
+    private final boolean _workStealing;
 
     final class EventHandlerThread implements Runnable
     {
@@ -764,6 +1091,7 @@ public final class ThreadPool
                 }
             }
 
+            _currentThreadPool.set(ThreadPool.this);
             try
             {
                 ThreadPool.this.run(this);
@@ -773,6 +1101,10 @@ public final class ThreadPool
                 String s = "exception in `" + _prefix + "' thread " + _name + ":\n" + Ex.toString(ex);
                 _instance.initializationData().logger.error(s);
             }
+            finally
+            {
+                _currentThreadPool.remove();
+            }
 
             if(_observer != null)
             {
@@ -800,6 +1132,8 @@ public final class ThreadPool
         private Ice.Instrumentation.ThreadObserver _observer;
     }
 
+    private static final ThreadLocal<ThreadPool> _currentThreadPool = new ThreadLocal<ThreadPool>();
+
     private final int _size; // Number of threads that are pre-created.
     private final int _sizeIO; // Number of threads that can concurrently perform IO.
     private final int _sizeMax; // Maximum number of threads.
@@ -815,6 +1149,7 @@ public final class ThreadPool
     private int _threadIndex; // For assigning thread names.
     private int _inUse; // Number of threads that are currently in use.
     private int _inUseIO; // Number of threads that are currently performing IO.
+    private volatile int _handlerCount; // Number of handlers assigned to this reactor.
 
     private java.util.List<EventHandlerOpPair> _handlers = new java.util.ArrayList<EventHandlerOpPair>();
     private java.util.Iterator<EventHandlerOpPair> _nextHandler;
@@ -412,7 +412,7 @@ public final class TraceUtil
         {
             out.write("\nmessage type = " + (int)type + " (" + getMessageTypeAsString(type) + ')');
             byte compress = stream.readByte();
-            out.write("\ncompression status = " + (int)compress + ' ');
+            out.write("\ncompression status = " + (compress & 0xff) + ' ');
             switch(compress)
             {
                 case (byte)0:
@@ -433,9 +433,37 @@ public final class TraceUtil
                     break;
                 }
 
+                case CompressionCodecs.deflateStatus:
+                {
+                    out.write("(compressed with deflate; compress response, if any)");
+                    break;
+                }
+
+                case CompressionCodecs.lz4Status:
+                {
+                    out.write("(compressed with lz4; compress response, if any)");
+                    break;
+                }
+
                 default:
                 {
-                    out.write("(unknown)");
+                    if((compress & CompressionCodecs.supportedFlag) != 0)
+                    {
+                        out.write("(not compressed; compress response, if any; codecs =");
+                        for(byte status = CompressionCodecs.bzip2Status; status <= CompressionCodecs.maxStatus;
+                            ++status)
+                        {
+                            if((compress & CompressionCodecs.bit(status)) != 0)
+                            {
+                                out.write(' ' + getCompressionCodecAsString(status));
+                            }
+                        }
+                        out.write(')');
+                    }
+                    else
+                    {
+                        out.write("(unknown)");
+                    }
                     break;
                 }
             }
@@ -511,4 +539,20 @@ public final class TraceUtil
             return "unknown";
         }
     }
+
+    static private String
+    getCompressionCodecAsString(byte status)
+    {
+        switch(status)
+        {
+        case CompressionCodecs.bzip2Status:
+            return "bzip2";
+        case CompressionCodecs.deflateStatus:
+            return "deflate";
+        case CompressionCodecs.lz4Status:
+            return "lz4";
+        default:
+            return Integer.toString(status);
+        }
+    }
 }
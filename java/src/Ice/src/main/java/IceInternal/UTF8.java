@@ -0,0 +1,200 @@
+// **********************************************************************
+//
+// Copyright (c) 2003-2016 ZeroC, Inc. All rights reserved.
+//
+// This copy of Ice is licensed to you under the terms described in the
+// ICE_LICENSE file included in this distribution.
+//
+// **********************************************************************
+
+package IceInternal;
+
+//
+// Single pass UTF-8 encoding and decoding of strings directly to and from
+// byte buffers, without intermediate byte or char buffers.
+//
+public final class UTF8
+{
+    //
+    // Returns the number of bytes of the UTF-8 encoding of the given string.
+    // Throws MarshalException if the string contains an unpaired surrogate.
+    //
+    public static int
+    encodedLength(String s)
+    {
+        final int len = s.length();
+        int n = len;
+        for(int i = 0; i < len; ++i)
+        {
+            final char c = s.charAt(i);
+            if(c < 0x80)
+            {
+                continue;
+            }
+            else if(c < 0x800)
+            {
+                n += 1;
+            }
+            else if(Character.isSurrogate(c))
+            {
+                if(!Character.isHighSurrogate(c) || i + 1 == len || !Character.isLowSurrogate(s.charAt(i + 1)))
+                {
+                    throw new Ice.MarshalException("string contains an unpaired surrogate character");
+                }
+                n += 2; // 4 bytes for the 2 chars of the pair.
+                ++i;
+            }
+            else
+            {
+                n += 2;
+            }
+        }
+        return n;
+    }
+
+    //
+    // Encodes the given string at the buffer position and advances the
+    // position. The buffer must have room for encodedLength(s) bytes.
+    //
+    public static void
+    encode(String s, int encodedLength, java.nio.ByteBuffer buf)
+    {
+        final int len = s.length();
+        int pos = buf.position();
+        if(encodedLength == len)
+        {
+            //
+            // 7-bit characters only.
+            //
+            for(int i = 0; i < len; ++i)
+            {
+                buf.put(pos++, (byte)s.charAt(i));
+            }
+        }
+        else
+        {
+            for(int i = 0; i < len; ++i)
+            {
+                final char c = s.charAt(i);
+                if(c < 0x80)
+                {
+                    buf.put(pos++, (byte)c);
+                }
+                else if(c < 0x800)
+                {
+                    buf.put(pos++, (byte)(0xC0 | (c >> 6)));
+                    buf.put(pos++, (byte)(0x80 | (c & 0x3F)));
+                }
+                else if(Character.isHighSurrogate(c))
+                {
+                    //
+                    // The surrogate pair was validated by encodedLength().
+                    //
+                    final int cp = Character.toCodePoint(c, s.charAt(++i));
+                    buf.put(pos++, (byte)(0xF0 | (cp >> 18)));
+                    buf.put(pos++, (byte)(0x80 | ((cp >> 12) & 0x3F)));
+                    buf.put(pos++, (byte)(0x80 | ((cp >> 6) & 0x3F)));
+                    buf.put(pos++, (byte)(0x80 | (cp & 0x3F)));
+                }
+                else
+                {
+                    buf.put(pos++, (byte)(0xE0 | (c >> 12)));
+                    buf.put(pos++, (byte)(0x80 | ((c >> 6) & 0x3F)));
+                    buf.put(pos++, (byte)(0x80 | (c & 0x3F)));
+                }
+            }
+        }
+        buf.position(pos);
+    }
+
+    //
+    // Decodes len bytes from the buffer position and advances the position.
+    // The chars array is used as scratch space and must have at least len
+    // elements. Throws MarshalException if the bytes aren't valid UTF-8.
+    //
+    public static String
+    decode(java.nio.ByteBuffer buf, int len, char[] chars)
+    {
+        int pos = buf.position();
+        final int end = pos + len;
+        int n = 0;
+        while(pos < end)
+        {
+            final int b = buf.get(pos++);
+            if(b >= 0)
+            {
+                chars[n++] = (char)b;
+            }
+            else if((b & 0xE0) == 0xC0)
+            {
+                if(pos >= end)
+                {
+                    throw truncated();
+                }
+                final int cp = ((b & 0x1F) << 6) | continuation(buf.get(pos++));
+                if(cp < 0x80)
+                {
+                    throw malformed();
+                }
+                chars[n++] = (char)cp;
+            }
+            else if((b & 0xF0) == 0xE0)
+            {
+                if(pos + 1 >= end)
+                {
+                    throw truncated();
+                }
+                final int cp = ((b & 0x0F) << 12) | (continuation(buf.get(pos++)) << 6) |
+                    continuation(buf.get(pos++));
+                if(cp < 0x800 || (cp >= Character.MIN_SURROGATE && cp <= Character.MAX_SURROGATE))
+                {
+                    throw malformed();
+                }
+                chars[n++] = (char)cp;
+            }
+            else if((b & 0xF8) == 0xF0)
+            {
+                if(pos + 2 >= end)
+                {
+                    throw truncated();
+                }
+                final int cp = ((b & 0x07) << 18) | (continuation(buf.get(pos++)) << 12) |
+                    (continuation(buf.get(pos++)) << 6) | continuation(buf.get(pos++));
+                if(cp < Character.MIN_SUPPLEMENTARY_CODE_POINT || cp > Character.MAX_CODE_POINT)
+                {
+                    throw malformed();
+                }
+                chars[n++] = Character.highSurrogate(cp);
+                chars[n++] = Character.lowSurrogate(cp);
+            }
+            else
+            {
+                throw malformed();
+            }
+        }
+        buf.position(end);
+        return new String(chars, 0, n);
+    }
+
+    private static int
+    continuation(byte b)
+    {
+        if((b & 0xC0) != 0x80)
+        {
+            throw malformed();
+        }
+        return b & 0x3F;
+    }
+
+    private static Ice.MarshalException
+    malformed()
+    {
+        return new Ice.MarshalException("string contains an invalid UTF-8 sequence");
+    }
+
+    private static Ice.MarshalException
+    truncated()
+    {
+        return new Ice.MarshalException("string contains a truncated UTF-8 sequence");
+    }
+}
@@ -0,0 +1,148 @@
+// **********************************************************************
+//
+// Copyright (c) 2003-2016 ZeroC, Inc. All rights reserved.
+//
+// This copy of Ice is licensed to you under the terms described in the
+// ICE_LICENSE file included in this distribution.
+//
+// **********************************************************************
+
+package IceInternal;
+
+//
+// A communicator-wide cache of the factories used to instantiate values
+// from their Slice type ID when no value factory is registered for the
+// type, and of the type IDs of compact type IDs.
+//
+// The entries are resolved with the communicator's class resolver the
+// first time a type ID is unmarshaled. Generated classes provide their
+// own factory, other classes are instantiated with their public default
+// constructor. Registered value factories are still consulted first by
+// the streams, so registering a factory doesn't invalidate the cache.
+//
+// Only type IDs which resolve to a class are cached. The type IDs are
+// supplied by the peer, caching unknown type IDs would let a peer grow
+// the cache without limit.
+//
+public final class ValueFactoryCache
+{
+    ValueFactoryCache(Instance instance)
+    {
+        _instance = instance;
+    }
+
+    //
+    // Returns the factory for the given type ID or null if no class is
+    // mapped to the type ID.
+    //
+    public Ice.ValueFactory
+    find(String typeId)
+    {
+        Ice.ValueFactory factory = _factories.get(typeId);
+        if(factory == null)
+        {
+            Class<?> cls = _instance.resolveClass(typeId);
+            if(cls == null)
+            {
+                return null;
+            }
+            factory = createFactory(cls);
+            Ice.ValueFactory previous = _factories.putIfAbsent(typeId, factory);
+            if(previous != null)
+            {
+                factory = previous;
+            }
+        }
+        return factory;
+    }
+
+    //
+    // Returns the type ID of the given compact type ID or an empty string
+    // if the compact type ID is unknown.
+    //
+    public String
+    resolveCompactId(int compactId)
+    {
+        String typeId = _compactIds.get(compactId);
+        if(typeId == null)
+        {
+            typeId = _instance.resolveCompactId(compactId);
+            if(!typeId.isEmpty())
+            {
+                _compactIds.putIfAbsent(compactId, typeId);
+            }
+        }
+        return typeId;
+    }
+
+    private static Ice.ValueFactory
+    createFactory(Class<?> cls)
+    {
+        //
+        // Generated classes declare a static ice_factory() method which
+        // instantiates the class without reflection. The method must be
+        // declared by the class itself, an inherited method would create
+        // an instance of the base class.
+        //
+        try
+        {
+            java.lang.reflect.Method m = cls.getDeclaredMethod("ice_factory");
+            if(java.lang.reflect.Modifier.isStatic(m.getModifiers()) &&
+               java.lang.reflect.Modifier.isPublic(m.getModifiers()) &&
+               Ice.ValueFactory.class.isAssignableFrom(m.getReturnType()))
+            {
+                Ice.ValueFactory factory = (Ice.ValueFactory)m.invoke(null);
+                if(factory != null)
+                {
+                    return factory;
+                }
+            }
+        }
+        catch(NoSuchMethodException ex)
+        {
+        }
+        catch(Exception ex)
+        {
+            //
+            // Fall back to the default constructor.
+            //
+        }
+        return new ConstructorFactory(cls);
+    }
+
+    private static final class ConstructorFactory implements Ice.ValueFactory
+    {
+        ConstructorFactory(Class<?> cls)
+        {
+            _cls = cls;
+        }
+
+        @Override
+        public Ice.Object
+        create(String typeId)
+        {
+            try
+            {
+                java.lang.reflect.Constructor<?> constructor = _constructor;
+                if(constructor == null)
+                {
+                    _constructor = constructor = _cls.getConstructor();
+                }
+                return (Ice.Object)constructor.newInstance();
+            }
+            catch(Exception ex)
+            {
+                throw new Ice.NoValueFactoryException("no value factory", typeId, ex);
+            }
+        }
+
+        private final Class<?> _cls;
+        private volatile java.lang.reflect.Constructor<?> _constructor;
+    }
+
+    private final Instance _instance;
+    private final java.util.concurrent.ConcurrentHashMap<String, Ice.ValueFactory> _factories =
+        new java.util.concurrent.ConcurrentHashMap<String, Ice.ValueFactory>();
+    private final java.util.concurrent.ConcurrentHashMap<Integer, String> _compactIds =
+        new java.util.concurrent.ConcurrentHashMap<Integer, String>();
+}
@@ -72,6 +72,28 @@ final class WSTransceiver implements Transceiver
                     out.append("Connection: Upgrade\r\n");
                     out.append("Sec-WebSocket-Protocol: " + _iceProtocol + "\r\n");
                     out.append("Sec-WebSocket-Version: 13\r\n");
+                    if(_deflateEnabled)
+                    {
+                        //
+                        // Offer the permessage-deflate extension. We don't offer the
+                        // client_max_window_bits parameter, our compressor always uses
+                        // a 32KB window.
+                        //
+                        out.append("Sec-WebSocket-Extensions: permessage-deflate");
+                        if(_deflateNoContextTakeover)
+                        {
+                            out.append("; client_no_context_takeover");
+                        }
+                        if(_inflateNoContextTakeover)
+                        {
+                            out.append("; server_no_context_takeover");
+                        }
+                        if(_inflateWindowBits < 15)
+                        {
+                            out.append("; server_max_window_bits=" + _inflateWindowBits);
+                        }
+                        out.append("\r\n");
+                    }
                     out.append("Sec-WebSocket-Key: ");
 
                     //
@@ -215,7 +237,7 @@ final class WSTransceiver implements Transceiver
             _state = StateOpened;
             _nextState = StateOpened;
 
-            if(_readBufferPos < _readBuffer.b.position())
+            if(hasBufferedData())
             {
                 _readyCallback.ready(SocketOperation.Read, true);
             }
@@ -319,6 +341,15 @@ final class WSTransceiver implements Transceiver
         //
         _writeBuffer.clear();
         _readBuffer.clear();
+
+        //
+        // Release the memory of the compression streams.
+        //
+        if(_deflater != null)
+        {
+            _deflater.end();
+            _inflater.end();
+        }
     }
 
     @Override
@@ -359,9 +390,23 @@ final class WSTransceiver implements Transceiver
 
                 if(s == SocketOperation.None && _writeBuffer.b.hasRemaining())
                 {
-                    s = _delegate.write(_writeBuffer);
+                    if(_gatheringDelegate != null && _writeState == WriteStatePayload && !_writeCompressed)
+                    {
+                        //
+                        // Send the frame header and the payload with a single gathering write.
+                        //
+                        _gatherBuffers[0] = _writeBuffer.b;
+                        _gatherBuffers[1] = buf.b;
+                        s = _gatheringDelegate.write(_gatherBuffers, 0, 2);
+                        _gatherBuffers[1] = null;
+                    }
+                    else
+                    {
+                        s = _delegate.write(_writeBuffer);
+                    }
                 }
-                else if(s == SocketOperation.None && _incoming && !buf.empty() && _writeState == WriteStatePayload)
+                else if(s == SocketOperation.None && _incoming && !buf.empty() && _writeState == WriteStatePayload &&
+                        !_writeCompressed)
                 {
                     s = _delegate.write(buf);
                 }
@@ -404,7 +449,7 @@ final class WSTransceiver implements Transceiver
 
         if(!buf.b.hasRemaining())
         {
-            if(_readBufferPos < _readBuffer.b.position())
+            if(hasBufferedData())
             {
                 _readyCallback.ready(SocketOperation.Read, true);
             }
@@ -452,7 +497,7 @@ final class WSTransceiver implements Transceiver
 
         if(!buf.b.hasRemaining())
         {
-            if(_readBufferPos < _readBuffer.b.position())
+            if(hasBufferedData())
             {
                 _readyCallback.ready(SocketOperation.Read, true);
             }
@@ -546,6 +591,17 @@ final class WSTransceiver implements Transceiver
         _resource = "";
         _incoming = true;
 
+        //
+        // The payload of the frames sent over an incoming connection isn't
+        // masked. If the delegate supports gathering writes, the payload is
+        // sent directly from the message buffer with the frame header.
+        //
+        if(del instanceof GatheringTransceiver)
+        {
+            _gatheringDelegate = (GatheringTransceiver)del;
+            _gatherBuffers = new java.nio.ByteBuffer[2];
+        }
+
         //
         // Write and read buffer size must be large enough to hold the frame header!
         //
@@ -575,6 +631,17 @@ final class WSTransceiver implements Transceiver
         _key = "";
         _pingPayload = new byte[0];
         _rand = new java.util.Random();
+
+        Ice.Properties properties = instance.properties();
+        _deflateEnabled = properties.getPropertyAsInt("Ice.WS.Deflate") > 0;
+        if(_deflateEnabled)
+        {
+            _deflateMinSize = properties.getPropertyAsIntWithDefault("Ice.WS.Deflate.MinSize", 256);
+            _deflateNoContextTakeover = properties.getPropertyAsInt("Ice.WS.Deflate.NoContextTakeover") > 0;
+            _inflateNoContextTakeover = properties.getPropertyAsInt("Ice.WS.Deflate.PeerNoContextTakeover") > 0;
+            _inflateWindowBits = properties.getPropertyAsIntWithDefault("Ice.WS.Deflate.PeerMaxWindowBits", 15);
+            _inflateWindowBits = Math.max(8, Math.min(15, _inflateWindowBits));
+        }
     }
 
     private void handleRequest(Buffer responseBuffer)
@@ -668,6 +735,63 @@ final class WSTransceiver implements Transceiver
             throw new WebSocketException("invalid value `" + key + "' for WebSocket key");
         }
 
+        //
+        // "Optionally, a |Sec-WebSocket-Extensions| header field, with a
+        //  list of values indicating which extensions the client would like
+        //  to speak."
+        //
+        // We accept the first permessage-deflate offer which we support and
+        // ignore the other extensions.
+        //
+        String extension = null;
+        val = _parser.getHeader("Sec-WebSocket-Extensions", false);
+        if(val != null && _deflateEnabled)
+        {
+            for(String e : val.split(","))
+            {
+                DeflateParameters offer = DeflateParameters.parse(e);
+
+                //
+                // The server_max_window_bits parameter requires a value and we
+                // can't limit the window of our compressor.
+                //
+                if(offer == null || offer.serverMaxWindowBits == 0 ||
+                   (offer.serverMaxWindowBits > 0 && offer.serverMaxWindowBits < 15))
+                {
+                    continue;
+                }
+
+                StringBuilder response = new StringBuilder("permessage-deflate");
+                _deflateNoContextTakeover |= offer.serverNoContextTakeover;
+                if(_deflateNoContextTakeover)
+                {
+                    response.append("; server_no_context_takeover");
+                }
+                _inflateNoContextTakeover |= offer.clientNoContextTakeover;
+                if(_inflateNoContextTakeover)
+                {
+                    response.append("; client_no_context_takeover");
+                }
+
+                //
+                // The client's window can only be limited if it offered the
+                // client_max_window_bits parameter.
+                //
+                if(offer.clientMaxWindowBits >= 0 && _inflateWindowBits < 15)
+                {
+                    if(offer.clientMaxWindowBits > 0)
+                    {
+                        _inflateWindowBits = Math.min(_inflateWindowBits, offer.clientMaxWindowBits);
+                    }
+                    response.append("; client_max_window_bits=" + _inflateWindowBits);
+                }
+
+                extension = response.toString();
+                enableDeflate();
+                break;
+            }
+        }
+
         //
         // Retain the target resource.
         //
@@ -684,6 +808,10 @@ final class WSTransceiver implements Transceiver
         {
             out.append("Sec-WebSocket-Protocol: " + _iceProtocol + "\r\n");
         }
+        if(extension != null)
+        {
+            out.append("Sec-WebSocket-Extensions: " + extension + "\r\n");
+        }
 
         //
         // The response includes:
@@ -821,6 +949,41 @@ final class WSTransceiver implements Transceiver
         {
             throw new WebSocketException(ex);
         }
+
+        //
+        // "If the response includes a |Sec-WebSocket-Extensions| header
+        //  field and this header field indicates the use of an extension
+        //  that was not present in the client's handshake (the server has
+        //  indicated an extension not requested by the client), the client
+        //  MUST _Fail the WebSocket Connection_."
+        //
+        val = _parser.getHeader("Sec-WebSocket-Extensions", false);
+        if(val != null)
+        {
+            DeflateParameters response = _deflateEnabled ? DeflateParameters.parse(val) : null;
+
+            //
+            // The server can't limit the window of our compressor since we
+            // didn't offer client_max_window_bits, and it can't use a larger
+            // window than the one we asked for.
+            //
+            if(response == null || val.indexOf(',') != -1 || response.clientMaxWindowBits >= 0 ||
+               response.serverMaxWindowBits == 0 ||
+               (_inflateWindowBits < 15 && response.serverMaxWindowBits > _inflateWindowBits))
+            {
+                throw new WebSocketException("invalid value `" + val + "' for Sec-WebSocket-Extensions");
+            }
+
+            _deflateNoContextTakeover |= response.clientNoContextTakeover;
+            _inflateNoContextTakeover |= response.serverNoContextTakeover;
+            enableDeflate();
+        }
+    }
+
+    private void enableDeflate()
+    {
+        _deflater = new java.util.zip.Deflater(java.util.zip.Deflater.DEFAULT_COMPRESSION, true);
+        _inflater = new java.util.zip.Inflater(true);
     }
 
     private boolean preRead(Buffer buf)
@@ -849,6 +1012,16 @@ final class WSTransceiver implements Transceiver
                 }
                 _readOpCode = ch & 0xf;
 
+                //
+                // The RSV1 bit is only set on the first frame of a compressed
+                // message, if the permessage-deflate extension was negotiated.
+                //
+                final boolean compressed = (ch & FLAG_COMPRESSED) == FLAG_COMPRESSED;
+                if(compressed && (_inflater == null || _readOpCode != OP_DATA))
+                {
+                    throw new Ice.ProtocolException("invalid RSV1 bit");
+                }
+
                 //
                 // Remember if last frame if we're going to read a data or
                 // continuation frame, this is only for protocol
@@ -861,6 +1034,7 @@ final class WSTransceiver implements Transceiver
                         throw new Ice.ProtocolException("invalid data frame, no FIN on previous frame");
                     }
                     _readLastFrame = (ch & FLAG_FINAL) == FLAG_FINAL;
+                    _readInflating = compressed;
                 }
                 else if(_readOpCode == OP_CONT)
                 {
@@ -970,8 +1144,18 @@ final class WSTransceiver implements Transceiver
                     {
                         _instance.logger().trace(_instance.traceCategory(), "received " + protocol() +
                                                  (_readOpCode == OP_DATA ? " data" : " continuation") +
-                                                 " frame with payload length of " + _readPayloadLength + " bytes\n" +
-                                                 toString());
+                                                 " frame with payload length of " + _readPayloadLength + " bytes" +
+                                                 (_readInflating ? " (compressed)\n" : "\n") + toString());
+                    }
+
+                    if(_readInflating)
+                    {
+                        //
+                        // The frames of a compressed message can be empty.
+                        //
+                        _readState = ReadStateInflate;
+                        _readFramePos = 0;
+                        break;
                     }
 
                     if(_readPayloadLength <= 0)
@@ -1132,9 +1316,153 @@ final class WSTransceiver implements Transceiver
                 //
                 return buf.b.hasRemaining() && n < _readPayloadLength;
             }
+
+            if(_readState == ReadStateInflate)
+            {
+                //
+                // The payload of a compressed message is read in the read buffer and
+                // uncompressed in the message buffer. postRead() returns true only if
+                // _readStart was set before reading more data in the read buffer.
+                //
+                _readStart = _readBuffer.b.position();
+                if(!inflate(buf))
+                {
+                    return false;
+                }
+
+                if(_readPayloadLength > 0)
+                {
+                    //
+                    // Read more of the frame payload.
+                    //
+                    _readBuffer.resize(Math.max(_readBufferSize, Math.min(_readPayloadLength, 16 * 1024)), true);
+                    _readBuffer.b.position(0);
+                    _readBufferPos = 0;
+                    _readStart = 0;
+                    return true;
+                }
+
+                //
+                // We've read the complete frame, we're ready to read a new frame.
+                //
+                _readState = ReadStateOpcode;
+            }
         }
     }
 
+    //
+    // Uncompresses the frame payload available in the read buffer into the
+    // message buffer. Returns false if the message buffer is full, and true
+    // if more of the frame payload must be read or if the frame payload is
+    // uncompressed.
+    //
+    private boolean inflate(Buffer buf)
+    {
+        while(true)
+        {
+            if(buf.empty() || !buf.b.hasRemaining())
+            {
+                _readInflateFull = true;
+                return false;
+            }
+
+            //
+            // Uncompress the input of the inflater, it can also have pending
+            // output if the message buffer was filled by a previous call.
+            //
+            int n;
+            try
+            {
+                if(buf.b.hasArray())
+                {
+                    n = _inflater.inflate(buf.b.array(), buf.b.arrayOffset() + buf.b.position(), buf.b.remaining());
+                    buf.b.position(buf.b.position() + n);
+                }
+                else
+                {
+                    if(_inflateOutput == null)
+                    {
+                        _inflateOutput = new byte[16 * 1024];
+                    }
+                    n = _inflater.inflate(_inflateOutput, 0, Math.min(buf.b.remaining(), _inflateOutput.length));
+                    buf.b.put(_inflateOutput, 0, n);
+                }
+            }
+            catch(java.util.zip.DataFormatException ex)
+            {
+                throw new Ice.ProtocolException("invalid compressed message:\n" + ex.getMessage());
+            }
+            _readInflateFull = false;
+            if(n > 0)
+            {
+                continue;
+            }
+
+            if(!_inflater.needsInput() && !_inflater.finished())
+            {
+                throw new Ice.ProtocolException("invalid compressed message");
+            }
+
+            //
+            // Pass the frame payload available in the read buffer to the inflater. The
+            // payload following the final block of the deflate stream is ignored.
+            //
+            int available = Math.min(_readBuffer.b.position() - _readBufferPos, _readPayloadLength);
+            if(available > 0)
+            {
+                if(_incoming)
+                {
+                    mask(_readBuffer.b, _readBufferPos, _readBuffer.b, _readBufferPos, available, _readMask,
+                         _readFramePos);
+                }
+                if(!_inflater.finished())
+                {
+                    assert(_readBuffer.b.hasArray());
+                    _inflater.setInput(_readBuffer.b.array(), _readBuffer.b.arrayOffset() + _readBufferPos, available);
+                }
+                _readBufferPos += available;
+                _readFramePos += available;
+                _readPayloadLength -= available;
+                continue;
+            }
+            else if(_readPayloadLength > 0 || !_readLastFrame)
+            {
+                return true;
+            }
+
+            //
+            // This is the last frame of the message, its payload is followed by the
+            // 0x00 0x00 0xff 0xff trailer removed by the sender.
+            //
+            if(!_readInflateTrailer && !_inflater.finished())
+            {
+                _readInflateTrailer = true;
+                _inflater.setInput(_deflateTrailer);
+                continue;
+            }
+
+            //
+            // The message is uncompressed.
+            //
+            if(_inflateNoContextTakeover || _inflater.finished())
+            {
+                _inflater.reset();
+            }
+            _readInflating = false;
+            _readInflateTrailer = false;
+            return true;
+        }
+    }
+
+    //
+    // Returns true if data can be returned by read() without reading from
+    // the delegate.
+    //
+    private boolean hasBufferedData()
+    {
+        return _readBufferPos < _readBuffer.b.position() || (_readState == ReadStateInflate && _readInflateFull);
+    }
+
     private boolean postRead(Buffer buf)
     {
         if(_readState != ReadStatePayload)
@@ -1153,24 +1481,8 @@ final class WSTransceiver implements Transceiver
             //
             // Unmask the data we just read.
             //
-            final int pos = buf.b.position();
-            if(buf.b.hasArray())
-            {
-                byte[] arr = buf.b.array();
-                int offset = buf.b.arrayOffset();
-                for(int n = _readStart; n < pos; ++n)
-                {
-                    arr[n + offset] = (byte)(arr[n + offset] ^ _readMask[(n - _readFrameStart) % 4]);
-                }
-            }
-            else
-            {
-                for(int n = _readStart; n < pos; ++n)
-                {
-                    final byte b = (byte)(buf.b.get(n) ^ _readMask[(n - _readFrameStart) % 4]);
-                    buf.b.put(n, b);
-                }
-            }
+            mask(buf.b, _readStart, buf.b, _readStart, buf.b.position() - _readStart, _readMask,
+                 _readStart - _readFrameStart);
         }
 
         _readPayloadLength -= buf.b.position() - _readStart;
@@ -1197,7 +1509,15 @@ final class WSTransceiver implements Transceiver
                 }
 
                 assert(buf.b.position() == 0);
-                prepareWriteHeader((byte)OP_DATA, buf.size());
+                _writeCompressed = _deflater != null && buf.size() >= _deflateMinSize;
+                if(!_writeCompressed)
+                {
+                    prepareWriteHeader((byte)OP_DATA, buf.size());
+                    if(_gatheringDelegate != null)
+                    {
+                        _writeBuffer.b.flip(); // The payload is sent with the header, see write().
+                    }
+                }
 
                 _writeState = WriteStatePayload;
             }
@@ -1254,15 +1574,30 @@ final class WSTransceiver implements Transceiver
             _writePayloadLength = 0;
         }
 
-        if(_writeState == WriteStatePayload)
+        if(_writeState == WriteStatePayload && _writeCompressed)
+        {
+            //
+            // The message is compressed in the internal buffer, the frame
+            // header is added once the size of the compressed payload is known.
+            //
+            if(_writePayloadLength == 0)
+            {
+                deflate(buf);
+                _writePayloadLength = buf.size();
+            }
+            return true;
+        }
+        else if(_writeState == WriteStatePayload)
         {
             //
             // For an outgoing connection, each message must be masked with a random
             // 32-bit value, so we copy the entire message into the internal buffer
-            // for writing. For incoming connections, we just copy the start of the
-            // message in the internal buffer after the hedaer. If the message is
-            // larger, the reminder is sent directly from the message buffer to avoid
-            // copying.
+            // for writing. The message buffer isn't masked in place since it can be
+            // sent again if the invocation is retried. For incoming connections, the
+            // message is sent with the header using a gathering write if supported by
+            // the delegate. Otherwise, we just copy the start of the message in the
+            // internal buffer after the header. If the message is larger, the
+            // remainder is sent directly from the message buffer to avoid copying.
             //
 
             if(!_incoming && (_writePayloadLength == 0 || !_writeBuffer.b.hasRemaining()))
@@ -1272,34 +1607,15 @@ final class WSTransceiver implements Transceiver
                     _writeBuffer.b.position(0);
                 }
 
-                int n = buf.b.position();
-                final int sz = buf.size();
-                if(buf.b.hasArray() && _writeBuffer.b.hasArray())
-                {
-                    int pos = _writeBuffer.b.position();
-                    final int count = Math.min(sz - n, _writeBuffer.b.remaining());
-                    final byte[] src = buf.b.array();
-                    final int srcOff = buf.b.arrayOffset();
-                    final byte[] dest = _writeBuffer.b.array();
-                    final int destOff = _writeBuffer.b.arrayOffset();
-                    for(int i = 0; i < count; ++i, ++n, ++pos)
-                    {
-                        dest[destOff + pos] = (byte)(src[srcOff + n] ^ _writeMask[n % 4]);
-                    }
-                    _writeBuffer.b.position(pos);
-                }
-                else
-                {
-                    for(; n < sz && _writeBuffer.b.hasRemaining(); ++n)
-                    {
-                        final byte b = (byte)(buf.b.get(n) ^ _writeMask[n % 4]);
-                        _writeBuffer.b.put(b);
-                    }
-                }
-                _writePayloadLength = n;
+                final int n = buf.b.position();
+                final int count = Math.min(buf.size() - n, _writeBuffer.b.remaining());
+                final int pos = _writeBuffer.b.position();
+                mask(buf.b, n, _writeBuffer.b, pos, count, _writeMask, n);
+                _writeBuffer.b.position(pos + count);
+                _writePayloadLength = n + count;
                 _writeBuffer.b.flip();
             }
-            else if(_writePayloadLength == 0)
+            else if(_writePayloadLength == 0 && _gatheringDelegate == null)
             {
                 assert(_incoming);
                 if(_writeBuffer.b.hasRemaining())
@@ -1428,6 +1744,41 @@ final class WSTransceiver implements Transceiver
         return false;
     }
 
+    //
+    // XORs count bytes of src, starting at srcPos, with the 32-bit mask and
+    // stores them in dst at dstPos. The offset is the offset of srcPos in the
+    // frame payload, which selects the first byte of the mask to use. The
+    // source and destination can be the same buffer to mask in place.
+    //
+    // The bytes are masked 8 at a time with a 64-bit mask, the mask is
+    // composed according to the byte order of the buffers.
+    //
+    static void mask(java.nio.ByteBuffer src, int srcPos, java.nio.ByteBuffer dst, int dstPos, int count,
+                     byte[] mask, int offset)
+    {
+        long m = 0;
+        for(int i = 0; i < 8; ++i)
+        {
+            m = (m << 8) | (mask[(offset + i) & 3] & 0xFF);
+        }
+        if(src.order() == java.nio.ByteOrder.LITTLE_ENDIAN)
+        {
+            m = Long.reverseBytes(m);
+        }
+        final boolean swap = src.order() != dst.order();
+
+        int n = 0;
+        for(; n + 8 <= count; n += 8)
+        {
+            long v = src.getLong(srcPos + n) ^ m;
+            dst.putLong(dstPos + n, swap ? Long.reverseBytes(v) : v);
+        }
+        for(; n < count; ++n)
+        {
+            dst.put(dstPos + n, (byte)(src.get(srcPos + n) ^ mask[(offset + n) & 3]));
+        }
+    }
+
     private boolean readBuffered(int sz)
     {
         if(_readBufferPos == _readBuffer.b.position())
@@ -1463,6 +1814,106 @@ final class WSTransceiver implements Transceiver
         return true;
     }
 
+    //
+    // Compresses the message in the write buffer and adds the header of the
+    // frame in front of the compressed payload.
+    //
+    private void deflate(Buffer buf)
+    {
+        assert(buf.b.position() == 0 && _writeBuffer.b.hasArray());
+
+        //
+        // Leave room for the largest frame header before the payload.
+        //
+        final int start = 14;
+        _writeBuffer.resize(_writeBufferSize, false);
+
+        java.nio.ByteBuffer src = null;
+        if(!buf.b.hasArray())
+        {
+            src = buf.b.duplicate();
+            if(_deflateInput == null)
+            {
+                _deflateInput = new byte[16 * 1024];
+            }
+        }
+
+        final int size = buf.size();
+        int pos = 0;
+        int len = start;
+        while(true)
+        {
+            if(pos < size && _deflater.needsInput())
+            {
+                if(src == null)
+                {
+                    _deflater.setInput(buf.b.array(), buf.b.arrayOffset(), size);
+                    pos = size;
+                }
+                else
+                {
+                    final int n = Math.min(size - pos, _deflateInput.length);
+                    src.get(_deflateInput, 0, n);
+                    _deflater.setInput(_deflateInput, 0, n);
+                    pos += n;
+                }
+            }
+
+            if(len == _writeBuffer.b.capacity())
+            {
+                _writeBuffer.resize(len + 1, false); // Doubles the capacity.
+            }
+
+            //
+            // The deflate stream is flushed once all the message is compressed, the
+            // flush ends with an empty stored block.
+            //
+            final int available = _writeBuffer.b.capacity() - len;
+            final int n = _deflater.deflate(_writeBuffer.b.array(), _writeBuffer.b.arrayOffset() + len, available,
+                                            pos < size ? java.util.zip.Deflater.NO_FLUSH :
+                                                         java.util.zip.Deflater.SYNC_FLUSH);
+            len += n;
+            if(pos == size && n < available)
+            {
+                break;
+            }
+        }
+
+        //
+        // Remove the 0x00 0x00 0xff 0xff trailer of the empty stored block.
+        //
+        _writeBuffer.b.limit(len);
+        assert(len - start >= 4 && _writeBuffer.b.getInt(len - 4) == 0x0000ffff);
+        len -= 4;
+
+        final int payloadLength = len - start;
+        int headerLength = 2 + (_incoming ? 0 : 4);
+        if(payloadLength > 65535)
+        {
+            headerLength += 8;
+        }
+        else if(payloadLength > 125)
+        {
+            headerLength += 2;
+        }
+
+        _writeBuffer.resize(len, false);
+        _writeBuffer.b.limit(len);
+        _writeBuffer.b.position(start - headerLength);
+        writeHeader((byte)(OP_DATA | FLAG_COMPRESSED), payloadLength);
+        assert(_writeBuffer.b.position() == start);
+        if(!_incoming)
+        {
+            mask(_writeBuffer.b, start, _writeBuffer.b, start, payloadLength, _writeMask, 0);
+        }
+        _writeBuffer.b.position(start - headerLength);
+
+        if(_deflateNoContextTakeover)
+        {
+            _deflater.reset();
+        }
+    }
+
     private void prepareWriteHeader(byte opCode, int payloadLength)
     {
         //
@@ -1471,6 +1922,12 @@ final class WSTransceiver implements Transceiver
         _writeBuffer.resize(_writeBufferSize, false);
         _writeBuffer.b.limit(_writeBufferSize);
         _writeBuffer.b.position(0);
+        writeHeader(opCode, payloadLength);
+    }
+
+    private void writeHeader(byte opCode, int payloadLength)
+    {
+        final int pos = _writeBuffer.b.position();
 
         //
         // Set the opcode - this is the one and only data frame.
@@ -1507,12 +1964,101 @@ final class WSTransceiver implements Transceiver
             // Add a random 32-bit mask to every outgoing frame, copy the payload data,
             // and apply the mask.
             //
-            _writeBuffer.b.put(1, (byte)(_writeBuffer.b.get(1) | FLAG_MASKED));
+            _writeBuffer.b.put(pos + 1, (byte)(_writeBuffer.b.get(pos + 1) | FLAG_MASKED));
             _rand.nextBytes(_writeMask);
             _writeBuffer.b.put(_writeMask);
         }
     }
 
+    //
+    // The parameters of a permessage-deflate extension offer or response.
+    //
+    private static class DeflateParameters
+    {
+        boolean serverNoContextTakeover;
+        boolean clientNoContextTakeover;
+        int serverMaxWindowBits = -1; // -1 if not present, 0 if present without a value.
+        int clientMaxWindowBits = -1;
+
+        //
+        // Returns null if the extension isn't permessage-deflate or if its
+        // parameters are invalid.
+        //
+        static DeflateParameters parse(String extension)
+        {
+            String[] params = extension.split(";");
+            if(!params[0].trim().equalsIgnoreCase("permessage-deflate"))
+            {
+                return null;
+            }
+
+            DeflateParameters p = new DeflateParameters();
+            for(int i = 1; i < params.length; ++i)
+            {
+                String name = params[i].trim().toLowerCase(java.util.Locale.ENGLISH);
+                String value = null;
+                int pos = name.indexOf('=');
+                if(pos != -1)
+                {
+                    value = name.substring(pos + 1).trim();
+                    name = name.substring(0, pos).trim();
+                    if(value.length() >= 2 && value.startsWith("\"") && value.endsWith("\""))
+                    {
+                        value = value.substring(1, value.length() - 1);
+                    }
+                }
+
+                //
+                // Each parameter must not appear more than once.
+                //
+                if(name.equals("server_no_context_takeover") && value == null && !p.serverNoContextTakeover)
+                {
+                    p.serverNoContextTakeover = true;
+                }
+                else if(name.equals("client_no_context_takeover") && value == null && !p.clientNoContextTakeover)
+                {
+                    p.clientNoContextTakeover = true;
+                }
+                else if(name.equals("server_max_window_bits") && p.serverMaxWindowBits == -1)
+                {
+                    p.serverMaxWindowBits = parseWindowBits(value);
+                }
+                else if(name.equals("client_max_window_bits") && p.clientMaxWindowBits == -1)
+                {
+                    p.clientMaxWindowBits = parseWindowBits(value);
+                }
+                else
+                {
+                    return null;
+                }
+
+                if(p.serverMaxWindowBits < -1 || p.clientMaxWindowBits < -1)
+                {
+                    return null;
+                }
+            }
+            return p;
+        }
+
+        static int parseWindowBits(String value)
+        {
+            if(value == null)
+            {
+                return 0;
+            }
+
+            try
+            {
+                int bits = Integer.parseInt(value);
+                return bits >= 8 && bits <= 15 ? bits : -2;
+            }
+            catch(NumberFormatException ex)
+            {
+                return -2;
+            }
+        }
+    }
+
     private ProtocolInstance _instance;
     private Transceiver _delegate;
     private String _host;
@@ -1542,6 +2088,7 @@ final class WSTransceiver implements Transceiver
     private static final int ReadStateHeader = 1;
     private static final int ReadStateControlFrame = 2;
     private static final int ReadStatePayload = 3;
+    private static final int ReadStateInflate = 4;
 
     private int _readState;
     private Buffer _readBuffer;
@@ -1554,7 +2101,11 @@ final class WSTransceiver implements Transceiver
     private int _readPayloadLength;
     private int _readStart;
     private int _readFrameStart;
+    private int _readFramePos;
     private byte[] _readMask;
+    private boolean _readInflating;
+    private boolean _readInflateTrailer;
+    private boolean _readInflateFull;
 
     private static final int WriteStateHeader = 0;
     private static final int WriteStatePayload = 1;
@@ -1566,6 +2117,24 @@ final class WSTransceiver implements Transceiver
     private int _writeBufferSize;
     private byte[] _writeMask;
     private int _writePayloadLength;
+    private GatheringTransceiver _gatheringDelegate;
+    private java.nio.ByteBuffer[] _gatherBuffers;
+    private boolean _writeCompressed;
+
+    //
+    // The permessage-deflate extension (RFC 7692). The deflater compresses
+    // the messages we send and the inflater uncompresses the messages sent
+    // by the peer.
+    //
+    private boolean _deflateEnabled;
+    private int _deflateMinSize;
+    private boolean _deflateNoContextTakeover;
+    private boolean _inflateNoContextTakeover;
+    private int _inflateWindowBits;
+    private java.util.zip.Deflater _deflater;
+    private java.util.zip.Inflater _inflater;
+    private byte[] _deflateInput;
+    private byte[] _inflateOutput;
 
     private boolean _closingInitiator;
     private int _closingReason;
@@ -1605,6 +2174,7 @@ final class WSTransceiver implements Transceiver
     final static private int OP_RES_0xF  = 0xF;    // Reserved
     final static private int FLAG_FINAL  = 0x80;   // Last frame
     final static private int FLAG_MASKED = 0x80;   // Payload is masked
+    final static private int FLAG_COMPRESSED = 0x40; // RSV1, message is compressed
 
     final static private int CLOSURE_NORMAL         = 1000;
     final static private int CLOSURE_SHUTDOWN       = 1001;
@@ -1613,6 +2183,7 @@ final class WSTransceiver implements Transceiver
 
     final static private String _iceProtocol = "ice.zeroc.com";
     final static private String _wsUUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+    final static private byte[] _deflateTrailer = { 0x00, 0x00, (byte)0xff, (byte)0xff };
 
     final static java.nio.charset.Charset _ascii = java.nio.charset.Charset.forName("US-ASCII");
 }
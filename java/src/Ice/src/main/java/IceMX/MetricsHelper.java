@@ -11,22 +11,43 @@ package IceMX;
 
 public class MetricsHelper<T>
 {
+    //
+    // Resolves the value of an attribute from a helper of type H. The
+    // value is converted to a string with toString(), a null value
+    // resolves to the empty string. An IllegalArgumentException is raised
+    // if the attribute can't be resolved for the given helper.
+    //
+    public static abstract class Resolver<H>
+    {
+        public abstract Object
+        get(H helper);
+
+        @SuppressWarnings("unchecked")
+        public String
+        resolve(MetricsHelper<?> helper)
+        {
+            Object result = get((H)helper);
+            if(result != null)
+            {
+                return result.toString();
+            }
+            return "";
+        }
+    }
+
     public static class AttributeResolver
     {
-        private abstract class Resolver
+        private abstract class ReflectResolver extends Resolver<Object>
         {
-            abstract Object resolve(Object obj) throws Exception;
+            abstract Object getImpl(Object obj) throws Exception;
 
-            String resolveImpl(Object obj)
+            @Override
+            public Object
+            get(Object obj)
             {
                 try
                 {
-                    Object result = resolve(obj);
-                    if(result != null)
-                    {
-                        return result.toString();
-                    }
-                    return "";
+                    return getImpl(obj);
                 }
                 catch(IllegalArgumentException ex)
                 {
@@ -49,31 +70,61 @@ public class MetricsHelper<T>
         public String
         resolve(MetricsHelper<?> helper, String attribute)
         {
-            Resolver resolver = _attributes.get(attribute);
-            if(resolver == null)
+            return getResolver(attribute).resolve(helper);
+        }
+
+        //
+        // Returns the resolver of the given attribute. Attributes which
+        // aren't registered with this resolver are resolved with the
+        // helper's defaultResolve() method. The metrics maps compile
+        // their group-by and filter attributes with this method once
+        // for each attribute resolver.
+        //
+        public Resolver<?>
+        getResolver(final String attribute)
+        {
+            Resolver<?> resolver = _attributes.get(attribute);
+            if(resolver != null)
             {
-                if(attribute.equals("none"))
-                {
-                    return "";
-                }
-                String v = helper.defaultResolve(attribute);
-                if(v != null)
-                {
-                    return v;
-                }
-                throw new IllegalArgumentException(attribute);
+                return resolver;
+            }
+            else if(attribute.equals("none"))
+            {
+                return _none;
+            }
+            else
+            {
+                return new Resolver<MetricsHelper<?>>()
+                    {
+                        @Override
+                        public Object
+                        get(MetricsHelper<?> helper)
+                        {
+                            String v = helper.defaultResolve(attribute);
+                            if(v != null)
+                            {
+                                return v;
+                            }
+                            throw new IllegalArgumentException(attribute);
+                        }
+                    };
             }
-            return resolver.resolveImpl(helper);
+        }
+
+        public void
+        add(String name, Resolver<?> resolver)
+        {
+            _attributes.put(name, resolver);
         }
 
         public void
         add(String name, final java.lang.reflect.Method method)
         {
-            _attributes.put(name, new Resolver()
+            _attributes.put(name, new ReflectResolver()
                 {
                     @Override
                     public Object
-                    resolve(Object obj) throws Exception
+                    getImpl(Object obj) throws Exception
                     {
                         return method.invoke(obj);
                     }
@@ -83,11 +134,11 @@ public class MetricsHelper<T>
         public void
         add(String name, final java.lang.reflect.Field field)
         {
-            _attributes.put(name, new Resolver()
+            _attributes.put(name, new ReflectResolver()
                 {
                     @Override
                     public Object
-                    resolve(Object obj) throws Exception
+                    getImpl(Object obj) throws Exception
                     {
                         return field.get(obj);
                     }
@@ -97,11 +148,11 @@ public class MetricsHelper<T>
         public void
         add(final String name, final java.lang.reflect.Method method, final java.lang.reflect.Field field)
         {
-            _attributes.put(name, new Resolver()
+            _attributes.put(name, new ReflectResolver()
                 {
                     @Override
                     public Object
-                    resolve(Object obj) throws Exception
+                    getImpl(Object obj) throws Exception
                     {
                         Object o = method.invoke(obj);
                         if(o != null)
@@ -116,11 +167,11 @@ public class MetricsHelper<T>
         public void
         add(final String name, final java.lang.reflect.Method method, final java.lang.reflect.Method subMethod)
         {
-            _attributes.put(name, new Resolver()
+            _attributes.put(name, new ReflectResolver()
                 {
                     @Override
                     public Object
-                    resolve(Object obj) throws Exception
+                    getImpl(Object obj) throws Exception
                     {
                         Object o = method.invoke(obj);
                         if(o != null)
@@ -132,7 +183,17 @@ public class MetricsHelper<T>
                 });
         }
 
-        private java.util.Map<String, Resolver> _attributes = new java.util.HashMap<String, Resolver>();
+        private java.util.Map<String, Resolver<?>> _attributes = new java.util.HashMap<String, Resolver<?>>();
+
+        static private final Resolver<Object> _none = new Resolver<Object>()
+            {
+                @Override
+                public Object
+                get(Object helper)
+                {
+                    return "";
+                }
+            };
     }
 
     protected
@@ -147,6 +208,12 @@ public class MetricsHelper<T>
         return _attributes.resolve(this, attribute);
     }
 
+    public AttributeResolver
+    getAttributeResolver()
+    {
+        return _attributes;
+    }
+
     public void
     initMetrics(T metrics)
     {
@@ -159,5 +226,5 @@ public class MetricsHelper<T>
         return null;
     }
 
-    private AttributeResolver _attributes;
+    private final AttributeResolver _attributes;
 }
\ No newline at end of file
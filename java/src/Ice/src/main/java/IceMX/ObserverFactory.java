@@ -46,9 +46,15 @@ public class ObserverFactory<T extends Metrics, O extends Observer<T>>
     }
 
     @SuppressWarnings("unchecked")
-    public synchronized O
+    public O
     getObserver(MetricsHelper<T> helper, Object observer, Class<O> cl)
     {
+        //
+        // No mutex lock, the maps are replaced rather than modified when
+        // updated and the matching entries are looked up by the maps.
+        //
+        java.util.List<MetricsMap<T>> maps = _maps;
+
         O old = null;
         try
         {
@@ -58,14 +64,14 @@ public class ObserverFactory<T extends Metrics, O extends Observer<T>>
         {
         }
         java.util.List<MetricsMap<T>.Entry> metricsObjects = null;
-        for(MetricsMap<T> m : _maps)
+        for(MetricsMap<T> m : maps)
         {
             MetricsMap<T>.Entry e = m.getMatching(helper, old != null ? old.getEntry(m) : null);
             if(e != null)
             {
                 if(metricsObjects == null)
                 {
-                    metricsObjects = new java.util.ArrayList<MetricsMap<T>.Entry>(_maps.size());
+                    metricsObjects = new java.util.ArrayList<MetricsMap<T>.Entry>(maps.size());
                 }
                 metricsObjects.add(e);
             }
@@ -112,12 +118,13 @@ public class ObserverFactory<T extends Metrics, O extends Observer<T>>
         Runnable updater;
         synchronized(this)
         {
-            _maps.clear();
+            java.util.List<MetricsMap<T>> maps = new java.util.ArrayList<MetricsMap<T>>();
             for(MetricsMap<T> m : _metrics.getMaps(_name, _class))
             {
-                _maps.add(m);
+                maps.add(m);
             }
-            _enabled = !_maps.isEmpty();
+            _maps = maps;
+            _enabled = !maps.isEmpty();
             updater = _updater;
         }
 
@@ -136,7 +143,7 @@ public class ObserverFactory<T extends Metrics, O extends Observer<T>>
     private final IceInternal.MetricsAdminI _metrics;
     private final String _name;
     private final Class<T> _class;
-    private java.util.List<MetricsMap<T>> _maps = new java.util.ArrayList<MetricsMap<T>>();
+    private volatile java.util.List<MetricsMap<T>> _maps = new java.util.ArrayList<MetricsMap<T>>();
     private volatile boolean _enabled;
     private Runnable _updater;
 }
\ No newline at end of file
@@ -0,0 +1,47 @@
+// **********************************************************************
+//
+// Copyright (c) 2003-2016 ZeroC, Inc. All rights reserved.
+//
+// This copy of Ice is licensed to you under the terms described in the
+// ICE_LICENSE file included in this distribution.
+//
+// **********************************************************************
+
+package IceMX;
+
+/**
+ * Creates the OpenMetrics plug-in. The plug-in serves the enabled metrics
+ * views of the communicator in the OpenMetrics text format over HTTP, for
+ * example with the following configuration:
+ *
+ * <pre>
+ * Ice.Plugin.OpenMetrics=IceMX.OpenMetricsPluginFactory
+ * Ice.Admin.Enabled=1
+ * IceMX.Metrics.Debug.GroupBy=id
+ * IceMX.OpenMetrics.Port=9090
+ * </pre>
+ *
+ * The metrics are returned for GET requests on the <code>/metrics</code>
+ * path. The listener accepts connections on the host set with
+ * <code>IceMX.OpenMetrics.Host</code> (127.0.0.1 by default) and the port
+ * set with <code>IceMX.OpenMetrics.Port</code>. The Metrics admin facet
+ * must be enabled.
+ **/
+public class OpenMetricsPluginFactory implements Ice.PluginFactory
+{
+    /**
+     * Returns a new plug-in.
+     *
+     * @param communicator The communicator for the plug-in.
+     * @param name The name of the plug-in.
+     * @param args The arguments that are specified in the plug-in's configuration.
+     *
+     * @return The new plug-in.
+     **/
+    @Override
+    public Ice.Plugin
+    create(Ice.Communicator communicator, String name, String[] args)
+    {
+        return new IceInternal.OpenMetricsExporter(communicator);
+    }
+}
@@ -0,0 +1,52 @@
+// **********************************************************************
+//
+// Copyright (c) 2003-2016 ZeroC, Inc. All rights reserved.
+//
+// This copy of Ice is licensed to you under the terms described in the
+// ICE_LICENSE file included in this distribution.
+//
+// **********************************************************************
+
+package IcePatch2;
+
+/**
+ * Patches a local data directory with the files of an IcePatch2 server.
+ * Patchers are created with {@link PatcherFactory}.
+ **/
+public interface Patcher
+{
+    /**
+     * Prepares the patching. This computes the checksums of the local data
+     * directory if no summary file exists or if a thorough patch was
+     * specified, and the list of files to be patched. This must be called
+     * once before any call to patch.
+     *
+     * @return <code>true</code> if the preparation was successful,
+     * <code>false</code> if it was interrupted by the feedback.
+     * @throws PatcherException If the preparation failed.
+     **/
+    boolean prepare()
+        throws PatcherException;
+
+    /**
+     * Patches the files of the given directory.
+     *
+     * @param dir The directory to patch, relative to the data directory.
+     * The empty string or "." patches all the files.
+     * @return <code>true</code> if the patching was successful,
+     * <code>false</code> if it was interrupted by the feedback.
+     * @throws PatcherException If the patching failed.
+     **/
+    boolean patch(String dir)
+        throws PatcherException;
+
+    /**
+     * Finishes the patching. This must be called once the patching is
+     * finished to write the summary file of the data directory and to
+     * release the resources of the patcher.
+     *
+     * @throws PatcherException If the summary file can't be written.
+     **/
+    void finish()
+        throws PatcherException;
+}
@@ -0,0 +1,28 @@
+// **********************************************************************
+//
+// Copyright (c) 2003-2016 ZeroC, Inc. All rights reserved.
+//
+// This copy of Ice is licensed to you under the terms described in the
+// ICE_LICENSE file included in this distribution.
+//
+// **********************************************************************
+
+package IcePatch2;
+
+/**
+ * Raised by {@link Patcher} if the patching fails.
+ **/
+public class PatcherException extends java.lang.Exception
+{
+    public PatcherException(String reason)
+    {
+        super(reason);
+    }
+
+    public PatcherException(String reason, Throwable cause)
+    {
+        super(reason, cause);
+    }
+
+    public static final long serialVersionUID = 0L;
+}
@@ -0,0 +1,74 @@
+// **********************************************************************
+//
+// Copyright (c) 2003-2016 ZeroC, Inc. All rights reserved.
+//
+// This copy of Ice is licensed to you under the terms described in the
+// ICE_LICENSE file included in this distribution.
+//
+// **********************************************************************
+
+package IcePatch2;
+
+/**
+ * Creates {@link Patcher} instances.
+ **/
+public final class PatcherFactory
+{
+    /**
+     * Creates a patcher configured with the properties of the given
+     * communicator. The following properties are used to configure the
+     * patcher:
+     *
+     * <ul>
+     * <li>IcePatch2Client.Proxy</li>
+     * <li>IcePatch2Client.Directory</li>
+     * <li>IcePatch2Client.Thorough</li>
+     * <li>IcePatch2Client.ChunkSize</li>
+     * <li>IcePatch2Client.Remove</li>
+     * <li>IcePatch2Client.MaxInFlight</li>
+     * <li>IcePatch2Client.Threads</li>
+     * </ul>
+     *
+     * @param communicator The communicator.
+     * @param feedback The feedback of the patcher.
+     * @return The patcher.
+     * @throws PatcherException If the patcher can't be created.
+     **/
+    public static Patcher
+    create(Ice.Communicator communicator, PatcherFeedback feedback)
+        throws PatcherException
+    {
+        return new PatcherI(communicator, feedback);
+    }
+
+    /**
+     * Creates a patcher with the given parameters. The parameters are
+     * equivalent to the configuration properties, the number of chunks
+     * downloaded concurrently and the number of threads used to compute
+     * checksums and uncompress files are set with the IcePatch2Client.MaxInFlight
+     * and IcePatch2Client.Threads properties of the communicator of the proxy.
+     *
+     * @param server The proxy of the file server.
+     * @param feedback The feedback of the patcher.
+     * @param dataDir The local data directory.
+     * @param thorough True to compute the checksums of the local data
+     * directory even if a summary file exists.
+     * @param chunkSize The size in kilobytes of the chunks downloaded with
+     * a single request.
+     * @param remove 0 to keep the local files which don't exist on the
+     * server, 1 to remove them and 2 to remove them and ignore errors.
+     * @return The patcher.
+     * @throws PatcherException If the patcher can't be created.
+     **/
+    public static Patcher
+    create(FileServerPrx server, PatcherFeedback feedback, String dataDir, boolean thorough, int chunkSize,
+           int remove)
+        throws PatcherException
+    {
+        return new PatcherI(server, feedback, dataDir, thorough, chunkSize, remove);
+    }
+
+    private PatcherFactory()
+    {
+    }
+}
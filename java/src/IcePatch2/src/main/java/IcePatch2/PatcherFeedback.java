@@ -0,0 +1,121 @@
+// **********************************************************************
+//
+// Copyright (c) 2003-2016 ZeroC, Inc. All rights reserved.
+//
+// This copy of Ice is licensed to you under the terms described in the
+// ICE_LICENSE file included in this distribution.
+//
+// **********************************************************************
+
+package IcePatch2;
+
+/**
+ * Implemented by IcePatch2 clients to allow the user to interact with the
+ * patching and to report the progress of the patching. The methods are
+ * called by the thread which calls the {@link Patcher} methods.
+ **/
+public interface PatcherFeedback
+{
+    /**
+     * The summary file can't be loaded for the given reason.
+     *
+     * @param reason The reason why the summary file can't be loaded.
+     * @return <code>true</code> to accept doing a thorough patch,
+     * <code>false</code> otherwise.
+     **/
+    boolean noFileSummary(String reason);
+
+    /**
+     * Called before computing the checksums of the local data directory,
+     * if no summary file is found or if a thorough patch was specified.
+     *
+     * @return <code>false</code> to interrupt the checksum computation,
+     * <code>true</code> otherwise.
+     **/
+    boolean checksumStart();
+
+    /**
+     * Called once the checksum of the given file is computed. Checksums
+     * are computed by several threads, the files aren't necessarily
+     * reported in order.
+     *
+     * @param path The path of the file, relative to the data directory.
+     * @return <code>false</code> to interrupt the checksum computation,
+     * <code>true</code> otherwise.
+     **/
+    boolean checksumProgress(String path);
+
+    /**
+     * Called once the checksums of the local data directory are computed.
+     *
+     * @return <code>false</code> to interrupt the patching,
+     * <code>true</code> otherwise.
+     **/
+    boolean checksumEnd();
+
+    /**
+     * Called before comparing the local checksums with the server
+     * checksums to compute the list of files to patch.
+     *
+     * @return <code>false</code> to interrupt the computation,
+     * <code>true</code> otherwise.
+     **/
+    boolean fileListStart();
+
+    /**
+     * Called to report the progress of the computation of the list of
+     * files to patch.
+     *
+     * @param percent The percentage of the partitions compared so far.
+     * @return <code>false</code> to interrupt the computation,
+     * <code>true</code> otherwise.
+     **/
+    boolean fileListProgress(int percent);
+
+    /**
+     * Called once the list of files to patch is computed.
+     *
+     * @return <code>false</code> to interrupt the patching,
+     * <code>true</code> otherwise.
+     **/
+    boolean fileListEnd();
+
+    /**
+     * Called when the download of a file starts. Files to be updated are
+     * downloaded from the server, uncompressed and written to the local
+     * data directory. Several files are downloaded concurrently but the
+     * files are always reported one after the other, in order.
+     *
+     * @param path The path of the file, relative to the data directory.
+     * @param size The compressed size of the file.
+     * @param updated The number of compressed bytes downloaded so far for
+     * all the files.
+     * @param total The compressed size of all the files to download.
+     * @return <code>false</code> to interrupt the patching,
+     * <code>true</code> otherwise.
+     **/
+    boolean patchStart(String path, long size, long updated, long total);
+
+    /**
+     * Called to report the progress of the download of the file given to
+     * the last call to patchStart.
+     *
+     * @param pos The number of compressed bytes downloaded for the file.
+     * @param size The compressed size of the file.
+     * @param updated The number of compressed bytes downloaded so far for
+     * all the files.
+     * @param total The compressed size of all the files to download.
+     * @return <code>false</code> to interrupt the patching,
+     * <code>true</code> otherwise.
+     **/
+    boolean patchProgress(long pos, long size, long updated, long total);
+
+    /**
+     * Called once the file given to the last call to patchStart is
+     * downloaded.
+     *
+     * @return <code>false</code> to interrupt the patching,
+     * <code>true</code> otherwise.
+     **/
+    boolean patchEnd();
+}
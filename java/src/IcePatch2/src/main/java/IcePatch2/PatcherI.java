@@ -0,0 +1,983 @@
+// **********************************************************************
+//
+// Copyright (c) 2003-2016 ZeroC, Inc. All rights reserved.
+//
+// This copy of Ice is licensed to you under the terms described in the
+// ICE_LICENSE file included in this distribution.
+//
+// **********************************************************************
+
+package IcePatch2;
+
+import java.util.List;
+import java.util.ArrayList;
+
+//
+// The patcher keeps up to IcePatch2Client.MaxInFlight requests pending
+// with the file server: the partitions are listed and the chunks of the
+// files are downloaded concurrently, several chunks of a large file or
+// chunks of several files at once. The chunks are written at their offset
+// in the compressed file by the calling thread. Checksums are computed and
+// files are uncompressed by a pool of IcePatch2Client.Threads threads.
+//
+final class PatcherI implements Patcher
+{
+    PatcherI(Ice.Communicator communicator, PatcherFeedback feedback)
+        throws PatcherException
+    {
+        Ice.Properties properties = communicator.getProperties();
+        _feedback = feedback;
+        _dataDir = properties.getPropertyWithDefault("IcePatch2Client.Directory", ".");
+        _thorough = properties.getPropertyAsIntWithDefault("IcePatch2Client.Thorough", 0) > 0;
+        _chunkSize = properties.getPropertyAsIntWithDefault("IcePatch2Client.ChunkSize", 100);
+        _remove = properties.getPropertyAsIntWithDefault("IcePatch2Client.Remove", 1);
+
+        String clientProxy = properties.getProperty("IcePatch2Client.Proxy");
+        if(clientProxy.isEmpty())
+        {
+            throw new PatcherException("property `IcePatch2Client.Proxy' is not set");
+        }
+
+        FileServerPrx server = FileServerPrxHelper.checkedCast(communicator.stringToProxy(clientProxy));
+        if(server == null)
+        {
+            throw new PatcherException("proxy `" + clientProxy + "' is not a file server.");
+        }
+
+        init(server);
+    }
+
+    PatcherI(FileServerPrx server, PatcherFeedback feedback, String dataDir, boolean thorough, int chunkSize,
+             int remove)
+        throws PatcherException
+    {
+        _feedback = feedback;
+        _dataDir = dataDir;
+        _thorough = thorough;
+        _chunkSize = chunkSize;
+        _remove = remove;
+
+        init(server);
+    }
+
+    @Override
+    public boolean
+    prepare()
+        throws PatcherException
+    {
+        _localFiles.clear();
+
+        boolean thorough = _thorough;
+
+        if(!thorough)
+        {
+            try
+            {
+                _localFiles = Util.loadFileInfoSeq(_dataDir);
+            }
+            catch(PatcherException ex)
+            {
+                thorough = _feedback.noFileSummary(ex.getMessage());
+                if(!thorough)
+                {
+                    return false;
+                }
+            }
+        }
+
+        if(thorough)
+        {
+            if(!_feedback.checksumStart())
+            {
+                return false;
+            }
+
+            _localFiles = Util.getFileInfoSeq(_dataDir, getExecutor(), _feedback);
+            if(_localFiles == null)
+            {
+                _localFiles = new ArrayList<LargeFileInfo>();
+                return false;
+            }
+
+            if(!_feedback.checksumEnd())
+            {
+                return false;
+            }
+
+            Util.saveFileInfoSeq(_dataDir, _localFiles);
+        }
+
+        Util.FileTree0 tree0 = Util.getFileTree0(_localFiles);
+
+        //
+        // Request the partition checksums with the master checksum, this
+        // saves a round trip if the master checksums differ.
+        //
+        Ice.InvocationFuture<byte[]> checksum = _serverCompress.getChecksumAsync();
+        Ice.InvocationFuture<byte[][]> checksumSeqFuture = _serverCompress.getChecksumSeqAsync();
+        if(!java.util.Arrays.equals(tree0.checksum, get(checksum)))
+        {
+            if(!_feedback.fileListStart())
+            {
+                return false;
+            }
+
+            byte[][] checksumSeq = get(checksumSeqFuture);
+            if(checksumSeq.length != 256)
+            {
+                throw new PatcherException("server returned illegal value");
+            }
+
+            while(true)
+            {
+                try
+                {
+                    if(!getFileList(tree0, checksumSeq))
+                    {
+                        return false;
+                    }
+                }
+                catch(Ice.OperationNotExistException ex)
+                {
+                    if(!_useSmallFileAPI)
+                    {
+                        _useSmallFileAPI = true;
+                        _removeFiles.clear();
+                        _updateFiles.clear();
+                        _updateFlags.clear();
+                        continue;
+                    }
+                    throw ex;
+                }
+                break;
+            }
+
+            if(!_feedback.fileListEnd())
+            {
+                return false;
+            }
+        }
+        else
+        {
+            checksumSeqFuture.cancel(false);
+        }
+
+        java.util.Collections.sort(_removeFiles, Util.FileInfoLess);
+        java.util.Collections.sort(_updateFiles, Util.FileInfoLess);
+        java.util.Collections.sort(_updateFlags, Util.FileInfoLess);
+
+        String pathLog = Util.simplify(_dataDir + '/' + Util.logFile);
+        try
+        {
+            _log = new java.io.BufferedWriter(new java.io.OutputStreamWriter(new java.io.FileOutputStream(pathLog),
+                                                                             "UTF-8"));
+        }
+        catch(java.io.IOException ex)
+        {
+            throw new PatcherException("cannot open `" + pathLog + "' for writing:\n" + ex.toString(), ex);
+        }
+
+        return true;
+    }
+
+    @Override
+    public boolean
+    patch(String d)
+        throws PatcherException
+    {
+        String dir = Util.simplify(d);
+
+        if(dir.isEmpty() || dir.equals("."))
+        {
+            if(!_removeFiles.isEmpty() && !removeFiles(new ArrayList<LargeFileInfo>(_removeFiles)))
+            {
+                return false;
+            }
+
+            if(!_updateFiles.isEmpty() && !updateFiles(new ArrayList<LargeFileInfo>(_updateFiles)))
+            {
+                return false;
+            }
+
+            if(!_updateFlags.isEmpty() && !updateFlags(new ArrayList<LargeFileInfo>(_updateFlags)))
+            {
+                return false;
+            }
+
+            return true;
+        }
+        else
+        {
+            String dirWithSlash = Util.simplify(dir + '/') + '/';
+
+            List<LargeFileInfo> remove = filter(_removeFiles, dir, dirWithSlash);
+            List<LargeFileInfo> update = filter(_updateFiles, dir, dirWithSlash);
+            List<LargeFileInfo> updateFlag = filter(_updateFlags, dir, dirWithSlash);
+
+            if(!remove.isEmpty() && !removeFiles(remove))
+            {
+                return false;
+            }
+
+            if(!update.isEmpty() && !updateFiles(update))
+            {
+                return false;
+            }
+
+            if(!updateFlag.isEmpty() && !updateFlags(updateFlag))
+            {
+                return false;
+            }
+
+            return true;
+        }
+    }
+
+    @Override
+    public void
+    finish()
+        throws PatcherException
+    {
+        try
+        {
+            if(_log != null)
+            {
+                Util.close(_log);
+                _log = null;
+            }
+
+            Util.saveFileInfoSeq(_dataDir, _localFiles);
+        }
+        finally
+        {
+            if(_executor != null)
+            {
+                _executor.shutdown();
+                _executor = null;
+            }
+        }
+    }
+
+    private void
+    init(FileServerPrx server)
+        throws PatcherException
+    {
+        if(_dataDir.isEmpty())
+        {
+            throw new PatcherException("no data directory specified");
+        }
+
+        Ice.Properties properties = server.ice_getCommunicator().getProperties();
+
+        //
+        // Make sure that _chunkSize doesn't exceed MessageSizeMax, otherwise
+        // it won't work at all.
+        //
+        int sizeMax = properties.getPropertyAsIntWithDefault("Ice.MessageSizeMax", 1024);
+        if(_chunkSize < 1)
+        {
+            _chunkSize = 1;
+        }
+        else if(_chunkSize > sizeMax)
+        {
+            _chunkSize = sizeMax;
+        }
+        if(_chunkSize == sizeMax)
+        {
+            _chunkSize = _chunkSize * 1024 - 512; // Leave some headroom for protocol header.
+        }
+        else
+        {
+            _chunkSize *= 1024;
+        }
+
+        _maxInFlight = Math.max(1, properties.getPropertyAsIntWithDefault("IcePatch2Client.MaxInFlight", 16));
+        _threads = Math.max(1, properties.getPropertyAsIntWithDefault("IcePatch2Client.Threads",
+                                                                      Runtime.getRuntime().availableProcessors()));
+
+        _dataDir = Util.simplify(new java.io.File(Util.simplify(_dataDir)).getAbsolutePath());
+
+        _serverCompress = FileServerPrxHelper.uncheckedCast(server.ice_compress(true));
+        _serverNoCompress = FileServerPrxHelper.uncheckedCast(server.ice_compress(false));
+    }
+
+    //
+    // Lists the files of the partitions whose checksum differs from the
+    // server checksum and computes the files to remove and to update. The
+    // listing of up to _maxInFlight partitions is requested at once.
+    //
+    @SuppressWarnings("deprecation")
+    private boolean
+    getFileList(Util.FileTree0 tree0, byte[][] checksumSeq)
+        throws PatcherException
+    {
+        List<Integer> nodes = new ArrayList<Integer>();
+        for(int node0 = 0; node0 < 256; ++node0)
+        {
+            if(!java.util.Arrays.equals(tree0.nodes[node0].checksum, checksumSeq[node0]))
+            {
+                nodes.add(node0);
+            }
+        }
+
+        List<Ice.InvocationFuture<?>> futures = new ArrayList<Ice.InvocationFuture<?>>(nodes.size());
+        try
+        {
+            int next = 0;
+            for(int node0 = 0; node0 < 256; ++node0)
+            {
+                if(next < nodes.size() && nodes.get(next) == node0)
+                {
+                    while(futures.size() < nodes.size() && futures.size() < next + _maxInFlight)
+                    {
+                        int node = nodes.get(futures.size());
+                        if(_useSmallFileAPI)
+                        {
+                            futures.add(_serverCompress.getFileInfoSeqAsync(node));
+                        }
+                        else
+                        {
+                            futures.add(_serverCompress.getLargeFileInfoSeqAsync(node));
+                        }
+                    }
+
+                    List<LargeFileInfo> files = new ArrayList<LargeFileInfo>();
+                    java.lang.Object r = get(futures.get(next));
+                    if(r instanceof FileInfo[])
+                    {
+                        for(FileInfo info : (FileInfo[])r)
+                        {
+                            files.add(Util.toLargeFileInfo(info));
+                        }
+                    }
+                    else
+                    {
+                        files.addAll(java.util.Arrays.asList((LargeFileInfo[])r));
+                    }
+                    ++next;
+
+                    for(LargeFileInfo info : files)
+                    {
+                        if(!Util.isSafePath(info.path))
+                        {
+                            throw new PatcherException("server returned illegal path `" + info.path + "'");
+                        }
+                    }
+
+                    files = Util.sortUnique(files);
+                    List<LargeFileInfo> localFiles = tree0.nodes[node0].files;
+
+                    //
+                    // Compute the set of files which were removed.
+                    //
+                    _removeFiles.addAll(Util.setDifference(localFiles, files, Util.FileInfoWithoutFlagsLess));
+
+                    //
+                    // Compute the set of files which were updated (either the file contents, flags or both).
+                    //
+                    List<LargeFileInfo> updatedFiles = Util.setDifference(files, localFiles, Util.FileInfoLess);
+
+                    //
+                    // Compute the set of files whose contents was updated.
+                    //
+                    List<LargeFileInfo> contentsUpdatedFiles =
+                        Util.setDifference(files, localFiles, Util.FileInfoWithoutFlagsLess);
+                    _updateFiles.addAll(contentsUpdatedFiles);
+
+                    //
+                    // Compute the set of files whose flags were updated.
+                    //
+                    _updateFlags.addAll(Util.setDifference(updatedFiles, contentsUpdatedFiles, Util.FileInfoLess));
+                }
+
+                if(!_feedback.fileListProgress((node0 + 1) * 100 / 256))
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+        finally
+        {
+            for(Ice.InvocationFuture<?> f : futures)
+            {
+                f.cancel(false);
+            }
+        }
+    }
+
+    private boolean
+    removeFiles(List<LargeFileInfo> files)
+        throws PatcherException
+    {
+        if(_remove < 1)
+        {
+            return true;
+        }
+
+        for(int i = files.size() - 1; i >= 0; --i)
+        {
+            LargeFileInfo info = files.get(i);
+            try
+            {
+                Util.remove(_dataDir + '/' + info.path);
+                log('-', info);
+            }
+            catch(PatcherException ex)
+            {
+                if(_remove < 2) // We ignore errors if IcePatch2Client.Remove >= 2.
+                {
+                    throw ex;
+                }
+            }
+        }
+
+        _localFiles = Util.setDifference(_localFiles, files, Util.FileInfoLess);
+        _removeFiles = Util.setDifference(_removeFiles, files, Util.FileInfoLess);
+
+        return true;
+    }
+
+    private boolean
+    updateFiles(List<LargeFileInfo> files)
+        throws PatcherException
+    {
+        if(!IceInternal.BZip2.supported())
+        {
+            throw new PatcherException("bzip2 uncompression is not available, the org.apache.tools.bzip2 " +
+                                       "classes are missing from the class path");
+        }
+
+        List<java.util.concurrent.Future<?>> decompressions = new ArrayList<java.util.concurrent.Future<?>>();
+        boolean result = false;
+        try
+        {
+            result = updateFilesInternal(files, decompressions);
+        }
+        finally
+        {
+            if(!result)
+            {
+                for(java.util.concurrent.Future<?> f : decompressions)
+                {
+                    f.cancel(false);
+                }
+            }
+
+            //
+            // Wait for the files to be uncompressed, the first failure is
+            // raised unless the download failed.
+            //
+            for(java.util.concurrent.Future<?> f : decompressions)
+            {
+                try
+                {
+                    f.get();
+                }
+                catch(java.util.concurrent.CancellationException ex)
+                {
+                }
+                catch(java.util.concurrent.ExecutionException ex)
+                {
+                    if(result)
+                    {
+                        result = false;
+                        throw new PatcherException(ex.getCause().getMessage(), ex.getCause());
+                    }
+                }
+                catch(InterruptedException ex)
+                {
+                    if(result)
+                    {
+                        result = false;
+                        throw new PatcherException("patching interrupted", ex);
+                    }
+                }
+            }
+        }
+
+        if(result)
+        {
+            _localFiles = Util.setUnion(_localFiles, files, Util.FileInfoLess);
+            _updateFiles = Util.setDifference(_updateFiles, files, Util.FileInfoLess);
+        }
+        return result;
+    }
+
+    private boolean
+    updateFilesInternal(List<LargeFileInfo> files, List<java.util.concurrent.Future<?>> decompressions)
+        throws PatcherException
+    {
+        long total = 0;
+        List<FileDownload> downloads = new ArrayList<FileDownload>();
+        for(LargeFileInfo info : files)
+        {
+            if(info.size >= 0) // Regular file?
+            {
+                downloads.add(new FileDownload(info));
+                total += info.size;
+            }
+        }
+
+        final java.util.concurrent.BlockingQueue<Chunk> completed = new java.util.concurrent.LinkedBlockingQueue<Chunk>();
+        java.util.Set<Chunk> inFlight = new java.util.HashSet<Chunk>();
+        java.util.Deque<Chunk> retries = new java.util.ArrayDeque<Chunk>();
+
+        int file = 0; // The next file of files to prepare.
+        int download = 0; // The next download to issue requests for.
+        int current = 0; // The download reported to the feedback.
+        long updated = 0;
+        try
+        {
+            while(true)
+            {
+                //
+                // Request chunks until the window is full, the chunks of a
+                // file are requested before the chunks of the next file.
+                //
+                while(inFlight.size() < _maxInFlight)
+                {
+                    Chunk chunk = retries.poll();
+                    if(chunk == null)
+                    {
+                        if(download < downloads.size() && downloads.get(download).opened &&
+                           downloads.get(download).next >= downloads.get(download).size())
+                        {
+                            ++download;
+                        }
+
+                        if(download == downloads.size() || !downloads.get(download).opened)
+                        {
+                            if(file == files.size())
+                            {
+                                break;
+                            }
+
+                            //
+                            // Create the directory or the empty file, or open the
+                            // compressed file of the next file to download.
+                            //
+                            LargeFileInfo info = files.get(file++);
+                            if(info.size < 0)
+                            {
+                                Util.createDirectoryRecursive(_dataDir + '/' + info.path);
+                                log('+', info);
+                            }
+                            else
+                            {
+                                downloads.get(download).open();
+                            }
+                            continue;
+                        }
+
+                        FileDownload d = downloads.get(download);
+                        chunk = new Chunk(d, d.next, (int)Math.min(_chunkSize, d.size() - d.next));
+                        d.next += chunk.len;
+                    }
+                    chunk.request(completed);
+                    inFlight.add(chunk);
+                }
+
+                //
+                // Report the progress of the downloads in order.
+                //
+                while(current < downloads.size())
+                {
+                    FileDownload d = downloads.get(current);
+                    if(!d.started)
+                    {
+                        if(!_feedback.patchStart(d.info.path, d.size(), updated, total))
+                        {
+                            return false;
+                        }
+                        d.started = true;
+                    }
+
+                    if(d.reported < d.written)
+                    {
+                        d.reported = d.written;
+                        if(!_feedback.patchProgress(d.written, d.size(), updated, total))
+                        {
+                            return false;
+                        }
+                    }
+
+                    if(!d.done)
+                    {
+                        break;
+                    }
+
+                    if(!_feedback.patchEnd())
+                    {
+                        return false;
+                    }
+                    ++current;
+                }
+
+                if(inFlight.isEmpty())
+                {
+                    assert(current == downloads.size());
+                    break;
+                }
+
+                Chunk chunk;
+                try
+                {
+                    chunk = completed.take();
+                }
+                catch(InterruptedException ex)
+                {
+                    throw new PatcherException("patching interrupted", ex);
+                }
+                inFlight.remove(chunk);
+
+                FileDownload d = chunk.download;
+                byte[] bytes = chunk.bytes();
+                if(bytes.length == 0 || bytes.length > chunk.len)
+                {
+                    throw new PatcherException("size mismatch for `" + d.info.path + "'");
+                }
+
+                d.write(chunk.pos, bytes);
+                updated += bytes.length;
+
+                if(bytes.length < chunk.len)
+                {
+                    //
+                    // The server returned less bytes than requested, request
+                    // the remaining bytes of the chunk.
+                    //
+                    retries.add(new Chunk(d, chunk.pos + bytes.length, chunk.len - bytes.length));
+                }
+                else if(d.written == d.size())
+                {
+                    d.close();
+                    decompressions.add(decompress(d.info));
+                    d.done = true;
+                }
+            }
+        }
+        finally
+        {
+            for(Chunk chunk : inFlight)
+            {
+                chunk.future.cancel(false);
+            }
+
+            for(FileDownload d : downloads)
+            {
+                d.close();
+            }
+        }
+
+        return true;
+    }
+
+    private boolean
+    updateFlags(List<LargeFileInfo> files)
+        throws PatcherException
+    {
+        for(LargeFileInfo info : files)
+        {
+            if(info.size >= 0) // Regular file?
+            {
+                Util.setFileFlags(_dataDir + '/' + info.path, info);
+            }
+        }
+
+        //
+        // Remove the old files whose flags were updated from the set of
+        // local files and add the new files to the set of local files.
+        //
+        List<LargeFileInfo> localFiles = Util.setDifference(_localFiles, files, Util.FileInfoWithoutFlagsLess);
+        _localFiles = Util.setUnion(localFiles, files, Util.FileInfoLess);
+        _updateFlags = Util.setDifference(_updateFlags, files, Util.FileInfoLess);
+
+        return true;
+    }
+
+    private java.util.concurrent.Future<?>
+    decompress(final LargeFileInfo info)
+    {
+        return getExecutor().submit(new java.util.concurrent.Callable<Void>()
+            {
+                @Override
+                public Void
+                call()
+                    throws PatcherException
+                {
+                    String path = _dataDir + '/' + info.path;
+                    Util.decompressFile(path);
+                    Util.setFileFlags(path, info);
+                    Util.remove(path + ".bz2");
+                    log('+', info);
+                    return null;
+                }
+            });
+    }
+
+    private void
+    log(char op, LargeFileInfo info)
+        throws PatcherException
+    {
+        synchronized(_log)
+        {
+            try
+            {
+                _log.write(op);
+                Util.writeFileInfo(_log, info);
+                _log.flush();
+            }
+            catch(java.io.IOException ex)
+            {
+                throw new PatcherException("error writing log file:\n" + ex.toString(), ex);
+            }
+        }
+    }
+
+    private synchronized java.util.concurrent.ExecutorService
+    getExecutor()
+    {
+        if(_executor == null)
+        {
+            _executor = java.util.concurrent.Executors.newFixedThreadPool(_threads,
+                new java.util.concurrent.ThreadFactory()
+                {
+                    @Override
+                    public Thread
+                    newThread(Runnable r)
+                    {
+                        Thread t = new Thread(r, "IcePatch2Client-" + _threadCount.incrementAndGet());
+                        t.setDaemon(true);
+                        return t;
+                    }
+
+                    private final java.util.concurrent.atomic.AtomicInteger _threadCount =
+                        new java.util.concurrent.atomic.AtomicInteger();
+                });
+        }
+        return _executor;
+    }
+
+    private static List<LargeFileInfo>
+    filter(List<LargeFileInfo> files, String dir, String dirWithSlash)
+    {
+        List<LargeFileInfo> result = new ArrayList<LargeFileInfo>();
+        for(LargeFileInfo info : files)
+        {
+            if(info.path.equals(dir) || info.path.startsWith(dirWithSlash))
+            {
+                result.add(info);
+            }
+        }
+        return result;
+    }
+
+    private static <T> T
+    get(Ice.InvocationFuture<T> future)
+        throws PatcherException
+    {
+        try
+        {
+            return future.get();
+        }
+        catch(InterruptedException ex)
+        {
+            throw new PatcherException("patching interrupted", ex);
+        }
+        catch(java.util.concurrent.ExecutionException ex)
+        {
+            if(ex.getCause() instanceof Ice.LocalException)
+            {
+                throw (Ice.LocalException)ex.getCause();
+            }
+            throw new PatcherException("error from IcePatch2 server:\n" + ex.getCause().toString(), ex.getCause());
+        }
+    }
+
+    //
+    // A regular file to download. The compressed file is written by the
+    // thread which calls patch().
+    //
+    private final class FileDownload
+    {
+        FileDownload(LargeFileInfo info)
+        {
+            this.info = info;
+        }
+
+        long
+        size()
+        {
+            return info.size;
+        }
+
+        void
+        open()
+            throws PatcherException
+        {
+            opened = true;
+            if(info.size == 0)
+            {
+                String path = Util.simplify(_dataDir + '/' + info.path);
+                try
+                {
+                    new java.io.FileOutputStream(path).close();
+                }
+                catch(java.io.IOException ex)
+                {
+                    throw new PatcherException("cannot open `" + path + "' for writing:\n" + ex.toString(), ex);
+                }
+                done = true;
+                return;
+            }
+
+            String pathBZ2 = Util.simplify(_dataDir + '/' + info.path + ".bz2");
+            String dir = Util.getDirname(pathBZ2);
+            if(!dir.isEmpty())
+            {
+                Util.createDirectoryRecursive(dir);
+            }
+
+            java.io.RandomAccessFile file = null;
+            try
+            {
+                new java.io.File(pathBZ2).delete();
+                file = new java.io.RandomAccessFile(pathBZ2, "rw");
+                file.setLength(info.size);
+                channel = file.getChannel();
+            }
+            catch(java.io.IOException ex)
+            {
+                Util.close(file);
+                throw new PatcherException("cannot open `" + pathBZ2 + "' for writing:\n" + ex.toString(), ex);
+            }
+        }
+
+        void
+        write(long pos, byte[] bytes)
+            throws PatcherException
+        {
+            java.nio.ByteBuffer buf = java.nio.ByteBuffer.wrap(bytes);
+            try
+            {
+                while(buf.hasRemaining())
+                {
+                    channel.write(buf, pos + buf.position());
+                }
+            }
+            catch(java.io.IOException ex)
+            {
+                throw new PatcherException("cannot write `" + info.path + ".bz2':\n" + ex.toString(), ex);
+            }
+            written += bytes.length;
+        }
+
+        void
+        close()
+        {
+            if(channel != null)
+            {
+                Util.close(channel);
+            }
+        }
+
+        final LargeFileInfo info;
+        java.nio.channels.FileChannel channel;
+        long next; // The position of the next chunk to request.
+        long written; // The number of bytes written.
+        long reported; // The number of bytes reported to the feedback.
+        boolean opened;
+        boolean started;
+        boolean done;
+    }
+
+    //
+    // A chunk of a file, requested with an asynchronous invocation. The
+    // chunk is queued once the invocation completes.
+    //
+    private final class Chunk
+    {
+        Chunk(FileDownload download, long pos, int len)
+        {
+            this.download = download;
+            this.pos = pos;
+            this.len = len;
+        }
+
+        @SuppressWarnings("deprecation")
+        void
+        request(final java.util.concurrent.BlockingQueue<Chunk> completed)
+        {
+            if(_useSmallFileAPI)
+            {
+                future = _serverNoCompress.getFileCompressedAsync(download.info.path, (int)pos, len);
+            }
+            else
+            {
+                future = _serverNoCompress.getLargeFileCompressedAsync(download.info.path, pos, len);
+            }
+            future.whenComplete(new Ice.InvocationFuture.Listener<byte[]>()
+                {
+                    @Override
+                    public void
+                    completed(Ice.InvocationFuture<byte[]> f)
+                    {
+                        completed.add(Chunk.this);
+                    }
+                });
+        }
+
+        byte[]
+        bytes()
+            throws PatcherException
+        {
+            try
+            {
+                return future.get();
+            }
+            catch(InterruptedException ex)
+            {
+                throw new PatcherException("patching interrupted", ex);
+            }
+            catch(java.util.concurrent.ExecutionException ex)
+            {
+                if(ex.getCause() instanceof FileAccessException)
+                {
+                    throw new PatcherException("error from IcePatch2 server for `" + download.info.path + "': " +
+                                               ((FileAccessException)ex.getCause()).reason, ex.getCause());
+                }
+                else if(ex.getCause() instanceof Ice.LocalException)
+                {
+                    throw (Ice.LocalException)ex.getCause();
+                }
+                throw new PatcherException("error from IcePatch2 server for `" + download.info.path + "':\n" +
+                                           ex.getCause().toString(), ex.getCause());
+            }
+        }
+
+        final FileDownload download;
+        final long pos;
+        final int len;
+        Ice.InvocationFuture<byte[]> future;
+    }
+
+    private final PatcherFeedback _feedback;
+    private String _dataDir;
+    private final boolean _thorough;
+    private int _chunkSize;
+    private final int _remove;
+    private int _maxInFlight;
+    private int _threads;
+    private FileServerPrx _serverCompress;
+    private FileServerPrx _serverNoCompress;
+
+    private List<LargeFileInfo> _localFiles = new ArrayList<LargeFileInfo>();
+    private List<LargeFileInfo> _updateFiles = new ArrayList<LargeFileInfo>();
+    private List<LargeFileInfo> _updateFlags = new ArrayList<LargeFileInfo>();
+    private List<LargeFileInfo> _removeFiles = new ArrayList<LargeFileInfo>();
+
+    private java.io.Writer _log;
+    private boolean _useSmallFileAPI;
+    private java.util.concurrent.ExecutorService _executor;
+}
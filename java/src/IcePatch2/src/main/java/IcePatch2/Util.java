@@ -0,0 +1,905 @@
+// **********************************************************************
+//
+// Copyright (c) 2003-2016 ZeroC, Inc. All rights reserved.
+//
+// This copy of Ice is licensed to you under the terms described in the
+// ICE_LICENSE file included in this distribution.
+//
+// **********************************************************************
+
+package IcePatch2;
+
+//
+// Checksum and summary file utilities, these are compatible with the
+// utilities of the C++ IcePatch2 library.
+//
+final class Util
+{
+    static final String checksumFile = "IcePatch2.sum";
+    static final String logFile = "IcePatch2.log";
+
+    static final class FileTree1
+    {
+        java.util.List<LargeFileInfo> files = new java.util.ArrayList<LargeFileInfo>();
+        byte[] checksum;
+    }
+
+    static final class FileTree0
+    {
+        FileTree1[] nodes = new FileTree1[256];
+        byte[] checksum;
+    }
+
+    //
+    // For the size portion of the comparison, we only distinguish between
+    // file (size >= 0) and directory (size == -1). We do not take the actual
+    // size into account, as it might be set to 0 if no compressed file is
+    // available.
+    //
+    static final java.util.Comparator<LargeFileInfo> FileInfoWithoutFlagsLess =
+        new java.util.Comparator<LargeFileInfo>()
+        {
+            @Override
+            public int
+            compare(LargeFileInfo lhs, LargeFileInfo rhs)
+            {
+                int rc = comparePaths(lhs.path, rhs.path);
+                if(rc != 0)
+                {
+                    return rc;
+                }
+
+                long lsz = lhs.size > 0 ? 0 : lhs.size;
+                long rsz = rhs.size > 0 ? 0 : rhs.size;
+                if(lsz != rsz)
+                {
+                    return lsz < rsz ? -1 : 1;
+                }
+
+                return compareBytes(lhs.checksum, rhs.checksum);
+            }
+        };
+
+    static final java.util.Comparator<LargeFileInfo> FileInfoLess =
+        new java.util.Comparator<LargeFileInfo>()
+        {
+            @Override
+            public int
+            compare(LargeFileInfo lhs, LargeFileInfo rhs)
+            {
+                int rc = FileInfoWithoutFlagsLess.compare(lhs, rhs);
+                if(rc != 0)
+                {
+                    return rc;
+                }
+                return lhs.executable == rhs.executable ? 0 : (lhs.executable ? 1 : -1);
+            }
+        };
+
+    static LargeFileInfo
+    toLargeFileInfo(FileInfo info)
+    {
+        return new LargeFileInfo(info.path, info.checksum, info.size, info.executable);
+    }
+
+    //
+    // Sorts the given sequence and removes the duplicates.
+    //
+    static java.util.List<LargeFileInfo>
+    sortUnique(java.util.List<LargeFileInfo> infoSeq)
+    {
+        java.util.Collections.sort(infoSeq, FileInfoLess);
+        java.util.List<LargeFileInfo> result = new java.util.ArrayList<LargeFileInfo>(infoSeq.size());
+        for(LargeFileInfo info : infoSeq)
+        {
+            if(result.isEmpty() || FileInfoLess.compare(result.get(result.size() - 1), info) != 0)
+            {
+                result.add(info);
+            }
+        }
+        return result;
+    }
+
+    //
+    // Returns the elements of the sorted sequence a which aren't in the
+    // sorted sequence b.
+    //
+    static java.util.List<LargeFileInfo>
+    setDifference(java.util.List<LargeFileInfo> a, java.util.List<LargeFileInfo> b,
+                  java.util.Comparator<LargeFileInfo> less)
+    {
+        java.util.List<LargeFileInfo> result = new java.util.ArrayList<LargeFileInfo>(a.size());
+        int i = 0;
+        int j = 0;
+        while(i < a.size())
+        {
+            if(j == b.size())
+            {
+                result.addAll(a.subList(i, a.size()));
+                break;
+            }
+
+            int rc = less.compare(a.get(i), b.get(j));
+            if(rc < 0)
+            {
+                result.add(a.get(i++));
+            }
+            else
+            {
+                if(rc == 0)
+                {
+                    ++i;
+                }
+                ++j;
+            }
+        }
+        return result;
+    }
+
+    //
+    // Returns the union of the sorted sequences a and b, the elements of a
+    // are kept if both sequences contain equal elements.
+    //
+    static java.util.List<LargeFileInfo>
+    setUnion(java.util.List<LargeFileInfo> a, java.util.List<LargeFileInfo> b,
+             java.util.Comparator<LargeFileInfo> less)
+    {
+        java.util.List<LargeFileInfo> result = new java.util.ArrayList<LargeFileInfo>(a.size() + b.size());
+        int i = 0;
+        int j = 0;
+        while(i < a.size() && j < b.size())
+        {
+            int rc = less.compare(a.get(i), b.get(j));
+            if(rc < 0)
+            {
+                result.add(a.get(i++));
+            }
+            else if(rc > 0)
+            {
+                result.add(b.get(j++));
+            }
+            else
+            {
+                result.add(a.get(i++));
+                ++j;
+            }
+        }
+        result.addAll(a.subList(i, a.size()));
+        result.addAll(b.subList(j, b.size()));
+        return result;
+    }
+
+    static String
+    bytesToString(byte[] bytes)
+    {
+        final String toHex = "0123456789abcdef";
+        StringBuilder s = new StringBuilder(bytes.length * 2);
+        for(byte b : bytes)
+        {
+            s.append(toHex.charAt((b >> 4) & 0xf));
+            s.append(toHex.charAt(b & 0xf));
+        }
+        return s.toString();
+    }
+
+    static byte[]
+    stringToBytes(String str)
+    {
+        byte[] bytes = new byte[str.length() / 2];
+        for(int i = 0; i < bytes.length; ++i)
+        {
+            int hi = Character.digit(str.charAt(i * 2), 16);
+            int lo = Character.digit(str.charAt(i * 2 + 1), 16);
+            bytes[i] = (byte)(((hi < 0 ? 0 : hi) << 4) | (lo < 0 ? 0 : lo));
+        }
+        return bytes;
+    }
+
+    static String
+    simplify(String path)
+    {
+        String result = path;
+
+        if(_windows)
+        {
+            int pos = result.startsWith("\\\\") ? 2 : 0;
+            result = result.substring(0, pos) + result.substring(pos).replace('\\', '/');
+        }
+
+        int pos;
+        while((pos = result.indexOf("//")) != -1)
+        {
+            result = result.substring(0, pos) + result.substring(pos + 1);
+        }
+
+        while((pos = result.indexOf("/./")) != -1)
+        {
+            result = result.substring(0, pos) + result.substring(pos + 2);
+        }
+
+        while(result.startsWith("/../"))
+        {
+            result = result.substring(3);
+        }
+
+        if(result.startsWith("./"))
+        {
+            result = result.substring(2);
+        }
+
+        if(result.equals("/.") || (result.length() == 4 && isDrive(result) && result.charAt(3) == '.'))
+        {
+            return result.substring(0, result.length() - 1);
+        }
+
+        if(result.endsWith("/."))
+        {
+            result = result.substring(0, result.length() - 2);
+        }
+
+        if(result.equals("/") || (result.length() == 3 && isDrive(result)))
+        {
+            return result;
+        }
+
+        if(result.endsWith("/"))
+        {
+            result = result.substring(0, result.length() - 1);
+        }
+
+        if(result.equals("/.."))
+        {
+            result = "/";
+        }
+
+        return result;
+    }
+
+    //
+    // Returns true if the given path of a file of the server is a path
+    // relative to the data directory which doesn't escape it. The paths
+    // are provided by the server, a path such as `../file' or `/file'
+    // would patch a file outside of the data directory.
+    //
+    static boolean
+    isSafePath(String path)
+    {
+        if(path.isEmpty() || path.indexOf('\0') != -1)
+        {
+            return false;
+        }
+
+        if(_windows)
+        {
+            if(path.indexOf(':') != -1)
+            {
+                return false; // Drive letters and alternate data streams.
+            }
+            path = path.replace('\\', '/');
+        }
+
+        if(path.startsWith("/"))
+        {
+            return false;
+        }
+
+        for(String segment : path.split("/"))
+        {
+            if(segment.equals(".."))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static String
+    getSuffix(String pa)
+    {
+        String path = simplify(pa);
+        int dotPos = path.lastIndexOf('.');
+        int slashPos = path.lastIndexOf('/');
+        if(dotPos == -1 || slashPos > dotPos)
+        {
+            return "";
+        }
+        return path.substring(dotPos + 1);
+    }
+
+    static String
+    getWithoutSuffix(String pa)
+    {
+        String path = simplify(pa);
+        int dotPos = path.lastIndexOf('.');
+        int slashPos = path.lastIndexOf('/');
+        if(dotPos == -1 || slashPos > dotPos)
+        {
+            return path;
+        }
+        return path.substring(0, dotPos);
+    }
+
+    static boolean
+    ignoreSuffix(String path)
+    {
+        String suffix = getSuffix(path);
+        return suffix.equals("md5") // For legacy IcePatch.
+            || suffix.equals("tot") // For legacy IcePatch.
+            || suffix.equals("bz2")
+            || suffix.equals("bz2temp");
+    }
+
+    static String
+    getDirname(String pa)
+    {
+        String path = simplify(pa);
+        int slashPos = path.lastIndexOf('/');
+        if(slashPos == -1)
+        {
+            return "";
+        }
+        return path.substring(0, slashPos);
+    }
+
+    static void
+    writeFileInfo(java.io.Writer out, LargeFileInfo info)
+        throws java.io.IOException
+    {
+        out.write(IceUtilInternal.StringUtil.escapeString(info.path, ""));
+        out.write('\t');
+        out.write(bytesToString(info.checksum));
+        out.write('\t');
+        out.write(Long.toString(info.size));
+        out.write('\t');
+        out.write(info.executable ? '1' : '0');
+        out.write('\n');
+    }
+
+    static LargeFileInfo
+    readFileInfo(String line)
+    {
+        String[] fields = line.split("\t");
+        if(fields.length != 4)
+        {
+            throw new IllegalArgumentException("invalid file info `" + line + "'");
+        }
+
+        LargeFileInfo info = new LargeFileInfo();
+        info.path = IceUtilInternal.StringUtil.unescapeString(fields[0], 0, fields[0].length());
+        info.checksum = stringToBytes(fields[1]);
+        try
+        {
+            info.size = Long.parseLong(fields[2].trim());
+            info.executable = Integer.parseInt(fields[3].trim()) != 0;
+        }
+        catch(NumberFormatException ex)
+        {
+            throw new IllegalArgumentException("invalid file info `" + line + "'", ex);
+        }
+        return info;
+    }
+
+    static void
+    saveFileInfoSeq(String pa, java.util.List<LargeFileInfo> infoSeq)
+        throws PatcherException
+    {
+        String path = simplify(pa + '/' + checksumFile);
+        java.io.Writer out = null;
+        try
+        {
+            out = new java.io.BufferedWriter(new java.io.OutputStreamWriter(new java.io.FileOutputStream(path),
+                                                                            "UTF-8"));
+            for(LargeFileInfo info : infoSeq)
+            {
+                writeFileInfo(out, info);
+            }
+        }
+        catch(java.io.IOException ex)
+        {
+            throw new PatcherException("cannot write `" + path + "':\n" + ex.toString(), ex);
+        }
+        finally
+        {
+            close(out);
+        }
+
+        new java.io.File(simplify(pa + '/' + logFile)).delete();
+    }
+
+    static java.util.List<LargeFileInfo>
+    loadFileInfoSeq(String pa)
+        throws PatcherException
+    {
+        java.util.List<LargeFileInfo> infoSeq = new java.util.ArrayList<LargeFileInfo>();
+        String path = simplify(pa + '/' + checksumFile);
+        java.io.BufferedReader in = null;
+        try
+        {
+            in = new java.io.BufferedReader(new java.io.InputStreamReader(new java.io.FileInputStream(path), "UTF-8"));
+            String line;
+            while((line = in.readLine()) != null)
+            {
+                if(!line.isEmpty())
+                {
+                    infoSeq.add(readFileInfo(line));
+                }
+            }
+        }
+        catch(java.io.IOException ex)
+        {
+            throw new PatcherException("cannot read `" + path + "':\n" + ex.toString(), ex);
+        }
+        catch(IllegalArgumentException ex)
+        {
+            throw new PatcherException("cannot read `" + path + "':\n" + ex.getMessage(), ex);
+        }
+        finally
+        {
+            close(in);
+        }
+        infoSeq = sortUnique(infoSeq);
+
+        //
+        // Apply the updates logged by a patch which didn't finish.
+        //
+        String pathLog = simplify(pa + '/' + logFile);
+        if(!new java.io.File(pathLog).exists())
+        {
+            return infoSeq;
+        }
+
+        java.util.List<LargeFileInfo> remove = new java.util.ArrayList<LargeFileInfo>();
+        java.util.List<LargeFileInfo> update = new java.util.ArrayList<LargeFileInfo>();
+        try
+        {
+            in = new java.io.BufferedReader(new java.io.InputStreamReader(new java.io.FileInputStream(pathLog),
+                                                                          "UTF-8"));
+            String line;
+            while((line = in.readLine()) != null)
+            {
+                if(line.length() < 2)
+                {
+                    break;
+                }
+
+                LargeFileInfo info;
+                try
+                {
+                    info = readFileInfo(line.substring(1));
+                }
+                catch(IllegalArgumentException ex)
+                {
+                    break; // Truncated entry.
+                }
+
+                if(line.charAt(0) == '-')
+                {
+                    remove.add(info);
+                }
+                else if(line.charAt(0) == '+')
+                {
+                    update.add(info);
+                }
+            }
+        }
+        catch(java.io.IOException ex)
+        {
+            throw new PatcherException("cannot read `" + pathLog + "':\n" + ex.toString(), ex);
+        }
+        finally
+        {
+            close(in);
+        }
+
+        infoSeq = setDifference(infoSeq, sortUnique(remove), FileInfoLess);
+        infoSeq = setUnion(infoSeq, sortUnique(update), FileInfoLess);
+        saveFileInfoSeq(pa, infoSeq);
+        return infoSeq;
+    }
+
+    static FileTree0
+    getFileTree0(java.util.List<LargeFileInfo> infoSeq)
+    {
+        FileTree0 tree0 = new FileTree0();
+        for(int i = 0; i < 256; ++i)
+        {
+            tree0.nodes[i] = new FileTree1();
+        }
+
+        for(LargeFileInfo info : infoSeq)
+        {
+            tree0.nodes[info.checksum[0] & 0xff].files.add(info);
+        }
+
+        java.security.MessageDigest sha1 = getSHA1();
+        byte[] allChecksums0 = new byte[256 * 20];
+        for(int i = 0; i < 256; ++i)
+        {
+            FileTree1 tree1 = tree0.nodes[i];
+            if(tree1.files.isEmpty())
+            {
+                tree1.checksum = new byte[20];
+            }
+            else
+            {
+                for(LargeFileInfo info : tree1.files)
+                {
+                    sha1.update(info.checksum);
+                    sha1.update((byte)(info.executable ? 1 : 0));
+                }
+                tree1.checksum = sha1.digest();
+            }
+            System.arraycopy(tree1.checksum, 0, allChecksums0, i * 20, 20);
+        }
+        tree0.checksum = sha1.digest(allChecksums0);
+        return tree0;
+    }
+
+    //
+    // Computes the checksums of the files of the given directory. The
+    // directory tree is read by the calling thread and the file checksums
+    // are computed by the given executor. Returns null if the computation
+    // is interrupted by the feedback.
+    //
+    static java.util.List<LargeFileInfo>
+    getFileInfoSeq(String basePath, java.util.concurrent.ExecutorService executor, PatcherFeedback feedback)
+        throws PatcherException
+    {
+        java.util.List<LargeFileInfo> infoSeq = new java.util.ArrayList<LargeFileInfo>();
+        java.util.concurrent.CompletionService<LargeFileInfo> completion =
+            new java.util.concurrent.ExecutorCompletionService<LargeFileInfo>(executor);
+        java.util.List<java.util.concurrent.Future<LargeFileInfo>> futures =
+            new java.util.ArrayList<java.util.concurrent.Future<LargeFileInfo>>();
+        try
+        {
+            getFileInfoSeqInternal(simplify(basePath), ".", completion, futures, infoSeq);
+
+            for(int i = 0; i < futures.size(); ++i)
+            {
+                LargeFileInfo info = completion.take().get();
+                if(!feedback.checksumProgress(info.path))
+                {
+                    return null;
+                }
+                infoSeq.add(info);
+            }
+        }
+        catch(InterruptedException ex)
+        {
+            throw new PatcherException("checksum computation interrupted", ex);
+        }
+        catch(java.util.concurrent.ExecutionException ex)
+        {
+            throw new PatcherException(ex.getCause().getMessage(), ex.getCause());
+        }
+        finally
+        {
+            for(java.util.concurrent.Future<LargeFileInfo> f : futures)
+            {
+                f.cancel(false);
+            }
+        }
+        return sortUnique(infoSeq);
+    }
+
+    static boolean
+    isExecutable(java.io.File file)
+        throws java.io.IOException
+    {
+        if(_windows)
+        {
+            return false; // Windows doesn't support the executable flag.
+        }
+
+        try
+        {
+            return java.nio.file.Files.getPosixFilePermissions(file.toPath()).contains(
+                java.nio.file.attribute.PosixFilePermission.OWNER_EXECUTE);
+        }
+        catch(UnsupportedOperationException ex)
+        {
+            return false;
+        }
+    }
+
+    static void
+    setFileFlags(String pa, LargeFileInfo info)
+        throws PatcherException
+    {
+        if(_windows)
+        {
+            return; // Windows doesn't support the executable flag.
+        }
+
+        java.nio.file.Path path = new java.io.File(pa).toPath();
+        try
+        {
+            java.util.Set<java.nio.file.attribute.PosixFilePermission> perms =
+                java.nio.file.Files.getPosixFilePermissions(path);
+            boolean changed = info.executable ? perms.add(java.nio.file.attribute.PosixFilePermission.OWNER_EXECUTE) :
+                perms.remove(java.nio.file.attribute.PosixFilePermission.OWNER_EXECUTE);
+            if(changed)
+            {
+                java.nio.file.Files.setPosixFilePermissions(path, perms);
+            }
+        }
+        catch(UnsupportedOperationException ex)
+        {
+        }
+        catch(java.io.IOException ex)
+        {
+            throw new PatcherException("cannot set the permissions of `" + pa + "':\n" + ex.toString(), ex);
+        }
+    }
+
+    static void
+    remove(String pa)
+        throws PatcherException
+    {
+        try
+        {
+            java.nio.file.Files.delete(new java.io.File(pa).toPath());
+        }
+        catch(java.io.IOException ex)
+        {
+            throw new PatcherException("cannot remove `" + pa + "':\n" + ex.toString(), ex);
+        }
+    }
+
+    static void
+    createDirectoryRecursive(String pa)
+        throws PatcherException
+    {
+        java.io.File dir = new java.io.File(simplify(pa));
+        if(!dir.isDirectory() && !dir.mkdirs() && !dir.isDirectory())
+        {
+            throw new PatcherException("cannot create directory `" + dir.getPath() + "'");
+        }
+    }
+
+    //
+    // Uncompresses the bzip2 file pa.bz2 to pa.
+    //
+    static void
+    decompressFile(String pa)
+        throws PatcherException
+    {
+        String path = simplify(pa);
+        String pathBZ2 = path + ".bz2";
+        java.io.InputStream in = null;
+        java.io.OutputStream out = null;
+        try
+        {
+            in = IceInternal.BZip2.uncompress(new java.io.BufferedInputStream(new java.io.FileInputStream(pathBZ2),
+                                                                              64 * 1024));
+            out = new java.io.FileOutputStream(path);
+            byte[] buf = new byte[64 * 1024];
+            int n;
+            while((n = in.read(buf)) != -1)
+            {
+                out.write(buf, 0, n);
+            }
+        }
+        catch(java.io.IOException ex)
+        {
+            throw new PatcherException("cannot uncompress `" + pathBZ2 + "':\n" + ex.toString(), ex);
+        }
+        catch(Ice.CompressionException ex)
+        {
+            throw new PatcherException("cannot uncompress `" + pathBZ2 + "':\n" + ex.toString(), ex);
+        }
+        finally
+        {
+            close(in);
+            close(out);
+        }
+    }
+
+    static void
+    close(java.io.Closeable c)
+    {
+        if(c != null)
+        {
+            try
+            {
+                c.close();
+            }
+            catch(java.io.IOException ex)
+            {
+            }
+        }
+    }
+
+    private static void
+    getFileInfoSeqInternal(String basePath, String relPath,
+                           java.util.concurrent.CompletionService<LargeFileInfo> completion,
+                           java.util.List<java.util.concurrent.Future<LargeFileInfo>> futures,
+                           java.util.List<LargeFileInfo> infoSeq)
+        throws PatcherException
+    {
+        if(relPath.equals(checksumFile) || relPath.equals(logFile))
+        {
+            return;
+        }
+
+        final String path = simplify(basePath + '/' + relPath);
+        final java.io.File file = new java.io.File(path);
+
+        if(ignoreSuffix(path))
+        {
+            String pathWithoutSuffix = getWithoutSuffix(path);
+            if(ignoreSuffix(pathWithoutSuffix))
+            {
+                remove(path); // Removing file with suffix for another file that already has a suffix.
+            }
+            else
+            {
+                java.io.File base = new java.io.File(pathWithoutSuffix);
+                if(!base.exists())
+                {
+                    remove(path); // Removing orphaned file.
+                }
+                else if(base.isFile() && base.length() == 0)
+                {
+                    remove(path); // Removing file with suffix for empty file.
+                }
+            }
+        }
+        else if(file.isDirectory())
+        {
+            LargeFileInfo info = new LargeFileInfo();
+            info.path = relPath;
+            info.size = -1;
+            info.executable = false;
+            info.checksum = relPath.isEmpty() ? new byte[20] : getSHA1().digest(getBytes(relPath));
+            infoSeq.add(info);
+
+            String[] content = file.list();
+            if(content == null)
+            {
+                throw new PatcherException("cannot read directory `" + path + "'");
+            }
+            for(String p : content)
+            {
+                getFileInfoSeqInternal(basePath, simplify(relPath + '/' + p), completion, futures, infoSeq);
+            }
+        }
+        else if(file.isFile())
+        {
+            final String rel = relPath;
+            futures.add(completion.submit(new java.util.concurrent.Callable<LargeFileInfo>()
+                {
+                    @Override
+                    public LargeFileInfo
+                    call()
+                        throws PatcherException
+                    {
+                        return computeChecksum(path, file, rel);
+                    }
+                }));
+        }
+        else if(!file.exists())
+        {
+            throw new PatcherException("cannot stat `" + path + "'");
+        }
+    }
+
+    private static LargeFileInfo
+    computeChecksum(String path, java.io.File file, String relPath)
+        throws PatcherException
+    {
+        LargeFileInfo info = new LargeFileInfo();
+        info.path = relPath;
+        info.size = 0;
+
+        java.nio.channels.FileChannel channel = null;
+        try
+        {
+            info.executable = isExecutable(file);
+
+            java.security.MessageDigest sha1 = getSHA1();
+            sha1.update(getBytes(relPath));
+
+            channel = new java.io.FileInputStream(file).getChannel();
+            long size = channel.size();
+            if(relPath.isEmpty() && size == 0)
+            {
+                info.checksum = new byte[20];
+                return info;
+            }
+
+            java.nio.ByteBuffer buf = java.nio.ByteBuffer.allocate((int)Math.min(Math.max(size, 1), 256 * 1024));
+            while(channel.read(buf) != -1)
+            {
+                buf.flip();
+                sha1.update(buf);
+                buf.clear();
+            }
+            info.checksum = sha1.digest();
+            return info;
+        }
+        catch(java.io.IOException ex)
+        {
+            throw new PatcherException("cannot read `" + path + "':\n" + ex.toString(), ex);
+        }
+        finally
+        {
+            close(channel);
+        }
+    }
+
+    private static java.security.MessageDigest
+    getSHA1()
+    {
+        try
+        {
+            return java.security.MessageDigest.getInstance("SHA-1");
+        }
+        catch(java.security.NoSuchAlgorithmException ex)
+        {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static byte[]
+    getBytes(String s)
+    {
+        return s.getBytes(java.nio.charset.StandardCharsets.UTF_8);
+    }
+
+    //
+    // Compares the paths in code point order, which is the order of their
+    // UTF-8 encodings used by the C++ implementation.
+    //
+    private static int
+    comparePaths(String lhs, String rhs)
+    {
+        int n = Math.min(lhs.length(), rhs.length());
+        for(int i = 0; i < n; ++i)
+        {
+            char a = lhs.charAt(i);
+            char b = rhs.charAt(i);
+            if(a != b)
+            {
+                if(Character.isSurrogate(a) && b >= '\uE000')
+                {
+                    return 1;
+                }
+                else if(Character.isSurrogate(b) && a >= '\uE000')
+                {
+                    return -1;
+                }
+                return a - b;
+            }
+        }
+        return lhs.length() - rhs.length();
+    }
+
+    private static int
+    compareBytes(byte[] lhs, byte[] rhs)
+    {
+        int n = Math.min(lhs.length, rhs.length);
+        for(int i = 0; i < n; ++i)
+        {
+            int rc = (lhs[i] & 0xff) - (rhs[i] & 0xff);
+            if(rc != 0)
+            {
+                return rc;
+            }
+        }
+        return lhs.length - rhs.length;
+    }
+
+    private static boolean
+    isDrive(String path)
+    {
+        return _windows && Character.isLetter(path.charAt(0)) && path.charAt(1) == ':' &&
+            path.charAt(2) == '/';
+    }
+
+    private Util()
+    {
+    }
+
+    private static final boolean _windows = System.getProperty("os.name").startsWith("Windows");
+}
@@ -0,0 +1,512 @@
+// **********************************************************************
+//
+// Copyright (c) 2003-2016 ZeroC, Inc. All rights reserved.
+//
+// This copy of Ice is licensed to you under the terms described in the
+// ICE_LICENSE file included in this distribution.
+//
+// **********************************************************************
+
+package IceStorm;
+
+/**
+ * Publishes events on an IceStorm topic with batch oneway requests. Events
+ * are queued in the batch of the publisher proxy and the batch is flushed
+ * once it reaches a maximum size or, with the timer of the communicator,
+ * once it's older than the flush interval. The number of batches being
+ * sent is bounded: publishers are blocked while too many batches are
+ * being sent and the batch is full.
+ *
+ * <pre>
+ * BatchPublisher&lt;ClockPrx&gt; publisher =
+ *     new BatchPublisher&lt;ClockPrx&gt;("Clock", ClockPrxHelper.uncheckedCast(topic.getPublisher()));
+ * publisher.get().tick(time);
+ * </pre>
+ *
+ * The publisher is configured with the following properties of the
+ * communicator of the proxy, where <code>name</code> is the name of the
+ * publisher:
+ *
+ * <ul>
+ * <li><code>name.FlushInterval</code>: the maximum time in milliseconds
+ * events are queued before being sent, 0 disables the timer. The default
+ * is 10.</li>
+ * <li><code>name.MaxBatchSize</code>: the size in kilobytes of the batch
+ * which is sent by the next call to {@link #get}. The default is 64. This
+ * should be smaller than <code>Ice.BatchAutoFlushSize</code>, batches
+ * sent by the Ice run time aren't bounded.</li>
+ * <li><code>name.MaxFlushes</code>: the maximum number of batches being
+ * sent. The default is 4.</li>
+ * </ul>
+ *
+ * The batches are sent asynchronously and the Ice thread pool threads
+ * call back the publisher once they're sent. These threads are therefore
+ * never blocked by the publisher: if too many batches are being sent, a
+ * batch is still sent when the publisher is used from a thread pool thread,
+ * and {@link #destroy} doesn't wait for the batches being sent.
+ *
+ * The publisher metrics are returned by {@link #getMetrics}. If the
+ * communicator has a <code>Metrics</code> admin facet, the number of
+ * batches sent, being sent and which couldn't be sent are also available
+ * with the <code>Publisher</code> map.
+ *
+ * @param <T> The type of the publisher proxy.
+ **/
+public class BatchPublisher<T extends Ice.ObjectPrx>
+{
+    /**
+     * Creates a publisher.
+     *
+     * @param name The name of the publisher, used to configure the
+     * publisher and as the identifier of the publisher metrics.
+     * @param publisher The publisher proxy of the topic, the batch oneway
+     * version of this proxy is used to send the events.
+     **/
+    public
+    BatchPublisher(String name, T publisher)
+    {
+        Ice.Properties properties = publisher.ice_getCommunicator().getProperties();
+        init(name, publisher,
+             properties.getPropertyAsIntWithDefault(name + ".FlushInterval", 10),
+             properties.getPropertyAsIntWithDefault(name + ".MaxBatchSize", 64) * 1024,
+             properties.getPropertyAsIntWithDefault(name + ".MaxFlushes", 4));
+    }
+
+    /**
+     * Creates a publisher with the given configuration.
+     *
+     * @param name The identifier of the publisher metrics.
+     * @param publisher The publisher proxy of the topic.
+     * @param flushInterval The maximum time in milliseconds events are
+     * queued, 0 disables the timer.
+     * @param maxBatchSize The size in bytes of the batch which is sent by
+     * the next call to {@link #get}.
+     * @param maxFlushes The maximum number of batches being sent.
+     **/
+    public
+    BatchPublisher(String name, T publisher, int flushInterval, int maxBatchSize, int maxFlushes)
+    {
+        init(name, publisher, flushInterval, maxBatchSize, maxFlushes);
+    }
+
+    /**
+     * Returns the batch oneway proxy used to publish one event. If the
+     * batch is full, it's sent first and the calling thread is blocked
+     * while too many batches are being sent.
+     *
+     * @return The batch oneway publisher proxy.
+     **/
+    public T
+    get()
+    {
+        synchronized(this)
+        {
+            if(_destroyed)
+            {
+                throw new IllegalStateException("publisher `" + _name + "' is destroyed");
+            }
+
+            if(_queue.size() >= _maxBatchSize)
+            {
+                waitForFlush();
+                if(_queue.size() >= _maxBatchSize)
+                {
+                    flushBatch();
+                }
+            }
+            ++_events;
+            ++_batchEvents;
+        }
+        return _proxy;
+    }
+
+    /**
+     * Sends the queued events. The calling thread is blocked while too
+     * many batches are being sent.
+     **/
+    public synchronized void
+    flush()
+    {
+        if(_destroyed)
+        {
+            throw new IllegalStateException("publisher `" + _name + "' is destroyed");
+        }
+
+        waitForFlush();
+        if(_queue.size() > 0)
+        {
+            flushBatch();
+        }
+    }
+
+    /**
+     * Sends the queued events, waits for the batches being sent and
+     * releases the resources of the publisher. Called from an Ice thread
+     * pool thread, this doesn't wait for the batches being sent.
+     **/
+    public void
+    destroy()
+    {
+        synchronized(this)
+        {
+            if(_destroyed)
+            {
+                return;
+            }
+
+            if(_timerFuture != null)
+            {
+                _timerFuture.cancel(false);
+            }
+
+            try
+            {
+                waitForFlush();
+                if(_queue.size() > 0)
+                {
+                    flushBatch();
+                }
+            }
+            catch(Ice.CommunicatorDestroyedException ex)
+            {
+            }
+
+            _destroyed = true;
+            boolean interrupted = false;
+            while(_flushes > 0 && !IceInternal.ThreadPool.isThreadPoolThread(_instance))
+            {
+                try
+                {
+                    wait();
+                }
+                catch(InterruptedException ex)
+                {
+                    interrupted = true;
+                }
+            }
+            if(interrupted)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        _registry.remove(this);
+    }
+
+    /**
+     * Returns the metrics of the publisher.
+     *
+     * @return The metrics.
+     **/
+    public synchronized PublisherMetrics
+    getMetrics()
+    {
+        PublisherMetrics metrics = new PublisherMetrics();
+        metrics.id = _name;
+        metrics.total = _batches;
+        metrics.current = _flushes;
+        metrics.failures = _failures;
+        metrics.events = _events;
+        updateRate(System.nanoTime());
+        metrics.eventsPerSecond = _eventsPerSecond;
+        int n = _batchSizes.length;
+        while(n > 0 && _batchSizes[n - 1] == 0)
+        {
+            --n;
+        }
+        metrics.batchSizes = java.util.Arrays.copyOf(_batchSizes, n);
+        metrics.flushTime = _flushTime / 1000;
+        metrics.maxFlushTime = _maxFlushTime / 1000;
+        metrics.waitTime = _waitTime / 1000;
+        return metrics;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void
+    init(String name, T publisher, int flushInterval, int maxBatchSize, int maxFlushes)
+    {
+        _name = name;
+        _proxy = (T)publisher.ice_batchOneway();
+        _queue = ((Ice.ObjectPrxHelperBase)_proxy).__getBatchRequestQueue();
+        _maxBatchSize = Math.max(1, maxBatchSize);
+        _maxFlushes = Math.max(1, maxFlushes);
+        _rateTime = System.nanoTime();
+
+        Ice.Communicator communicator = publisher.ice_getCommunicator();
+        _instance = IceInternal.Util.getInstance(communicator);
+        if(flushInterval > 0)
+        {
+            _timerFuture = _instance.timer().scheduleAtFixedRate(new Runnable()
+                {
+                    @Override
+                    public void
+                    run()
+                    {
+                        runTimerTask();
+                    }
+                }, flushInterval, flushInterval, java.util.concurrent.TimeUnit.MILLISECONDS);
+        }
+
+        _registry = Registry.get(communicator);
+        _registry.add(this);
+    }
+
+    private synchronized void
+    runTimerTask()
+    {
+        if(_destroyed)
+        {
+            return;
+        }
+
+        updateRate(System.nanoTime());
+
+        //
+        // The timer never waits for batches being sent, the events are
+        // sent by the next timer task or the next publisher.
+        //
+        if(_flushes < _maxFlushes && _queue.size() > 0)
+        {
+            try
+            {
+                flushBatch();
+            }
+            catch(Ice.CommunicatorDestroyedException ex)
+            {
+            }
+        }
+    }
+
+    private void
+    updateRate(long now)
+    {
+        assert(Thread.holdsLock(this));
+        if(now - _rateTime >= 1000000000L)
+        {
+            _eventsPerSecond = (_events - _rateEvents) * 1000000000L / (now - _rateTime);
+            _rateEvents = _events;
+            _rateTime = now;
+        }
+    }
+
+    private void
+    waitForFlush()
+    {
+        assert(Thread.holdsLock(this));
+        if(_flushes < _maxFlushes)
+        {
+            return;
+        }
+
+        //
+        // The sent callbacks of the batches are called by the thread pool
+        // threads, a thread pool thread waiting for them could wait forever.
+        //
+        if(IceInternal.ThreadPool.isThreadPoolThread(_instance))
+        {
+            return;
+        }
+
+        long start = System.nanoTime();
+        boolean interrupted = false;
+        while(_flushes >= _maxFlushes)
+        {
+            try
+            {
+                wait();
+            }
+            catch(InterruptedException ex)
+            {
+                interrupted = true;
+            }
+        }
+        _waitTime += System.nanoTime() - start;
+
+        if(interrupted)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void
+    flushBatch()
+    {
+        assert(Thread.holdsLock(this));
+        ++_flushes;
+        ++_batches;
+        int bucket = 31 - Integer.numberOfLeadingZeros(Math.max(_batchEvents, 1));
+        ++_batchSizes[bucket];
+        _batchEvents = 0;
+
+        final long start = System.nanoTime();
+        try
+        {
+            _proxy.begin_ice_flushBatchRequests(new Ice.Callback_Object_ice_flushBatchRequests()
+                {
+                    @Override
+                    public void
+                    exception(Ice.LocalException ex)
+                    {
+                        flushed(start, ex);
+                    }
+
+                    @Override
+                    public void
+                    sent(boolean sentSynchronously)
+                    {
+                        flushed(start, null);
+                    }
+                });
+        }
+        catch(Ice.LocalException ex)
+        {
+            flushed(start, ex);
+            throw ex;
+        }
+    }
+
+    private synchronized void
+    flushed(long start, Ice.LocalException ex)
+    {
+        long time = System.nanoTime() - start;
+        _flushTime += time;
+        _maxFlushTime = Math.max(_maxFlushTime, time);
+        if(ex != null)
+        {
+            ++_failures;
+            if(!(ex instanceof Ice.CommunicatorDestroyedException))
+            {
+                java.io.StringWriter sw = new java.io.StringWriter();
+                java.io.PrintWriter pw = new java.io.PrintWriter(sw);
+                ex.printStackTrace(pw);
+                pw.flush();
+                _proxy.ice_getCommunicator().getLogger().warning("publisher `" + _name +
+                                                                 "': batch couldn't be sent:\n" + sw.toString());
+            }
+        }
+        --_flushes;
+        notifyAll();
+    }
+
+    //
+    // The publishers of a communicator, for the Publisher metrics map. The
+    // registry is a plug-in of the communicator, it's released with the
+    // communicator.
+    //
+    private static class Registry implements Ice.Plugin
+    {
+        static Registry
+        get(Ice.Communicator communicator)
+        {
+            Ice.PluginManager pluginManager = communicator.getPluginManager();
+            synchronized(pluginManager)
+            {
+                Ice.Plugin plugin = null;
+                try
+                {
+                    plugin = pluginManager.getPlugin(_pluginName);
+                }
+                catch(Ice.NotRegisteredException ex)
+                {
+                }
+
+                if(plugin instanceof Registry)
+                {
+                    return (Registry)plugin;
+                }
+
+                Registry registry = new Registry();
+                pluginManager.addPlugin(_pluginName, registry);
+                registry.registerMetrics(communicator);
+                return registry;
+            }
+        }
+
+        synchronized void
+        add(BatchPublisher<?> publisher)
+        {
+            _publishers.add(publisher);
+        }
+
+        synchronized void
+        remove(BatchPublisher<?> publisher)
+        {
+            _publishers.remove(publisher);
+        }
+
+        @Override
+        public void
+        initialize()
+        {
+        }
+
+        @Override
+        public synchronized void
+        destroy()
+        {
+            _publishers.clear();
+        }
+
+        private void
+        registerMetrics(Ice.Communicator communicator)
+        {
+            Ice.Object facet = communicator.findAdminFacet("Metrics");
+            if(facet instanceof IceInternal.MetricsAdminI)
+            {
+                ((IceInternal.MetricsAdminI)facet).registerSnapshotMap("Publisher", IceMX.Metrics.class,
+                    new IceInternal.MetricsAdminI.MetricsProvider()
+                    {
+                        @Override
+                        public IceMX.Metrics[]
+                        getMetrics()
+                        {
+                            java.util.List<BatchPublisher<?>> publishers;
+                            synchronized(Registry.this)
+                            {
+                                publishers = new java.util.ArrayList<BatchPublisher<?>>(_publishers);
+                            }
+
+                            IceMX.Metrics[] metrics = new IceMX.Metrics[publishers.size()];
+                            for(int i = 0; i < metrics.length; ++i)
+                            {
+                                PublisherMetrics m = publishers.get(i).getMetrics();
+                                metrics[i] = new IceMX.Metrics();
+                                metrics[i].id = m.id;
+                                metrics[i].total = m.total;
+                                metrics[i].current = m.current;
+                                metrics[i].failures = m.failures;
+                            }
+                            return metrics;
+                        }
+                    });
+            }
+        }
+
+        private static final String _pluginName = "IceStorm.BatchPublisher";
+
+        private final java.util.List<BatchPublisher<?>> _publishers = new java.util.ArrayList<BatchPublisher<?>>();
+    }
+
+    private String _name;
+    private IceInternal.Instance _instance;
+    private Registry _registry;
+    private T _proxy;
+    private IceInternal.BatchRequestQueue _queue;
+    private int _maxBatchSize;
+    private int _maxFlushes;
+    private java.util.concurrent.ScheduledFuture<?> _timerFuture;
+    private boolean _destroyed;
+
+    private int _flushes;
+    private int _batchEvents;
+    private long _events;
+    private long _batches;
+    private int _failures;
+    private final long[] _batchSizes = new long[32];
+    private long _flushTime;
+    private long _maxFlushTime;
+    private long _waitTime;
+    private long _rateTime;
+    private long _rateEvents;
+    private long _eventsPerSecond;
+}
@@ -0,0 +1,72 @@
+// **********************************************************************
+//
+// Copyright (c) 2003-2016 ZeroC, Inc. All rights reserved.
+//
+// This copy of Ice is licensed to you under the terms described in the
+// ICE_LICENSE file included in this distribution.
+//
+// **********************************************************************
+
+package IceStorm;
+
+/**
+ * Provides information on a {@link BatchPublisher}. The <code>Publisher</code>
+ * map of the metrics admin facet only provides the <code>id</code>,
+ * <code>total</code>, <code>current</code> and <code>failures</code>
+ * fields.
+ **/
+public class PublisherMetrics
+{
+    /**
+     * The name of the publisher.
+     **/
+    public String id;
+
+    /**
+     * Number of flushed batches.
+     **/
+    public long total;
+
+    /**
+     * Number of batches being sent.
+     **/
+    public int current;
+
+    /**
+     * Number of batches which couldn't be sent.
+     **/
+    public int failures;
+
+    /**
+     * Number of events published.
+     **/
+    public long events;
+
+    /**
+     * Number of events published per second, measured over the last
+     * second.
+     **/
+    public long eventsPerSecond;
+
+    /**
+     * Histogram of the number of events per batch. The element i is the
+     * number of batches with 2^i to 2^(i+1) - 1 events.
+     **/
+    public long[] batchSizes;
+
+    /**
+     * The time in microseconds spent sending batches.
+     **/
+    public long flushTime;
+
+    /**
+     * The longest time in microseconds spent sending a batch.
+     **/
+    public long maxFlushTime;
+
+    /**
+     * The time in microseconds publishers waited for batches to be sent
+     * because too many batches were being sent.
+     **/
+    public long waitTime;
+}
@@ -0,0 +1,41 @@
+// **********************************************************************
+//
+// Copyright (c) 2003-2016 ZeroC, Inc. All rights reserved.
+//
+// This copy of Ice is licensed to you under the terms described in the
+// ICE_LICENSE file included in this distribution.
+//
+// **********************************************************************
+
+package IcePatch2;
+
+//
+// Gives the test.IcePatch2 tests access to the package-private utilities
+// of IcePatch2, this class is only part of the test jar.
+//
+public final class TestUtil
+{
+    public static String
+    simplify(String path)
+    {
+        return Util.simplify(path);
+    }
+
+    public static boolean
+    isSafePath(String path)
+    {
+        return Util.isSafePath(path);
+    }
+
+    public static java.util.List<LargeFileInfo>
+    getFileInfoSeq(String basePath, java.util.concurrent.ExecutorService executor, PatcherFeedback feedback)
+        throws PatcherException
+    {
+        return Util.getFileInfoSeq(basePath, executor, feedback);
+    }
+
+    private
+    TestUtil()
+    {
+    }
+}
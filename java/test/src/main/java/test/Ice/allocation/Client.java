@@ -0,0 +1,127 @@
+// **********************************************************************
+//
+// Copyright (c) 2003-2016 ZeroC, Inc. All rights reserved.
+//
+// This copy of Ice is licensed to you under the terms described in the
+// ICE_LICENSE file included in this distribution.
+//
+// **********************************************************************
+
+package test.Ice.allocation;
+
+import java.io.PrintWriter;
+
+//
+// Measures the number of bytes allocated by all the threads of the process
+// for each twoway request, with and without the object caches. Each run
+// uses its own communicator which hosts the servant, the requests are sent
+// over a connection for the remote runs and dispatched collocated for the
+// collocated runs.
+//
+// This requires a JVM which supports thread allocation accounting with
+// com.sun.management.ThreadMXBean. The number of requests of each run is
+// set with Allocation.Requests.
+//
+public class Client extends test.Util.Application
+{
+    @Override
+    public int
+    run(String[] args)
+    {
+        PrintWriter out = getWriter();
+        int requests = communicator().getProperties().getPropertyAsIntWithDefault("Allocation.Requests", 100000);
+
+        java.lang.management.ThreadMXBean bean = java.lang.management.ManagementFactory.getThreadMXBean();
+        java.lang.reflect.Method getThreadAllocatedBytes;
+        try
+        {
+            getThreadAllocatedBytes =
+                Class.forName("com.sun.management.ThreadMXBean").getMethod("getThreadAllocatedBytes", long[].class);
+        }
+        catch(Exception ex)
+        {
+            out.println("thread allocation accounting isn't supported by this JVM");
+            return 0;
+        }
+
+        out.println(requests + " twoway requests:");
+        for(boolean collocated : new boolean[] { false, true })
+        {
+            for(int threadCacheSize : new int[] { 0, 16 })
+            {
+                Ice.InitializationData initData = createInitializationData();
+                initData.properties = communicator().getProperties()._clone();
+                initData.properties.setProperty("Ice.ObjectCache.ThreadCacheSize", Integer.toString(threadCacheSize));
+                initData.properties.setProperty("TestAdapter.Endpoints", "tcp -h 127.0.0.1");
+                Ice.Communicator communicator = Ice.Util.initialize(initData);
+                try
+                {
+                    Ice.ObjectAdapter adapter = communicator.createObjectAdapter("TestAdapter");
+                    Ice.ObjectPrx proxy = adapter.add(new Ice.ObjectImpl() {}, Ice.Util.stringToIdentity("test"));
+                    adapter.activate();
+                    proxy = proxy.ice_collocationOptimized(collocated);
+
+                    for(int i = 0; i < requests; ++i) // Warm up the JIT compiler and the caches.
+                    {
+                        proxy.ice_ping();
+                    }
+
+                    long before = allocatedBytes(bean, getThreadAllocatedBytes);
+                    for(int i = 0; i < requests; ++i)
+                    {
+                        proxy.ice_ping();
+                    }
+                    long allocated = allocatedBytes(bean, getThreadAllocatedBytes) - before;
+
+                    out.println("  " + (collocated ? "collocated" : "remote") + ", " +
+                                (threadCacheSize > 0 ? "object caches" : "no object caches") + ": " +
+                                allocated / requests + " bytes per request");
+                    out.flush();
+                }
+                catch(Exception ex)
+                {
+                    ex.printStackTrace();
+                    return 1;
+                }
+                finally
+                {
+                    communicator.destroy();
+                }
+            }
+        }
+        return 0;
+    }
+
+    private static long
+    allocatedBytes(java.lang.management.ThreadMXBean bean, java.lang.reflect.Method getThreadAllocatedBytes)
+        throws Exception
+    {
+        long total = 0;
+        for(long bytes : (long[])getThreadAllocatedBytes.invoke(bean, bean.getAllThreadIds()))
+        {
+            if(bytes > 0)
+            {
+                total += bytes;
+            }
+        }
+        return total;
+    }
+
+    @Override
+    protected Ice.InitializationData getInitData(Ice.StringSeqHolder argsH)
+    {
+        Ice.InitializationData initData = createInitializationData();
+        initData.properties = Ice.Util.createProperties(argsH);
+        argsH.value = initData.properties.parseCommandLineOptions("Allocation", argsH.value);
+        return initData;
+    }
+
+    public static void
+    main(String[] args)
+    {
+        Client app = new Client();
+        int result = app.main("Client", args);
+        System.gc();
+        System.exit(result);
+    }
+}
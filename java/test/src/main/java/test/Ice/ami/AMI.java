@@ -2643,6 +2643,103 @@ public class AMI
                 }
             }
             out.println("ok");
+
+            out.print("testing close connection with concurrent senders... ");
+            out.flush();
+            {
+                //
+                // Several threads send requests over the same connection while
+                // the connection is closed. Each request must complete exactly
+                // once, whether it's sent, retried or failed by the thread which
+                // sent it on behalf of the others.
+                //
+                final TestIntfPrx q = (TestIntfPrx)p.ice_connectionId("senders");
+                final byte[] seq = new byte[1024];
+                final int senders = 8;
+                final int requests = 100;
+                for(int run = 0; run < 10; ++run)
+                {
+                    q.ice_ping();
+                    final Ice.Connection connection = q.ice_getConnection();
+                    final Counter counter = new Counter();
+                    final java.util.concurrent.atomic.AtomicBoolean failed =
+                        new java.util.concurrent.atomic.AtomicBoolean(false);
+                    final java.util.concurrent.CountDownLatch start = new java.util.concurrent.CountDownLatch(1);
+                    Thread[] threads = new Thread[senders];
+                    for(int i = 0; i < senders; ++i)
+                    {
+                        threads[i] = new Thread()
+                        {
+                            @Override
+                            public void
+                            run()
+                            {
+                                try
+                                {
+                                    start.await();
+                                }
+                                catch(InterruptedException ex)
+                                {
+                                    failed.set(true);
+                                    return;
+                                }
+                                for(int j = 0; j < requests; ++j)
+                                {
+                                    counter.increment();
+                                    q.begin_opWithPayload(seq, new Callback_TestIntf_opWithPayload()
+                                    {
+                                        @Override
+                                        public void
+                                        response()
+                                        {
+                                            completed();
+                                        }
+
+                                        @Override
+                                        public void
+                                        exception(Ice.LocalException ex)
+                                        {
+                                            completed();
+                                        }
+
+                                        private synchronized void
+                                        completed()
+                                        {
+                                            if(_completed)
+                                            {
+                                                failed.set(true);
+                                                return;
+                                            }
+                                            _completed = true;
+                                            counter.decrement();
+                                        }
+
+                                        private boolean _completed = false;
+                                    });
+                                }
+                            }
+                        };
+                        threads[i].start();
+                    }
+
+                    start.countDown();
+                    connection.close(run % 2 == 0);
+                    try
+                    {
+                        for(Thread t : threads)
+                        {
+                            t.join();
+                        }
+                        counter.waitComplete();
+                    }
+                    catch(InterruptedException ex)
+                    {
+                        test(false);
+                    }
+                    test(!failed.get());
+                }
+            }
+            out.println("ok");
         }
     }
 }
@@ -22,5 +22,13 @@ sys.path.append(os.path.join(path[0], "scripts"))
 import TestUtil
 
 TestUtil.queueClientServerTest()
+TestUtil.queueClientServerTest(configName = "gathering", localOnly = True,
+                               message = "Running test with gathering writes.",
+                               additionalClientOptions = "--Ice.GatheringWrite.MaxMessages=16",
+                               additionalServerOptions = "--Ice.GatheringWrite.MaxMessages=16")
+TestUtil.queueClientServerTest(configName = "reactors", localOnly = True,
+                               message = "Running test with multi-reactor thread pools.",
+                               additionalClientOptions = "--Ice.ThreadPool.Client.Reactors=2",
+                               additionalServerOptions = "--Ice.ThreadPool.Server.Reactors=2")
 TestUtil.queueCollocatedTest()
 TestUtil.runQueuedTests()
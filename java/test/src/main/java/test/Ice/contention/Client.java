@@ -0,0 +1,167 @@
+// **********************************************************************
+//
+// Copyright (c) 2003-2016 ZeroC, Inc. All rights reserved.
+//
+// This copy of Ice is licensed to you under the terms described in the
+// ICE_LICENSE file included in this distribution.
+//
+// **********************************************************************
+
+package test.Ice.contention;
+
+import java.io.PrintWriter;
+
+//
+// Measures the throughput of many caller threads sending requests over a
+// single connection. The servant is hosted by an object adapter of this
+// communicator and collocation optimization is disabled, the requests go
+// through the connection's send queue and request table.
+//
+// The number of caller threads is set with Contention.Threads, the number
+// of requests sent by each thread with Contention.Requests and the number
+// of measured runs with Contention.Runs.
+//
+public class Client extends test.Util.Application
+{
+    private static class Caller extends Thread
+    {
+        Caller(Ice.ObjectPrx proxy, int requests, boolean twoway, java.util.concurrent.CyclicBarrier barrier)
+        {
+            _proxy = proxy;
+            _requests = requests;
+            _twoway = twoway;
+            _barrier = barrier;
+        }
+
+        @Override
+        public void
+        run()
+        {
+            try
+            {
+                _barrier.await();
+                if(_twoway)
+                {
+                    for(int i = 0; i < _requests; ++i)
+                    {
+                        _proxy.ice_ping();
+                    }
+                }
+                else
+                {
+                    Ice.ObjectPrx oneway = _proxy.ice_oneway();
+                    for(int i = 0; i < _requests; ++i)
+                    {
+                        oneway.ice_ping();
+                    }
+                    _proxy.ice_ping(); // Wait for the oneway requests to be dispatched.
+                }
+                _barrier.await();
+            }
+            catch(Exception ex)
+            {
+                ex.printStackTrace();
+                _failed = true;
+            }
+        }
+
+        boolean
+        failed()
+        {
+            return _failed;
+        }
+
+        private final Ice.ObjectPrx _proxy;
+        private final int _requests;
+        private final boolean _twoway;
+        private final java.util.concurrent.CyclicBarrier _barrier;
+        private volatile boolean _failed;
+    }
+
+    @Override
+    public int
+    run(String[] args)
+    {
+        PrintWriter out = getWriter();
+        Ice.Properties properties = communicator().getProperties();
+        int threads = properties.getPropertyAsIntWithDefault("Contention.Threads", 64);
+        int requests = properties.getPropertyAsIntWithDefault("Contention.Requests", 2000);
+        int runs = properties.getPropertyAsIntWithDefault("Contention.Runs", 3);
+
+        properties.setProperty("TestAdapter.Endpoints", "tcp -h 127.0.0.1");
+        Ice.ObjectAdapter adapter = communicator().createObjectAdapter("TestAdapter");
+        Ice.ObjectPrx proxy = adapter.add(new Ice.ObjectImpl() {}, Ice.Util.stringToIdentity("test"));
+        adapter.activate();
+        proxy = proxy.ice_collocationOptimized(false);
+        proxy.ice_ping();
+
+        out.println(threads + " threads, " + requests + " requests per thread:");
+        for(boolean twoway : new boolean[] { true, false })
+        {
+            long best = Long.MAX_VALUE;
+            for(int run = 0; run <= runs; ++run)
+            {
+                java.util.concurrent.CyclicBarrier barrier = new java.util.concurrent.CyclicBarrier(threads + 1);
+                Caller[] callers = new Caller[threads];
+                for(int i = 0; i < threads; ++i)
+                {
+                    callers[i] = new Caller(proxy, requests, twoway, barrier);
+                    callers[i].start();
+                }
+
+                long time;
+                try
+                {
+                    barrier.await();
+                    long start = System.nanoTime();
+                    barrier.await();
+                    time = System.nanoTime() - start;
+                    for(Caller caller : callers)
+                    {
+                        caller.join();
+                        if(caller.failed())
+                        {
+                            return 1;
+                        }
+                    }
+                }
+                catch(Exception ex)
+                {
+                    ex.printStackTrace();
+                    return 1;
+                }
+
+                if(run > 0) // The first run warms up the JIT compiler.
+                {
+                    best = Math.min(best, time);
+                }
+            }
+
+            long total = (long)threads * requests;
+            out.println("  " + (twoway ? "twoway" : "oneway") + ": " + total * 1000000000L / best + " requests/s (" +
+                        best / total + " ns per request)");
+            out.flush();
+        }
+        return 0;
+    }
+
+    @Override
+    protected Ice.InitializationData getInitData(Ice.StringSeqHolder argsH)
+    {
+        Ice.InitializationData initData = createInitializationData();
+        initData.properties = Ice.Util.createProperties(argsH);
+        argsH.value = initData.properties.parseCommandLineOptions("Contention", argsH.value);
+        initData.properties.setProperty("Ice.ThreadPool.Client.Size", "2");
+        initData.properties.setProperty("Ice.ThreadPool.Server.Size", "4");
+        return initData;
+    }
+
+    public static void
+    main(String[] args)
+    {
+        Client app = new Client();
+        int result = app.main("Client", args);
+        System.gc();
+        System.exit(result);
+    }
+}
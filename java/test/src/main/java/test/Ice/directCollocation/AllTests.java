@@ -0,0 +1,247 @@
+// **********************************************************************
+//
+// Copyright (c) 2003-2016 ZeroC, Inc. All rights reserved.
+//
+// This copy of Ice is licensed to you under the terms described in the
+// ICE_LICENSE file included in this distribution.
+//
+// **********************************************************************
+
+package test.Ice.directCollocation;
+
+import java.io.PrintWriter;
+
+import test.Ice.directCollocation.Test.Node;
+import test.Ice.directCollocation.Test.Point;
+import test.Ice.directCollocation.Test.PointHolder;
+import test.Ice.directCollocation.Test.TestError;
+import test.Ice.directCollocation.Test.TestIntfPrx;
+import test.Ice.directCollocation.Test.TestIntfPrxHelper;
+
+public class AllTests
+{
+    private static void
+    test(boolean b)
+    {
+        if(!b)
+        {
+            throw new RuntimeException();
+        }
+    }
+
+    public static void
+    allTests(Ice.Communicator communicator, PrintWriter out, TestI servant, InterceptorI interceptor,
+             ServantLocatorI locator)
+    {
+        //
+        // The collocated invocations must behave the same whether they're
+        // marshaled or dispatched directly, except for the copy of the
+        // parameters of operations with the java:by-reference metadata.
+        //
+        boolean direct = communicator.getProperties().getPropertyAsInt("Ice.CollocationDirect") > 0;
+
+        TestIntfPrx p = TestIntfPrxHelper.checkedCast(communicator.stringToProxy("test:default -p 12010"));
+        test(p != null);
+
+        out.print("testing invocations... ");
+        out.flush();
+        {
+            test(p.add(1, 2) == 3);
+            test(p.getName().equals(""));
+            if(direct)
+            {
+                test(p.getRequestId() == -1);
+            }
+            else
+            {
+                test(p.getRequestId() > 0);
+            }
+
+            //
+            // Invocations with a timeout aren't dispatched directly.
+            //
+            TestIntfPrx p2 = (TestIntfPrx)p.ice_invocationTimeout(10000);
+            test(p2.add(1, 2) == 3);
+            test(p2.getRequestId() > 0);
+        }
+        out.println("ok");
+
+        out.print("testing parameter copies... ");
+        out.flush();
+        {
+            byte[] seq = { 1, 2, 3 };
+            byte[] r = p.fill(seq, (byte)9);
+            test(r != seq && r.length == 3 && r[0] == 9 && r[1] == 9 && r[2] == 9);
+            test(seq[0] == 1 && seq[1] == 2 && seq[2] == 3);
+
+            r = p.fillByReference(seq, (byte)9);
+            test(r.length == 3 && r[0] == 9 && r[1] == 9 && r[2] == 9);
+            if(direct)
+            {
+                test(r == seq && seq[0] == 9);
+            }
+            else
+            {
+                test(r != seq && seq[0] == 1);
+            }
+        }
+        {
+            Point pt = new Point(1, 2);
+            PointHolder old = new PointHolder(new Point(5, 5));
+            Point r = p.move(pt, 10, old);
+            test(pt.x == 1 && pt.y == 2);
+            test(r.x == 11 && r.y == 2);
+            test(old.value.x == 1 && old.value.y == 2);
+            test(r != servant.lastPoint() && r.equals(servant.lastPoint()));
+        }
+        {
+            Node list = new Node(1, new Node(2, new Node(3, null)));
+            Node r = p.reverse(list);
+            test(list.value == 1 && list.next.value == 2 && list.next.next.value == 3 && list.next.next.next == null);
+            test(r.value == 3 && r.next.value == 2 && r.next.next.value == 1 && r.next.next.next == null);
+        }
+        out.println("ok");
+
+        out.print("testing context... ");
+        out.flush();
+        {
+            java.util.Map<String, String> ctx = new java.util.HashMap<String, String>();
+            ctx.put("one", "ONE");
+            test(p.getContext().isEmpty());
+            test(p.getContext(ctx).equals(ctx));
+
+            TestIntfPrx p2 = (TestIntfPrx)p.ice_context(ctx);
+            test(p2.getContext().equals(ctx));
+            test(p2.getContext(new java.util.HashMap<String, String>()).isEmpty());
+
+            Ice.ImplicitContext ic = communicator.getImplicitContext();
+            ic.put("two", "TWO");
+            java.util.Map<String, String> r = p2.getContext();
+            test(r.size() == 2 && r.get("one").equals("ONE") && r.get("two").equals("TWO"));
+            test(p.getContext(ctx).equals(ctx));
+            ic.remove("two");
+
+            //
+            // The context given to the servant is a copy.
+            //
+            r = p.getContext(ctx);
+            test(r != ctx);
+        }
+        out.println("ok");
+
+        out.print("testing exceptions... ");
+        out.flush();
+        {
+            try
+            {
+                p.fail("reason");
+                test(false);
+            }
+            catch(TestError ex)
+            {
+                test(ex.reason.equals("reason"));
+                test(ex != servant.lastError());
+            }
+
+            try
+            {
+                p.failUnknown();
+                test(false);
+            }
+            catch(Ice.UnknownException ex)
+            {
+            }
+
+            TestIntfPrx missing = TestIntfPrxHelper.uncheckedCast(communicator.stringToProxy("missing:default -p 12010"));
+            try
+            {
+                missing.add(1, 2);
+                test(false);
+            }
+            catch(Ice.ObjectNotExistException ex)
+            {
+                test(ex.id.name.equals("missing"));
+                test(ex.operation.equals("add"));
+            }
+
+            try
+            {
+                TestIntfPrxHelper.uncheckedCast(p, "facet").add(1, 2);
+                test(false);
+            }
+            catch(Ice.FacetNotExistException ex)
+            {
+                test(ex.facet.equals("facet"));
+            }
+
+            //
+            // The servant doesn't implement the operations of the proxy, the
+            // invocation is marshaled.
+            //
+            TestIntfPrx empty = TestIntfPrxHelper.uncheckedCast(communicator.stringToProxy("empty:default -p 12010"));
+            try
+            {
+                empty.add(1, 2);
+                test(false);
+            }
+            catch(Ice.OperationNotExistException ex)
+            {
+                test(ex.operation.equals("add"));
+            }
+        }
+        out.println("ok");
+
+        out.print("testing interceptors and servant locators... ");
+        out.flush();
+        {
+            //
+            // Invocations on interceptors and on servants provided by a
+            // servant locator are always marshaled, the interceptors and the
+            // servant locator are called once per invocation.
+            //
+            TestIntfPrx p2 = TestIntfPrxHelper.uncheckedCast(communicator.stringToProxy("interceptor:default -p 12010"));
+            test(p2.add(1, 2) == 3);
+            test(interceptor.getLastOperation().equals("add"));
+            test(p2.getRequestId() > 0);
+            test(p2.getContext().get("intercepted").equals("yes"));
+            test(interceptor.getLastOperation().equals("getContext"));
+            try
+            {
+                p2.fail("reason");
+                test(false);
+            }
+            catch(TestError ex)
+            {
+            }
+
+            int located = locator.getLocated();
+            int finished = locator.getFinished();
+            p2 = TestIntfPrxHelper.uncheckedCast(communicator.stringToProxy("locator/foo:default -p 12010"));
+            test(p2.add(1, 2) == 3);
+            test(locator.getLocated() == located + 1 && locator.getFinished() == finished + 1);
+            test(p2.getRequestId() > 0);
+            test(locator.getLocated() == located + 2 && locator.getFinished() == finished + 2);
+            try
+            {
+                p2.fail("reason");
+                test(false);
+            }
+            catch(TestError ex)
+            {
+            }
+            test(locator.getLocated() == located + 3 && locator.getFinished() == finished + 3);
+
+            p2 = TestIntfPrxHelper.uncheckedCast(communicator.stringToProxy("locator/missing:default -p 12010"));
+            try
+            {
+                p2.add(1, 2);
+                test(false);
+            }
+            catch(Ice.ObjectNotExistException ex)
+            {
+            }
+            test(locator.getLocated() == located + 4 && locator.getFinished() == finished + 3);
+        }
+        out.println("ok");
+    }
+}
@@ -0,0 +1,155 @@
+// **********************************************************************
+//
+// Copyright (c) 2003-2016 ZeroC, Inc. All rights reserved.
+//
+// This copy of Ice is licensed to you under the terms described in the
+// ICE_LICENSE file included in this distribution.
+//
+// **********************************************************************
+
+package test.Ice.directCollocation;
+
+import java.io.PrintWriter;
+
+import test.Ice.directCollocation.Test.TestIntfPrx;
+import test.Ice.directCollocation.Test.TestIntfPrxHelper;
+
+//
+// Measures the latency of invocations on a servant hosted by the caller's
+// communicator: remote invocations over the loopback interface, collocated
+// invocations which marshal the request and the reply and collocated
+// invocations dispatched directly with Ice.CollocationDirect.
+//
+// The number of requests of each run is set with DirectCollocation.Requests,
+// the number of measured runs with DirectCollocation.Runs and the size of the
+// byte sequences with DirectCollocation.SeqSize.
+//
+public class Client extends test.Util.Application
+{
+    private interface Invocation
+    {
+        void invoke(TestIntfPrx proxy);
+    }
+
+    @Override
+    public int
+    run(String[] args)
+    {
+        PrintWriter out = getWriter();
+        Ice.Properties properties = communicator().getProperties();
+        int requests = properties.getPropertyAsIntWithDefault("DirectCollocation.Requests", 100000);
+        int runs = properties.getPropertyAsIntWithDefault("DirectCollocation.Runs", 5);
+        final byte[] seq = new byte[properties.getPropertyAsIntWithDefault("DirectCollocation.SeqSize", 1024)];
+
+        //
+        // Direct dispatch is enabled when the communicator is created, the
+        // direct invocations use a second communicator.
+        //
+        Ice.InitializationData initData = createInitializationData();
+        initData.properties = properties._clone();
+        initData.properties.setProperty("Ice.CollocationDirect", "1");
+        Ice.Communicator directCommunicator = Ice.Util.initialize(initData);
+        try
+        {
+            TestIntfPrx proxy = createProxy(communicator());
+            TestIntfPrx[] proxies =
+            {
+                (TestIntfPrx)proxy.ice_collocationOptimized(false),
+                proxy,
+                createProxy(directCommunicator)
+            };
+            String[] names = { "remote", "collocated", "direct" };
+
+            Invocation[] invocations =
+            {
+                new Invocation()
+                {
+                    @Override
+                    public void
+                    invoke(TestIntfPrx p)
+                    {
+                        p.add(1, 2);
+                    }
+                },
+                new Invocation()
+                {
+                    @Override
+                    public void
+                    invoke(TestIntfPrx p)
+                    {
+                        p.fill(seq, (byte)1);
+                    }
+                },
+                new Invocation()
+                {
+                    @Override
+                    public void
+                    invoke(TestIntfPrx p)
+                    {
+                        p.fillByReference(seq, (byte)1);
+                    }
+                }
+            };
+            String[] operations = { "add", "fill", "fillByReference" };
+
+            out.println(requests + " requests, " + seq.length + " bytes sequences:");
+            for(int i = 0; i < invocations.length; ++i)
+            {
+                out.print("  " + operations[i] + ":");
+                for(int j = 0; j < proxies.length; ++j)
+                {
+                    long best = Long.MAX_VALUE;
+                    for(int run = 0; run <= runs; ++run)
+                    {
+                        long start = System.nanoTime();
+                        for(int k = 0; k < requests; ++k)
+                        {
+                            invocations[i].invoke(proxies[j]);
+                        }
+                        long time = System.nanoTime() - start;
+                        if(run > 0) // The first run warms up the JIT compiler.
+                        {
+                            best = Math.min(best, time);
+                        }
+                    }
+                    out.print(" " + names[j] + " " + best / requests + " ns");
+                }
+                out.println();
+                out.flush();
+            }
+        }
+        finally
+        {
+            directCommunicator.destroy();
+        }
+        return 0;
+    }
+
+    private static TestIntfPrx
+    createProxy(Ice.Communicator communicator)
+    {
+        communicator.getProperties().setProperty("TestAdapter.Endpoints", "tcp -h 127.0.0.1");
+        Ice.ObjectAdapter adapter = communicator.createObjectAdapter("TestAdapter");
+        Ice.ObjectPrx proxy = adapter.add(new TestI(), Ice.Util.stringToIdentity("test"));
+        adapter.activate();
+        return TestIntfPrxHelper.uncheckedCast(proxy);
+    }
+
+    @Override
+    protected Ice.InitializationData getInitData(Ice.StringSeqHolder argsH)
+    {
+        Ice.InitializationData initData = createInitializationData();
+        initData.properties = Ice.Util.createProperties(argsH);
+        argsH.value = initData.properties.parseCommandLineOptions("DirectCollocation", argsH.value);
+        return initData;
+    }
+
+    public static void
+    main(String[] args)
+    {
+        Client app = new Client();
+        int result = app.main("Client", args);
+        System.gc();
+        System.exit(result);
+    }
+}
@@ -0,0 +1,50 @@
+// **********************************************************************
+//
+// Copyright (c) 2003-2016 ZeroC, Inc. All rights reserved.
+//
+// This copy of Ice is licensed to you under the terms described in the
+// ICE_LICENSE file included in this distribution.
+//
+// **********************************************************************
+
+package test.Ice.directCollocation;
+
+public class Collocated extends test.Util.Application
+{
+    @Override
+    public int run(String[] args)
+    {
+        Ice.ObjectAdapter adapter = communicator().createObjectAdapter("TestAdapter");
+        TestI servant = new TestI();
+        InterceptorI interceptor = new InterceptorI(servant);
+        ServantLocatorI locator = new ServantLocatorI(servant);
+        adapter.add(servant, communicator().stringToIdentity("test"));
+        adapter.add(interceptor, communicator().stringToIdentity("interceptor"));
+        adapter.add(new EmptyI(), communicator().stringToIdentity("empty"));
+        adapter.addServantLocator(locator, "locator");
+        AllTests.allTests(communicator(), getWriter(), servant, interceptor, locator);
+
+        return 0;
+    }
+
+    @Override
+    protected Ice.InitializationData getInitData(Ice.StringSeqHolder argsH)
+    {
+        Ice.InitializationData initData = createInitializationData();
+        initData.properties = Ice.Util.createProperties(argsH);
+        initData.properties.setProperty("Ice.Package.Test", "test.Ice.directCollocation");
+        initData.properties.setProperty("Ice.ImplicitContext", "Shared");
+        initData.properties.setProperty("Ice.Warn.Dispatch", "0");
+        initData.properties.setProperty("TestAdapter.Endpoints", "default -p 12010");
+
+        return initData;
+    }
+
+    public static void main(String[] args)
+    {
+        Collocated app = new Collocated();
+        int result = app.main("Collocated", args);
+        System.gc();
+        System.exit(result);
+    }
+}
@@ -0,0 +1,16 @@
+// **********************************************************************
+//
+// Copyright (c) 2003-2016 ZeroC, Inc. All rights reserved.
+//
+// This copy of Ice is licensed to you under the terms described in the
+// ICE_LICENSE file included in this distribution.
+//
+// **********************************************************************
+
+package test.Ice.directCollocation;
+
+import test.Ice.directCollocation.Test._EmptyDisp;
+
+public final class EmptyI extends _EmptyDisp
+{
+}
@@ -0,0 +1,37 @@
+// **********************************************************************
+//
+// Copyright (c) 2003-2016 ZeroC, Inc. All rights reserved.
+//
+// This copy of Ice is licensed to you under the terms described in the
+// ICE_LICENSE file included in this distribution.
+//
+// **********************************************************************
+
+package test.Ice.directCollocation;
+
+class InterceptorI extends Ice.DispatchInterceptor
+{
+    InterceptorI(Ice.Object servant)
+    {
+        _servant = servant;
+    }
+
+    @Override
+    public Ice.DispatchStatus
+    dispatch(Ice.Request request)
+    {
+        Ice.Current current = request.getCurrent();
+        _lastOperation = current.operation;
+        current.ctx.put("intercepted", "yes");
+        return _servant.ice_dispatch(request);
+    }
+
+    String
+    getLastOperation()
+    {
+        return _lastOperation;
+    }
+
+    private final Ice.Object _servant;
+    private String _lastOperation;
+}
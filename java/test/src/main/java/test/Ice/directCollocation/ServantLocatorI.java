@@ -0,0 +1,71 @@
+// **********************************************************************
+//
+// Copyright (c) 2003-2016 ZeroC, Inc. All rights reserved.
+//
+// This copy of Ice is licensed to you under the terms described in the
+// ICE_LICENSE file included in this distribution.
+//
+// **********************************************************************
+
+package test.Ice.directCollocation;
+
+class ServantLocatorI implements Ice.ServantLocator
+{
+    ServantLocatorI(Ice.Object servant)
+    {
+        _servant = servant;
+    }
+
+    @Override
+    public synchronized Ice.Object
+    locate(Ice.Current current, Ice.LocalObjectHolder cookie)
+    {
+        ++_located;
+        if(current.id.name.equals("missing"))
+        {
+            return null;
+        }
+        cookie.value = current.id.name;
+        return _servant;
+    }
+
+    @Override
+    public synchronized void
+    finished(Ice.Current current, Ice.Object servant, java.lang.Object cookie)
+    {
+        test(servant == _servant);
+        test(current.id.name.equals(cookie));
+        ++_finished;
+    }
+
+    @Override
+    public void
+    deactivate(String category)
+    {
+    }
+
+    synchronized int
+    getLocated()
+    {
+        return _located;
+    }
+
+    synchronized int
+    getFinished()
+    {
+        return _finished;
+    }
+
+    private static void
+    test(boolean b)
+    {
+        if(!b)
+        {
+            throw new RuntimeException();
+        }
+    }
+
+    private final Ice.Object _servant;
+    private int _located;
+    private int _finished;
+}
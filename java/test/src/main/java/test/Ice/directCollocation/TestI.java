@@ -0,0 +1,119 @@
+// **********************************************************************
+//
+// Copyright (c) 2003-2016 ZeroC, Inc. All rights reserved.
+//
+// This copy of Ice is licensed to you under the terms described in the
+// ICE_LICENSE file included in this distribution.
+//
+// **********************************************************************
+
+package test.Ice.directCollocation;
+
+import test.Ice.directCollocation.Test.Node;
+import test.Ice.directCollocation.Test.Point;
+import test.Ice.directCollocation.Test.PointHolder;
+import test.Ice.directCollocation.Test.TestError;
+import test.Ice.directCollocation.Test._TestIntfDisp;
+
+public final class TestI extends _TestIntfDisp
+{
+    @Override
+    public int
+    add(int x, int y, Ice.Current current)
+    {
+        return x + y;
+    }
+
+    @Override
+    public byte[]
+    fill(byte[] seq, byte value, Ice.Current current)
+    {
+        java.util.Arrays.fill(seq, value);
+        return seq;
+    }
+
+    @Override
+    public byte[]
+    fillByReference(byte[] seq, byte value, Ice.Current current)
+    {
+        java.util.Arrays.fill(seq, value);
+        return seq;
+    }
+
+    @Override
+    public Point
+    move(Point p, int dx, PointHolder old, Ice.Current current)
+    {
+        old.value = p.clone();
+        p.x += dx;
+        _lastPoint = p;
+        return p;
+    }
+
+    @Override
+    public Node
+    reverse(Node list, Ice.Current current)
+    {
+        Node reversed = null;
+        while(list != null)
+        {
+            Node next = list.next;
+            list.next = reversed;
+            reversed = list;
+            list = next;
+        }
+        return reversed;
+    }
+
+    @Override
+    public String
+    getName(Ice.Current current)
+    {
+        return null;
+    }
+
+    @Override
+    public java.util.Map<String, String>
+    getContext(Ice.Current current)
+    {
+        return current.ctx;
+    }
+
+    @Override
+    public int
+    getRequestId(Ice.Current current)
+    {
+        return current.requestId;
+    }
+
+    @Override
+    public void
+    fail(String reason, Ice.Current current)
+        throws TestError
+    {
+        _lastError = new TestError(reason);
+        throw _lastError;
+    }
+
+    @Override
+    public void
+    failUnknown(Ice.Current current)
+    {
+        throw new IllegalStateException("failUnknown");
+    }
+
+    Point
+    lastPoint()
+    {
+        return _lastPoint;
+    }
+
+    TestError
+    lastError()
+    {
+        return _lastError;
+    }
+
+    private Point _lastPoint;
+    private TestError _lastError;
+}
@@ -599,6 +599,131 @@ public class AllTests
         }
         out.println("ok");
 
+        out.print("testing locator cache size limit and refresh ahead... ");
+        out.flush();
+        {
+            Ice.InitializationData initData = app.createInitializationData();
+            initData.properties = communicator.getProperties()._clone();
+            initData.properties.setProperty("Ice.LocatorCache.MaxSize", "1");
+            initData.properties.setProperty("Ice.LocatorCache.RefreshAhead", "50");
+            Ice.Communicator ic = app.initialize(initData);
+
+            registry.setAdapterDirectProxy("TestAdapter6", locator.findAdapterById("TestAdapter"));
+            registry.setAdapterDirectProxy("TestAdapter7", locator.findAdapterById("TestAdapter"));
+
+            count = locator.getRequestCount();
+            ic.stringToProxy("test@TestAdapter6").ice_ping();
+            test(++count == locator.getRequestCount());
+            ic.stringToProxy("test@TestAdapter6").ice_ping();
+            test(count == locator.getRequestCount());
+            ic.stringToProxy("test@TestAdapter7").ice_ping(); // Evicts TestAdapter6
+            test(++count == locator.getRequestCount());
+            ic.stringToProxy("test@TestAdapter6").ice_ping();
+            test(++count == locator.getRequestCount());
+
+            Thread.sleep(1200);
+
+            // The following request should trigger a background update of the entry which is about to expire
+            // but still use the cached endpoints.
+            ic.stringToProxy("test@TestAdapter6").ice_locatorCacheTimeout(2).ice_ping(); // 2s timeout.
+            ic.stringToProxy("test@TestAdapter6").ice_locatorCacheTimeout(2).ice_ping(); // 2s timeout.
+            for(int i = 0; i < 100 && locator.getRequestCount() == count; ++i)
+            {
+                Thread.sleep(10);
+            }
+            test(++count == locator.getRequestCount());
+
+            Thread.sleep(1200);
+
+            // The entry was refreshed and didn't expire.
+            ic.stringToProxy("test@TestAdapter6").ice_locatorCacheTimeout(2).ice_ping(); // 2s timeout.
+            test(count <= locator.getRequestCount() && locator.getRequestCount() <= count + 1);
+
+            registry.setAdapterDirectProxy("TestAdapter6", null);
+            registry.setAdapterDirectProxy("TestAdapter7", null);
+            ic.destroy();
+        }
+        out.println("ok");
+
+        out.print("testing locator negative cache and failure backoff... ");
+        out.flush();
+        {
+            Ice.InitializationData initData = app.createInitializationData();
+            initData.properties = communicator.getProperties()._clone();
+            initData.properties.setProperty("Ice.LocatorCache.NegativeTimeout", "1");
+            initData.properties.setProperty("Ice.LocatorCache.FailureBackoff", "10000");
+            initData.properties.setProperty("Ice.RetryIntervals", "-1");
+            initData.properties.setProperty("Ice.Admin.Enabled", "1");
+            initData.properties.setProperty("IceMX.Metrics.View.GroupBy", "id");
+            Ice.Communicator ic = app.initialize(initData);
+
+            count = locator.getRequestCount();
+            for(int i = 0; i < 3; ++i)
+            {
+                try
+                {
+                    ic.stringToProxy("test@TestAdapterUnknown").ice_ping();
+                    test(false);
+                }
+                catch(Ice.NotRegisteredException ex)
+                {
+                    test(ex.kindOfObject.equals("object adapter"));
+                }
+            }
+            test(++count == locator.getRequestCount());
+            Thread.sleep(1200);
+            try
+            {
+                ic.stringToProxy("test@TestAdapterUnknown").ice_ping();
+                test(false);
+            }
+            catch(Ice.NotRegisteredException ex)
+            {
+            }
+            test(++count == locator.getRequestCount());
+
+            Ice.LocatorPrx unreachable = Ice.LocatorPrxHelper.uncheckedCast(
+                ic.stringToProxy("Unreachable/Locator:default -p 12099"));
+            for(int i = 0; i < 20; ++i)
+            {
+                try
+                {
+                    ic.stringToProxy("test@TestAdapter" + i).ice_locator(unreachable).ice_ping();
+                    test(false);
+                }
+                catch(Ice.LocalException ex)
+                {
+                }
+            }
+
+            IceInternal.MetricsAdminI metrics = (IceInternal.MetricsAdminI)ic.findAdminFacet("Metrics");
+            IceMX.Metrics[] view = null;
+            try
+            {
+                view = metrics.getMetricsView("View", new Ice.LongHolder(), null).get("LocatorCache");
+            }
+            catch(IceMX.UnknownMetricsView ex)
+            {
+                test(false);
+            }
+            IceInternal.LocatorCacheMetrics[] stats =
+                IceInternal.Util.getInstance(ic).locatorManager().getLocatorCacheMetrics();
+            test(view.length == stats.length);
+            for(IceInternal.LocatorCacheMetrics s : stats)
+            {
+                if(s.id.startsWith("Unreachable/Locator"))
+                {
+                    test(s.requests > 0 && s.requests < 20);
+                }
+                else
+                {
+                    test(s.negativeHits == 2 && s.requests == 2);
+                }
+            }
+            ic.destroy();
+        }
+        out.println("ok");
+
         out.print("testing proxy from server after shutdown... ");
         out.flush();
         hello = obj.getReplicatedHello();
@@ -866,6 +866,7 @@ public class AllTests
         IceMX.DispatchMetrics dm1 = (IceMX.DispatchMetrics)map.get("op");
         test(dm1.current <= 1 && dm1.total == 1 && dm1.failures == 0 && dm1.userException == 0);
         test(dm1.size == 21 && dm1.replySize == 7);
+        test(!dm1.hasLifetimeP50() && !dm1.hasLifetimeP999()); // The histogram isn't enabled.
 
         dm1 = (IceMX.DispatchMetrics)map.get("opWithUserException");
         test(dm1.current <= 1 &dm1.total == 1 && dm1.failures == 0 && dm1.userException == 1);
@@ -924,6 +925,22 @@ public class AllTests
         testAttribute(serverMetrics, serverProps, update, "Dispatch", "context.entry2", "", op, out);
         testAttribute(serverMetrics, serverProps, update, "Dispatch", "context.entry3", "", op, out);
 
+        props.put("IceMX.Metrics.View.Map.Dispatch.GroupBy", "operation");
+        props.put("IceMX.Metrics.View.Map.Dispatch.Histogram", "1");
+        updateProps(clientProps, serverProps, update, props, "Dispatch");
+        for(int i = 0; i < 100; ++i)
+        {
+            metrics.op();
+        }
+        map = toMap(serverMetrics.getMetricsView("View", timestamp).get("Dispatch"));
+        dm1 = (IceMX.DispatchMetrics)map.get("op");
+        test(dm1.total == 100 && dm1.hasLifetimeP50() && dm1.hasLifetimeP90() && dm1.hasLifetimeP99() &&
+             dm1.hasLifetimeP999());
+        test(dm1.getLifetimeP50() <= dm1.getLifetimeP90() && dm1.getLifetimeP90() <= dm1.getLifetimeP99() &&
+             dm1.getLifetimeP99() <= dm1.getLifetimeP999());
+        test(dm1.getLifetimeP999() * dm1.total >= dm1.totalLifetime);
+        props.remove("IceMX.Metrics.View.Map.Dispatch.Histogram");
+
         out.println("ok");
 
         out.print("testing invocation metrics... ");
@@ -0,0 +1,186 @@
+// **********************************************************************
+//
+// Copyright (c) 2003-2016 ZeroC, Inc. All rights reserved.
+//
+// This copy of Ice is licensed to you under the terms described in the
+// ICE_LICENSE file included in this distribution.
+//
+// **********************************************************************
+
+package test.Ice.metricsOverhead;
+
+import java.io.PrintWriter;
+
+//
+// Measures the throughput of twoway requests sent by several caller threads
+// with the metrics disabled, with a metrics view grouping the invocations
+// and dispatches by id and with a view which also filters them. Each
+// configuration uses its own communicator which hosts the servant, the
+// requests are sent over a connection so that both the invocation and the
+// dispatch observers are used.
+//
+// The number of caller threads is set with MetricsOverhead.Threads, the
+// number of requests sent by each thread with MetricsOverhead.Requests and
+// the number of measured runs with MetricsOverhead.Runs.
+//
+public class Client extends test.Util.Application
+{
+    private static class Caller extends Thread
+    {
+        Caller(Ice.ObjectPrx proxy, int requests, java.util.concurrent.CyclicBarrier barrier)
+        {
+            _proxy = proxy;
+            _requests = requests;
+            _barrier = barrier;
+        }
+
+        @Override
+        public void
+        run()
+        {
+            try
+            {
+                _barrier.await();
+                for(int i = 0; i < _requests; ++i)
+                {
+                    _proxy.ice_ping();
+                }
+                _barrier.await();
+            }
+            catch(Exception ex)
+            {
+                ex.printStackTrace();
+                _failed = true;
+            }
+        }
+
+        boolean
+        failed()
+        {
+            return _failed;
+        }
+
+        private final Ice.ObjectPrx _proxy;
+        private final int _requests;
+        private final java.util.concurrent.CyclicBarrier _barrier;
+        private volatile boolean _failed;
+    }
+
+    @Override
+    public int
+    run(String[] args)
+    {
+        PrintWriter out = getWriter();
+        Ice.Properties properties = communicator().getProperties();
+        int threads = properties.getPropertyAsIntWithDefault("MetricsOverhead.Threads", 4);
+        int requests = properties.getPropertyAsIntWithDefault("MetricsOverhead.Requests", 20000);
+        int runs = properties.getPropertyAsIntWithDefault("MetricsOverhead.Runs", 3);
+
+        String[] configurations = { "metrics disabled", "metrics enabled", "metrics enabled with filters" };
+        long disabled = 0;
+
+        out.println(threads + " threads, " + requests + " requests per thread:");
+        for(String configuration : configurations)
+        {
+            Ice.InitializationData initData = createInitializationData();
+            initData.properties = properties._clone();
+            initData.properties.setProperty("TestAdapter.Endpoints", "tcp -h 127.0.0.1");
+            if(!configuration.equals("metrics disabled"))
+            {
+                initData.properties.setProperty("Ice.Admin.Enabled", "1");
+                initData.properties.setProperty("Ice.Admin.InstanceName", "client");
+                initData.properties.setProperty("IceMX.Metrics.View.GroupBy", "id");
+                if(configuration.equals("metrics enabled with filters"))
+                {
+                    initData.properties.setProperty("IceMX.Metrics.View.Accept.operation", "ice_ping");
+                    initData.properties.setProperty("IceMX.Metrics.View.Reject.parent", "Ice\\.Admin");
+                }
+            }
+
+            Ice.Communicator communicator = Ice.Util.initialize(initData);
+            try
+            {
+                Ice.ObjectAdapter adapter = communicator.createObjectAdapter("TestAdapter");
+                Ice.ObjectPrx proxy = adapter.add(new Ice.ObjectImpl() {}, Ice.Util.stringToIdentity("test"));
+                adapter.activate();
+                proxy = proxy.ice_collocationOptimized(false);
+                proxy.ice_ping();
+
+                long best = Long.MAX_VALUE;
+                for(int run = 0; run <= runs; ++run)
+                {
+                    java.util.concurrent.CyclicBarrier barrier = new java.util.concurrent.CyclicBarrier(threads + 1);
+                    Caller[] callers = new Caller[threads];
+                    for(int i = 0; i < threads; ++i)
+                    {
+                        callers[i] = new Caller(proxy, requests, barrier);
+                        callers[i].start();
+                    }
+
+                    barrier.await();
+                    long start = System.nanoTime();
+                    barrier.await();
+                    long time = System.nanoTime() - start;
+                    for(Caller caller : callers)
+                    {
+                        caller.join();
+                        if(caller.failed())
+                        {
+                            return 1;
+                        }
+                    }
+
+                    if(run > 0) // The first run warms up the JIT compiler.
+                    {
+                        best = Math.min(best, time);
+                    }
+                }
+
+                long total = (long)threads * requests;
+                long throughput = total * 1000000000L / best;
+                out.print("  " + configuration + ": " + throughput + " requests/s (" + best / total +
+                          " ns per request)");
+                if(disabled == 0)
+                {
+                    disabled = throughput;
+                    out.println();
+                }
+                else
+                {
+                    out.println(", " + (disabled - throughput) * 100 / disabled + "% overhead");
+                }
+                out.flush();
+            }
+            catch(Exception ex)
+            {
+                ex.printStackTrace();
+                return 1;
+            }
+            finally
+            {
+                communicator.destroy();
+            }
+        }
+        return 0;
+    }
+
+    @Override
+    protected Ice.InitializationData getInitData(Ice.StringSeqHolder argsH)
+    {
+        Ice.InitializationData initData = createInitializationData();
+        initData.properties = Ice.Util.createProperties(argsH);
+        argsH.value = initData.properties.parseCommandLineOptions("MetricsOverhead", argsH.value);
+        initData.properties.setProperty("Ice.ThreadPool.Client.Size", "2");
+        initData.properties.setProperty("Ice.ThreadPool.Server.Size", "4");
+        return initData;
+    }
+
+    public static void
+    main(String[] args)
+    {
+        Client app = new Client();
+        int result = app.main("Client", args);
+        System.gc();
+        System.exit(result);
+    }
+}
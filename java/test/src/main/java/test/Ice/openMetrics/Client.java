@@ -0,0 +1,205 @@
+// **********************************************************************
+//
+// Copyright (c) 2003-2016 ZeroC, Inc. All rights reserved.
+//
+// This copy of Ice is licensed to you under the terms described in the
+// ICE_LICENSE file included in this distribution.
+//
+// **********************************************************************
+
+package test.Ice.openMetrics;
+
+import java.io.PrintWriter;
+
+public class Client extends test.Util.Application
+{
+    @Override
+    public int run(String[] args)
+    {
+        PrintWriter printWriter = getWriter();
+        printWriter.print("testing plug-in without the Metrics facet... ");
+        printWriter.flush();
+        Ice.Communicator communicator = null;
+        try
+        {
+            Ice.InitializationData initData = createInitData();
+            initData.properties.setProperty("Ice.Plugin.OpenMetrics", "IceMX.OpenMetricsPluginFactory");
+            communicator = Ice.Util.initialize(args, initData);
+            test(false);
+        }
+        catch(Ice.PluginInitializationException ex)
+        {
+        }
+        test(communicator == null);
+        printWriter.println("ok");
+
+        Ice.InitializationData initData = createInitData();
+        initData.properties.setProperty("Ice.Plugin.OpenMetrics", "IceMX.OpenMetricsPluginFactory");
+        initData.properties.setProperty("Ice.Admin.Enabled", "1");
+        initData.properties.setProperty("Ice.Admin.InstanceName", "client");
+        initData.properties.setProperty("IceMX.Metrics.View.GroupBy", "id");
+        initData.properties.setProperty("IceMX.Metrics.View.Histogram", "1");
+        initData.properties.setProperty("IceMX.Metrics.Other.GroupBy", "none");
+        initData.properties.setProperty("IceMX.OpenMetrics.Port", "0");
+        initData.properties.setProperty("TestAdapter.Endpoints", "tcp -h 127.0.0.1");
+        communicator = Ice.Util.initialize(args, initData);
+        try
+        {
+            int port = ((IceInternal.OpenMetricsExporter)communicator.getPluginManager().getPlugin("OpenMetrics"))
+                .getPort();
+
+            Ice.ObjectAdapter adapter = communicator.createObjectAdapter("TestAdapter");
+            Ice.ObjectPrx proxy = adapter.add(new Ice.ObjectImpl() {}, Ice.Util.stringToIdentity("test"));
+            adapter.activate();
+            proxy = proxy.ice_collocationOptimized(false);
+            for(int i = 0; i < 10; ++i)
+            {
+                proxy.ice_ping();
+            }
+
+            printWriter.print("testing metrics... ");
+            printWriter.flush();
+            String[] response = get(port, "/metrics");
+            test(response[0].equals("200"));
+            test(response[1].startsWith("application/openmetrics-text"));
+            String body = response[2];
+            test(body.endsWith("\n# EOF\n"));
+
+            test(body.contains("# TYPE ice_dispatch counter\n"));
+            test(body.contains("ice_dispatch_total{view=\"View\",id=\"test [ice_ping]\"} 10\n"));
+            test(body.contains("ice_dispatch_total{view=\"Other\",id=\"\"} 10\n"));
+            test(body.contains("ice_dispatch_current{view=\"View\",id=\"test [ice_ping]\"} 0\n"));
+            test(body.contains("ice_dispatch_failures_total{view=\"View\",id=\"test [ice_ping]\"} 0\n"));
+            test(body.contains("# TYPE ice_dispatch_size counter\n"));
+            test(body.contains("ice_dispatch_size_total{view=\"View\",id=\"test [ice_ping]\"} "));
+
+            test(body.contains("# TYPE ice_dispatch_lifetime_microseconds summary\n"));
+            String lifetime = "ice_dispatch_lifetime_microseconds{view=\"View\",id=\"test [ice_ping]\",quantile=";
+            test(body.contains(lifetime + "\"0.5\"} "));
+            test(body.contains(lifetime + "\"0.999\"} "));
+            test(body.contains("ice_dispatch_lifetime_microseconds_count{view=\"View\",id=\"test [ice_ping]\"} 10\n"));
+            test(!body.contains("ice_dispatch_lifetime_microseconds{view=\"Other\""));
+
+            String invocationId = "test -t -e 1.1 [ice_ping]";
+            test(body.contains("ice_invocation_total{view=\"View\",id=\"" + invocationId + "\"} 10\n"));
+            test(body.contains("# TYPE ice_invocation_remote counter\n"));
+            test(body.contains("ice_invocation_remote_total{view=\"View\",parent=\"" + invocationId + "\",id=\""));
+
+            test(body.contains("# TYPE ice_connection_received_bytes counter\n"));
+            test(body.contains("# TYPE ice_thread_in_use_for_io gauge\n"));
+            test(body.contains("ice_thread_in_use_for_user{view=\"View\","));
+            test(body.contains("# TYPE ice_compression_compressed counter\n"));
+
+            //
+            // The samples of a family must be contiguous and each family
+            // is described once.
+            //
+            java.util.Set<String> families = new java.util.HashSet<String>();
+            String family = null;
+            for(String line : body.split("\n"))
+            {
+                if(line.startsWith("# TYPE "))
+                {
+                    family = line.split(" ")[2];
+                    test(families.add(family));
+                }
+                else if(!line.equals("# EOF"))
+                {
+                    test(family != null && line.startsWith(family));
+                    test(line.charAt(family.length()) == '{' || line.charAt(family.length()) == '_');
+                }
+            }
+            printWriter.println("ok");
+
+            printWriter.print("testing unknown path... ");
+            printWriter.flush();
+            test(get(port, "/")[0].equals("404"));
+            test(get(port, "/metrics/foo")[0].equals("404"));
+            test(get(port, "/metrics")[0].equals("200"));
+            printWriter.println("ok");
+
+            printWriter.print("testing plug-in destruction... ");
+            printWriter.flush();
+            communicator.destroy();
+            communicator = null;
+            try
+            {
+                get(port, "/metrics");
+                test(false);
+            }
+            catch(java.io.IOException ex)
+            {
+            }
+            printWriter.println("ok");
+        }
+        catch(java.io.IOException ex)
+        {
+            ex.printStackTrace();
+            test(false);
+        }
+        finally
+        {
+            if(communicator != null)
+            {
+                communicator.destroy();
+            }
+        }
+        return 0;
+    }
+
+    //
+    // Returns the status, the content type and the body of the response.
+    //
+    private static String[] get(int port, String path)
+        throws java.io.IOException
+    {
+        java.net.URL url = new java.net.URL("http", "127.0.0.1", port, path);
+        java.net.HttpURLConnection connection = (java.net.HttpURLConnection)url.openConnection();
+        connection.setUseCaches(false);
+        try
+        {
+            int status = connection.getResponseCode();
+            java.io.InputStream is = status == 200 ? connection.getInputStream() : connection.getErrorStream();
+            java.io.ByteArrayOutputStream body = new java.io.ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int n;
+            while((n = is.read(buffer)) > 0)
+            {
+                body.write(buffer, 0, n);
+            }
+            is.close();
+            return new String[] { Integer.toString(status), connection.getContentType(), body.toString("UTF-8") };
+        }
+        finally
+        {
+            connection.disconnect();
+        }
+    }
+
+    private Ice.InitializationData createInitData()
+    {
+        Ice.InitializationData initData = createInitializationData();
+        if(classLoader() != null)
+        {
+            initData.classLoader = classLoader();
+        }
+        initData.properties = Ice.Util.createProperties();
+        return initData;
+    }
+
+    private static void test(boolean b)
+    {
+        if(!b)
+        {
+            throw new RuntimeException();
+        }
+    }
+
+    public static void main(String[] args)
+    {
+        Client app = new Client();
+        int result = app.main("Client", args);
+        System.gc();
+        System.exit(result);
+    }
+}
@@ -75,6 +75,19 @@ public class AllTests
             throw new RuntimeException(ex);
         }
 
+        out.print("testing twoway operations with futures... ");
+        out.flush();
+        try
+        {
+            TwowaysFuture.twowaysFuture(app, cl);
+            TwowaysFuture.twowaysFuture(app, derived);
+        }
+        catch(java.lang.Exception ex)
+        {
+            throw new RuntimeException(ex);
+        }
+        out.println("ok");
+
         out.print("testing oneway operations with AMI... ");
         out.flush();
         OnewaysAMI.onewaysAMI(app, cl);
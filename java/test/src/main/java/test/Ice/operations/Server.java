@@ -26,6 +26,7 @@ public class Server extends test.Util.Application
     {
         Ice.InitializationData initData = createInitializationData() ;
         initData.properties = Ice.Util.createProperties(argsH);
+        argsH.value = initData.properties.parseCommandLineOptions("TestAdapter", argsH.value);
         //
         // It's possible to have batch oneway requests dispatched
         // after the adapter is deactivated due to thread
@@ -0,0 +1,220 @@
+// **********************************************************************
+//
+// Copyright (c) 2003-2016 ZeroC, Inc. All rights reserved.
+//
+// This copy of Ice is licensed to you under the terms described in the
+// ICE_LICENSE file included in this distribution.
+//
+// **********************************************************************
+
+package test.Ice.operations;
+
+import test.Ice.operations.Test.MyClass;
+import test.Ice.operations.Test.MyClassPrx;
+import test.Ice.operations.Test.MyDerivedClass;
+import test.Ice.operations.Test.MyDerivedClassPrxHelper;
+
+class TwowaysFuture
+{
+    private static void
+    test(boolean b)
+    {
+        if(!b)
+        {
+            throw new RuntimeException();
+        }
+    }
+
+    private static class Listener<T> implements Ice.InvocationFuture.Listener<T>
+    {
+        @Override
+        public synchronized void
+        completed(Ice.InvocationFuture<T> future)
+        {
+            test(future.isDone());
+            _thread = Thread.currentThread();
+            _called = true;
+            notifyAll();
+        }
+
+        synchronized Thread
+        check()
+        {
+            while(!_called)
+            {
+                try
+                {
+                    wait();
+                }
+                catch(InterruptedException ex)
+                {
+                }
+            }
+            return _thread;
+        }
+
+        private boolean _called;
+        private Thread _thread;
+    }
+
+    private static class SentListener<T> implements Ice.InvocationFuture.SentListener<T>
+    {
+        @Override
+        public synchronized void
+        sent(Ice.InvocationFuture<T> future, boolean sentSynchronously)
+        {
+            ++_count;
+            notifyAll();
+        }
+
+        synchronized void
+        check()
+        {
+            while(_count == 0)
+            {
+                try
+                {
+                    wait();
+                }
+                catch(InterruptedException ex)
+                {
+                }
+            }
+            test(_count == 1);
+        }
+
+        private int _count;
+    }
+
+    static void
+    twowaysFuture(test.Util.Application app, MyClassPrx p)
+        throws InterruptedException, java.util.concurrent.ExecutionException, java.util.concurrent.TimeoutException
+    {
+        Ice.Communicator communicator = app.communicator();
+
+        {
+            test(p.ice_pingAsync().get() == null);
+            test(p.ice_isAAsync(MyClass.ice_staticId()).get());
+            test(p.ice_idAsync().get().equals(MyDerivedClass.ice_staticId()));
+            test(p.ice_idsAsync().get().length == 3);
+        }
+
+        {
+            test(p.opVoidAsync().get(10, java.util.concurrent.TimeUnit.SECONDS) == null);
+            test(p.opByte1Async((byte)0xFF).get() == (byte)0xFF);
+            test(p.opInt1Async(0x7FFFFFFF).get() == 0x7FFFFFFF);
+            test(p.opString1Async("hello").get().equals("hello"));
+
+            int[] s = { 1, 2, 3 };
+            int[] r = p.opIntSAsync(s).get();
+            test(r.length == 3 && r[0] == -1 && r[1] == -2 && r[2] == -3);
+        }
+
+        {
+            java.util.Map<String, String> ctx = new java.util.HashMap<String, String>();
+            ctx.put("one", "ONE");
+            test(p.opContextAsync().get().isEmpty());
+            test(p.opContextAsync(ctx).get().equals(ctx));
+
+            MyClassPrx p2 = (MyClassPrx)p.ice_context(ctx);
+            test(p2.opContextAsync().get().equals(ctx));
+            test(p2.opContextAsync(new java.util.HashMap<String, String>()).get().isEmpty());
+        }
+
+        {
+            //
+            // Listeners registered before and after completion.
+            //
+            Ice.InvocationFuture<Void> f = p.opVoidAsync();
+            Listener<Void> l1 = new Listener<Void>();
+            f.whenComplete(l1);
+            l1.check();
+            test(f.isDone() && !f.isCancelled() && f.getException() == null);
+
+            Listener<Void> l2 = new Listener<Void>();
+            f.whenComplete(l2);
+            test(l2.check() == Thread.currentThread());
+        }
+
+        {
+            //
+            // Sent listeners registered before and after the request is sent
+            // are called once.
+            //
+            Ice.InvocationFuture<Void> f = p.opVoidAsync();
+            SentListener<Void> l1 = new SentListener<Void>();
+            f.whenSent(l1);
+            l1.check();
+            f.get();
+
+            SentListener<Void> l2 = new SentListener<Void>();
+            f.whenSent(l2);
+            l2.check();
+            l1.check();
+
+            MyClassPrx oneway = (MyClassPrx)p.ice_oneway();
+            f = oneway.opVoidAsync();
+            SentListener<Void> l3 = new SentListener<Void>();
+            f.whenSent(l3);
+            l3.check();
+            test(f.get() == null);
+        }
+
+        {
+            //
+            // Listener called with an executor.
+            //
+            final java.util.concurrent.atomic.AtomicInteger executed = new java.util.concurrent.atomic.AtomicInteger();
+            java.util.concurrent.Executor executor = new java.util.concurrent.Executor()
+                {
+                    @Override
+                    public void
+                    execute(Runnable r)
+                    {
+                        executed.incrementAndGet();
+                        new Thread(r).start();
+                    }
+                };
+
+            Listener<String> l = new Listener<String>();
+            Ice.InvocationFuture<String> f = p.opString1Async("executor");
+            f.whenComplete(l, executor);
+            Thread thread = l.check();
+            test(thread != Thread.currentThread());
+            test(executed.get() == 1);
+            test(f.get().equals("executor"));
+        }
+
+        {
+            //
+            // Failed invocation.
+            //
+            Ice.ObjectPrx obj = communicator.stringToProxy(p.ice_getIdentity().name + "-missing:default -p 12010");
+            MyClassPrx missing = MyDerivedClassPrxHelper.uncheckedCast(obj);
+            Ice.InvocationFuture<Void> f = missing.opVoidAsync();
+            Listener<Void> l = new Listener<Void>();
+            f.whenComplete(l);
+            l.check();
+            test(f.getException() instanceof Ice.ObjectNotExistException);
+            try
+            {
+                f.get();
+                test(false);
+            }
+            catch(java.util.concurrent.ExecutionException ex)
+            {
+                test(ex.getCause() instanceof Ice.ObjectNotExistException);
+            }
+            test(!f.cancel(false));
+        }
+
+        {
+            //
+            // Oneway invocations complete once the request is sent.
+            //
+            MyClassPrx oneway = (MyClassPrx)p.ice_oneway();
+            test(oneway.opVoidAsync().get() == null);
+            test(oneway.ice_pingAsync().get() == null);
+        }
+    }
+}
@@ -35,5 +35,41 @@ TestUtil.queueClientServerTest(configName = "amdTie", localOnly = True, message
                                additionalClientOptions = "--Ice.Warn.AMICallback=0",
                                server="test.Ice.operations.AMDTieServer")
 
+TestUtil.queueClientServerTest(configName = "bufferPool", localOnly = True,
+                               message = "Running test with buffer pool.",
+                               additionalClientOptions = "--Ice.Warn.AMICallback=0 --Ice.BufferPool.MaxSize=4096",
+                               additionalServerOptions = "--Ice.BufferPool.MaxSize=4096")
+
+TestUtil.queueClientServerTest(configName = "virtualThreads", localOnly = True,
+                               message = "Running test with virtual thread dispatch.",
+                               additionalClientOptions = "--Ice.Warn.AMICallback=0",
+                               additionalServerOptions = "--TestAdapter.VirtualThreads=1")
+
+TestUtil.queueClientServerTest(configName = "virtualThreadsSerialize", localOnly = True,
+                               message = "Running test with serialized virtual thread dispatch.",
+                               additionalClientOptions = "--Ice.Warn.AMICallback=0",
+                               additionalServerOptions = "--TestAdapter.VirtualThreads=1 " +
+                                                         "--Ice.ThreadPool.Server.Serialize=1")
+
+TestUtil.queueClientServerTest(configName = "compressDeflate", localOnly = True,
+                               message = "Running test with deflate compression.",
+                               additionalClientOptions = "--Ice.Warn.AMICallback=0 --Ice.Override.Compress=1 " +
+                                                         "--Ice.Compression.Codecs=deflate",
+                               additionalServerOptions = "--Ice.Override.Compress=1 --Ice.Compression.Codecs=deflate")
+
+TestUtil.queueClientServerTest(configName = "compressLZ4", localOnly = True,
+                               message = "Running test with lz4 compression.",
+                               additionalClientOptions = "--Ice.Warn.AMICallback=0 --Ice.Override.Compress=1 " +
+                                                         "--Ice.Compression.Codecs=lz4",
+                               additionalServerOptions = "--Ice.Override.Compress=1 --Ice.Compression.Codecs=lz4")
+
+TestUtil.queueClientServerTest(configName = "compressAdaptive", localOnly = True,
+                               message = "Running test with adaptive compression.",
+                               additionalClientOptions = "--Ice.Warn.AMICallback=0 --Ice.Override.Compress=1 " +
+                                                         "--Ice.Compression.Adaptive=1",
+                               additionalServerOptions = "--Ice.Override.Compress=1 --Ice.Compression.Adaptive=1")
+
 TestUtil.queueCollocatedTest()
+TestUtil.queueCollocatedTest(message = "Running collocated test with direct invocations.",
+                             additionalOptions = "--Ice.CollocationDirect=1")
 TestUtil.runQueuedTests()
@@ -0,0 +1,228 @@
+// **********************************************************************
+//
+// Copyright (c) 2003-2016 ZeroC, Inc. All rights reserved.
+//
+// This copy of Ice is licensed to you under the terms described in the
+// ICE_LICENSE file included in this distribution.
+//
+// **********************************************************************
+
+package test.Ice.reactors;
+
+import java.io.PrintWriter;
+
+//
+// Compares the leader/follower thread pool with the multi-reactor thread
+// pool. For each connection count given on the command line (1000 and
+// 10000 by default), the benchmark establishes the connections and keeps
+// one twoway request outstanding on each connection for a few seconds.
+//
+// The number of reactors is set with Reactors.Count (the number of
+// processors by default) and the duration of each run with
+// Reactors.Duration (in seconds). Note that each connection uses two file
+// descriptors, the process file descriptor limit might need to be raised.
+//
+public class Client extends test.Util.Application
+{
+    static class PingI extends Ice.ObjectImpl
+    {
+    }
+
+    static class Run
+    {
+        Run(long deadline)
+        {
+            _deadline = deadline;
+        }
+
+        void start(final Ice.ObjectPrx proxy)
+        {
+            synchronized(this)
+            {
+                ++_outstanding;
+            }
+            proxy.begin_ice_ping(new Ice.Callback_Object_ice_ping()
+                {
+                    @Override
+                    public void response()
+                    {
+                        completed(proxy, null);
+                    }
+
+                    @Override
+                    public void exception(Ice.LocalException ex)
+                    {
+                        completed(proxy, ex);
+                    }
+                });
+        }
+
+        synchronized long waitForCompletion()
+        {
+            while(_outstanding > 0)
+            {
+                try
+                {
+                    wait();
+                }
+                catch(InterruptedException ex)
+                {
+                }
+            }
+
+            if(_exception != null)
+            {
+                throw _exception;
+            }
+            return _requests;
+        }
+
+        private void completed(Ice.ObjectPrx proxy, Ice.LocalException ex)
+        {
+            synchronized(this)
+            {
+                --_outstanding;
+                if(ex != null)
+                {
+                    _exception = ex;
+                }
+                else
+                {
+                    ++_requests;
+                }
+
+                if(_exception != null || System.nanoTime() >= _deadline)
+                {
+                    notifyAll();
+                    return;
+                }
+            }
+            start(proxy);
+        }
+
+        private final long _deadline;
+        private long _requests;
+        private int _outstanding;
+        private Ice.LocalException _exception;
+    }
+
+    @Override
+    public int
+    run(String[] args)
+    {
+        PrintWriter out = getWriter();
+        Ice.Properties properties = communicator().getProperties();
+
+        int reactors = properties.getPropertyAsIntWithDefault("Reactors.Count",
+                                                              Math.max(2, Runtime.getRuntime().availableProcessors()));
+        int duration = properties.getPropertyAsIntWithDefault("Reactors.Duration", 5);
+
+        int[] connections = { 1000, 10000 };
+        if(args.length > 0)
+        {
+            connections = new int[args.length];
+            for(int i = 0; i < args.length; ++i)
+            {
+                connections[i] = Integer.parseInt(args[i]);
+            }
+        }
+
+        for(int c : connections)
+        {
+            out.println("connections: " + c);
+            long leaderFollower = run(properties, 1, reactors, c, duration);
+            out.println("  leader/follower (" + reactors + " threads): " + leaderFollower + " requests/s");
+            out.flush();
+            long multiReactor = run(properties, reactors, 1, c, duration);
+            out.println("  multi-reactor (" + reactors + " reactors): " + multiReactor + " requests/s");
+            out.flush();
+        }
+        return 0;
+    }
+
+    private long
+    run(Ice.Properties properties, int reactors, int size, int connections, int duration)
+    {
+        Ice.Communicator server = null;
+        Ice.Communicator client = null;
+        try
+        {
+            server = initialize(createInitData(properties, reactors, size));
+            server.getProperties().setProperty("TestAdapter.Endpoints", "tcp -h 127.0.0.1");
+            Ice.ObjectAdapter adapter = server.createObjectAdapter("TestAdapter");
+            Ice.ObjectPrx base = adapter.add(new PingI(), Ice.Util.stringToIdentity("ping"));
+            adapter.activate();
+
+            client = initialize(createInitData(properties, reactors, size));
+            Ice.ObjectPrx[] proxies = new Ice.ObjectPrx[connections];
+            for(int i = 0; i < connections; ++i)
+            {
+                proxies[i] = client.stringToProxy(base.toString()).ice_connectionId(Integer.toString(i));
+            }
+
+            //
+            // Establish the connections and warm up the JIT compiler.
+            //
+            Run warmup = new Run(System.nanoTime());
+            for(Ice.ObjectPrx p : proxies)
+            {
+                warmup.start(p);
+            }
+            warmup.waitForCompletion();
+
+            long start = System.nanoTime();
+            Run run = new Run(start + duration * 1000000000L);
+            for(Ice.ObjectPrx p : proxies)
+            {
+                run.start(p);
+            }
+            long requests = run.waitForCompletion();
+            return requests * 1000000000L / (System.nanoTime() - start);
+        }
+        finally
+        {
+            if(client != null)
+            {
+                client.destroy();
+            }
+            if(server != null)
+            {
+                server.destroy();
+            }
+        }
+    }
+
+    @Override
+    protected Ice.InitializationData getInitData(Ice.StringSeqHolder argsH)
+    {
+        Ice.InitializationData initData = createInitializationData();
+        initData.properties = Ice.Util.createProperties(argsH);
+        argsH.value = initData.properties.parseCommandLineOptions("Reactors", argsH.value);
+        return initData;
+    }
+
+    private Ice.InitializationData
+    createInitData(Ice.Properties properties, int reactors, int size)
+    {
+        Ice.InitializationData initData = createInitializationData();
+        initData.properties = properties._clone();
+        for(String prefix : new String[] { "Ice.ThreadPool.Client", "Ice.ThreadPool.Server" })
+        {
+            initData.properties.setProperty(prefix + ".Reactors", Integer.toString(reactors));
+            initData.properties.setProperty(prefix + ".Size", Integer.toString(size));
+            initData.properties.setProperty(prefix + ".SizeMax", Integer.toString(size));
+        }
+        initData.properties.setProperty("Ice.ACM.Client.Timeout", "0");
+        initData.properties.setProperty("Ice.ACM.Server.Timeout", "0");
+        return initData;
+    }
+
+    public static void
+    main(String[] args)
+    {
+        Client app = new Client();
+        int result = app.main("Client", args);
+        System.gc();
+        System.exit(result);
+    }
+}
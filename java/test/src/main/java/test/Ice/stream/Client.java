@@ -244,6 +244,60 @@ public class Client extends test.Util.Application
             test(in.readString().equals("hello world"));
         }
 
+        {
+            final String[] strings =
+            {
+                "caf\u00e9 cr\u00e8me br\u00fbl\u00e9e",
+                "\u65e5\u672c\u8a9e\u306e\u6587\u5b57\u5217",
+                "\ud83d\ude00 \ud834\udd1e",
+                "\u007f\u0080\u07ff\u0800\uffff\ud800\udc00\udbff\udfff"
+            };
+            for(String s : strings)
+            {
+                out = new Ice.OutputStream(comm);
+                out.writeString(s);
+                byte[] data = out.finished();
+                byte[] utf8 = s.getBytes(java.nio.charset.Charset.forName("UTF-8"));
+                in = new Ice.InputStream(comm, data);
+                test(in.readSize() == utf8.length);
+                test(java.util.Arrays.equals(java.util.Arrays.copyOfRange(data, data.length - utf8.length,
+                                                                          data.length), utf8));
+                in = new Ice.InputStream(comm, data);
+                test(in.readString().equals(s));
+            }
+
+            try
+            {
+                out = new Ice.OutputStream(comm);
+                out.writeString("unpaired \ud800 surrogate");
+                test(false);
+            }
+            catch(Ice.MarshalException ex)
+            {
+            }
+
+            final byte[][] invalid =
+            {
+                { 2, (byte)0xc3, (byte)0x28 }, // Invalid continuation byte.
+                { 2, (byte)0xc0, (byte)0x80 }, // Overlong encoding.
+                { 3, (byte)0xed, (byte)0xa0, (byte)0x80 }, // Encoded surrogate.
+                { 2, (byte)0xe6, (byte)0x97 }, // Truncated sequence.
+                { 1, (byte)0xff } // Invalid byte.
+            };
+            for(byte[] data : invalid)
+            {
+                try
+                {
+                    in = new Ice.InputStream(comm, data);
+                    in.readString();
+                    test(false);
+                }
+                catch(Ice.MarshalException ex)
+                {
+                }
+            }
+        }
+
         printWriter.println("ok");
 
         printWriter.print("testing constructed types... ");
@@ -0,0 +1,142 @@
+// **********************************************************************
+//
+// Copyright (c) 2003-2016 ZeroC, Inc. All rights reserved.
+//
+// This copy of Ice is licensed to you under the terms described in the
+// ICE_LICENSE file included in this distribution.
+//
+// **********************************************************************
+
+package test.Ice.utf8;
+
+import java.io.PrintWriter;
+
+//
+// Measures the encoding and decoding of ASCII, Latin-1 and CJK strings by
+// OutputStream.writeString() and InputStream.readString(), compared with
+// the JDK UTF-8 charset. The input streams read from a direct buffer, as
+// they do when reading from a connection.
+//
+// The number of strings per run is set with UTF8.Strings and the number of
+// measured runs with UTF8.Runs.
+//
+public class Client extends test.Util.Application
+{
+    private static final java.nio.charset.Charset UTF8 = java.nio.charset.Charset.forName("UTF-8");
+
+    private static String
+    repeat(String s, int length)
+    {
+        StringBuilder sb = new StringBuilder(length);
+        while(sb.length() < length)
+        {
+            sb.append(s);
+        }
+        return sb.substring(0, length);
+    }
+
+    @Override
+    public int
+    run(String[] args)
+    {
+        PrintWriter out = getWriter();
+        Ice.Properties properties = communicator().getProperties();
+        int strings = properties.getPropertyAsIntWithDefault("UTF8.Strings", 100000);
+        int runs = properties.getPropertyAsIntWithDefault("UTF8.Runs", 5);
+
+        String[][] inputs =
+        {
+            { "ascii", repeat("Ice.ObjectAdapter ", 32) },
+            { "latin-1", repeat("caf\u00e9 cr\u00e8me br\u00fbl\u00e9e ", 32) },
+            { "cjk", repeat("\u65e5\u672c\u8a9e\u306e\u6587\u5b57\u5217", 32) }
+        };
+
+        for(String[] input : inputs)
+        {
+            String s = input[1];
+            out.println(input[0] + " (" + s.length() + " chars, " + s.getBytes(UTF8).length + " bytes):");
+
+            Ice.OutputStream os = new Ice.OutputStream(communicator());
+            for(int i = 0; i < strings; ++i)
+            {
+                os.writeString(s);
+            }
+            byte[] data = os.finished();
+            java.nio.ByteBuffer buf = java.nio.ByteBuffer.allocateDirect(data.length);
+            buf.put(data);
+            buf.flip();
+
+            long write = Long.MAX_VALUE;
+            long writeJdk = Long.MAX_VALUE;
+            long read = Long.MAX_VALUE;
+            long readJdk = Long.MAX_VALUE;
+            for(int run = 0; run <= runs; ++run)
+            {
+                long start = System.nanoTime();
+                os.reset();
+                for(int i = 0; i < strings; ++i)
+                {
+                    os.writeString(s);
+                }
+                long writeTime = System.nanoTime() - start;
+
+                start = System.nanoTime();
+                os.reset();
+                for(int i = 0; i < strings; ++i)
+                {
+                    byte[] b = s.getBytes(UTF8);
+                    os.writeSize(b.length);
+                    os.writeBlob(b);
+                }
+                long writeJdkTime = System.nanoTime() - start;
+
+                start = System.nanoTime();
+                Ice.InputStream is = new Ice.InputStream(communicator(), buf.duplicate());
+                for(int i = 0; i < strings; ++i)
+                {
+                    is.readString();
+                }
+                long readTime = System.nanoTime() - start;
+
+                start = System.nanoTime();
+                is = new Ice.InputStream(communicator(), buf.duplicate());
+                for(int i = 0; i < strings; ++i)
+                {
+                    new String(is.readBlob(is.readSize()), UTF8);
+                }
+                long readJdkTime = System.nanoTime() - start;
+
+                if(run > 0) // The first run warms up the JIT compiler.
+                {
+                    write = Math.min(write, writeTime);
+                    writeJdk = Math.min(writeJdk, writeJdkTime);
+                    read = Math.min(read, readTime);
+                    readJdk = Math.min(readJdk, readJdkTime);
+                }
+            }
+
+            out.println("  writeString: " + write / strings + " ns (JDK charset: " + writeJdk / strings + " ns)");
+            out.println("  readString: " + read / strings + " ns (JDK charset: " + readJdk / strings + " ns)");
+            out.flush();
+        }
+        return 0;
+    }
+
+    @Override
+    protected Ice.InitializationData getInitData(Ice.StringSeqHolder argsH)
+    {
+        Ice.InitializationData initData = createInitializationData();
+        initData.properties = Ice.Util.createProperties(argsH);
+        argsH.value = initData.properties.parseCommandLineOptions("UTF8", argsH.value);
+        return initData;
+    }
+
+    public static void
+    main(String[] args)
+    {
+        Client app = new Client();
+        int result = app.main("Client", args);
+        System.gc();
+        System.exit(result);
+    }
+}
@@ -0,0 +1,342 @@
+// **********************************************************************
+//
+// Copyright (c) 2003-2016 ZeroC, Inc. All rights reserved.
+//
+// This copy of Ice is licensed to you under the terms described in the
+// ICE_LICENSE file included in this distribution.
+//
+// **********************************************************************
+
+package test.Ice.wsDeflate;
+
+import java.io.PrintWriter;
+
+public class Client extends test.Util.Application
+{
+    private static class EchoI extends Ice.Blobject
+    {
+        @Override
+        public boolean
+        ice_invoke(byte[] inParams, Ice.ByteSeqHolder outParams, Ice.Current current)
+        {
+            outParams.value = inParams;
+            return true;
+        }
+    }
+
+    //
+    // Records the payload length of the data frames received, compressed
+    // frames are recorded with a negative length.
+    //
+    private static class FrameLogger implements Ice.Logger
+    {
+        @Override
+        public void print(String message)
+        {
+        }
+
+        @Override
+        public synchronized void trace(String category, String message)
+        {
+            final String prefix = "received ws data frame with payload length of ";
+            if(message.startsWith(prefix))
+            {
+                int length = Integer.parseInt(message.substring(prefix.length(), message.indexOf(" bytes")));
+                _frames.add(message.contains("(compressed)") ? -length : length);
+            }
+        }
+
+        @Override
+        public void warning(String message)
+        {
+            System.err.println("warning: " + message);
+        }
+
+        @Override
+        public void error(String message)
+        {
+            System.err.println("error: " + message);
+        }
+
+        @Override
+        public String getPrefix()
+        {
+            return "";
+        }
+
+        @Override
+        public Ice.Logger cloneWithPrefix(String prefix)
+        {
+            return this;
+        }
+
+        synchronized java.util.List<Integer> frames()
+        {
+            java.util.List<Integer> frames = new java.util.ArrayList<Integer>(_frames);
+            _frames.clear();
+            return frames;
+        }
+
+        private java.util.List<Integer> _frames = new java.util.ArrayList<Integer>();
+    }
+
+    @Override
+    public int run(String[] args)
+    {
+        PrintWriter printWriter = getWriter();
+
+        printWriter.print("testing compressed messages... ");
+        printWriter.flush();
+        test(new String[] { "Ice.WS.Deflate=1" }, new String[] { "Ice.WS.Deflate=1" }, "permessage-deflate");
+        printWriter.println("ok");
+
+        printWriter.print("testing no context takeover... ");
+        printWriter.flush();
+        test(new String[] { "Ice.WS.Deflate=1", "Ice.WS.Deflate.NoContextTakeover=1" },
+             new String[] { "Ice.WS.Deflate=1", "Ice.WS.Deflate.PeerNoContextTakeover=1" },
+             "permessage-deflate; server_no_context_takeover");
+        test(new String[] { "Ice.WS.Deflate=1" },
+             new String[] { "Ice.WS.Deflate=1", "Ice.WS.Deflate.NoContextTakeover=1" },
+             "permessage-deflate; client_no_context_takeover");
+        printWriter.println("ok");
+
+        printWriter.print("testing window bits... ");
+        printWriter.flush();
+        test(new String[] { "Ice.WS.Deflate=1" },
+             new String[] { "Ice.WS.Deflate=1", "Ice.WS.Deflate.PeerMaxWindowBits=10" }, null);
+        printWriter.println("ok");
+
+        printWriter.print("testing peers without permessage-deflate... ");
+        printWriter.flush();
+        test(new String[] { "Ice.WS.Deflate=0" }, new String[] { "Ice.WS.Deflate=1" }, null);
+        test(new String[] { "Ice.WS.Deflate=1" }, new String[] { "Ice.WS.Deflate=0" }, null);
+        printWriter.println("ok");
+
+        printWriter.print("testing extension negotiation... ");
+        printWriter.flush();
+        try
+        {
+            Ice.InitializationData initData =
+                createInitData(new String[] { "Ice.WS.Deflate=1", "Ice.WS.Deflate.PeerMaxWindowBits=10" });
+            initData.properties.setProperty("TestAdapter.Endpoints", "ws -h 127.0.0.1");
+            Ice.Communicator server = Ice.Util.initialize(initData);
+            try
+            {
+                Ice.ObjectAdapter adapter = server.createObjectAdapter("TestAdapter");
+                adapter.activate();
+                int port = ((Ice.WSEndpointInfo)adapter.getEndpoints()[0].getInfo()).port;
+
+                test("permessage-deflate".equals(upgrade(port, "permessage-deflate")));
+                test("permessage-deflate".equals(upgrade(port, "x-webkit-deflate-frame, permessage-deflate")));
+                test("permessage-deflate; client_no_context_takeover".equals(
+                         upgrade(port, "PerMessage-Deflate; Client_No_Context_Takeover")));
+                test("permessage-deflate; client_max_window_bits=10".equals(
+                         upgrade(port, "permessage-deflate; client_max_window_bits; server_max_window_bits=15")));
+                test("permessage-deflate; client_max_window_bits=10".equals(
+                         upgrade(port, "permessage-deflate; client_max_window_bits=\"12\"")));
+                test("permessage-deflate; client_max_window_bits=9".equals(
+                         upgrade(port, "permessage-deflate; client_max_window_bits=9")));
+
+                //
+                // Offers with invalid parameters or a limited server window are declined.
+                //
+                test(upgrade(port, "permessage-deflate; server_max_window_bits=10") == null);
+                test(upgrade(port, "permessage-deflate; server_max_window_bits") == null);
+                test(upgrade(port, "permessage-deflate; client_max_window_bits=16") == null);
+                test(upgrade(port, "permessage-deflate; foo") == null);
+                test(upgrade(port, "permessage-deflate; client_no_context_takeover; client_no_context_takeover") ==
+                     null);
+                test("permessage-deflate".equals(
+                         upgrade(port, "permessage-deflate; server_max_window_bits=10, permessage-deflate")));
+                test(upgrade(port, "deflate-frame") == null);
+                test(upgrade(port, null) == null);
+            }
+            finally
+            {
+                server.destroy();
+            }
+        }
+        catch(java.io.IOException ex)
+        {
+            ex.printStackTrace();
+            test(false);
+        }
+        printWriter.println("ok");
+
+        return 0;
+    }
+
+    //
+    // Sends compressible, incompressible and small messages from a client to
+    // a server with the given properties and checks how the messages and
+    // their replies are sent. The extension is the negotiated extension or
+    // null if the messages aren't compressed.
+    //
+    private void test(String[] serverProperties, String[] clientProperties, String extension)
+    {
+        FrameLogger serverLogger = new FrameLogger();
+        Ice.InitializationData initData = createInitData(serverProperties);
+        initData.properties.setProperty("TestAdapter.Endpoints", "ws -h 127.0.0.1");
+        initData.properties.setProperty("Ice.Trace.Network", "2");
+        initData.logger = serverLogger;
+        Ice.Communicator server = Ice.Util.initialize(initData);
+
+        FrameLogger clientLogger = new FrameLogger();
+        initData = createInitData(clientProperties);
+        initData.properties.setProperty("Ice.Trace.Network", "2");
+        initData.logger = clientLogger;
+        Ice.Communicator client = Ice.Util.initialize(initData);
+        try
+        {
+            Ice.ObjectAdapter adapter = server.createObjectAdapter("TestAdapter");
+            Ice.ObjectPrx echo = adapter.add(new EchoI(), Ice.Util.stringToIdentity("echo"));
+            adapter.activate();
+            Ice.ObjectPrx proxy = client.stringToProxy(echo.toString());
+
+            Ice.WSConnectionInfo info = (Ice.WSConnectionInfo)proxy.ice_getConnection().getInfo();
+            String negotiated = info.headers.get("Sec-WebSocket-Extensions");
+            test(extension == null ? negotiated == null : extension.equals(negotiated));
+            boolean compressed = extension != null;
+
+            //
+            // Send the messages several times to check the compression context
+            // is correctly preserved or reset from one message to the next.
+            //
+            byte[] text = new byte[100 * 1024];
+            for(int i = 0; i < text.length; ++i)
+            {
+                text[i] = (byte)("abcdefghijklmnopqrstuvwxyz".charAt((i * 7 + i / 13) % 26));
+            }
+            byte[] random = new byte[300 * 1024];
+            new java.util.Random(42).nextBytes(random);
+            byte[] small = new byte[16];
+
+            serverLogger.frames();
+            clientLogger.frames();
+            for(int i = 0; i < 3; ++i)
+            {
+                for(byte[] data : new byte[][] { text, random, small })
+                {
+                    byte[] inParams = encapsulate(client, data);
+                    Ice.ByteSeqHolder outParams = new Ice.ByteSeqHolder();
+                    test(proxy.ice_invoke("echo", Ice.OperationMode.Normal, inParams, outParams));
+                    test(java.util.Arrays.equals(inParams, outParams.value));
+                }
+            }
+
+            for(java.util.List<Integer> frames : java.util.Arrays.asList(serverLogger.frames(),
+                                                                         clientLogger.frames()))
+            {
+                test(frames.size() == 9);
+                for(int i = 0; i < 3; ++i)
+                {
+                    int textFrame = frames.get(i * 3);
+                    int randomFrame = frames.get(i * 3 + 1);
+                    int smallFrame = frames.get(i * 3 + 2);
+                    if(compressed)
+                    {
+                        test(textFrame < 0 && -textFrame < text.length / 10);
+                        test(randomFrame < 0 && -randomFrame > random.length * 9 / 10);
+                    }
+                    else
+                    {
+                        test(textFrame > text.length && randomFrame > random.length);
+                    }
+                    test(smallFrame > 0);
+                }
+            }
+        }
+        finally
+        {
+            client.destroy();
+            server.destroy();
+        }
+    }
+
+    //
+    // Sends an upgrade request with the given Sec-WebSocket-Extensions header
+    // and returns the Sec-WebSocket-Extensions header of the response.
+    //
+    private static String upgrade(int port, String extensions)
+        throws java.io.IOException
+    {
+        java.net.Socket socket = new java.net.Socket("127.0.0.1", port);
+        try
+        {
+            StringBuilder request = new StringBuilder();
+            request.append("GET / HTTP/1.1\r\n");
+            request.append("Host: 127.0.0.1:" + port + "\r\n");
+            request.append("Upgrade: websocket\r\n");
+            request.append("Connection: Upgrade\r\n");
+            request.append("Sec-WebSocket-Protocol: ice.zeroc.com\r\n");
+            request.append("Sec-WebSocket-Version: 13\r\n");
+            request.append("Sec-WebSocket-Key: dGhlIHNhbXBsZSBub25jZQ==\r\n");
+            if(extensions != null)
+            {
+                request.append("Sec-WebSocket-Extensions: " + extensions + "\r\n");
+            }
+            request.append("\r\n");
+            socket.getOutputStream().write(request.toString().getBytes("US-ASCII"));
+            socket.getOutputStream().flush();
+
+            java.io.BufferedReader reader =
+                new java.io.BufferedReader(new java.io.InputStreamReader(socket.getInputStream(), "US-ASCII"));
+            test(reader.readLine().startsWith("HTTP/1.1 101"));
+            String extension = null;
+            String line;
+            while((line = reader.readLine()) != null && !line.isEmpty())
+            {
+                if(line.toLowerCase().startsWith("sec-websocket-extensions:"))
+                {
+                    extension = line.substring(line.indexOf(':') + 1).trim();
+                }
+            }
+            return extension;
+        }
+        finally
+        {
+            socket.close();
+        }
+    }
+
+    private static byte[] encapsulate(Ice.Communicator communicator, byte[] data)
+    {
+        Ice.OutputStream os = new Ice.OutputStream(communicator);
+        os.startEncapsulation();
+        os.writeByteSeq(data);
+        os.endEncapsulation();
+        return os.finished();
+    }
+
+    private Ice.InitializationData createInitData(String[] properties)
+    {
+        Ice.InitializationData initData = createInitializationData();
+        if(classLoader() != null)
+        {
+            initData.classLoader = classLoader();
+        }
+        initData.properties = Ice.Util.createProperties();
+        for(String p : properties)
+        {
+            int pos = p.indexOf('=');
+            initData.properties.setProperty(p.substring(0, pos), p.substring(pos + 1));
+        }
+        return initData;
+    }
+
+    private static void test(boolean b)
+    {
+        if(!b)
+        {
+            throw new RuntimeException();
+        }
+    }
+
+    public static void main(String[] args)
+    {
+        Client app = new Client();
+        int result = app.main("Client", args);
+        System.gc();
+        System.exit(result);
+    }
+}
@@ -0,0 +1,143 @@
+// **********************************************************************
+//
+// Copyright (c) 2003-2016 ZeroC, Inc. All rights reserved.
+//
+// This copy of Ice is licensed to you under the terms described in the
+// ICE_LICENSE file included in this distribution.
+//
+// **********************************************************************
+
+package test.Ice.wsThroughput;
+
+import java.io.PrintWriter;
+
+//
+// Measures the throughput of twoway requests over a tcp and a ws
+// connection for 64 byte, 4KB and 1MB messages. The servant echoes the
+// request parameters so that each request and reply carries the message:
+// the client masks the payload of the request frames and the server
+// unmasks them, the reply frames aren't masked.
+//
+// The servant is hosted by a separate communicator in the same process.
+// The number of requests sent for each message size is set with
+// WSThroughput.Requests, it's divided by 64 for the 1MB messages, and
+// the number of measured runs with WSThroughput.Runs.
+//
+public class Client extends test.Util.Application
+{
+    private static class EchoI extends Ice.Blobject
+    {
+        @Override
+        public boolean
+        ice_invoke(byte[] inParams, Ice.ByteSeqHolder outParams, Ice.Current current)
+        {
+            outParams.value = inParams;
+            return true;
+        }
+    }
+
+    @Override
+    public int
+    run(String[] args)
+    {
+        PrintWriter out = getWriter();
+        Ice.Properties properties = communicator().getProperties();
+        int requests = properties.getPropertyAsIntWithDefault("WSThroughput.Requests", 20000);
+        int runs = properties.getPropertyAsIntWithDefault("WSThroughput.Runs", 3);
+
+        Ice.InitializationData initData = createInitializationData();
+        initData.properties = properties._clone();
+        initData.properties.setProperty("TestAdapter.Endpoints", "tcp -h 127.0.0.1:ws -h 127.0.0.1");
+        Ice.Communicator server = Ice.Util.initialize(initData);
+        try
+        {
+            Ice.ObjectAdapter adapter = server.createObjectAdapter("TestAdapter");
+            Ice.ObjectPrx echo = adapter.add(new EchoI(), Ice.Util.stringToIdentity("echo"));
+            adapter.activate();
+
+            Ice.ObjectPrx proxy = communicator().stringToProxy(echo.toString());
+            int[] sizes = { 64, 4 * 1024, 1024 * 1024 };
+            String[] protocols = { "tcp", "ws" };
+            for(int size : sizes)
+            {
+                int count = size > 64 * 1024 ? Math.max(1, requests / 64) : requests;
+                byte[] inParams = encapsulate(size);
+                out.println(size + " bytes messages, " + count + " requests:");
+                for(String protocol : protocols)
+                {
+                    Ice.Endpoint endpoint = null;
+                    for(Ice.Endpoint e : proxy.ice_getEndpoints())
+                    {
+                        if(e.toString().startsWith(protocol + " "))
+                        {
+                            endpoint = e;
+                        }
+                    }
+                    Ice.ObjectPrx p = proxy.ice_endpoints(new Ice.Endpoint[] { endpoint }).ice_connectionId(protocol);
+
+                    long best = Long.MAX_VALUE;
+                    Ice.ByteSeqHolder outParams = new Ice.ByteSeqHolder();
+                    for(int run = 0; run <= runs; ++run)
+                    {
+                        long start = System.nanoTime();
+                        for(int i = 0; i < count; ++i)
+                        {
+                            p.ice_invoke("echo", Ice.OperationMode.Normal, inParams, outParams);
+                        }
+                        long time = System.nanoTime() - start;
+                        if(run > 0) // The first run warms up the JIT compiler.
+                        {
+                            best = Math.min(best, time);
+                        }
+                    }
+                    if(outParams.value.length != inParams.length)
+                    {
+                        return 1;
+                    }
+
+                    long throughput = (long)count * 1000000000L / best;
+                    long megabytes = (long)count * size * 2 * 1000 / best; // Requests and replies, in MB/s.
+                    out.println("  " + protocol + ": " + throughput + " requests/s, " + megabytes + " MB/s (" +
+                                best / count + " ns per request)");
+                    out.flush();
+                }
+            }
+        }
+        finally
+        {
+            server.destroy();
+        }
+        return 0;
+    }
+
+    private byte[]
+    encapsulate(int size)
+    {
+        Ice.OutputStream os = new Ice.OutputStream(communicator());
+        os.startEncapsulation();
+        byte[] data = new byte[size];
+        new java.util.Random(42).nextBytes(data);
+        os.writeByteSeq(data);
+        os.endEncapsulation();
+        return os.finished();
+    }
+
+    @Override
+    protected Ice.InitializationData getInitData(Ice.StringSeqHolder argsH)
+    {
+        Ice.InitializationData initData = createInitializationData();
+        initData.properties = Ice.Util.createProperties(argsH);
+        argsH.value = initData.properties.parseCommandLineOptions("WSThroughput", argsH.value);
+        initData.properties.setProperty("Ice.MessageSizeMax", "4096");
+        return initData;
+    }
+
+    public static void
+    main(String[] args)
+    {
+        Client app = new Client();
+        int result = app.main("Client", args);
+        System.gc();
+        System.exit(result);
+    }
+}
@@ -0,0 +1,370 @@
+// **********************************************************************
+//
+// Copyright (c) 2003-2016 ZeroC, Inc. All rights reserved.
+//
+// This copy of Ice is licensed to you under the terms described in the
+// ICE_LICENSE file included in this distribution.
+//
+// **********************************************************************
+
+
+package test.IcePatch2.patcher;
+
+import java.io.File;
+import java.io.PrintWriter;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import IcePatch2.FileServerPrx;
+import IcePatch2.FileServerPrxHelper;
+import IcePatch2.LargeFileInfo;
+import IcePatch2.Patcher;
+import IcePatch2.PatcherException;
+import IcePatch2.PatcherFactory;
+import IcePatch2.PatcherFeedback;
+import IcePatch2.TestUtil;
+
+public class AllTests
+{
+    private static void
+    test(boolean b)
+    {
+        if(!b)
+        {
+            throw new RuntimeException();
+        }
+    }
+
+    static class Feedback implements PatcherFeedback
+    {
+        @Override
+        public boolean
+        noFileSummary(String reason)
+        {
+            return true;
+        }
+
+        @Override
+        public boolean
+        checksumStart()
+        {
+            ++checksums;
+            return true;
+        }
+
+        @Override
+        public boolean
+        checksumProgress(String path)
+        {
+            return true;
+        }
+
+        @Override
+        public boolean
+        checksumEnd()
+        {
+            return true;
+        }
+
+        @Override
+        public boolean
+        fileListStart()
+        {
+            return true;
+        }
+
+        @Override
+        public boolean
+        fileListProgress(int percent)
+        {
+            test(percent >= 0 && percent <= 100);
+            return true;
+        }
+
+        @Override
+        public boolean
+        fileListEnd()
+        {
+            return true;
+        }
+
+        @Override
+        public boolean
+        patchStart(String path, long size, long updated, long total)
+        {
+            test(TestUtil.isSafePath(path));
+            test(updated <= total);
+            ++patched;
+            return true;
+        }
+
+        @Override
+        public boolean
+        patchProgress(long pos, long size, long updated, long total)
+        {
+            test(pos <= size && updated <= total);
+            return true;
+        }
+
+        @Override
+        public boolean
+        patchEnd()
+        {
+            return true;
+        }
+
+        int checksums = 0;
+        int patched = 0;
+    }
+
+    private static String
+    toHex(byte[] bytes)
+    {
+        StringBuilder sb = new StringBuilder();
+        for(byte b : bytes)
+        {
+            sb.append(String.format("%02x", b & 0xff));
+        }
+        return sb.toString();
+    }
+
+    private static void
+    write(File file, String content)
+        throws java.io.IOException
+    {
+        file.getParentFile().mkdirs();
+        java.nio.file.Files.write(file.toPath(), content.getBytes("UTF-8"));
+    }
+
+    private static void
+    delete(File file)
+    {
+        File[] files = file.listFiles();
+        if(files != null)
+        {
+            for(File f : files)
+            {
+                delete(f);
+            }
+        }
+        file.delete();
+    }
+
+    private static LargeFileInfo
+    find(List<LargeFileInfo> files, String path)
+    {
+        for(LargeFileInfo info : files)
+        {
+            if(info.path.equals(path))
+            {
+                return info;
+            }
+        }
+        return null;
+    }
+
+    //
+    // Checks that the given directories have the same files, with the same
+    // checksums and flags. The compressed files and the summary file of the
+    // server directory are ignored.
+    //
+    private static void
+    compare(String serverDir, String clientDir, ExecutorService executor)
+        throws PatcherException
+    {
+        List<LargeFileInfo> serverFiles = TestUtil.getFileInfoSeq(serverDir, executor, new Feedback());
+        List<LargeFileInfo> clientFiles = TestUtil.getFileInfoSeq(clientDir, executor, new Feedback());
+        test(serverFiles.size() == clientFiles.size());
+        for(int i = 0; i < serverFiles.size(); ++i)
+        {
+            LargeFileInfo s = serverFiles.get(i);
+            LargeFileInfo c = clientFiles.get(i);
+            test(s.path.equals(c.path));
+            test(java.util.Arrays.equals(s.checksum, c.checksum));
+            test(s.executable == c.executable);
+        }
+    }
+
+    public static void
+    allTests(test.Util.Application app, PrintWriter out)
+    {
+        Ice.Communicator communicator = app.communicator();
+        Ice.Properties properties = communicator.getProperties();
+        String serverDir = properties.getProperty("Test.ServerDirectory");
+        String clientDir = properties.getProperty("Test.ClientDirectory");
+        test(!serverDir.isEmpty() && !clientDir.isEmpty());
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try
+        {
+            out.print("testing path simplification... ");
+            out.flush();
+            {
+                test(TestUtil.simplify("a/b/c").equals("a/b/c"));
+                test(TestUtil.simplify("a//b///c").equals("a/b/c"));
+                test(TestUtil.simplify("a/./b/c").equals("a/b/c"));
+                test(TestUtil.simplify("./a/b").equals("a/b"));
+                test(TestUtil.simplify("a/b/").equals("a/b"));
+                test(TestUtil.simplify("a/b/.").equals("a/b"));
+                test(TestUtil.simplify("/a/b").equals("/a/b"));
+                test(TestUtil.simplify("/").equals("/"));
+                test(TestUtil.simplify(".").equals("."));
+
+                test(TestUtil.isSafePath("a"));
+                test(TestUtil.isSafePath("a/b"));
+                test(TestUtil.isSafePath("a..b"));
+                test(TestUtil.isSafePath("a/..b/c"));
+                test(!TestUtil.isSafePath(""));
+                test(!TestUtil.isSafePath(".."));
+                test(!TestUtil.isSafePath("../a"));
+                test(!TestUtil.isSafePath("a/../b"));
+                test(!TestUtil.isSafePath("a/.."));
+                test(!TestUtil.isSafePath("/a"));
+                test(!TestUtil.isSafePath("a\0b"));
+            }
+            out.println("ok");
+
+            out.print("testing checksums... ");
+            out.flush();
+            {
+                File dir = java.nio.file.Files.createTempDirectory("icepatch2").toFile();
+                try
+                {
+                    write(new File(dir, "dir/file"), "hello");
+                    write(new File(dir, "dir/empty"), "");
+
+                    //
+                    // The checksum of a file is the SHA-1 of its path and
+                    // contents, the checksum of a directory or of an empty
+                    // file is the SHA-1 of its path, as computed by the C++
+                    // IcePatch2 library.
+                    //
+                    List<LargeFileInfo> files = TestUtil.getFileInfoSeq(dir.getPath(), executor, new Feedback());
+                    LargeFileInfo info = find(files, "dir/file");
+                    test(info != null && !info.executable);
+                    test(toHex(info.checksum).equals("a535a7703d4ca53bf24355d57f85ea2e8205e46f"));
+                    info = find(files, "dir");
+                    test(info != null && info.size == -1);
+                    test(toHex(info.checksum).equals("7ee737c83ee689c96ef37d3a029068c390ebc8f8"));
+                    info = find(files, "dir/empty");
+                    test(info != null && info.size == 0);
+                    test(toHex(info.checksum).equals("425dc69c9d2bdddff1bc63461c96e943780b9645"));
+                }
+                finally
+                {
+                    delete(dir);
+                }
+            }
+            out.println("ok");
+
+            FileServerPrx server =
+                FileServerPrxHelper.checkedCast(communicator.stringToProxy("IcePatch2/server:default -p 12010"));
+            test(server != null);
+
+            out.print("testing patching... ");
+            out.flush();
+            {
+                new File(clientDir).mkdirs();
+                Feedback feedback = new Feedback();
+                Patcher patcher = PatcherFactory.create(server, feedback, clientDir, false, 1, 1);
+                test(patcher.prepare());
+                test(patcher.patch(""));
+                patcher.finish();
+                test(feedback.checksums == 1);
+                test(feedback.patched > 0);
+                compare(serverDir, clientDir, executor);
+
+                //
+                // The checksums computed by the patcher match the checksums
+                // computed by icepatch2calc, a thorough patch doesn't
+                // download any file.
+                //
+                feedback = new Feedback();
+                patcher = PatcherFactory.create(server, feedback, clientDir, true, 100, 1);
+                test(patcher.prepare());
+                test(patcher.patch(""));
+                patcher.finish();
+                test(feedback.checksums == 1);
+                test(feedback.patched == 0);
+            }
+            out.println("ok");
+
+            out.print("testing patching of modified files... ");
+            out.flush();
+            {
+                write(new File(clientDir, "rootfile"), "modified");
+                new File(clientDir, "dir1/file1").delete();
+                write(new File(clientDir, "dir3/extra"), "extra");
+
+                Feedback feedback = new Feedback();
+                Patcher patcher = PatcherFactory.create(server, feedback, clientDir, true, 100, 1);
+                test(patcher.prepare());
+                test(patcher.patch(""));
+                patcher.finish();
+                test(feedback.patched == 2);
+                test(!new File(clientDir, "dir3").exists());
+                compare(serverDir, clientDir, executor);
+            }
+            out.println("ok");
+
+            out.print("testing illegal server paths... ");
+            out.flush();
+            {
+                Ice.ObjectAdapter adapter = communicator.createObjectAdapter("TestAdapter");
+                adapter.activate();
+
+                File base = new File(clientDir, "illegal");
+                File dataDir = new File(base, "data");
+                String[] paths = { "../evil", "dir/../../evil", "/evil", ".." };
+                for(int i = 0; i < paths.length; ++i)
+                {
+                    LargeFileInfo info = new LargeFileInfo(paths[i], new byte[20], 0, false);
+                    FileServerPrx evil = FileServerPrxHelper.uncheckedCast(
+                        adapter.add(new FileServerI(new LargeFileInfo[] { info }),
+                                    Ice.Util.stringToIdentity("evil" + i)));
+
+                    dataDir.mkdirs();
+                    Patcher patcher = PatcherFactory.create(evil, new Feedback(), dataDir.getPath(), true, 100, 1);
+                    try
+                    {
+                        patcher.prepare();
+                        test(false);
+                    }
+                    catch(PatcherException ex)
+                    {
+                        test(ex.getMessage().indexOf(paths[i]) != -1);
+                    }
+                    finally
+                    {
+                        patcher.finish();
+                    }
+                    test(!new File(base, "evil").exists());
+                    test(!new File("/evil").exists());
+                }
+                adapter.destroy();
+            }
+            out.println("ok");
+        }
+        catch(PatcherException ex)
+        {
+            ex.printStackTrace();
+            test(false);
+        }
+        catch(java.io.IOException ex)
+        {
+            ex.printStackTrace();
+            test(false);
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+
+        out.print("shutting down icepatch2 server... ");
+        out.flush();
+        Ice.ProcessPrxHelper.uncheckedCast(
+            communicator.stringToProxy("IcePatch2/admin -f Process:tcp -h 127.0.0.1 -p 12011")).shutdown();
+        out.println("ok");
+    }
+}
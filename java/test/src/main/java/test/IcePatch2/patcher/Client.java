@@ -0,0 +1,40 @@
+// **********************************************************************
+//
+// Copyright (c) 2003-2016 ZeroC, Inc. All rights reserved.
+//
+// This copy of Ice is licensed to you under the terms described in the
+// ICE_LICENSE file included in this distribution.
+//
+// **********************************************************************
+
+
+package test.IcePatch2.patcher;
+
+public class Client extends test.Util.Application
+{
+    @Override
+    public int run(String[] args)
+    {
+        AllTests.allTests(this, getWriter());
+        return 0;
+    }
+
+    @Override
+    protected Ice.InitializationData getInitData(Ice.StringSeqHolder argsH)
+    {
+        Ice.InitializationData initData = createInitializationData() ;
+        initData.properties = Ice.Util.createProperties(argsH);
+        initData.properties.setProperty("TestAdapter.Endpoints", "default -p 12012");
+        initData.properties.setProperty("IcePatch2Client.Threads", "2");
+        initData.properties.setProperty("IcePatch2Client.MaxInFlight", "4");
+        return initData;
+    }
+
+    public static void main(String[] args)
+    {
+        Client app = new Client();
+        int result = app.main("Client", args);
+        System.gc();
+        System.exit(result);
+    }
+}
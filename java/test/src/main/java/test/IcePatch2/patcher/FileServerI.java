@@ -0,0 +1,100 @@
+// **********************************************************************
+//
+// Copyright (c) 2003-2016 ZeroC, Inc. All rights reserved.
+//
+// This copy of Ice is licensed to you under the terms described in the
+// ICE_LICENSE file included in this distribution.
+//
+// **********************************************************************
+
+
+package test.IcePatch2.patcher;
+
+import IcePatch2.*;
+
+//
+// A file server which returns the given file infos for the first
+// partition, used to check how the patcher handles illegal file infos.
+//
+@SuppressWarnings("deprecation")
+public final class FileServerI extends _FileServerDisp
+{
+    FileServerI(LargeFileInfo[] files)
+    {
+        _files = files;
+    }
+
+    @Override
+    public FileInfo[]
+    getFileInfoSeq(int partition, Ice.Current current)
+        throws PartitionOutOfRangeException
+    {
+        if(partition < 0 || partition > 255)
+        {
+            throw new PartitionOutOfRangeException();
+        }
+
+        if(partition > 0)
+        {
+            return new FileInfo[0];
+        }
+
+        FileInfo[] files = new FileInfo[_files.length];
+        for(int i = 0; i < _files.length; ++i)
+        {
+            files[i] = new FileInfo(_files[i].path, _files[i].checksum, (int)_files[i].size, _files[i].executable);
+        }
+        return files;
+    }
+
+    @Override
+    public LargeFileInfo[]
+    getLargeFileInfoSeq(int partition, Ice.Current current)
+        throws PartitionOutOfRangeException
+    {
+        if(partition < 0 || partition > 255)
+        {
+            throw new PartitionOutOfRangeException();
+        }
+        return partition == 0 ? _files : new LargeFileInfo[0];
+    }
+
+    @Override
+    public byte[][]
+    getChecksumSeq(Ice.Current current)
+    {
+        byte[][] checksums = new byte[256][];
+        for(int i = 0; i < checksums.length; ++i)
+        {
+            checksums[i] = new byte[20];
+            checksums[i][0] = 1; // Differs from the checksum of any local partition.
+        }
+        return checksums;
+    }
+
+    @Override
+    public byte[]
+    getChecksum(Ice.Current current)
+    {
+        byte[] checksum = new byte[20];
+        checksum[0] = 1;
+        return checksum;
+    }
+
+    @Override
+    public void
+    getFileCompressed_async(AMD_FileServer_getFileCompressed cb, String path, int pos, int num, Ice.Current current)
+    {
+        cb.ice_exception(new FileAccessException("unexpected request for `" + path + "'"));
+    }
+
+    @Override
+    public void
+    getLargeFileCompressed_async(AMD_FileServer_getLargeFileCompressed cb, String path, long pos, int num,
+                                 Ice.Current current)
+    {
+        cb.ice_exception(new FileAccessException("unexpected request for `" + path + "'"));
+    }
+
+    private final LargeFileInfo[] _files;
+}
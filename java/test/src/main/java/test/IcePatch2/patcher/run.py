@@ -0,0 +1,74 @@
+#!/usr/bin/env python
+# **********************************************************************
+#
+# Copyright (c) 2003-2016 ZeroC, Inc. All rights reserved.
+#
+# This copy of Ice is licensed to you under the terms described in the
+# ICE_LICENSE file included in this distribution.
+#
+# **********************************************************************
+
+import os, sys
+
+path = [ ".", "..", "../..", "../../..", "../../../..", "../../../../..", "../../../../../..",
+         "../../../../../../..", "../../../../../../../..", "../../../../../../../../.." ]
+head = os.path.dirname(sys.argv[0])
+if len(head) > 0:
+    path = [os.path.join(head, p) for p in path]
+path = [os.path.abspath(p) for p in path if os.path.exists(os.path.join(p, "scripts", "TestUtil.py")) ]
+if len(path) == 0:
+    raise RuntimeError("can't find toplevel directory!")
+sys.path.append(os.path.join(path[0], "scripts"))
+import TestUtil
+import shutil, stat
+
+serverDir = os.path.join(os.getcwd(), "server")
+clientDir = os.path.join(os.getcwd(), "client")
+
+def cleanup():
+    for d in [serverDir, clientDir]:
+        if os.path.exists(d):
+            shutil.rmtree(d)
+
+files = [
+  [ "rootfile", "rootfile" ],
+  [ "dir1/file1", "dummy-file1" ],
+  [ "dir1/file2", "dummy-file2" * 10000 ],
+  [ "dir2/empty", "" ],
+  [ "dir2/dir3/script", "#!/bin/sh\n" ],
+]
+
+sys.stdout.write("creating IcePatch2 data directory... ")
+sys.stdout.flush()
+cleanup()
+for [file, content] in files:
+    file = os.path.join(serverDir, file)
+    if not os.path.exists(os.path.dirname(file)):
+        os.makedirs(os.path.dirname(file))
+    f = open(file, 'w')
+    f.write(content)
+    f.close()
+if not TestUtil.isWin32():
+    script = os.path.join(serverDir, "dir2", "dir3", "script")
+    os.chmod(script, os.stat(script).st_mode | stat.S_IXUSR)
+
+icePatch2Calc = os.path.join(TestUtil.getCppBinDir(), "icepatch2calc")
+TestUtil.spawn('"%s" "%s"' % (icePatch2Calc, serverDir)).waitTestSuccess()
+print("ok")
+
+sys.stdout.write("starting icepatch2 server... ")
+sys.stdout.flush()
+serverConfig = TestUtil.DriverConfig("server")
+serverConfig.lang = "cpp"
+server = os.path.join(TestUtil.getCppBinDir(), "icepatch2server")
+args = ' --IcePatch2.Endpoints="default -p 12010"' + \
+       ' --IcePatch2.Directory="%s"' % serverDir + \
+       ' --Ice.Admin.Endpoints="tcp -h 127.0.0.1 -p 12011"' + \
+       ' --Ice.Admin.InstanceName=IcePatch2'
+serverProc = TestUtil.startServer(server, args, config=serverConfig, adapter="IcePatch2")
+print("ok")
+
+TestUtil.simpleTest(options=' --Test.ServerDirectory="%s" --Test.ClientDirectory="%s"' % (serverDir, clientDir))
+
+serverProc.waitTestSuccess()
+cleanup()
@@ -0,0 +1,246 @@
+// **********************************************************************
+//
+// Copyright (c) 2003-2016 ZeroC, Inc. All rights reserved.
+//
+// This copy of Ice is licensed to you under the terms described in the
+// ICE_LICENSE file included in this distribution.
+//
+// **********************************************************************
+
+package test.IceStorm.batchPublisher;
+
+import java.io.PrintWriter;
+
+import IceStorm.BatchPublisher;
+import IceStorm.PublisherMetrics;
+import test.IceStorm.batchPublisher.Test.ClockPrx;
+import test.IceStorm.batchPublisher.Test.ClockPrxHelper;
+
+public class AllTests
+{
+    private static void
+    test(boolean b)
+    {
+        if(!b)
+        {
+            throw new RuntimeException();
+        }
+    }
+
+    private static void
+    waitForTicks(ClockPrx clock, int ticks)
+    {
+        for(int i = 0; i < 100; ++i)
+        {
+            int n = clock.getTicks();
+            test(n >= 0 && n <= ticks);
+            if(n == ticks)
+            {
+                return;
+            }
+
+            try
+            {
+                Thread.sleep(50);
+            }
+            catch(InterruptedException ex)
+            {
+            }
+        }
+        test(false);
+    }
+
+    private static IceMX.Metrics
+    getPublisherMetrics(Ice.Communicator communicator, String id)
+    {
+        IceMX.MetricsAdmin admin = (IceMX.MetricsAdmin)communicator.findAdminFacet("Metrics");
+        java.util.Map<String, IceMX.Metrics[]> view;
+        try
+        {
+            view = admin.getMetricsView("View", new Ice.LongHolder());
+        }
+        catch(IceMX.UnknownMetricsView ex)
+        {
+            test(false);
+            return null;
+        }
+
+        IceMX.Metrics[] metrics = view.get("Publisher");
+        test(metrics != null);
+        for(IceMX.Metrics m : metrics)
+        {
+            if(m.id.equals(id))
+            {
+                return m;
+            }
+        }
+        return null;
+    }
+
+    static class Callback extends Ice.Callback
+    {
+        Callback(ClockPrx clock, BatchPublisher<ClockPrx> publisher, int start, int count)
+        {
+            _clock = clock;
+            _publisher = publisher;
+            _start = start;
+            _count = count;
+        }
+
+        @Override
+        public void
+        completed(Ice.AsyncResult r)
+        {
+            try
+            {
+                _clock.end_getTicks(r);
+
+                //
+                // This thread is the only client thread pool thread, the
+                // publisher must not wait for it to call the sent callbacks.
+                //
+                for(int i = 0; i < _count; ++i)
+                {
+                    _publisher.get().tick(_start + i);
+                }
+                _publisher.flush();
+                _publisher.destroy();
+            }
+            catch(RuntimeException ex)
+            {
+                _exception = ex;
+            }
+
+            synchronized(this)
+            {
+                _called = true;
+                notify();
+            }
+        }
+
+        synchronized void
+        check()
+        {
+            while(!_called)
+            {
+                try
+                {
+                    wait();
+                }
+                catch(InterruptedException ex)
+                {
+                }
+            }
+            test(_exception == null);
+        }
+
+        private final ClockPrx _clock;
+        private final BatchPublisher<ClockPrx> _publisher;
+        private final int _start;
+        private final int _count;
+        private RuntimeException _exception;
+        private boolean _called = false;
+    }
+
+    public static ClockPrx
+    allTests(test.Util.Application app, PrintWriter out)
+    {
+        Ice.Communicator communicator = app.communicator();
+        ClockPrx clock = ClockPrxHelper.checkedCast(communicator.stringToProxy("clock:default -p 12010"));
+        test(clock != null);
+        int ticks = 0;
+
+        out.print("testing batch publisher... ");
+        out.flush();
+        {
+            BatchPublisher<ClockPrx> publisher = new BatchPublisher<ClockPrx>("Clock", clock, 0, 256, 1);
+            for(int i = 0; i < 1000; ++i)
+            {
+                publisher.get().tick(ticks++);
+            }
+            publisher.destroy();
+
+            //
+            // destroy() waits for the batches to be sent, they're dispatched
+            // before the next request sent over the connection.
+            //
+            test(clock.getTicks() == ticks);
+
+            PublisherMetrics m = publisher.getMetrics();
+            test(m.id.equals("Clock"));
+            test(m.events == 1000);
+            test(m.total > 1);
+            test(m.current == 0);
+            test(m.failures == 0);
+            long batches = 0;
+            for(long n : m.batchSizes)
+            {
+                batches += n;
+            }
+            test(batches == m.total);
+
+            try
+            {
+                publisher.get();
+                test(false);
+            }
+            catch(IllegalStateException ex)
+            {
+            }
+        }
+        out.println("ok");
+
+        out.print("testing flush interval... ");
+        out.flush();
+        {
+            BatchPublisher<ClockPrx> publisher = new BatchPublisher<ClockPrx>("Timer", clock);
+            for(int i = 0; i < 10; ++i)
+            {
+                publisher.get().tick(ticks++);
+            }
+            waitForTicks(clock, ticks);
+            test(publisher.getMetrics().events == 10);
+            publisher.destroy();
+        }
+        out.println("ok");
+
+        out.print("testing publishing from a thread pool thread... ");
+        out.flush();
+        {
+            BatchPublisher<ClockPrx> publisher = new BatchPublisher<ClockPrx>("Callback", clock, 0, 64, 1);
+            Callback cb = new Callback(clock, publisher, ticks, 100);
+            clock.begin_getTicks(cb);
+            cb.check();
+            ticks += 100;
+            waitForTicks(clock, ticks);
+            test(publisher.getMetrics().failures == 0);
+        }
+        out.println("ok");
+
+        out.print("testing publisher metrics... ");
+        out.flush();
+        {
+            BatchPublisher<ClockPrx> publisher = new BatchPublisher<ClockPrx>("Metrics", clock, 0, 64 * 1024, 4);
+            for(int i = 0; i < 10; ++i)
+            {
+                publisher.get().tick(ticks++);
+            }
+            publisher.flush();
+            waitForTicks(clock, ticks);
+
+            test(communicator.getPluginManager().getPlugin("IceStorm.BatchPublisher") != null);
+            IceMX.Metrics m = getPublisherMetrics(communicator, "Metrics");
+            test(m != null && m.total == 1 && m.failures == 0);
+
+            //
+            // Destroyed publishers are removed from the map.
+            //
+            test(getPublisherMetrics(communicator, "Clock") == null);
+            publisher.destroy();
+            test(getPublisherMetrics(communicator, "Metrics") == null);
+        }
+        out.println("ok");
+
+        return clock;
+    }
+}
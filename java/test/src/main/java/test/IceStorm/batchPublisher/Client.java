@@ -0,0 +1,47 @@
+// **********************************************************************
+//
+// Copyright (c) 2003-2016 ZeroC, Inc. All rights reserved.
+//
+// This copy of Ice is licensed to you under the terms described in the
+// ICE_LICENSE file included in this distribution.
+//
+// **********************************************************************
+
+package test.IceStorm.batchPublisher;
+
+public class Client extends test.Util.Application
+{
+    @Override
+    public int run(String[] args)
+    {
+        test.IceStorm.batchPublisher.Test.ClockPrx clock = AllTests.allTests(this, getWriter());
+        clock.shutdown();
+        return 0;
+    }
+
+    @Override
+    protected Ice.InitializationData getInitData(Ice.StringSeqHolder argsH)
+    {
+        Ice.InitializationData initData = createInitializationData() ;
+        initData.properties = Ice.Util.createProperties(argsH);
+        initData.properties.setProperty("Ice.Package.Test", "test.IceStorm.batchPublisher");
+        initData.properties.setProperty("Ice.Admin.Enabled", "1");
+        initData.properties.setProperty("IceMX.Metrics.View.Map.Publisher.GroupBy", "id");
+        initData.properties.setProperty("Timer.FlushInterval", "10");
+        initData.properties.setProperty("Timer.MaxBatchSize", "1024");
+        //
+        // A single client thread pool thread calls the sent callbacks.
+        //
+        initData.properties.setProperty("Ice.ThreadPool.Client.Size", "1");
+        initData.properties.setProperty("Ice.ThreadPool.Client.SizeMax", "1");
+        return initData;
+    }
+
+    public static void main(String[] args)
+    {
+        Client app = new Client();
+        int result = app.main("Client", args);
+        System.gc();
+        System.exit(result);
+    }
+}
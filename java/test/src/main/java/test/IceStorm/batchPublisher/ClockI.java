@@ -0,0 +1,46 @@
+// **********************************************************************
+//
+// Copyright (c) 2003-2016 ZeroC, Inc. All rights reserved.
+//
+// This copy of Ice is licensed to you under the terms described in the
+// ICE_LICENSE file included in this distribution.
+//
+// **********************************************************************
+
+package test.IceStorm.batchPublisher;
+
+import test.IceStorm.batchPublisher.Test._ClockDisp;
+
+public final class ClockI extends _ClockDisp
+{
+    @Override
+    synchronized public void
+    tick(int time, Ice.Current current)
+    {
+        //
+        // The ticks must be received in order and only once.
+        //
+        if(time != _ticks)
+        {
+            _outOfOrder = true;
+        }
+        ++_ticks;
+    }
+
+    @Override
+    synchronized public int
+    getTicks(Ice.Current current)
+    {
+        return _outOfOrder ? -1 : _ticks;
+    }
+
+    @Override
+    public void
+    shutdown(Ice.Current current)
+    {
+        current.adapter.getCommunicator().shutdown();
+    }
+
+    private int _ticks = 0;
+    private boolean _outOfOrder = false;
+}
@@ -0,0 +1,49 @@
+// **********************************************************************
+//
+// Copyright (c) 2003-2016 ZeroC, Inc. All rights reserved.
+//
+// This copy of Ice is licensed to you under the terms described in the
+// ICE_LICENSE file included in this distribution.
+//
+// **********************************************************************
+
+package test.IceStorm.batchPublisher;
+
+public class Server extends test.Util.Application
+{
+    @Override
+    public int run(String[] args)
+    {
+        Ice.Communicator communicator = communicator();
+        Ice.ObjectAdapter adapter = communicator.createObjectAdapter("TestAdapter");
+        adapter.add(new ClockI(), communicator.stringToIdentity("clock"));
+        adapter.activate();
+
+        serverReady();
+        communicator.waitForShutdown();
+        return 0;
+    }
+
+    @Override
+    protected Ice.InitializationData getInitData(Ice.StringSeqHolder argsH)
+    {
+        Ice.InitializationData initData = createInitializationData() ;
+        initData.properties = Ice.Util.createProperties(argsH);
+        initData.properties.setProperty("Ice.Package.Test", "test.IceStorm.batchPublisher");
+        initData.properties.setProperty("TestAdapter.Endpoints", "default -p 12010");
+        //
+        // A single thread dispatches the ticks in the order they're sent.
+        //
+        initData.properties.setProperty("TestAdapter.ThreadPool.Size", "1");
+        initData.properties.setProperty("TestAdapter.ThreadPool.SizeMax", "1");
+        return initData;
+    }
+
+    public static void main(String[] args)
+    {
+        Server app = new Server();
+        int result = app.main("Server", args);
+        System.gc();
+        System.exit(result);
+    }
+}